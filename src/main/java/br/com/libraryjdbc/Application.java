@@ -1,12 +1,27 @@
 package br.com.libraryjdbc;
 
+import java.util.Arrays;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import br.com.libraryjdbc.app.Program;
+
+/**
+ * Entry point. With {@code --no-spring} the library program runs straight
+ * away without starting a Spring context, which short-lived batch jobs do
+ * not need and would otherwise spend most of their run starting.
+ */
 @SpringBootApplication
 public class Application {
 
+	static final String NO_SPRING = "--no-spring";
+
 	public static void main(String[] args) {
+		if (Arrays.asList(args).contains(NO_SPRING)) {
+			Program.main(args);
+			return;
+		}
 		SpringApplication.run(Application.class, args);
 	}
 
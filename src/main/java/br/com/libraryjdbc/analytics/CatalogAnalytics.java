@@ -0,0 +1,238 @@
+package br.com.libraryjdbc.analytics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DbException;
+
+/**
+ * Computes the catalog reports of a {@link CatalogReport} in one pass over
+ * the book and category tables, instead of one GROUP BY query per report.
+ *
+ * Books are read unsorted through a database cursor, on a replica when one
+ * is configured, and copied into column chunks of {@code chunkSize} rows.
+ * Each chunk is handed to a fork-join pool, where it is split further and
+ * counted into the tally of whichever worker thread runs each piece, while
+ * the caller goes on reading the next chunk. Only a few chunks per worker
+ * are in flight at a time, so memory use depends on the number of distinct
+ * authors and titles, not on the number of books. The worker tallies are
+ * merged pairwise, also on the pool, once the cursor is exhausted.
+ *
+ * Reading the cursor stays on one thread, so adding workers helps until
+ * counting keeps up with the database.
+ */
+public class CatalogAnalytics {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+    /** Rows a task counts itself rather than splitting. */
+    private static final int LEAF_SIZE = 512;
+    /** Chunks queued or being counted per worker. */
+    private static final int CHUNKS_PER_WORKER = 2;
+
+    private final BookDao bookDao;
+    private final CategoryDao categoryDao;
+    private final int parallelism;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public CatalogAnalytics() {
+        this(new BookDao(), new CategoryDao(), Runtime.getRuntime().availableProcessors());
+    }
+
+    public CatalogAnalytics(BookDao bookDao, CategoryDao categoryDao, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.bookDao = bookDao;
+        this.categoryDao = categoryDao;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Books copied per chunk before it is handed to the workers.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public CatalogReport analyze() {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Queue<CatalogTally> tallies = new ConcurrentLinkedQueue<>();
+            ThreadLocal<CatalogTally> workerTally = ThreadLocal.withInitial(() -> {
+                CatalogTally tally = new CatalogTally();
+                tallies.add(tally);
+                return tally;
+            });
+
+            // The two passes are separate reads: a category created after the
+            // scan is listed with no books, and a counted book's category may
+            // be gone by the listing, in which case the report keeps its id
+            countBooks(pool, workerTally);
+            List<Category> categories = new ArrayList<>();
+            categoryDao.forEach(categories::add);
+
+            CatalogTally total = tallies.isEmpty() ? new CatalogTally()
+                    : pool.invoke(new MergeTask(new ArrayList<>(tallies), 0, tallies.size()));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            return new CatalogReport(total, categories, elapsedMillis);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Helper methods
+
+    private void countBooks(ForkJoinPool pool, ThreadLocal<CatalogTally> workerTally) {
+        Semaphore inFlight = new Semaphore(parallelism * CHUNKS_PER_WORKER);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        try (Stream<Book> books = bookDao.scan()) {
+            Iterator<Book> it = books.iterator();
+            BookChunk chunk = new BookChunk(chunkSize);
+            while (it.hasNext()) {
+                chunk.add(it.next());
+                if (chunk.size == chunkSize || !it.hasNext()) {
+                    acquire(inFlight);
+                    BookChunk full = chunk;
+                    tasks.add(pool.submit(new ChunkTask(full, 0, full.size, workerTally, inFlight)));
+                    chunk = new BookChunk(chunkSize);
+                }
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    private static void acquire(Semaphore inFlight) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbException("Interrupted while analyzing the catalog", e);
+        }
+    }
+
+    /**
+     * Columns of up to {@code capacity} books, as the workers need them.
+     */
+    private static final class BookChunk {
+
+        final String[] titles;
+        final String[] authors;
+        final int[] releaseYears;
+        final long[] categoryIds;
+        /** -1 when the book has no synopsis. */
+        final int[] synopsisLengths;
+        int size;
+
+        BookChunk(int capacity) {
+            titles = new String[capacity];
+            authors = new String[capacity];
+            releaseYears = new int[capacity];
+            categoryIds = new long[capacity];
+            synopsisLengths = new int[capacity];
+        }
+
+        void add(Book book) {
+            titles[size] = book.getTitle();
+            authors[size] = book.getAuthor();
+            releaseYears[size] = book.getReleaseYear();
+            categoryIds[size] = book.getCategory().getId();
+            synopsisLengths[size] = book.getSynopsis() == null ? -1 : book.getSynopsis().length();
+            size++;
+        }
+    }
+
+    /**
+     * Counts rows {@code from} to {@code to} of a chunk, splitting in halves
+     * down to {@link #LEAF_SIZE} so idle workers can take part.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BookChunk chunk;
+        private final int from;
+        private final int to;
+        private final ThreadLocal<CatalogTally> workerTally;
+        /** Released when the whole chunk is counted; null for the halves. */
+        private final Semaphore inFlight;
+
+        ChunkTask(BookChunk chunk, int from, int to, ThreadLocal<CatalogTally> workerTally, Semaphore inFlight) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.workerTally = workerTally;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (to - from <= LEAF_SIZE) {
+                    CatalogTally tally = workerTally.get();
+                    for (int i = from; i < to; i++) {
+                        tally.add(chunk.titles[i], chunk.authors[i], chunk.releaseYears[i], chunk.categoryIds[i],
+                                chunk.synopsisLengths[i]);
+                    }
+                } else {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new ChunkTask(chunk, from, middle, workerTally, null),
+                            new ChunkTask(chunk, middle, to, workerTally, null));
+                }
+            } finally {
+                if (inFlight != null) {
+                    inFlight.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges tallies {@code from} to {@code to} into the first of them.
+     */
+    private static final class MergeTask extends RecursiveTask<CatalogTally> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<CatalogTally> tallies;
+        private final int from;
+        private final int to;
+
+        MergeTask(List<CatalogTally> tallies, int from, int to) {
+            this.tallies = tallies;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CatalogTally compute() {
+            if (to - from == 1) {
+                return tallies.get(from);
+            }
+            int middle = (from + to) >>> 1;
+            MergeTask right = new MergeTask(tallies, middle, to);
+            right.fork();
+            CatalogTally left = new MergeTask(tallies, from, middle).compute();
+            return left.merge(right.join());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package br.com.libraryjdbc.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import br.com.libraryjdbc.model.Category;
+import br.com.libraryjdbc.model.CategoryStats;
+
+/**
+ * Outcome of one {@link CatalogAnalytics} run.
+ */
+public class CatalogReport {
+
+    private final int books;
+    private final Map<String, Integer> booksPerAuthor;
+    private final SortedMap<Integer, Integer> booksPerDecade;
+    private final List<CategoryStats> booksPerCategory;
+    private final Map<String, Integer> duplicateTitles;
+    private final int synopses;
+    private final int shortestSynopsis;
+    private final int longestSynopsis;
+    private final double averageSynopsisLength;
+    private final double synopsisLengthStdDev;
+    private final long elapsedMillis;
+
+    CatalogReport(CatalogTally tally, List<Category> categories, long elapsedMillis) {
+        this.books = tally.books;
+
+        Map<String, Integer> authors = new HashMap<>(tally.authors.size() * 2);
+        tally.authors.copyTo(authors, 1);
+        this.booksPerAuthor = Collections.unmodifiableMap(authors);
+
+        SortedMap<Integer, Integer> decades = new TreeMap<>();
+        tally.decades.forEach((decade, count) -> decades.put((int) decade, count));
+        this.booksPerDecade = Collections.unmodifiableSortedMap(decades);
+
+        // Categories without books count too; a book whose category was
+        // deleted after it was read keeps a category with only an id
+        LongCounter perCategory = tally.categories;
+        List<CategoryStats> stats = new ArrayList<>(categories.size());
+        LongCounter listed = new LongCounter(categories.size() * 2);
+        for (Category category : categories) {
+            stats.add(new CategoryStats(category, perCategory.get(category.getId())));
+            listed.add(category.getId());
+        }
+        perCategory.forEach((id, count) -> {
+            if (listed.get(id) == 0) {
+                stats.add(new CategoryStats(new Category(id, null, null), count));
+            }
+        });
+        // Ties broken as findCategoryWithMostBooks breaks them
+        stats.sort(Comparator.comparingInt(CategoryStats::getBookCount).reversed()
+                .thenComparing(s -> s.getCategory().getName(), Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(s -> s.getCategory().getId()));
+        this.booksPerCategory = Collections.unmodifiableList(stats);
+
+        Map<String, Integer> duplicates = new HashMap<>();
+        tally.titles.copyTo(duplicates, 2);
+        this.duplicateTitles = Collections.unmodifiableMap(duplicates);
+
+        this.synopses = tally.synopses;
+        this.shortestSynopsis = synopses == 0 ? 0 : tally.shortestSynopsis;
+        this.longestSynopsis = tally.longestSynopsis;
+        this.averageSynopsisLength = synopses == 0 ? 0 : (double) tally.synopsisLengthSum / synopses;
+        double variance = synopses == 0 ? 0
+                : tally.synopsisLengthSquares / synopses - averageSynopsisLength * averageSynopsisLength;
+        this.synopsisLengthStdDev = Math.sqrt(Math.max(0, variance));
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getBooks() {
+        return books;
+    }
+
+    public Map<String, Integer> getBooksPerAuthor() {
+        return booksPerAuthor;
+    }
+
+    /**
+     * The {@code limit} authors with the most books, most first.
+     */
+    public Map<String, Integer> getTopAuthors(int limit) {
+        Map<String, Integer> top = new LinkedHashMap<>();
+        booksPerAuthor.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .forEach(e -> top.put(e.getKey(), e.getValue()));
+        return top;
+    }
+
+    /**
+     * Books by the first year of their release decade, such as 1990.
+     */
+    public SortedMap<Integer, Integer> getBooksPerDecade() {
+        return booksPerDecade;
+    }
+
+    /**
+     * Every category with its number of books, most books first.
+     */
+    public List<CategoryStats> getBooksPerCategory() {
+        return booksPerCategory;
+    }
+
+    /**
+     * Same answer as {@link br.com.libraryjdbc.dao.CategoryDao#findCategoryWithMostBooks()}
+     * while any book exists; null when none does.
+     */
+    public Category getCategoryWithMostBooks() {
+        if (booksPerCategory.isEmpty() || booksPerCategory.get(0).getBookCount() == 0) {
+            return null;
+        }
+        return booksPerCategory.get(0).getCategory();
+    }
+
+    /**
+     * Titles shared by more than one book, with the number of books having
+     * each. Titles must match exactly.
+     */
+    public Map<String, Integer> getDuplicateTitles() {
+        return duplicateTitles;
+    }
+
+    /**
+     * Books that have a synopsis; the synopsis statistics cover only these.
+     */
+    public int getSynopses() {
+        return synopses;
+    }
+
+    public int getShortestSynopsis() {
+        return shortestSynopsis;
+    }
+
+    public int getLongestSynopsis() {
+        return longestSynopsis;
+    }
+
+    public double getAverageSynopsisLength() {
+        return averageSynopsisLength;
+    }
+
+    public double getSynopsisLengthStdDev() {
+        return synopsisLengthStdDev;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Books analyzed per second, database reads included.
+     */
+    public double getBooksPerSecond() {
+        return books * 1000.0 / Math.max(elapsedMillis, 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CatalogReport [books=%d, authors=%d, categories=%d, decades=%d, duplicateTitles=%d, "
+                + "averageSynopsis=%.1f, elapsed=%d ms, %.0f books/s]", books, booksPerAuthor.size(),
+                booksPerCategory.size(), booksPerDecade.size(), duplicateTitles.size(), averageSynopsisLength,
+                elapsedMillis, getBooksPerSecond());
+    }
+}
@@ -0,0 +1,54 @@
+package br.com.libraryjdbc.analytics;
+
+/**
+ * Running totals of one worker thread during an analysis, merged with the
+ * other workers' at the end. Only primitive counters are touched per book.
+ */
+final class CatalogTally {
+
+    int books;
+    final StringCounter authors = new StringCounter(1024);
+    final StringCounter titles = new StringCounter(4096);
+    final LongCounter decades = new LongCounter();
+    final LongCounter categories = new LongCounter();
+
+    int synopses;
+    long synopsisLengthSum;
+    double synopsisLengthSquares;
+    int shortestSynopsis = Integer.MAX_VALUE;
+    int longestSynopsis;
+
+    void add(String title, String author, int releaseYear, long categoryId, int synopsisLength) {
+        books++;
+        authors.add(author);
+        titles.add(title);
+        decades.add(Math.floorDiv(releaseYear, 10) * 10);
+        categories.add(categoryId);
+
+        if (synopsisLength >= 0) {
+            synopses++;
+            synopsisLengthSum += synopsisLength;
+            synopsisLengthSquares += (double) synopsisLength * synopsisLength;
+            shortestSynopsis = Math.min(shortestSynopsis, synopsisLength);
+            longestSynopsis = Math.max(longestSynopsis, synopsisLength);
+        }
+    }
+
+    /**
+     * Adds the totals of {@code other} to this one.
+     */
+    CatalogTally merge(CatalogTally other) {
+        books += other.books;
+        authors.addAll(other.authors);
+        titles.addAll(other.titles);
+        decades.addAll(other.decades);
+        categories.addAll(other.categories);
+
+        synopses += other.synopses;
+        synopsisLengthSum += other.synopsisLengthSum;
+        synopsisLengthSquares += other.synopsisLengthSquares;
+        shortestSynopsis = Math.min(shortestSynopsis, other.shortestSynopsis);
+        longestSynopsis = Math.max(longestSynopsis, other.longestSynopsis);
+        return this;
+    }
+}
@@ -0,0 +1,117 @@
+package br.com.libraryjdbc.analytics;
+
+/**
+ * Counts occurrences of long keys in an open-addressing table of two
+ * primitive arrays with linear probing, so counting neither boxes nor
+ * allocates until the table grows. Not thread-safe.
+ */
+final class LongCounter {
+
+    private long[] keys;
+    private int[] counts;
+    private int mask;
+    private int size;
+
+    LongCounter() {
+        this(16);
+    }
+
+    LongCounter(int capacity) {
+        int power = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        keys = new long[power];
+        counts = new int[power];
+        mask = power - 1;
+    }
+
+    void add(long key) {
+        add(key, 1);
+    }
+
+    void add(long key, int count) {
+        int slot = slot(key);
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = count;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Count of {@code key}, 0 if it was never added.
+     */
+    int get(long key) {
+        int slot = slot(key);
+        int count;
+        while ((count = counts[slot]) != 0) {
+            if (keys[slot] == key) {
+                return count;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    void addAll(LongCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.counts[i] != 0) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Calls {@code action} with every key and its count, in no particular
+     * order.
+     */
+    void forEach(Entry action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    interface Entry {
+        void accept(long key, int count);
+    }
+
+    // Helper methods
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private int slot(long key) {
+        // Finalizer of MurmurHash3, spreads sequential ids over the table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,123 @@
+package br.com.libraryjdbc.analytics;
+
+import java.util.Map;
+
+/**
+ * Counts occurrences of strings with the counts in a primitive array,
+ * instead of a map of boxed integers that would allocate on every
+ * increment. Open addressing with linear probing; each slot also keeps the
+ * key's hash, so probing and growing compare strings only when the hashes
+ * match. Not thread-safe.
+ */
+final class StringCounter {
+
+    private String[] keys;
+    private int[] hashes;
+    private int[] counts;
+    private int mask;
+    private int size;
+
+    StringCounter() {
+        this(64);
+    }
+
+    StringCounter(int capacity) {
+        int power = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        keys = new String[power];
+        hashes = new int[power];
+        counts = new int[power];
+        mask = power - 1;
+    }
+
+    void add(String key) {
+        add(key, 1);
+    }
+
+    void add(String key, int count) {
+        int hash = spread(key.hashCode());
+        int slot = hash & mask;
+        String existing;
+        while ((existing = keys[slot]) != null) {
+            if (hashes[slot] == hash && existing.equals(key)) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        hashes[slot] = hash;
+        counts[slot] = count;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    void addAll(StringCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != null) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Puts every key counted at least {@code minCount} times into
+     * {@code target}.
+     */
+    void copyTo(Map<String, Integer> target, int minCount) {
+        forEach((key, count) -> {
+            if (count >= minCount) {
+                target.put(key, count);
+            }
+        });
+    }
+
+    /**
+     * Calls {@code action} with every key and its count, in no particular
+     * order.
+     */
+    void forEach(Entry action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    interface Entry {
+        void accept(String key, int count);
+    }
+
+    // Helper methods
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        // Mixes the high bits into the low ones used as the slot, as
+        // HashMap does
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,9 +1,7 @@
 package br.com.libraryjdbc.app;
 
-import java.sql.Connection;
-
-import br.com.libraryjdbc.dao.BookDao;
 import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.dao.SchemaMigrator;
 import br.com.libraryjdbc.model.Category;
 import db.DB;
 
@@ -11,24 +9,19 @@ public class Program {
 
     public static void main(String[] args) {
         try {
-            Connection conn = DB.getConnection();
-            System.out.println("✅ PostgreSQL connection established successfully!");
-            
-            // Teste simples de query
-            boolean valid = conn.isValid(5);
-            System.out.println("✅ Conexão é válida? " + valid);
-            
-            // TODO: Implement system menu
+            // The pool opens its first connection on first use and validates
+            // what it hands out, so there is nothing to check up front
             System.out.println("🚀 Library Management System");
             
-            CategoryDao categoryDao = new CategoryDao();
-            BookDao bookDao = new BookDao();
-            
-            // Create tables
-            categoryDao.createTable();
-            bookDao.createTable();
+            // DDL only runs when the schema is behind
+            int applied = new SchemaMigrator().migrate();
+            if (applied > 0) {
+                System.out.println("✅ Applied " + applied + " schema version(s)");
+            } else {
+                System.out.println("✅ Schema is up to date (version " + SchemaMigrator.getLatestVersion() + ")");
+            }
             
-            System.out.println("✅ Tables created successfully!");
+            CategoryDao categoryDao = new CategoryDao();
             
             // Test category insertion
             System.out.println("\n📚 Testing category operations...");
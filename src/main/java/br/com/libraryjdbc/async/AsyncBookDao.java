@@ -0,0 +1,69 @@
+package br.com.libraryjdbc.async;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import br.com.libraryjdbc.dao.BatchResult;
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.model.Book;
+
+/**
+ * Non-blocking view of a {@link BookDao}: every method runs the matching
+ * DAO call on a {@link DaoExecutor} and returns at once.
+ */
+public class AsyncBookDao {
+
+    private final BookDao dao;
+    private final DaoExecutor executor;
+
+    public AsyncBookDao(BookDao dao, DaoExecutor executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Book> save(Book book) {
+        return executor.submit(() -> dao.save(book));
+    }
+
+    public CompletableFuture<BatchResult<Book>> saveAll(Collection<Book> books) {
+        return executor.submit(() -> dao.saveAll(books));
+    }
+
+    public CompletableFuture<Void> update(Book book) {
+        return executor.run(() -> dao.update(book));
+    }
+
+    public CompletableFuture<Void> remove(Long id) {
+        return executor.run(() -> dao.remove(id));
+    }
+
+    public CompletableFuture<Book> findById(Long id) {
+        return executor.submit(() -> dao.findById(id));
+    }
+
+    public CompletableFuture<Book> findByIsbn(String isbn) {
+        return executor.submit(() -> dao.findByIsbn(isbn));
+    }
+
+    /**
+     * Looks the books up concurrently, one call per ISBN; the result keeps
+     * the order of {@code isbns} and has null for missing ones.
+     */
+    public CompletableFuture<List<Book>> findByIsbns(Collection<String> isbns) {
+        List<CompletableFuture<Book>> lookups = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            lookups.add(findByIsbn(isbn));
+        }
+        return AsyncCategoryDao.allOf(lookups);
+    }
+
+    public CompletableFuture<List<Book>> findByAuthor(String author) {
+        return executor.submit(() -> dao.findByAuthor(author));
+    }
+
+    public CompletableFuture<List<Book>> findByCategory(Long categoryId) {
+        return executor.submit(() -> dao.findByCategory(categoryId));
+    }
+}
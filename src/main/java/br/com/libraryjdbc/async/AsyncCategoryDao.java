@@ -0,0 +1,82 @@
+package br.com.libraryjdbc.async;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.dao.CategoryStatsDao;
+import br.com.libraryjdbc.model.Category;
+import br.com.libraryjdbc.model.CategoryStats;
+
+/**
+ * Non-blocking view of a {@link CategoryDao}: every method runs the
+ * matching DAO call on a {@link DaoExecutor} and returns at once.
+ */
+public class AsyncCategoryDao {
+
+    private final CategoryDao dao;
+    private final CategoryStatsDao statsDao;
+    private final DaoExecutor executor;
+
+    public AsyncCategoryDao(CategoryDao dao, DaoExecutor executor) {
+        this.dao = dao;
+        this.statsDao = new CategoryStatsDao();
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Category> save(Category category) {
+        return executor.submit(() -> dao.save(category));
+    }
+
+    public CompletableFuture<Void> update(Category category) {
+        return executor.run(() -> dao.update(category));
+    }
+
+    public CompletableFuture<Void> remove(Long id) {
+        return executor.run(() -> dao.remove(id));
+    }
+
+    public CompletableFuture<Category> findById(Long id) {
+        return executor.submit(() -> dao.findById(id));
+    }
+
+    /**
+     * Looks the categories up concurrently, one call per id; the result
+     * keeps the order of {@code ids} and has null for missing ones.
+     */
+    public CompletableFuture<List<Category>> findByIds(Collection<Long> ids) {
+        List<CompletableFuture<Category>> lookups = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            lookups.add(findById(id));
+        }
+        return allOf(lookups);
+    }
+
+    public CompletableFuture<List<Category>> findAll() {
+        return executor.submit(dao::findAll);
+    }
+
+    public CompletableFuture<Category> findCategoryWithMostBooks() {
+        return executor.submit(dao::findCategoryWithMostBooks);
+    }
+
+    public CompletableFuture<List<CategoryStats>> findTop(int limit) {
+        return executor.submit(() -> statsDao.findTop(limit));
+    }
+
+    /**
+     * Completes with every result, in order, once all futures are done, or
+     * exceptionally if any of them failed.
+     */
+    static <T> CompletableFuture<List<T>> allOf(List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+}
@@ -0,0 +1,218 @@
+package br.com.libraryjdbc.async;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Front-end for single-row lookups that many threads make at once.
+ *
+ * Callers asking for a key that is already being loaded share the pending
+ * result instead of running their own query. Distinct keys requested
+ * within {@code windowMicros} of the first one, up to
+ * {@code maxBatchSize} of them, are loaded together by one call of the
+ * batch function, which runs on a {@link DaoExecutor}. A key leaves the
+ * loader as soon as its batch completes, so nothing is cached: the next
+ * request for it runs a new query.
+ *
+ * A window of 0 sends every key off on its own and keeps only the
+ * coalescing. A longer window saves more queries under load but adds up to
+ * that much latency to a lookup made while the loader is idle.
+ */
+public class BatchLoader<K, V> implements AutoCloseable {
+
+    private final Function<List<K>, List<V>> batchFunction;
+    private final Function<V, K> keyOf;
+    private final DaoExecutor executor;
+    private final int maxBatchSize;
+    private final long windowMicros;
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final Object lock = new Object();
+    private List<K> pending = new ArrayList<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * {@code batchFunction} returns the values found for a list of distinct
+     * keys, in any order; {@code keyOf} tells which key a value answers.
+     */
+    public BatchLoader(Function<List<K>, List<V>> batchFunction, Function<V, K> keyOf, DaoExecutor executor,
+            int maxBatchSize, long windowMicros) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        if (windowMicros < 0) {
+            throw new IllegalArgumentException("Batch window cannot be negative");
+        }
+        this.batchFunction = batchFunction;
+        this.keyOf = keyOf;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMicros = windowMicros;
+        this.timer = windowMicros == 0 ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dao-batch-loader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * The value for {@code key}, or null when there is none. DAO exceptions
+     * complete the future exceptionally, for every caller of the batch.
+     */
+    public CompletableFuture<V> load(K key) {
+        requests.increment();
+
+        CompletableFuture<V> future = inFlight.get(key);
+        if (future == null) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            future = inFlight.putIfAbsent(key, created);
+            if (future == null) {
+                enqueue(key);
+                return created;
+            }
+        }
+        coalesced.increment();
+        return future;
+    }
+
+    /**
+     * Waits for {@link #load(Object)}, rethrowing its DAO exception.
+     */
+    public V get(K key) {
+        try {
+            return load(key).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lookups requested so far.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Lookups that joined one already in flight.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Calls of the batch function, which is the number of queries run.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Sends off the keys still waiting for their window and stops the timer.
+     */
+    @Override
+    public void close() {
+        List<K> keys;
+        synchronized (lock) {
+            keys = pending;
+            pending = new ArrayList<>();
+        }
+        if (!keys.isEmpty()) {
+            dispatch(keys);
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    // Helper methods
+
+    private void enqueue(K key) {
+        if (timer == null) {
+            dispatch(List.of(key));
+            return;
+        }
+
+        List<K> full = null;
+        synchronized (lock) {
+            List<K> batch = pending;
+            batch.add(key);
+            if (batch.size() >= maxBatchSize) {
+                full = batch;
+                pending = new ArrayList<>();
+            } else if (batch.size() == 1) {
+                try {
+                    timer.schedule(() -> flush(batch), windowMicros, TimeUnit.MICROSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Closed: no window to wait for
+                    full = batch;
+                    pending = new ArrayList<>();
+                }
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+    }
+
+    /**
+     * Sends {@code batch} off when its window closes, unless it filled up
+     * and went earlier.
+     */
+    private void flush(List<K> batch) {
+        synchronized (lock) {
+            if (pending != batch) {
+                return;
+            }
+            pending = new ArrayList<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(List<K> keys) {
+        batches.increment();
+        CompletableFuture<List<V>> result;
+        try {
+            result = executor.submit(() -> batchFunction.apply(keys));
+        } catch (RuntimeException e) {
+            // A closed executor rejects the batch
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((values, failure) -> {
+            Map<K, V> byKey = new HashMap<>();
+            if (values != null) {
+                for (V value : values) {
+                    byKey.put(keyOf.apply(value), value);
+                }
+            }
+            // Removed before completing, so a caller that arrives now runs a
+            // new query rather than reading a result already delivered
+            for (K key : keys) {
+                CompletableFuture<V> future = inFlight.remove(key);
+                if (failure != null) {
+                    future.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+                } else {
+                    future.complete(byKey.get(key));
+                }
+            }
+        });
+    }
+}
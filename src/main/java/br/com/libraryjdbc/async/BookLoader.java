@@ -0,0 +1,57 @@
+package br.com.libraryjdbc.async;
+
+import java.util.concurrent.CompletableFuture;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.model.Book;
+
+/**
+ * Book lookups by id and by ISBN through two {@link BatchLoader}s, loading
+ * with {@link BookDao#findByIds(java.util.Collection)} and
+ * {@link BookDao#findByIsbns(java.util.Collection)}. The same book asked
+ * for by id and by ISBN is loaded by both.
+ */
+public class BookLoader implements AutoCloseable {
+
+    private final BatchLoader<Long, Book> byId;
+    private final BatchLoader<String, Book> byIsbn;
+
+    public BookLoader(BookDao dao, DaoExecutor executor) {
+        this(dao, executor, CategoryLoader.DEFAULT_MAX_BATCH_SIZE, CategoryLoader.DEFAULT_WINDOW_MICROS);
+    }
+
+    public BookLoader(BookDao dao, DaoExecutor executor, int maxBatchSize, long windowMicros) {
+        this.byId = new BatchLoader<>(dao::findByIds, Book::getId, executor, maxBatchSize, windowMicros);
+        this.byIsbn = new BatchLoader<>(dao::findByIsbns, Book::getIsbn, executor, maxBatchSize, windowMicros);
+    }
+
+    public CompletableFuture<Book> loadById(Long id) {
+        return byId.load(id);
+    }
+
+    public CompletableFuture<Book> loadByIsbn(String isbn) {
+        return byIsbn.load(isbn);
+    }
+
+    public Book findById(Long id) {
+        return byId.get(id);
+    }
+
+    public Book findByIsbn(String isbn) {
+        return byIsbn.get(isbn);
+    }
+
+    public BatchLoader<Long, Book> getIdLoader() {
+        return byId;
+    }
+
+    public BatchLoader<String, Book> getIsbnLoader() {
+        return byIsbn;
+    }
+
+    @Override
+    public void close() {
+        byId.close();
+        byIsbn.close();
+    }
+}
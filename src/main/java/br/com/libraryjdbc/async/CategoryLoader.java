@@ -0,0 +1,48 @@
+package br.com.libraryjdbc.async;
+
+import java.util.concurrent.CompletableFuture;
+
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * Category lookups by id through a {@link BatchLoader}: concurrent requests
+ * for one id share a query, and ids requested together are loaded with
+ * {@link CategoryDao#findByIds(java.util.Collection)}.
+ */
+public class CategoryLoader implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_WINDOW_MICROS = 200;
+
+    private final BatchLoader<Long, Category> byId;
+
+    public CategoryLoader(CategoryDao dao, DaoExecutor executor) {
+        this(dao, executor, DEFAULT_MAX_BATCH_SIZE, DEFAULT_WINDOW_MICROS);
+    }
+
+    public CategoryLoader(CategoryDao dao, DaoExecutor executor, int maxBatchSize, long windowMicros) {
+        this.byId = new BatchLoader<>(dao::findByIds, Category::getId, executor, maxBatchSize, windowMicros);
+    }
+
+    public CompletableFuture<Category> load(Long id) {
+        return byId.load(id);
+    }
+
+    /**
+     * Blocking form of {@link #load(Long)}, a drop-in for
+     * {@link CategoryDao#findById(Long)}.
+     */
+    public Category findById(Long id) {
+        return byId.get(id);
+    }
+
+    public BatchLoader<Long, Category> getLoader() {
+        return byId;
+    }
+
+    @Override
+    public void close() {
+        byId.close();
+    }
+}
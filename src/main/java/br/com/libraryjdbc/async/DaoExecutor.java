@@ -0,0 +1,144 @@
+package br.com.libraryjdbc.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import db.DB;
+import db.DbException;
+
+/**
+ * Runs blocking DAO calls off the caller's thread and hands back
+ * CompletableFutures.
+ *
+ * In {@link Mode#VIRTUAL} every call gets its own virtual thread, so
+ * thousands of pending calls cost a parked virtual thread each instead of
+ * a platform thread. At most {@link #getMaxConcurrency()} of them talk to
+ * the database at once (by default the pool's maximum size); the rest wait
+ * on a fair semaphore rather than piling up inside the connection pool.
+ *
+ * Virtual threads are looked up at run time, so the class also runs on a
+ * JDK without them: {@link Mode#PLATFORM} uses a fixed pool of platform
+ * threads, one per permit, and pending calls wait in its queue.
+ */
+public class DaoExecutor implements AutoCloseable {
+
+    public enum Mode {
+        VIRTUAL, PLATFORM
+    }
+
+    private final Mode mode;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    /**
+     * Virtual threads when the JDK has them, platform threads otherwise,
+     * limited to the size of the connection pool.
+     */
+    public DaoExecutor() {
+        this(isVirtualThreadsAvailable() ? Mode.VIRTUAL : Mode.PLATFORM, DB.getPool().getMaxSize());
+    }
+
+    public DaoExecutor(Mode mode, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be at least 1");
+        }
+        this.mode = mode;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : newPlatformThreadExecutor(maxConcurrency);
+    }
+
+    public static boolean isVirtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs {@code call} once a permit is free. DAO exceptions complete the
+     * future exceptionally.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DbException("Interrupted while waiting for a database slot");
+            }
+            try {
+                return call.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<Void> run(Runnable call) {
+        return submit(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Calls currently running against the database.
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * Calls waiting for a permit (virtual mode only; in platform mode they
+     * wait in the executor queue).
+     */
+    public int getQueuedCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Stops accepting calls. Calls already submitted still run.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // Helper methods
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available on this JDK", e);
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "dao-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+}
@@ -0,0 +1,180 @@
+package br.com.libraryjdbc.cache;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * DataInput over a buffer, heap or direct, without the per-byte locking of
+ * DataInputStream over a ByteArrayInputStream.
+ */
+final class ByteBufferInput implements DataInput {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if (buffer.remaining() < len) {
+            throw new EOFException();
+        }
+        buffer.get(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        try {
+            return buffer.get();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        try {
+            return buffer.getShort();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char) readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        try {
+            return buffer.getInt();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        try {
+            return buffer.getLong();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * One byte per char up to a line terminator, which is consumed; null at
+     * the end of the buffer.
+     */
+    @Override
+    public String readLine() {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (buffer.hasRemaining()) {
+            int c = buffer.get() & 0xFF;
+            if (c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+                    buffer.get();
+                }
+                break;
+            }
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Decodes modified UTF-8 straight from the buffer, as
+     * {@link java.io.DataInputStream#readUTF()} does from its stream.
+     */
+    @Override
+    public String readUTF() throws IOException {
+        int length = readUnsignedShort();
+        if (buffer.remaining() < length) {
+            throw new EOFException();
+        }
+        char[] chars = new char[length];
+        int count = 0;
+        int end = buffer.position() + length;
+
+        while (buffer.position() < end) {
+            int a = buffer.get() & 0xFF;
+            if (a < 0x80) {
+                chars[count++] = (char) a;
+            } else if ((a & 0xE0) == 0xC0) {
+                if (buffer.position() + 1 > end) {
+                    throw new UTFDataFormatException("Malformed input: partial character at end");
+                }
+                int b = continuation(buffer.get());
+                chars[count++] = (char) (((a & 0x1F) << 6) | b);
+            } else if ((a & 0xF0) == 0xE0) {
+                if (buffer.position() + 2 > end) {
+                    throw new UTFDataFormatException("Malformed input: partial character at end");
+                }
+                int b = continuation(buffer.get());
+                int c = continuation(buffer.get());
+                chars[count++] = (char) (((a & 0x0F) << 12) | (b << 6) | c);
+            } else {
+                throw new UTFDataFormatException("Malformed input around byte " + (buffer.position() - 1));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    // Helper methods
+
+    private int continuation(byte b) throws UTFDataFormatException {
+        if ((b & 0xC0) != 0x80) {
+            throw new UTFDataFormatException("Malformed input around byte " + (buffer.position() - 1));
+        }
+        return b & 0x3F;
+    }
+}
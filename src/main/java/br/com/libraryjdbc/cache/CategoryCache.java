@@ -0,0 +1,198 @@
+package br.com.libraryjdbc.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * Bounded in-memory cache of categories, indexed by id and by lower-cased
+ * name (the same comparison the DAO does with LOWER(name)).
+ *
+ * Entries expire after a fixed time to live and the least recently used
+ * entry is dropped when the cache is full. After a full load
+ * ({@link #putAll(List)}) the cache knows every category, so it can also
+ * answer that a name does NOT exist, until an entry expires or is evicted.
+ *
+ * Categories are copied on the way in and out, so callers never share
+ * mutable instances with the cache.
+ */
+public class CategoryCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Long, Entry> byId;
+    private final Map<String, Entry> byName = new HashMap<>();
+    private long completeUntil;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public CategoryCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.byId = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a copy of the cached category, or null on a miss.
+     */
+    public synchronized Category get(Long id) {
+        Entry entry = byId.get(id);
+        if (entry == null || isExpired(entry)) {
+            if (entry != null) {
+                remove(entry);
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return copy(entry.category);
+    }
+
+    /**
+     * Whether a category with this name (ignoring case) exists: TRUE or
+     * FALSE when the cache can tell, null when the database must be asked.
+     */
+    public synchronized Boolean nameExists(String name) {
+        Entry entry = byName.get(key(name));
+        if (entry != null && !isExpired(entry)) {
+            hitCount.incrementAndGet();
+            return Boolean.TRUE;
+        }
+        if (isComplete()) {
+            hitCount.incrementAndGet();
+            return Boolean.FALSE;
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    public synchronized void put(Category category) {
+        Entry old = byId.get(category.getId());
+        if (old != null) {
+            byName.remove(key(old.category.getName()));
+        }
+        Entry entry = new Entry(copy(category), System.currentTimeMillis() + ttlMillis);
+        byId.put(category.getId(), entry);
+        byName.put(key(category.getName()), entry);
+        evictOverflow();
+    }
+
+    /**
+     * Replaces the contents with a full listing of the table. If every
+     * category fits, the cache becomes complete and answers negative name
+     * lookups on its own.
+     */
+    public synchronized void putAll(List<Category> categories) {
+        clear();
+        for (Category category : categories) {
+            put(category);
+        }
+        if (categories.size() <= maxSize) {
+            completeUntil = System.currentTimeMillis() + ttlMillis;
+        }
+    }
+
+    public synchronized void evict(Long id) {
+        Entry entry = byId.get(id);
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    public synchronized void clear() {
+        byId.clear();
+        byName.clear();
+        completeUntil = 0;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    public synchronized boolean isComplete() {
+        return System.currentTimeMillis() < completeUntil;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CategoryCache [size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    // Helper methods
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() >= entry.expiresAt;
+    }
+
+    private void remove(Entry entry) {
+        byId.remove(entry.category.getId());
+        byName.remove(key(entry.category.getName()));
+    }
+
+    /**
+     * Drops least recently used entries beyond the size limit. A cache that
+     * lost entries no longer knows every name.
+     */
+    private void evictOverflow() {
+        Iterator<Entry> it = byId.values().iterator();
+        while (byId.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            byName.remove(key(eldest.category.getName()));
+            evictionCount.incrementAndGet();
+            completeUntil = 0;
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static Category copy(Category category) {
+        Category copy = new Category(category.getId(), category.getName(), category.getDescription());
+        copy.setVersion(category.getVersion());
+        return copy;
+    }
+
+    private static final class Entry {
+
+        final Category category;
+        final long expiresAt;
+
+        Entry(Category category, long expiresAt) {
+            this.category = category;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
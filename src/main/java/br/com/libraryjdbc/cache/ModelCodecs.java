@@ -0,0 +1,147 @@
+package br.com.libraryjdbc.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * {@link ResultCodec}s for the model classes. Strings are written as UTF-8
+ * with a length prefix, so a synopsis of any size fits, and a list of books
+ * stores each category once.
+ */
+public final class ModelCodecs {
+
+    /** A nullable category. */
+    public static final ResultCodec<Category> CATEGORY = new ResultCodec<Category>() {
+
+        @Override
+        public void write(Category category, DataOutput out) throws IOException {
+            out.writeBoolean(category != null);
+            if (category != null) {
+                writeCategory(category, out);
+            }
+        }
+
+        @Override
+        public Category read(DataInput in) throws IOException {
+            return in.readBoolean() ? readCategory(in) : null;
+        }
+    };
+
+    /**
+     * A list of books; books of the same category share one Category
+     * instance when read back, as they do when the DAO builds them.
+     */
+    public static final ResultCodec<List<Book>> BOOK_LIST = new ResultCodec<List<Book>>() {
+
+        @Override
+        public void write(List<Book> books, DataOutput out) throws IOException {
+            Map<Long, Integer> categoryIndexes = new HashMap<>();
+            List<Category> categories = new ArrayList<>();
+            for (Book book : books) {
+                if (categoryIndexes.putIfAbsent(book.getCategory().getId(), categories.size()) == null) {
+                    categories.add(book.getCategory());
+                }
+            }
+
+            out.writeInt(categories.size());
+            for (Category category : categories) {
+                writeCategory(category, out);
+            }
+            out.writeInt(books.size());
+            for (Book book : books) {
+                out.writeLong(book.getId());
+                writeString(book.getTitle(), out);
+                writeString(book.getAuthor(), out);
+                writeString(book.getSynopsis(), out);
+                writeString(book.getIsbn(), out);
+                out.writeInt(book.getReleaseYear() != null ? book.getReleaseYear() : Integer.MIN_VALUE);
+                writeVersion(book.getVersion(), out);
+                out.writeInt(categoryIndexes.get(book.getCategory().getId()));
+            }
+        }
+
+        @Override
+        public List<Book> read(DataInput in) throws IOException {
+            Category[] categories = new Category[in.readInt()];
+            for (int i = 0; i < categories.length; i++) {
+                categories[i] = readCategory(in);
+            }
+            int size = in.readInt();
+            List<Book> books = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long id = in.readLong();
+                String title = readString(in);
+                String author = readString(in);
+                String synopsis = readString(in);
+                String isbn = readString(in);
+                int year = in.readInt();
+                Integer version = readVersion(in);
+                Category category = categories[in.readInt()];
+                Book book = new Book(id, title, author, synopsis, isbn, year != Integer.MIN_VALUE ? year : null,
+                        category);
+                book.setVersion(version);
+                books.add(book);
+            }
+            return books;
+        }
+    };
+
+    private ModelCodecs() {
+    }
+
+    // Helper methods
+
+    private static void writeCategory(Category category, DataOutput out) throws IOException {
+        out.writeLong(category.getId());
+        writeString(category.getName(), out);
+        writeString(category.getDescription(), out);
+        writeVersion(category.getVersion(), out);
+    }
+
+    private static Category readCategory(DataInput in) throws IOException {
+        Category category = new Category(in.readLong(), readString(in), readString(in));
+        category.setVersion(readVersion(in));
+        return category;
+    }
+
+    /**
+     * Kept so that an update of a cached result still detects conflicts.
+     */
+    private static void writeVersion(Integer version, DataOutput out) throws IOException {
+        out.writeInt(version != null ? version : Integer.MIN_VALUE);
+    }
+
+    private static Integer readVersion(DataInput in) throws IOException {
+        int version = in.readInt();
+        return version != Integer.MIN_VALUE ? version : null;
+    }
+
+    private static void writeString(String value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
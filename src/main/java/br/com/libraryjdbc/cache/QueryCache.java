@@ -0,0 +1,317 @@
+package br.com.libraryjdbc.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeFeed;
+import br.com.libraryjdbc.feed.ChangeListener;
+import db.DB;
+
+/**
+ * Cache of query results keyed by query id and parameters, for list
+ * queries that are repeated with the same arguments.
+ *
+ * Results are kept serialized by a {@link ResultCodec}: one byte array per
+ * entry instead of a graph of objects, so a full cache costs the garbage
+ * collector little to trace. With {@code offHeap} the bytes live in direct
+ * buffers outside the heap altogether. Every hit decodes a fresh copy, so
+ * callers never share instances with the cache.
+ *
+ * Each entry is tagged with the tables its query reads.
+ * {@link #invalidate(ChangeEvent.Entity)} drops the entries of a table, and
+ * a result loaded while its tables were being written is not stored, so a
+ * stale result cannot outlive the invalidation. Entries are dropped in
+ * least recently used order once their bytes exceed the size limit.
+ * Queries run inside {@link DB#inTransaction(Supplier)} bypass the cache so
+ * they see the transaction's own writes.
+ */
+public class QueryCache implements ChangeListener {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static volatile QueryCache defaultCache;
+
+    private final long maxBytes;
+    private final boolean offHeap;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Bumped by every invalidation of a table, indexed by entity ordinal. */
+    private final long[] generations = new long[ChangeEvent.Entity.values().length];
+    private long bytes;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    public QueryCache() {
+        this(DEFAULT_MAX_BYTES, false);
+    }
+
+    public QueryCache(long maxBytes, boolean offHeap) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1 byte");
+        }
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * The cache shared by the caching DAOs, created on first use and
+     * subscribed to the default {@link ChangeFeed}, so writes made through
+     * other DAOs invalidate it too.
+     */
+    public static QueryCache getDefault() {
+        QueryCache cache = defaultCache;
+        if (cache == null) {
+            synchronized (QueryCache.class) {
+                if (defaultCache == null) {
+                    defaultCache = new QueryCache();
+                    ChangeFeed.getDefault().subscribe(defaultCache);
+                }
+                cache = defaultCache;
+            }
+        }
+        return cache;
+    }
+
+    public static synchronized void setDefault(QueryCache cache) {
+        defaultCache = cache;
+    }
+
+    public static Key key(String queryId, Object... parameters) {
+        return new Key(queryId, parameters);
+    }
+
+    /**
+     * Returns the cached result of {@code key}, or runs {@code loader} and
+     * caches what it returns. {@code tables} are the tables the query
+     * reads.
+     */
+    public <T> T get(Key key, Set<ChangeEvent.Entity> tables, ResultCodec<T> codec, Supplier<T> loader) {
+        if (DB.isInTransaction()) {
+            return loader.get();
+        }
+
+        Entry entry;
+        long[] seen = null;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                seen = generations.clone();
+            }
+        }
+        if (entry != null) {
+            hitCount.incrementAndGet();
+            return decode(entry, codec);
+        }
+        missCount.incrementAndGet();
+
+        T value = loader.get();
+        byte[] blob = encode(value, codec);
+        if (blob.length <= maxBytes) {
+            store(key, new Entry(tables, blob, offHeap), seen);
+        }
+        return value;
+    }
+
+    /**
+     * Drops every result that read {@code table}.
+     */
+    public synchronized void invalidate(ChangeEvent.Entity table) {
+        generations[table.ordinal()]++;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.tables.contains(table)) {
+                it.remove();
+                bytes -= entry.size;
+                invalidationCount.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < generations.length; i++) {
+            generations[i]++;
+        }
+        invalidationCount.addAndGet(entries.size());
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public void onChanges(List<ChangeEvent> events) {
+        Set<ChangeEvent.Entity> tables = EnumSet.noneOf(ChangeEvent.Entity.class);
+        for (ChangeEvent event : events) {
+            tables.add(event.getEntity());
+        }
+        tables.forEach(this::invalidate);
+    }
+
+    @Override
+    public void onEventsLost() {
+        clear();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Bytes of serialized results held, on or off the heap.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Entries dropped to stay within the size limit.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Entries dropped because a table they read was written.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueryCache [entries=%d, bytes=%d, hitRatio=%.2f, evictions=%d, invalidations=%d]",
+                getSize(), getBytes(), getHitRatio(), getEvictionCount(), getInvalidationCount());
+    }
+
+    // Helper methods
+
+    private synchronized void store(Key key, Entry entry, long[] seen) {
+        for (ChangeEvent.Entity table : entry.tables) {
+            if (generations[table.ordinal()] != seen[table.ordinal()]) {
+                // Written while loading: the result may already be stale
+                return;
+            }
+        }
+
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+        bytes += entry.size;
+
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            bytes -= eldest.size;
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private static <T> byte[] encode(T value, ResultCodec<T> codec) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            codec.write(value, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static <T> T decode(Entry entry, ResultCodec<T> codec) {
+        try {
+            // Each reader gets its own position over the shared bytes
+            return codec.read(new ByteBufferInput(entry.blob.duplicate()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A query id and its parameters.
+     */
+    public static final class Key {
+
+        private final String queryId;
+        private final Object[] parameters;
+        private final int hash;
+
+        private Key(String queryId, Object[] parameters) {
+            this.queryId = queryId;
+            this.parameters = parameters.clone();
+            this.hash = 31 * queryId.hashCode() + Arrays.hashCode(parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && queryId.equals(other.queryId) && Arrays.equals(parameters, other.parameters);
+        }
+
+        @Override
+        public String toString() {
+            return queryId + Arrays.toString(parameters);
+        }
+    }
+
+    private static final class Entry {
+
+        final Set<ChangeEvent.Entity> tables;
+        final int size;
+        /** Read through duplicates only, so its position never moves. */
+        final ByteBuffer blob;
+
+        Entry(Set<ChangeEvent.Entity> tables, byte[] bytes, boolean offHeap) {
+            this.tables = tables;
+            this.size = bytes.length;
+            this.blob = offHeap ? ByteBuffer.allocateDirect(bytes.length).put(bytes).flip() : ByteBuffer.wrap(bytes);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package br.com.libraryjdbc.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Turns a query result into the bytes kept by {@link QueryCache} and back.
+ * Reading must give a new, independent copy of what was written.
+ */
+public interface ResultCodec<T> {
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,139 @@
+package br.com.libraryjdbc.catalog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeListener;
+import br.com.libraryjdbc.model.Book;
+
+/**
+ * Serves catalog reads from an in-memory {@link CatalogSnapshot} instead of
+ * the database.
+ *
+ * The current snapshot sits in a volatile field: readers take it without
+ * locking and keep a consistent view for as long as they hold it. A
+ * refresh builds the next snapshot aside and swaps it in with a single
+ * write, so reads never wait for one. {@link #reload()} reads the whole
+ * catalog; {@link #refresh(Collection)} rereads only the books reported as
+ * changed, plus the category table, and copies everything else from the
+ * current snapshot.
+ *
+ * Subscribed to a {@link br.com.libraryjdbc.feed.ChangeFeed}, the engine
+ * refreshes itself after every batch of committed changes; otherwise
+ * callers report changed books themselves. Either way it suits catalogs
+ * that change rarely and are read constantly.
+ */
+public class CatalogEngine implements ChangeListener {
+
+    /** Largest IN list sent when rereading changed books. */
+    private static final int CHUNK = 1000;
+
+    private final BookDao bookDao;
+    private final CategoryDao categoryDao;
+    /** Current snapshot, null until the first read or reload. */
+    private volatile CatalogSnapshot snapshot;
+
+    public CatalogEngine() {
+        this(new BookDao(), new CategoryDao());
+    }
+
+    public CatalogEngine(BookDao bookDao, CategoryDao categoryDao) {
+        this.bookDao = bookDao;
+        this.categoryDao = categoryDao;
+    }
+
+    /**
+     * The current snapshot, loading the catalog on first use.
+     */
+    public CatalogSnapshot getSnapshot() {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Replaces the snapshot with a full copy of the catalog.
+     */
+    public synchronized void reload() {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        // Books first: a category cannot be deleted while it still has books
+        bookDao.forEach(builder::addBook);
+        categoryDao.forEach(builder::addCategory);
+        snapshot = builder.build();
+    }
+
+    /**
+     * Rereads the books with the given ids, which were saved, updated or
+     * removed since the last refresh, and the categories. Books missing
+     * from the database are dropped from the snapshot.
+     */
+    public synchronized void refresh(Collection<Long> changedBookIds) {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            reload();
+            return;
+        }
+
+        long[] changed = new long[changedBookIds.size()];
+        int count = 0;
+        for (Long id : changedBookIds) {
+            changed[count++] = id;
+        }
+        LongIndex changedIndex = new LongIndex(changed, count);
+
+        List<Book> books = new ArrayList<>(count);
+        List<Long> chunk = new ArrayList<>(CHUNK);
+        for (Long id : changedBookIds) {
+            chunk.add(id);
+            if (chunk.size() == CHUNK) {
+                books.addAll(bookDao.findByIds(chunk));
+                chunk.clear();
+            }
+        }
+        books.addAll(bookDao.findByIds(chunk));
+
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        categoryDao.forEach(builder::addCategory);
+        current.copyBooksTo(builder, id -> changedIndex.get(id) < 0);
+        books.forEach(builder::addBook);
+        snapshot = builder.build();
+    }
+
+    /**
+     * Refreshes the snapshot with the changed books and the categories. Does
+     * nothing before the first load, which will see the changes anyway.
+     */
+    @Override
+    public synchronized void onChanges(List<ChangeEvent> events) {
+        if (snapshot == null) {
+            return;
+        }
+        Set<Long> bookIds = new LinkedHashSet<>();
+        for (ChangeEvent event : events) {
+            if (event.getEntity() == ChangeEvent.Entity.BOOK) {
+                bookIds.add(event.getEntityId());
+            }
+        }
+        refresh(bookIds);
+    }
+
+    @Override
+    public synchronized void onEventsLost() {
+        if (snapshot != null) {
+            reload();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package br.com.libraryjdbc.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongPredicate;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DbException;
+
+/**
+ * Immutable copy of the catalog held in memory for read-heavy workloads.
+ *
+ * Books are stored column by column in (title, id) order: one primitive or
+ * String array per attribute, with equal author names shared. Books are
+ * found by id through an open-addressing index over primitive longs, by
+ * ISBN through a hash table of row numbers, and by author or category
+ * through row lists grouped per key, so lookups take no lock and box
+ * nothing. Every lookup returns new {@link Book} and {@link Category}
+ * objects, which callers are free to modify.
+ *
+ * Titles are compared with {@link String#compareTo(String)}, which may
+ * order some titles differently from the database collation.
+ */
+public final class CatalogSnapshot {
+
+    /** Marks a book without a release year in {@link #releaseYears}. */
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+    /** Marks a category or book without a row version. */
+    private static final int NO_VERSION = Integer.MIN_VALUE;
+
+    // Categories, in the order they were added
+    private final long[] categoryIds;
+    private final String[] categoryNames;
+    private final String[] categoryDescriptions;
+    private final int[] categoryVersions;
+    private final LongIndex categoryIndex;
+    /** Rows of category c are categoryRows[categoryStarts[c]] to categoryRows[categoryStarts[c + 1] - 1]. */
+    private final int[] categoryStarts;
+    private final int[] categoryRows;
+
+    // Books, one row each
+    private final long[] bookIds;
+    private final String[] titles;
+    private final String[] authors;
+    private final String[] synopses;
+    private final String[] isbns;
+    private final int[] releaseYears;
+    private final int[] bookVersions;
+    private final int[] bookCategories;
+    private final LongIndex bookIndex;
+    /** Open-addressing table of row + 1 by ISBN hash, 0 for an empty slot. */
+    private final int[] isbnTable;
+
+    // Lower-cased author names, sorted, with their rows grouped like categoryRows
+    private final String[] authorKeys;
+    private final int[] authorStarts;
+    private final int[] authorRows;
+
+    private CatalogSnapshot(Builder builder) {
+        int categoryCount = builder.categoryCount;
+        categoryIds = Arrays.copyOf(builder.categoryIds, categoryCount);
+        categoryNames = Arrays.copyOf(builder.categoryNames, categoryCount);
+        categoryDescriptions = Arrays.copyOf(builder.categoryDescriptions, categoryCount);
+        categoryVersions = Arrays.copyOf(builder.categoryVersions, categoryCount);
+        categoryIndex = new LongIndex(categoryIds, categoryCount);
+
+        int size = builder.bookCount;
+        int[] order = identity(size);
+        sort(order, (a, b) -> {
+            int cmp = compare(builder.titles[a], builder.titles[b]);
+            return cmp != 0 ? cmp : Long.compare(builder.bookIds[a], builder.bookIds[b]);
+        });
+
+        bookIds = new long[size];
+        titles = new String[size];
+        authors = new String[size];
+        synopses = new String[size];
+        isbns = new String[size];
+        releaseYears = new int[size];
+        bookVersions = new int[size];
+        bookCategories = new int[size];
+
+        for (int row = 0; row < size; row++) {
+            int source = order[row];
+            bookIds[row] = builder.bookIds[source];
+            titles[row] = builder.titles[source];
+            authors[row] = builder.authors[source];
+            synopses[row] = builder.synopses[source];
+            isbns[row] = builder.isbns[source];
+            releaseYears[row] = builder.releaseYears[source];
+            bookVersions[row] = builder.bookVersions[source];
+
+            int category = categoryIndex.get(builder.bookCategoryIds[source]);
+            if (category < 0) {
+                throw new DbException("Category not found for book " + bookIds[row] + ": "
+                        + builder.bookCategoryIds[source]);
+            }
+            bookCategories[row] = category;
+        }
+
+        bookIndex = new LongIndex(bookIds, size);
+        isbnTable = indexIsbns(isbns);
+
+        // Counting sort by category keeps each category in title order
+        categoryStarts = new int[categoryCount + 1];
+        for (int row = 0; row < size; row++) {
+            categoryStarts[bookCategories[row] + 1]++;
+        }
+        for (int c = 0; c < categoryCount; c++) {
+            categoryStarts[c + 1] += categoryStarts[c];
+        }
+        categoryRows = new int[size];
+        int[] next = Arrays.copyOf(categoryStarts, categoryCount);
+        for (int row = 0; row < size; row++) {
+            categoryRows[next[bookCategories[row]]++] = row;
+        }
+
+        // Sorting rows by (author key, row) groups each author in title order
+        String[] rowKeys = authorKeys(authors);
+        authorRows = identity(size);
+        sort(authorRows, (a, b) -> {
+            int cmp = rowKeys[a].compareTo(rowKeys[b]);
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        List<String> keys = new ArrayList<>();
+        int[] starts = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            String key = rowKeys[authorRows[i]];
+            if (keys.isEmpty() || !keys.get(keys.size() - 1).equals(key)) {
+                starts[keys.size()] = i;
+                keys.add(key);
+            }
+        }
+        starts[keys.size()] = size;
+        authorKeys = keys.toArray(new String[0]);
+        authorStarts = Arrays.copyOf(starts, keys.size() + 1);
+    }
+
+    public int getBookCount() {
+        return bookIds.length;
+    }
+
+    public int getCategoryCount() {
+        return categoryIds.length;
+    }
+
+    public boolean containsBook(long id) {
+        return bookIndex.get(id) >= 0;
+    }
+
+    /**
+     * The book with this id, or null.
+     */
+    public Book findBook(long id) {
+        int row = bookIndex.get(id);
+        return row >= 0 ? book(row) : null;
+    }
+
+    /**
+     * The book with this ISBN, or null.
+     */
+    public Book findByIsbn(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        int mask = isbnTable.length - 1;
+        int slot = spread(isbn.hashCode()) & mask;
+        int entry;
+        while ((entry = isbnTable[slot]) != 0) {
+            if (isbn.equals(isbns[entry - 1])) {
+                return book(entry - 1);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Books whose author is exactly {@code author}, ignoring case, in title
+     * order. Unlike {@link br.com.libraryjdbc.dao.BookDao#findByAuthor(String)}
+     * this does not match parts of a name.
+     */
+    public List<Book> findByAuthor(String author) {
+        if (author == null || author.trim().isEmpty()) {
+            throw new DbException("Author cannot be empty");
+        }
+        int group = Arrays.binarySearch(authorKeys, authorKey(author.trim()));
+        if (group < 0) {
+            return new ArrayList<>();
+        }
+        return books(authorRows, authorStarts[group], authorStarts[group + 1]);
+    }
+
+    /**
+     * Books of a category in title order.
+     */
+    public List<Book> findByCategory(long categoryId) {
+        int category = categoryIndex.get(categoryId);
+        if (category < 0) {
+            return new ArrayList<>();
+        }
+        return books(categoryRows, categoryStarts[category], categoryStarts[category + 1]);
+    }
+
+    /**
+     * Number of books in a category, without creating any objects.
+     */
+    public int countBooks(long categoryId) {
+        int category = categoryIndex.get(categoryId);
+        return category < 0 ? 0 : categoryStarts[category + 1] - categoryStarts[category];
+    }
+
+    /**
+     * The category with this id, or null.
+     */
+    public Category findCategory(long id) {
+        int category = categoryIndex.get(id);
+        return category >= 0 ? category(category) : null;
+    }
+
+    /**
+     * Every category, in the order they were loaded.
+     */
+    public List<Category> findAllCategories() {
+        List<Category> categories = new ArrayList<>(categoryIds.length);
+        for (int c = 0; c < categoryIds.length; c++) {
+            categories.add(category(c));
+        }
+        return categories;
+    }
+
+    /**
+     * Adds to {@code builder} every book of this snapshot for which
+     * {@code keep} is true, to derive the next snapshot from.
+     */
+    void copyBooksTo(Builder builder, LongPredicate keep) {
+        for (int row = 0; row < bookIds.length; row++) {
+            if (keep.test(bookIds[row])) {
+                builder.addBook(bookIds[row], titles[row], authors[row], synopses[row], isbns[row],
+                        releaseYears[row], bookVersions[row], categoryIds[bookCategories[row]]);
+            }
+        }
+    }
+
+    /**
+     * Collects categories and books, in any order, into the column arrays a
+     * snapshot is built from. Ids must not repeat and every book's category
+     * must be added.
+     */
+    static final class Builder {
+
+        private long[] categoryIds = new long[16];
+        private String[] categoryNames = new String[16];
+        private String[] categoryDescriptions = new String[16];
+        private int[] categoryVersions = new int[16];
+        private int categoryCount;
+
+        private long[] bookIds = new long[1024];
+        private String[] titles = new String[1024];
+        private String[] authors = new String[1024];
+        private String[] synopses = new String[1024];
+        private String[] isbns = new String[1024];
+        private int[] releaseYears = new int[1024];
+        private int[] bookVersions = new int[1024];
+        private long[] bookCategoryIds = new long[1024];
+        private int bookCount;
+
+        /** Shares one String per author name across rows. */
+        private final Map<String, String> authorNames = new HashMap<>();
+
+        Builder addCategory(Category category) {
+            return addCategory(category.getId(), category.getName(), category.getDescription(),
+                    category.getVersion() != null ? category.getVersion() : NO_VERSION);
+        }
+
+        Builder addCategory(long id, String name, String description, int version) {
+            if (categoryCount == categoryIds.length) {
+                int capacity = categoryCount * 2;
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                categoryNames = Arrays.copyOf(categoryNames, capacity);
+                categoryDescriptions = Arrays.copyOf(categoryDescriptions, capacity);
+                categoryVersions = Arrays.copyOf(categoryVersions, capacity);
+            }
+            categoryIds[categoryCount] = id;
+            categoryNames[categoryCount] = name;
+            categoryDescriptions[categoryCount] = description;
+            categoryVersions[categoryCount] = version;
+            categoryCount++;
+            return this;
+        }
+
+        Builder addBook(Book book) {
+            return addBook(book.getId(), book.getTitle(), book.getAuthor(), book.getSynopsis(), book.getIsbn(),
+                    book.getReleaseYear() != null ? book.getReleaseYear() : NO_YEAR,
+                    book.getVersion() != null ? book.getVersion() : NO_VERSION, book.getCategory().getId());
+        }
+
+        Builder addBook(long id, String title, String author, String synopsis, String isbn, int releaseYear,
+                int version, long categoryId) {
+            if (bookCount == bookIds.length) {
+                int capacity = bookCount * 2;
+                bookIds = Arrays.copyOf(bookIds, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                authors = Arrays.copyOf(authors, capacity);
+                synopses = Arrays.copyOf(synopses, capacity);
+                isbns = Arrays.copyOf(isbns, capacity);
+                releaseYears = Arrays.copyOf(releaseYears, capacity);
+                bookVersions = Arrays.copyOf(bookVersions, capacity);
+                bookCategoryIds = Arrays.copyOf(bookCategoryIds, capacity);
+            }
+            bookIds[bookCount] = id;
+            titles[bookCount] = title;
+            authors[bookCount] = author != null ? authorNames.computeIfAbsent(author, name -> name) : null;
+            synopses[bookCount] = synopsis;
+            isbns[bookCount] = isbn;
+            releaseYears[bookCount] = releaseYear;
+            bookVersions[bookCount] = version;
+            bookCategoryIds[bookCount] = categoryId;
+            bookCount++;
+            return this;
+        }
+
+        CatalogSnapshot build() {
+            return new CatalogSnapshot(this);
+        }
+    }
+
+    // Helper methods
+
+    private Book book(int row) {
+        Book book = new Book(bookIds[row], titles[row], authors[row], synopses[row], isbns[row],
+                releaseYears[row] != NO_YEAR ? releaseYears[row] : null, category(bookCategories[row]));
+        book.setVersion(version(bookVersions[row]));
+        return book;
+    }
+
+    private List<Book> books(int[] rows, int from, int to) {
+        List<Book> books = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            books.add(book(rows[i]));
+        }
+        return books;
+    }
+
+    private Category category(int category) {
+        Category copy = new Category(categoryIds[category], categoryNames[category], categoryDescriptions[category]);
+        copy.setVersion(version(categoryVersions[category]));
+        return copy;
+    }
+
+    private static Integer version(int version) {
+        return version != NO_VERSION ? version : null;
+    }
+
+    private static int[] indexIsbns(String[] isbns) {
+        int[] table = new int[Integer.highestOneBit(Math.max(2, isbns.length * 2 - 1)) << 1];
+        int mask = table.length - 1;
+        for (int row = 0; row < isbns.length; row++) {
+            if (isbns[row] == null) {
+                continue;
+            }
+            int slot = spread(isbns[row].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = row + 1;
+        }
+        return table;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static String authorKey(String author) {
+        return author != null ? author.toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * The lower-cased author of every row, computed once per distinct name.
+     */
+    private static String[] authorKeys(String[] authors) {
+        Map<String, String> keys = new HashMap<>();
+        String[] rowKeys = new String[authors.length];
+        for (int row = 0; row < authors.length; row++) {
+            String author = authors[row];
+            rowKeys[row] = author != null ? keys.computeIfAbsent(author, CatalogSnapshot::authorKey) : "";
+        }
+        return rowKeys;
+    }
+
+    private static int compare(String a, String b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : a == null ? -1 : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    private static int[] identity(int size) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        return values;
+    }
+
+    /**
+     * Stable merge sort of int values by a comparator, without boxing them.
+     */
+    private static void sort(int[] values, IntBinaryOperator comparator) {
+        int[] buffer = new int[values.length];
+        int[] from = values;
+        int[] to = buffer;
+        for (int width = 1; width < values.length; width *= 2) {
+            for (int low = 0; low < values.length; low += 2 * width) {
+                int middle = Math.min(low + width, values.length);
+                int high = Math.min(low + 2 * width, values.length);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    if (left < middle && (right >= high || comparator.applyAsInt(from[left], from[right]) <= 0)) {
+                        to[i] = from[left++];
+                    } else {
+                        to[i] = from[right++];
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != values) {
+            System.arraycopy(from, 0, values, 0, values.length);
+        }
+    }
+}
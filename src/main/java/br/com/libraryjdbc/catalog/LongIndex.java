@@ -0,0 +1,60 @@
+package br.com.libraryjdbc.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Immutable open-addressing map from long keys to non-negative int
+ * positions, stored in two primitive arrays with linear probing. Lookups
+ * neither box nor allocate.
+ */
+final class LongIndex {
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+
+    /**
+     * Indexes {@code keys[i] -> i} for the first {@code size} keys, which
+     * must be distinct.
+     */
+    LongIndex(long[] keys, int size) {
+        int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(values, -1);
+
+        for (int i = 0; i < size; i++) {
+            int slot = slot(keys[i]);
+            while (values[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = keys[i];
+            values[slot] = i;
+        }
+    }
+
+    /**
+     * Position of {@code key}, or -1.
+     */
+    int get(long key) {
+        int slot = slot(key);
+        int value;
+        while ((value = values[slot]) != -1) {
+            if (keys[slot] == key) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(long key) {
+        // Finalizer of MurmurHash3, spreads sequential ids over the table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
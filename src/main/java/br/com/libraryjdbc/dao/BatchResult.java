@@ -0,0 +1,75 @@
+package br.com.libraryjdbc.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk save: the items that were inserted (with their
+ * generated IDs) and, for every rejected item, its position in the input
+ * and the reason.
+ */
+public class BatchResult<T> {
+
+    private final List<T> saved = new ArrayList<>();
+    private final List<RowError<T>> errors = new ArrayList<>();
+
+    void addSaved(T item) {
+        saved.add(item);
+    }
+
+    void addError(int index, T item, String message) {
+        errors.add(new RowError<>(index, item, message));
+    }
+
+    public List<T> getSaved() {
+        return Collections.unmodifiableList(saved);
+    }
+
+    public List<RowError<T>> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult [saved=" + saved.size() + ", errors=" + errors.size() + "]";
+    }
+
+    /**
+     * A rejected item. The index is the item's position in the collection
+     * passed to saveAll.
+     */
+    public static class RowError<T> {
+
+        private final int index;
+        private final T item;
+        private final String message;
+
+        RowError(int index, T item, String message) {
+            this.index = index;
+            this.item = item;
+            this.message = message;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "RowError [index=" + index + ", message=" + message + "]";
+        }
+    }
+}
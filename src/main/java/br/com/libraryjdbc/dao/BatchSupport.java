@@ -0,0 +1,309 @@
+package br.com.libraryjdbc.dao;
+
+import java.sql.Array;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeFeed;
+import db.DB;
+import db.DbException;
+
+/**
+ * Shared plumbing for the DAOs' bulk save and lookup methods.
+ */
+final class BatchSupport {
+
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    private BatchSupport() {
+    }
+
+    /**
+     * Sets the parameters of an insert statement for one item.
+     */
+    interface Binder<T> {
+        void bind(PreparedStatement st, T item) throws SQLException;
+    }
+
+    /**
+     * Extra work done in a chunk's transaction before its rows are inserted.
+     */
+    interface BeforeInsert<T> {
+        void run(Connection conn, List<Row<T>> rows) throws SQLException;
+    }
+
+    /**
+     * An item together with its position in the caller's collection.
+     */
+    static final class Row<T> {
+
+        final int index;
+        final T item;
+
+        Row(int index, T item) {
+            this.index = index;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Keys of a bulk lookup, matched with {@code = ANY(?)} and bound as one
+     * array where the driver supports arrays. The SQL is then the same for
+     * any number of keys, so it stays in the statement cache and is planned
+     * once. Other drivers get one placeholder per key.
+     */
+    static final class KeyList {
+
+        private final Collection<?> keys;
+        private final Array array;
+
+        private KeyList(Collection<?> keys, Array array) {
+            this.keys = keys;
+            this.array = array;
+        }
+
+        /**
+         * {@code sqlType} is the database name of the element type, such as
+         * bigint or varchar.
+         */
+        static KeyList of(Connection conn, String sqlType, Collection<?> keys) throws SQLException {
+            try {
+                return new KeyList(keys, conn.createArrayOf(sqlType, keys.toArray()));
+            } catch (SQLFeatureNotSupportedException e) {
+                return new KeyList(keys, null);
+            }
+        }
+
+        String condition(String column) {
+            return array != null ? column + " = ANY(?)" : column + " IN " + placeholders(keys.size());
+        }
+
+        /**
+         * Binds the keys from parameter {@code index} on and returns the
+         * next free index.
+         */
+        int bind(PreparedStatement st, int index) throws SQLException {
+            if (array != null) {
+                st.setArray(index, array);
+                return index + 1;
+            }
+            for (Object key : keys) {
+                st.setObject(index++, key);
+            }
+            return index;
+        }
+    }
+
+    static <T> List<List<Row<T>>> chunks(List<Row<T>> rows, int size) {
+        List<List<Row<T>>> chunks = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i += size) {
+            chunks.add(rows.subList(i, Math.min(i + size, rows.size())));
+        }
+        return chunks;
+    }
+
+    static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3 + 2).append('(');
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.append(')').toString();
+    }
+
+    static void checkBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new DbException("Batch size must be at least 1");
+        }
+    }
+
+    /**
+     * Runs {@code sqlPrefix + "(?, ?, ...)"} with one placeholder per value
+     * and returns the first column of every row as a string.
+     */
+    static Set<String> findExisting(Connection conn, String sqlPrefix, Collection<String> values) {
+        Set<String> existing = new HashSet<>();
+        if (values.isEmpty()) {
+            return existing;
+        }
+
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            st = conn.prepareStatement(sqlPrefix + placeholders(values.size()));
+            int i = 1;
+            for (String value : values) {
+                st.setString(i++, value);
+            }
+            rs = st.executeQuery();
+            while (rs.next()) {
+                existing.add(rs.getString(1));
+            }
+            return existing;
+        } catch (SQLException e) {
+            throw new DbException("Error checking existing rows: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    /**
+     * Same as {@link #findExisting(Connection, String, Collection)} for
+     * numeric keys.
+     */
+    static Set<Long> findExistingIds(Connection conn, String sqlPrefix, Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existing;
+        }
+
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            st = conn.prepareStatement(sqlPrefix + placeholders(ids.size()));
+            int i = 1;
+            for (Long id : ids) {
+                st.setLong(i++, id);
+            }
+            rs = st.executeQuery();
+            while (rs.next()) {
+                existing.add(rs.getLong(1));
+            }
+            return existing;
+        } catch (SQLException e) {
+            throw new DbException("Error checking existing rows: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    /**
+     * Inserts a chunk with one JDBC batch in its own transaction, assigns
+     * the generated keys and publishes an insert event per row once the
+     * chunk commits. If the batch fails the whole chunk is rolled back and
+     * every row of it is reported in the result.
+     */
+    static <T> void insertChunk(Connection conn, ChangeEvent.Entity entity, String sql, List<Row<T>> rows,
+            Binder<T> binder, BiConsumer<T, Long> idSetter, BatchResult<T> result) {
+        insertChunk(conn, entity, sql, rows, binder, idSetter, result, null);
+    }
+
+    /**
+     * Same as {@link #insertChunk(Connection, ChangeEvent.Entity, String, List, Binder, BiConsumer, BatchResult)},
+     * running {@code beforeInsert} first in the same transaction.
+     */
+    static <T> void insertChunk(Connection conn, ChangeEvent.Entity entity, String sql, List<Row<T>> rows,
+            Binder<T> binder, BiConsumer<T, Long> idSetter, BatchResult<T> result, BeforeInsert<T> beforeInsert) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        ChangeFeed feed = ChangeFeed.getDefault();
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            conn.setAutoCommit(false);
+            if (beforeInsert != null) {
+                beforeInsert.run(conn, rows);
+            }
+            st = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+            for (Row<T> row : rows) {
+                binder.bind(st, row.item);
+                st.addBatch();
+            }
+            st.executeBatch();
+
+            rs = st.getGeneratedKeys();
+            List<Long> ids = new ArrayList<>(rows.size());
+            for (Row<T> row : rows) {
+                if (!rs.next()) {
+                    throw new SQLException("Generated key missing for row " + row.index);
+                }
+                ids.add(rs.getLong(1));
+                idSetter.accept(row.item, rs.getLong(1));
+            }
+            List<ChangeEvent> events = feed.record(conn, entity, ChangeEvent.Type.INSERT, ids);
+
+            conn.commit();
+            rows.forEach(row -> result.addSaved(row.item));
+            feed.publish(events);
+
+        } catch (SQLException e) {
+            rollback(conn);
+            int failedRow = failedRow(e, rows.size());
+            String cause = rootMessage(e);
+            for (int i = 0; i < rows.size(); i++) {
+                Row<T> row = rows.get(i);
+                idSetter.accept(row.item, null);
+                if (failedRow < 0 || i == failedRow) {
+                    result.addError(row.index, row.item, cause);
+                } else {
+                    result.addError(row.index, row.item, "Rolled back because row " + rows.get(failedRow).index
+                            + " of the same batch failed");
+                }
+            }
+        } finally {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                throw new DbException(e.getMessage());
+            }
+        }
+    }
+
+    // Helper methods
+
+    /**
+     * Position of the failing row inside the batch, or -1 if the driver did
+     * not say.
+     */
+    private static int failedRow(SQLException e, int batchSize) {
+        if (!(e instanceof BatchUpdateException)) {
+            return -1;
+        }
+        int[] counts = ((BatchUpdateException) e).getUpdateCounts();
+        if (counts == null) {
+            return -1;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+                return i;
+            }
+        }
+        return counts.length < batchSize ? counts.length : -1;
+    }
+
+    private static String rootMessage(SQLException e) {
+        SQLException next = e.getNextException();
+        return next != null ? next.getMessage() : e.getMessage();
+    }
+
+    /**
+     * Rolls back the open transaction, if there is one.
+     */
+    static void rollback(Connection conn) {
+        try {
+            if (conn != null && !conn.getAutoCommit()) {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error rolling back: " + e.getMessage());
+        }
+    }
+}
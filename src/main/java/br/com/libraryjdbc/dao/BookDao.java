@@ -1,12 +1,65 @@
 package br.com.libraryjdbc.dao;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeFeed;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
 import db.DB;
 import db.DbException;
+import db.OptimisticLockException;
 
 public class BookDao {
     
+    private static final Logger LOG = LoggerFactory.getLogger(BookDao.class);
+    
+    static final int MIN_RELEASE_YEAR = 1967;
+    
+    private static final RowMapper<Book> BOOK = new RowMapper.Builder<>(Book::new)
+            .column("id", (book, rs, i) -> book.setId(rs.getLong(i)))
+            .column("title", (book, rs, i) -> book.setTitle(rs.getString(i)))
+            .column("author", (book, rs, i) -> book.setAuthor(rs.getString(i)))
+            .column("synopsis", (book, rs, i) -> book.setSynopsis(rs.getString(i)))
+            .column("isbn", (book, rs, i) -> book.setIsbn(rs.getString(i)))
+            .column("release_year", (book, rs, i) -> book.setReleaseYear(rs.getInt(i)))
+            .column("version", (book, rs, i) -> book.setVersion(rs.getInt(i)))
+            .build();
+    private static final RowMapper<Book> BOOK_SUMMARY = BOOK.project("id", "title", "author", "isbn", "release_year");
+    /** The category columns of a book row; category_id must come first. */
+    private static final RowMapper<Category> BOOK_CATEGORY = new RowMapper.Builder<>(Category::new)
+            .column("category_id", (category, rs, i) -> category.setId(rs.getLong(i)))
+            .column("category_name", (category, rs, i) -> category.setName(rs.getString(i)))
+            .column("category_description", (category, rs, i) -> category.setDescription(rs.getString(i)))
+            .build();
+    private static final RowMapper<Category> BOOK_CATEGORY_ID = BOOK_CATEGORY.project("category_id");
+    
+    private static final String BOOK_COLUMNS = "SELECT " + BOOK.selectList("b") + ", "
+            + "b.category_id, c.name AS category_name, c.description AS category_description ";
+    private static final String SELECT_BOOK = BOOK_COLUMNS + "FROM book b JOIN category c ON c.id = b.category_id ";
+    
+    private int batchSize = BatchSupport.DEFAULT_BATCH_SIZE;
+    private int fetchSize = StreamingQuery.DEFAULT_FETCH_SIZE;
+    
     public void createTable() {
         Connection conn = null;
         Statement st = null;
@@ -15,21 +68,745 @@ public class BookDao {
             conn = DB.getConnection();
             st = conn.createStatement();
             
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS book ("
-                    + "id SERIAL PRIMARY KEY,"
-                    + "title VARCHAR(200) NOT NULL,"
-                    + "author VARCHAR(150) NOT NULL,"
-                    + "synopsis TEXT,"
-                    + "isbn VARCHAR(20) NOT NULL UNIQUE,"
-                    + "release_year INTEGER NOT NULL CHECK (release_year >= 1967),"
-                    + "category_id INTEGER NOT NULL,"
-                    + "FOREIGN KEY (category_id) REFERENCES category(id)"
-                    + ")");
+            createTable(st);
             
         } catch (Exception e) {
             throw new DbException(e.getMessage());
         } finally {
             DB.closeStatement(st);
+            DB.closeConnection(conn);
         }
     }
+    
+    public Book save(Book book) {
+        ChangeFeed feed = ChangeFeed.getDefault();
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DB.getConnection();
+            
+            String error = validationError(book);
+            if (error != null) {
+                throw new DbException(error);
+            }
+            
+            conn.setAutoCommit(false);
+            CategoryStatsDao.adjust(conn, book.getCategory().getId(), 1);
+            
+            // ISBN uniqueness and the category reference are enforced by the
+            // table constraints, so the insert is a single statement
+            String sql = "INSERT INTO book (title, author, synopsis, isbn, release_year, category_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+            
+            st = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            
+            setBookParameters(st, book);
+            
+            int rowsAffected = st.executeUpdate();
+            
+            if (rowsAffected > 0) {
+                rs = st.getGeneratedKeys();
+                if (rs.next()) {
+                    book.setId(rs.getLong(1));
+                    book.setVersion(0);
+                }
+            } else {
+                throw new DbException("Unexpected error! No rows were affected.");
+            }
+            
+            List<ChangeEvent> events = feed.record(conn, ChangeEvent.Entity.BOOK, ChangeEvent.Type.INSERT,
+                    book.getId());
+            conn.commit();
+            feed.publish(events);
+            
+            return book;
+            
+        } catch (SQLException e) {
+            BatchSupport.rollback(conn);
+            throw new DbException("Error inserting book: " + constraintMessage(e, book));
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+    
+    /**
+     * Overwrites a book. A book carrying the version it was read at is only
+     * written if the row still has that version, and otherwise fails with
+     * an {@link OptimisticLockException} without taking a row lock first and
+     * with the transaction rolled back; on success its version moves on.
+     * Without a version the row is locked and overwritten whatever its state.
+     */
+    public void update(Book book) {
+        ChangeFeed feed = ChangeFeed.getDefault();
+        Connection conn = null;
+        PreparedStatement st = null;
+        
+        try {
+            conn = DB.getConnection();
+            
+            if (book.getId() == null) {
+                throw new DbException("Book ID cannot be null for update");
+            }
+            
+            String error = validationError(book);
+            if (error != null) {
+                throw new DbException(error);
+            }
+            
+            conn.setAutoCommit(false);
+            
+            Integer version = book.getVersion();
+            Long oldCategoryId = version != null ? categoryAtVersion(conn, book.getId(), version)
+                    : lockBook(conn, book.getId());
+            if (oldCategoryId == null) {
+                throw new DbException("Book with ID " + book.getId() + " not found.");
+            }
+            
+            // The category read above was current if the version still is
+            String sql = "UPDATE book SET title = ?, author = ?, synopsis = ?, isbn = ?, release_year = ?, "
+                    + "category_id = ?, version = version + 1 WHERE id = ?"
+                    + (version != null ? " AND version = ?" : "");
+            
+            st = conn.prepareStatement(sql);
+            
+            setBookParameters(st, book);
+            st.setLong(7, book.getId());
+            if (version != null) {
+                st.setInt(8, version);
+            }
+            
+            if (st.executeUpdate() == 0) {
+                BatchSupport.rollback(conn);
+                throw conflict(book.getId(), version);
+            }
+            
+            // Counters after the book row, the order remove locks them in
+            Long newCategoryId = book.getCategory().getId();
+            if (!oldCategoryId.equals(newCategoryId)) {
+                Map<Long, Integer> deltas = new HashMap<>();
+                deltas.put(oldCategoryId, -1);
+                deltas.put(newCategoryId, 1);
+                CategoryStatsDao.adjustWritten(conn, deltas);
+            }
+            
+            List<ChangeEvent> events = feed.record(conn, ChangeEvent.Entity.BOOK, ChangeEvent.Type.UPDATE,
+                    book.getId());
+            conn.commit();
+            feed.publish(events);
+            if (version != null) {
+                book.setVersion(version + 1);
+            }
+            
+        } catch (SQLException e) {
+            BatchSupport.rollback(conn);
+            throw new DbException("Error updating book: " + constraintMessage(e, book));
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+    
+    public void remove(Long id) {
+        ChangeFeed feed = ChangeFeed.getDefault();
+        Connection conn = null;
+        PreparedStatement st = null;
+        
+        try {
+            conn = DB.getConnection();
+            conn.setAutoCommit(false);
+            
+            Long categoryId = lockBook(conn, id);
+            if (categoryId == null) {
+                throw new DbException("Book with ID " + id + " not found.");
+            }
+            
+            CategoryStatsDao.adjust(conn, categoryId, -1);
+            
+            String sql = "DELETE FROM book WHERE id = ?";
+            
+            st = conn.prepareStatement(sql);
+            
+            st.setLong(1, id);
+            
+            st.executeUpdate();
+            
+            List<ChangeEvent> events = feed.record(conn, ChangeEvent.Entity.BOOK, ChangeEvent.Type.DELETE, id);
+            conn.commit();
+            feed.publish(events);
+            
+        } catch (SQLException e) {
+            BatchSupport.rollback(conn);
+            throw new DbException("Error removing book: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+    
+    public Book findById(Long id) {
+        return findOne(SELECT_BOOK + "WHERE b.id = ?", id, "Error finding book by ID: ");
+    }
+    
+    /**
+     * Looks a book up through the unique index on isbn.
+     */
+    public Book findByIsbn(String isbn) {
+        return findOne(SELECT_BOOK + "WHERE b.isbn = ?", isbn, "Error finding book by ISBN: ");
+    }
+    
+    /**
+     * Loads the books with the given IDs in one query, in no particular
+     * order. Missing IDs are skipped.
+     */
+    public List<Book> findByIds(Collection<Long> ids) {
+        return findByKeys("b.id", "bigint", ids, false, "Error finding books by ID: ");
+    }
+    
+    /**
+     * Loads the books with the given ISBNs in one query, in no particular
+     * order. Missing ISBNs are skipped.
+     */
+    public List<Book> findByIsbns(Collection<String> isbns) {
+        return findByKeys("b.isbn", "varchar", isbns, true, "Error finding books by ISBN: ");
+    }
+    
+    public List<Book> findAll() {
+        return findList(SELECT_BOOK + "ORDER BY b.title, b.id", null, "Error listing books: ");
+    }
+    
+    /**
+     * Keyset pagination in title order: returns the books that come after
+     * {@code after} (or the first page when it is null), using the index on
+     * (title, id).
+     */
+    public Page<Book> findPage(Book after, int pageSize) {
+        // The page is cut from book alone and joined afterwards, so the
+        // planner walks idx_book_title_id instead of starting from category
+        if (after == null) {
+            String sql = pageOf("ORDER BY title, id LIMIT ?");
+            return StreamingQuery.page(sql, st -> st.setInt(1, pageSize + 1), pageSize, new BookRowReader(sql));
+        }
+        
+        String sql = pageOf("WHERE (title, id) > (?, ?) ORDER BY title, id LIMIT ?");
+        return StreamingQuery.page(sql, st -> {
+            st.setString(1, after.getTitle());
+            st.setLong(2, after.getId());
+            st.setInt(3, pageSize + 1);
+        }, pageSize, new BookRowReader(sql));
+    }
+    
+    /**
+     * Streams every book in title order through a database cursor, so memory
+     * use does not depend on the size of the catalog. The stream holds a
+     * connection and must be closed.
+     */
+    public Stream<Book> stream() {
+        String sql = SELECT_BOOK + "ORDER BY b.title, b.id";
+        return StreamingQuery.stream(sql, fetchSize, new BookRowReader(sql));
+    }
+    
+    /**
+     * Streams every book in storage order, neither sorted nor joined, for
+     * full scans such as analytics. Each book's category carries only its
+     * id. The scan may be read from a replica, and the stream holds a
+     * connection and must be closed.
+     */
+    public Stream<Book> scan() {
+        String sql = "SELECT " + BOOK.selectList("b") + ", b.category_id FROM book b";
+        return StreamingQuery.readStream(sql, fetchSize, new BookRowReader(sql, BOOK_CATEGORY_ID));
+    }
+    
+    public void forEach(Consumer<Book> action) {
+        try (Stream<Book> books = stream()) {
+            books.forEach(action);
+        }
+    }
+    
+    /**
+     * Number of rows fetched per round trip by {@link #stream()}.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+    
+    /**
+     * Case-insensitive substring search on the author. On PostgreSQL the
+     * LIKE pattern is answered by the trigram index on LOWER(author)
+     * created in {@link #createTable()} instead of a sequential scan.
+     */
+    public List<Book> findByAuthor(String author) {
+        if (author == null || author.trim().isEmpty()) {
+            throw new DbException("Author cannot be empty");
+        }
+        
+        String pattern = "%" + escapeLike(author.trim().toLowerCase(Locale.ROOT)) + "%";
+        
+        return findList(SELECT_BOOK + "WHERE LOWER(b.author) LIKE ? ESCAPE '\\' ORDER BY b.title, b.id", pattern,
+                "Error listing books by author: ");
+    }
+    
+    /**
+     * Lists the books of a category through the index on category_id.
+     */
+    public List<Book> findByCategory(Long categoryId) {
+        return findByCategory(categoryId, Collectors.toCollection(ArrayList::new));
+    }
+    
+    /**
+     * Reads the books of a category straight into {@code collector},
+     * without building a list first.
+     */
+    public <R> R findByCategory(Long categoryId, Collector<? super Book, ?, R> collector) {
+        String sql = SELECT_BOOK + "WHERE b.category_id = ? ORDER BY b.title, b.id";
+        return StreamingQuery.collect(sql, st -> st.setLong(1, categoryId), new BookRowReader(sql), collector,
+                "Error listing books by category: ");
+    }
+    
+    /**
+     * Lists the books of a category for display in a listing: the synopsis
+     * and the category are not selected, so the query does not join
+     * category and both are left null.
+     */
+    public List<Book> findSummariesByCategory(Long categoryId) {
+        String sql = "SELECT " + BOOK_SUMMARY.selectList(null)
+                + " FROM book WHERE category_id = ? ORDER BY title, id";
+        return StreamingQuery.collect(sql, st -> st.setLong(1, categoryId), BOOK_SUMMARY.reader(sql),
+                Collectors.toCollection(ArrayList::new), "Error listing books by category: ");
+    }
+    
+    /**
+     * Lists the books released from {@code fromYear} to {@code toYear},
+     * inclusive. On a table partitioned by release year only the partitions
+     * of those years are read.
+     */
+    public List<Book> findByReleaseYears(int fromYear, int toYear) {
+        String sql = SELECT_BOOK + "WHERE b.release_year BETWEEN ? AND ? ORDER BY b.title, b.id";
+        return StreamingQuery.collect(sql, st -> {
+            st.setInt(1, fromYear);
+            st.setInt(2, toYear);
+        }, new BookRowReader(sql), Collectors.toCollection(ArrayList::new), "Error listing books by release year: ");
+    }
+    
+    /**
+     * Lists the books of a category released from {@code fromYear} to
+     * {@code toYear}, inclusive. Both conditions are on partition keys, so
+     * either partitioning narrows the partitions read.
+     */
+    public List<Book> findByCategory(Long categoryId, int fromYear, int toYear) {
+        String sql = SELECT_BOOK + "WHERE b.category_id = ? AND b.release_year BETWEEN ? AND ? "
+                + "ORDER BY b.title, b.id";
+        return StreamingQuery.collect(sql, st -> {
+            st.setLong(1, categoryId);
+            st.setInt(2, fromYear);
+            st.setInt(3, toYear);
+        }, new BookRowReader(sql), Collectors.toCollection(ArrayList::new), "Error listing books by category: ");
+    }
+    
+    /**
+     * Saves many books at once. Books are validated in memory, ISBNs that
+     * already exist and categories that do not are found with one query each
+     * per chunk, and the inserts go out as JDBC batches of
+     * {@link #setBatchSize(int)} rows, each chunk committed in its own
+     * transaction. Generated IDs are set on the saved books; rejected ones
+     * are reported with their position.
+     */
+    public BatchResult<Book> saveAll(Collection<Book> books) {
+        BatchResult<Book> result = new BatchResult<>();
+        List<BatchSupport.Row<Book>> valid = new ArrayList<>();
+        Set<String> isbnsInBatch = new HashSet<>();
+        
+        int index = 0;
+        for (Book book : books) {
+            String error = validationError(book);
+            if (error == null && !isbnsInBatch.add(book.getIsbn())) {
+                error = "Duplicate ISBN in batch: " + book.getIsbn();
+            }
+            
+            if (error != null) {
+                result.addError(index, book, error);
+            } else {
+                valid.add(new BatchSupport.Row<>(index, book));
+            }
+            index++;
+        }
+        
+        Connection conn = null;
+        
+        try {
+            conn = DB.getConnection();
+            
+            for (List<BatchSupport.Row<Book>> chunk : BatchSupport.chunks(valid, batchSize)) {
+                Set<String> isbns = new HashSet<>();
+                Set<Long> categoryIds = new HashSet<>();
+                for (BatchSupport.Row<Book> row : chunk) {
+                    isbns.add(row.item.getIsbn());
+                    categoryIds.add(row.item.getCategory().getId());
+                }
+                
+                Set<String> existingIsbns = BatchSupport.findExisting(conn,
+                        "SELECT isbn FROM book WHERE isbn IN ", isbns);
+                Set<Long> existingCategories = BatchSupport.findExistingIds(conn,
+                        "SELECT id FROM category WHERE id IN ", categoryIds);
+                
+                List<BatchSupport.Row<Book>> toInsert = new ArrayList<>(chunk.size());
+                for (BatchSupport.Row<Book> row : chunk) {
+                    Book book = row.item;
+                    if (existingIsbns.contains(book.getIsbn())) {
+                        result.addError(row.index, book, "ISBN already exists: " + book.getIsbn());
+                    } else if (!existingCategories.contains(book.getCategory().getId())) {
+                        result.addError(row.index, book, "Category not found: " + book.getCategory().getId());
+                    } else {
+                        toInsert.add(row);
+                    }
+                }
+                
+                BatchSupport.insertChunk(conn, ChangeEvent.Entity.BOOK,
+                        "INSERT INTO book (title, author, synopsis, isbn, release_year, category_id) "
+                                + "VALUES (?, ?, ?, ?, ?, ?)",
+                        toInsert, this::setBookParameters, (book, id) -> {
+                            book.setId(id);
+                            book.setVersion(0);
+                        }, result, this::countNewBooks);
+            }
+            
+            return result;
+            
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+    
+    /**
+     * Number of rows sent per JDBC batch (and per transaction) by
+     * {@link #saveAll(Collection)}.
+     */
+    public void setBatchSize(int batchSize) {
+        BatchSupport.checkBatchSize(batchSize);
+        this.batchSize = batchSize;
+    }
+    
+    // Helper methods
+    
+    /**
+     * Creates the book table, its indexes and the category counters. Needs
+     * the category table. The table is partitioned when
+     * {@link BookPartitions} says so.
+     */
+    static void createTable(Statement st) throws SQLException {
+        BookPartitions partitions = new BookPartitions();
+        if (partitions.getStrategy() != BookPartitions.Strategy.NONE) {
+            partitions.createTable(st);
+        } else {
+            createPlainTable(st);
+        }
+        
+        // Listing by category needs its own index on the foreign key
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_category_id ON book (category_id)");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_title_id ON book (title, id)");
+        createReleaseYearIndex(st);
+        createVersionColumn(st);
+        
+        if (DB.isPostgreSql()) {
+            createAuthorSearchIndex(st);
+        } else {
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_author ON book (author)");
+        }
+        
+        CategoryStatsDao.createTable(st);
+    }
+    
+    /**
+     * Row version checked by {@link #update(Book)}. Added after the table is
+     * created, so that partitions get it too.
+     */
+    private static void createVersionColumn(Statement st) throws SQLException {
+        st.executeUpdate("ALTER TABLE book ADD COLUMN IF NOT EXISTS version INTEGER DEFAULT 0 NOT NULL");
+    }
+    
+    /**
+     * Year range reports on a table not partitioned by year.
+     */
+    private static void createReleaseYearIndex(Statement st) throws SQLException {
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_release_year ON book (release_year)");
+    }
+    
+    /**
+     * isbn lookups use the index behind the UNIQUE constraint.
+     */
+    private static void createPlainTable(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS book ("
+                + "id SERIAL PRIMARY KEY,"
+                + "title VARCHAR(200) NOT NULL,"
+                + "author VARCHAR(150) NOT NULL,"
+                + "synopsis TEXT,"
+                + "isbn VARCHAR(20) NOT NULL UNIQUE,"
+                + "release_year INTEGER NOT NULL CHECK (release_year >= 1967),"
+                + "category_id INTEGER NOT NULL,"
+                + "FOREIGN KEY (category_id) REFERENCES category(id)"
+                + ")");
+    }
+    
+    /**
+     * Locks a book row for the rest of the transaction and returns its
+     * category, or null when there is no such book.
+     */
+    private Long lockBook(Connection conn, Long id) throws SQLException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        
+        try {
+            st = conn.prepareStatement("SELECT category_id FROM book WHERE id = ? FOR UPDATE");
+            st.setLong(1, id);
+            rs = st.executeQuery();
+            return rs.next() ? rs.getLong(1) : null;
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+    
+    /**
+     * The category of a book still at {@code version}, or null when there is
+     * no such book. Reads without locking: the update that follows checks
+     * the version again.
+     */
+    private Long categoryAtVersion(Connection conn, Long id, int version) throws SQLException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        
+        try {
+            st = conn.prepareStatement("SELECT category_id, version FROM book WHERE id = ?");
+            st.setLong(1, id);
+            rs = st.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            if (rs.getInt(2) != version) {
+                BatchSupport.rollback(conn);
+                throw conflict(id, version);
+            }
+            return rs.getLong(1);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+    
+    private static OptimisticLockException conflict(Long id, Integer version) {
+        return new OptimisticLockException("Book with ID " + id + " was changed after version " + version
+                + " was read.");
+    }
+    
+    private void countNewBooks(Connection conn, List<BatchSupport.Row<Book>> rows) throws SQLException {
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (BatchSupport.Row<Book> row : rows) {
+            deltas.merge(row.item.getCategory().getId(), 1, Integer::sum);
+        }
+        CategoryStatsDao.adjust(conn, deltas);
+    }
+    
+    private static String pageOf(String bookClause) {
+        return BOOK_COLUMNS + "FROM (SELECT * FROM book " + bookClause + ") b "
+                + "JOIN category c ON c.id = b.category_id ORDER BY b.title, b.id";
+    }
+    
+    private List<Book> findByKeys(String column, String sqlType, Collection<?> keys, boolean replica,
+            String errorMessage) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return DB.retryRead(() -> readByKeys(column, sqlType, keys, replica, errorMessage));
+    }
+    
+    private List<Book> readByKeys(String column, String sqlType, Collection<?> keys, boolean replica,
+            String errorMessage) {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = replica ? DB.getReadConnection() : DB.getConnection();
+            
+            BatchSupport.KeyList keyList = BatchSupport.KeyList.of(conn, sqlType, keys);
+            String sql = SELECT_BOOK + "WHERE " + keyList.condition(column);
+            
+            st = conn.prepareStatement(sql);
+            
+            keyList.bind(st, 1);
+            
+            rs = st.executeQuery();
+            
+            List<Book> books = new ArrayList<>(keys.size());
+            BookRowReader reader = new BookRowReader(sql);
+            
+            while (rs.next()) {
+                books.add(reader.read(rs));
+            }
+            
+            return books;
+            
+        } catch (SQLException e) {
+            throw new DbException(errorMessage + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+    
+    private Book findOne(String sql, Object parameter, String errorMessage) {
+        List<Book> books = findList(sql, parameter, errorMessage);
+        return books.isEmpty() ? null : books.get(0);
+    }
+    
+    private List<Book> findList(String sql, Object parameter, String errorMessage) {
+        return DB.retryRead(() -> readList(sql, parameter, errorMessage));
+    }
+    
+    private List<Book> readList(String sql, Object parameter, String errorMessage) {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        
+        try {
+            // Lookups and listings may be served by a read replica
+            conn = DB.getReadConnection();
+            
+            st = conn.prepareStatement(sql);
+            
+            if (parameter != null) {
+                st.setObject(1, parameter);
+            }
+            
+            rs = st.executeQuery();
+            
+            List<Book> books = new ArrayList<>();
+            BookRowReader reader = new BookRowReader(sql);
+            
+            while (rs.next()) {
+                books.add(reader.read(rs));
+            }
+            
+            return books;
+            
+        } catch (SQLException e) {
+            throw new DbException(errorMessage + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+    
+    /**
+     * Builds books from joined rows so that books of the same category share
+     * one Category instance. Column positions are resolved on the first
+     * row.
+     */
+    private static final class BookRowReader implements StreamingQuery.RowReader<Book> {
+        
+        private final String sql;
+        private final RowMapper<Category> categoryMapper;
+        private final Map<Long, Category> categories = new HashMap<>();
+        private int[] bookColumns;
+        private int[] categoryColumns;
+        
+        BookRowReader(String sql) {
+            this(sql, BOOK_CATEGORY);
+        }
+        
+        BookRowReader(String sql, RowMapper<Category> categoryMapper) {
+            this.sql = sql;
+            this.categoryMapper = categoryMapper;
+        }
+        
+        @Override
+        public Book read(ResultSet rs) throws SQLException {
+            if (bookColumns == null) {
+                bookColumns = BOOK.positions(sql, rs);
+                categoryColumns = categoryMapper.positions(sql, rs);
+            }
+            
+            Category category = categories.get(rs.getLong(categoryColumns[0]));
+            if (category == null) {
+                category = categoryMapper.map(rs, categoryColumns);
+                categories.put(category.getId(), category);
+            }
+            Book book = BOOK.map(rs, bookColumns);
+            book.setCategory(category);
+            return book;
+        }
+    }
+    
+    private void setBookParameters(PreparedStatement st, Book book) throws SQLException {
+        st.setString(1, book.getTitle());
+        st.setString(2, book.getAuthor());
+        st.setString(3, book.getSynopsis());
+        st.setString(4, book.getIsbn());
+        st.setInt(5, book.getReleaseYear());
+        st.setLong(6, book.getCategory().getId());
+    }
+    
+    /**
+     * Trigram index for substring search on the author. Falls back to a
+     * plain expression index when the pg_trgm extension is not available
+     * (it still serves exact and prefix matches on LOWER(author)).
+     */
+    private static void createAuthorSearchIndex(Statement st) throws SQLException {
+        try {
+            st.executeUpdate("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_author_trgm ON book "
+                    + "USING gin (LOWER(author) gin_trgm_ops)");
+        } catch (SQLException e) {
+            LOG.warn("pg_trgm not available, author search will not use a trigram index: {}", e.getMessage());
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_author_lower ON book "
+                    + "(LOWER(author) text_pattern_ops)");
+        }
+    }
+    
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+    
+    /**
+     * Turns constraint violations into the business rule they enforce.
+     */
+    private static String constraintMessage(SQLException e, Book book) {
+        String state = e.getSQLState();
+        if ("23505".equals(state)) {
+            return "ISBN already exists: " + book.getIsbn();
+        }
+        if ("23503".equals(state) || "23506".equals(state)) {
+            return "Category not found: " + book.getCategory().getId();
+        }
+        return e.getMessage();
+    }
+    
+    private String validationError(Book book) {
+        if (book.getTitle() == null || book.getTitle().trim().isEmpty()) {
+            return "Book title cannot be empty";
+        }
+        
+        if (book.getAuthor() == null || book.getAuthor().trim().isEmpty()) {
+            return "Book author cannot be empty";
+        }
+        
+        if (book.getIsbn() == null || book.getIsbn().trim().isEmpty()) {
+            return "Book ISBN cannot be empty";
+        }
+        
+        if (book.getReleaseYear() == null || book.getReleaseYear() < MIN_RELEASE_YEAR) {
+            return "Book release year must be " + MIN_RELEASE_YEAR + " or later";
+        }
+        
+        if (book.getCategory() == null || book.getCategory().getId() == null) {
+            return "Book category cannot be empty";
+        }
+        
+        return null;
+    }
 }
@@ -0,0 +1,400 @@
+package br.com.libraryjdbc.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import db.DB;
+import db.DbException;
+
+/**
+ * Declarative partitioning of the book table on PostgreSQL, chosen when
+ * the table is created:
+ * <ul>
+ * <li>schema.book.partitioning - none, category (hash of category_id) or
+ * release_year (ranges of years) (default none)</li>
+ * <li>schema.book.hashPartitions - number of category partitions (default 8)</li>
+ * <li>schema.book.yearsPerPartition - years in each range partition (default 10)</li>
+ * <li>schema.book.yearsAhead - range partitions are created up to this many
+ * years past the current one (default 5)</li>
+ * </ul>
+ * Queries that filter on the partition key only read the matching
+ * partitions: {@link BookDao#findByCategory(Long)} and the per-category
+ * counters under category partitioning, and
+ * {@link BookDao#findByReleaseYears(int, int)} under release year
+ * partitioning. Lookups by id or ISBN read one index per partition.
+ *
+ * PostgreSQL only enforces uniqueness within a partition unless the key
+ * includes the partition column. The primary key becomes (id, partition
+ * column), ids still come from one sequence, and ISBNs are kept unique by a
+ * trigger that registers every book's ISBN in book_isbn. Duplicates are
+ * reported as the same unique violation as on a plain table.
+ *
+ * Range partitioning keeps a default partition, so a book with a year past
+ * the last range is stored rather than rejected; add ranges ahead of time
+ * with {@link #addYearPartitionsThrough(int)}. Category partitions are fixed
+ * when the table is created. An existing unpartitioned table is left as it
+ * is: switching means reloading the data into a new database.
+ */
+public class BookPartitions {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BookPartitions.class);
+
+    static final String DEFAULT_PARTITION = "book_y_default";
+
+    public enum Strategy {
+        NONE, CATEGORY, RELEASE_YEAR
+    }
+
+    /**
+     * A partition of the book table and its bound as PostgreSQL shows it,
+     * for example {@code FOR VALUES FROM (2020) TO (2030)}.
+     */
+    public static final class Partition {
+
+        private final String name;
+        private final String bound;
+
+        Partition(String name, String bound) {
+            this.name = name;
+            this.bound = bound;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getBound() {
+            return bound;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + bound;
+        }
+    }
+
+    private final Strategy strategy;
+    private final int hashPartitions;
+    private final int yearsPerPartition;
+    private final int yearsAhead;
+
+    /**
+     * The settings of the current configuration.
+     */
+    public BookPartitions() {
+        this(strategy(DB.getSetting("book.partitioning", "none")),
+                intSetting("book.hashPartitions", 8), intSetting("book.yearsPerPartition", 10),
+                intSetting("book.yearsAhead", 5));
+    }
+
+    BookPartitions(Strategy strategy, int hashPartitions, int yearsPerPartition, int yearsAhead) {
+        if (hashPartitions < 1 || yearsPerPartition < 1 || yearsAhead < 0) {
+            throw new DbException("Invalid book partitioning settings");
+        }
+        this.strategy = strategy;
+        this.hashPartitions = hashPartitions;
+        this.yearsPerPartition = yearsPerPartition;
+        this.yearsAhead = yearsAhead;
+    }
+
+    /**
+     * The configured strategy, which is the one a new book table gets.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    int getHashPartitions() {
+        return hashPartitions;
+    }
+
+    int getYearsPerPartition() {
+        return yearsPerPartition;
+    }
+
+    int getYearsAhead() {
+        return yearsAhead;
+    }
+
+    /**
+     * How the existing book table is partitioned, read from the catalog.
+     */
+    public Strategy getTableStrategy() {
+        if (!DB.isPostgreSql()) {
+            return Strategy.NONE;
+        }
+
+        Connection conn = null;
+        Statement st = null;
+
+        try {
+            conn = DB.getConnection();
+            st = conn.createStatement();
+            return tableStrategy(st);
+        } catch (SQLException e) {
+            throw new DbException("Error reading book partitioning: " + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * The partitions of the book table in name order, empty when it is not
+     * partitioned.
+     */
+    public List<Partition> getPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        if (!DB.isPostgreSql()) {
+            return partitions;
+        }
+
+        Connection conn = null;
+
+        try {
+            conn = DB.getConnection();
+            return partitions(conn);
+        } catch (SQLException e) {
+            throw new DbException("Error listing book partitions: " + e.getMessage(), e);
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Creates the missing range partitions up to the one holding
+     * {@code lastYear}, moving any of their books out of the default
+     * partition, and returns how many were created. Meant to run ahead of
+     * time, for example yearly, so new books never land in the default
+     * partition.
+     */
+    public int addYearPartitionsThrough(int lastYear) {
+        if (getTableStrategy() != Strategy.RELEASE_YEAR) {
+            throw new DbException("The book table is not partitioned by release year");
+        }
+
+        Connection conn = null;
+        Statement st = null;
+        PreparedStatement move = null;
+
+        try {
+            conn = DB.getConnection();
+            conn.setAutoCommit(false);
+            st = conn.createStatement();
+
+            Set<String> existing = new HashSet<>();
+            for (Partition partition : partitions(conn)) {
+                existing.add(partition.getName());
+            }
+
+            int created = 0;
+            for (int from = firstYear(); from <= lastYear; from += yearsPerPartition) {
+                String name = yearPartition(from);
+                if (existing.contains(name)) {
+                    continue;
+                }
+                int to = from + yearsPerPartition;
+
+                // Attaching checks the default partition holds no books of
+                // the range, so they are moved into the new table first. The
+                // move goes around the registry trigger, which the new table
+                // only gets once attached
+                st.executeUpdate("CREATE TABLE " + name + " (LIKE book INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                move = conn.prepareStatement("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE release_year >= ? AND release_year < ? RETURNING *) "
+                        + "INSERT INTO " + name + " SELECT * FROM moved");
+                move.setInt(1, from);
+                move.setInt(2, to);
+                int moved = move.executeUpdate();
+                DB.closeStatement(move);
+                move = null;
+                st.executeUpdate("INSERT INTO book_isbn (isbn, book_id) SELECT isbn, id FROM " + name);
+                st.executeUpdate("ALTER TABLE book ATTACH PARTITION " + name + " FOR VALUES FROM (" + from
+                        + ") TO (" + to + ")");
+
+                created++;
+                LOG.info("Created book partition {} for {} to {}, {} books moved", name, from, to - 1, moved);
+            }
+
+            conn.commit();
+            return created;
+
+        } catch (SQLException e) {
+            BatchSupport.rollback(conn);
+            throw new DbException("Error adding book partitions: " + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(move);
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+
+    // Helper methods
+
+    /**
+     * Creates the partitioned book table, its partitions, indexes and the
+     * ISBN registry. Does nothing when a book table exists already.
+     */
+    void createTable(Statement st) throws SQLException {
+        if (!DB.isPostgreSql()) {
+            throw new DbException("Partitioned book storage needs PostgreSQL");
+        }
+        if (exists(st, "book")) {
+            if (tableStrategy(st) != strategy) {
+                LOG.warn("The book table exists and is not partitioned by {}; it is left as it is", strategy);
+            }
+            return;
+        }
+
+        for (String sql : tableStatements()) {
+            st.executeUpdate(sql);
+        }
+
+        LOG.info("Created book table partitioned by {}", strategy.name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * The statements {@link #createTable(Statement)} runs, in order.
+     */
+    List<String> tableStatements() {
+        List<String> statements = new ArrayList<>();
+
+        String key = strategy == Strategy.CATEGORY ? "category_id" : "release_year";
+        statements.add("CREATE TABLE book ("
+                + "id SERIAL,"
+                + "title VARCHAR(200) NOT NULL,"
+                + "author VARCHAR(150) NOT NULL,"
+                + "synopsis TEXT,"
+                + "isbn VARCHAR(20) NOT NULL,"
+                + "release_year INTEGER NOT NULL CHECK (release_year >= 1967),"
+                + "category_id INTEGER NOT NULL,"
+                + "PRIMARY KEY (id, " + key + "),"
+                + "FOREIGN KEY (category_id) REFERENCES category(id)"
+                + ") PARTITION BY " + (strategy == Strategy.CATEGORY ? "HASH" : "RANGE") + " (" + key + ")");
+
+        if (strategy == Strategy.CATEGORY) {
+            for (int i = 0; i < hashPartitions; i++) {
+                statements.add("CREATE TABLE book_p" + i + " PARTITION OF book FOR VALUES WITH (MODULUS "
+                        + hashPartitions + ", REMAINDER " + i + ")");
+            }
+        } else {
+            int lastYear = Year.now().getValue() + yearsAhead;
+            for (int from = firstYear(); from <= lastYear; from += yearsPerPartition) {
+                statements.add("CREATE TABLE " + yearPartition(from) + " PARTITION OF book FOR VALUES FROM ("
+                        + from + ") TO (" + (from + yearsPerPartition) + ")");
+            }
+            statements.add("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF book DEFAULT");
+        }
+
+        // Plain index for lookups; uniqueness comes from the registry
+        statements.add("CREATE INDEX IF NOT EXISTS idx_book_isbn ON book (isbn)");
+
+        statements.add("CREATE TABLE IF NOT EXISTS book_isbn ("
+                + "isbn VARCHAR(20) PRIMARY KEY,"
+                + "book_id INTEGER NOT NULL"
+                + ")");
+        // Row movement between partitions runs as a delete and an insert,
+        // so both branches must be safe to repeat
+        statements.add("CREATE OR REPLACE FUNCTION book_isbn_registry() RETURNS trigger LANGUAGE plpgsql AS $$\n"
+                + "BEGIN\n"
+                + "    IF TG_OP <> 'INSERT' THEN\n"
+                + "        DELETE FROM book_isbn WHERE isbn = OLD.isbn AND book_id = OLD.id;\n"
+                + "    END IF;\n"
+                + "    IF TG_OP <> 'DELETE' THEN\n"
+                + "        INSERT INTO book_isbn (isbn, book_id) VALUES (NEW.isbn, NEW.id)\n"
+                + "            ON CONFLICT (isbn) DO UPDATE SET book_id = EXCLUDED.book_id\n"
+                + "            WHERE book_isbn.book_id = EXCLUDED.book_id;\n"
+                + "        IF NOT FOUND THEN\n"
+                + "            RAISE EXCEPTION 'ISBN already exists: %', NEW.isbn USING ERRCODE = 'unique_violation';\n"
+                + "        END IF;\n"
+                + "    END IF;\n"
+                + "    RETURN NULL;\n"
+                + "END\n"
+                + "$$");
+        statements.add("CREATE TRIGGER book_isbn_registry AFTER INSERT OR UPDATE OR DELETE ON book "
+                + "FOR EACH ROW EXECUTE FUNCTION book_isbn_registry()");
+
+        return statements;
+    }
+
+    /**
+     * First year of the first range: the oldest allowed release year
+     * rounded down to a whole partition.
+     */
+    private int firstYear() {
+        return BookDao.MIN_RELEASE_YEAR / yearsPerPartition * yearsPerPartition;
+    }
+
+    static String yearPartition(int from) {
+        return "book_y" + from;
+    }
+
+    private static List<Partition> partitions(Connection conn) throws SQLException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            st = conn.prepareStatement("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i "
+                    + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass('book') ORDER BY c.relname");
+            rs = st.executeQuery();
+            List<Partition> partitions = new ArrayList<>();
+            while (rs.next()) {
+                partitions.add(new Partition(rs.getString(1), rs.getString(2)));
+            }
+            return partitions;
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    private static boolean exists(Statement st, String table) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT to_regclass('" + table + "') IS NOT NULL")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static Strategy tableStrategy(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery(
+                "SELECT partstrat FROM pg_partitioned_table WHERE partrelid = to_regclass('book')")) {
+            if (!rs.next()) {
+                return Strategy.NONE;
+            }
+            return "h".equals(rs.getString(1)) ? Strategy.CATEGORY : Strategy.RELEASE_YEAR;
+        }
+    }
+
+    private static Strategy strategy(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+        case "none":
+            return Strategy.NONE;
+        case "category":
+            return Strategy.CATEGORY;
+        case "release_year":
+            return Strategy.RELEASE_YEAR;
+        default:
+            throw new DbException("Unknown book partitioning: " + value);
+        }
+    }
+
+    private static int intSetting(String name, int defaultValue) {
+        String value = DB.getSetting(name, null);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new DbException("schema." + name + " must be a number: " + value);
+        }
+    }
+}
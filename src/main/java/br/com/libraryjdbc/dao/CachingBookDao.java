@@ -0,0 +1,93 @@
+package br.com.libraryjdbc.dao;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import br.com.libraryjdbc.cache.ModelCodecs;
+import br.com.libraryjdbc.cache.QueryCache;
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.model.Book;
+import db.DB;
+
+/**
+ * BookDao whose list queries by category and by author are answered from a
+ * {@link QueryCache}. Writes made through this DAO invalidate the book
+ * results once they commit; writes made elsewhere do through the
+ * {@link br.com.libraryjdbc.feed.ChangeFeed} the cache listens to.
+ */
+public class CachingBookDao extends BookDao {
+
+    /** Books are read joined with their category. */
+    static final Set<ChangeEvent.Entity> BOOK_TABLES = EnumSet.of(ChangeEvent.Entity.BOOK,
+            ChangeEvent.Entity.CATEGORY);
+
+    private final QueryCache cache;
+
+    public CachingBookDao() {
+        this(QueryCache.getDefault());
+    }
+
+    public CachingBookDao(QueryCache cache) {
+        this.cache = cache;
+    }
+
+    public QueryCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public List<Book> findByCategory(Long categoryId) {
+        return cache.get(QueryCache.key("book.findByCategory", categoryId), BOOK_TABLES, ModelCodecs.BOOK_LIST,
+                () -> super.findByCategory(categoryId));
+    }
+
+    @Override
+    public List<Book> findByAuthor(String author) {
+        return cache.get(QueryCache.key("book.findByAuthor", author), BOOK_TABLES, ModelCodecs.BOOK_LIST,
+                () -> super.findByAuthor(author));
+    }
+
+    @Override
+    public Book save(Book book) {
+        try {
+            return super.save(book);
+        } finally {
+            invalidateBooks();
+        }
+    }
+
+    @Override
+    public BatchResult<Book> saveAll(Collection<Book> books) {
+        try {
+            return super.saveAll(books);
+        } finally {
+            invalidateBooks();
+        }
+    }
+
+    @Override
+    public void update(Book book) {
+        try {
+            super.update(book);
+        } finally {
+            invalidateBooks();
+        }
+    }
+
+    @Override
+    public void remove(Long id) {
+        try {
+            super.remove(id);
+        } finally {
+            invalidateBooks();
+        }
+    }
+
+    // Helper methods
+
+    private void invalidateBooks() {
+        DB.afterCommit(() -> cache.invalidate(ChangeEvent.Entity.BOOK));
+    }
+}
@@ -0,0 +1,169 @@
+package br.com.libraryjdbc.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import br.com.libraryjdbc.cache.CategoryCache;
+import br.com.libraryjdbc.cache.ModelCodecs;
+import br.com.libraryjdbc.cache.QueryCache;
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+
+/**
+ * CategoryDao with a read-through cache in front of the id and name
+ * lookups. Writes made through this DAO refresh or evict the affected
+ * entries; changes made elsewhere become visible when entries expire.
+ * Inside {@link DB#inTransaction(java.util.function.Supplier)} the cache
+ * takes what was read or written only once the transaction commits, so a
+ * rollback leaves nothing behind.
+ *
+ * Names the cache knows are rejected by {@link #save(Category)} without a
+ * round trip; the database still has the final say on every other name.
+ *
+ * {@link #findCategoryWithMostBooks()} is answered from a {@link QueryCache}
+ * that writes to either table invalidate.
+ */
+public class CachingCategoryDao extends CategoryDao {
+
+    private static final int DEFAULT_MAX_SIZE = 1000;
+    private static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+
+    private final CategoryCache cache;
+    private final QueryCache queryCache;
+
+    public CachingCategoryDao() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+    }
+
+    public CachingCategoryDao(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, QueryCache.getDefault());
+    }
+
+    public CachingCategoryDao(int maxSize, long ttlMillis, QueryCache queryCache) {
+        this.cache = new CategoryCache(maxSize, ttlMillis);
+        this.queryCache = queryCache;
+    }
+
+    public CategoryCache getCache() {
+        return cache;
+    }
+
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Loads every category into the cache.
+     */
+    public void warmUp() {
+        findAll();
+    }
+
+    @Override
+    public Category findById(Long id) {
+        Category cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        Category category = super.findById(id);
+        if (category != null) {
+            putOnCommit(category);
+        }
+        return category;
+    }
+
+    @Override
+    public List<Category> findAll() {
+        List<Category> categories = super.findAll();
+        if (DB.isInTransaction()) {
+            List<Category> copies = categories.stream().map(CachingCategoryDao::copy).toList();
+            DB.afterCommit(() -> cache.putAll(copies));
+        } else {
+            cache.putAll(categories);
+        }
+        return categories;
+    }
+
+    @Override
+    public Category findCategoryWithMostBooks() {
+        // The ranking reads the per-category book counters too
+        return queryCache.get(QueryCache.key("category.findCategoryWithMostBooks"), CachingBookDao.BOOK_TABLES,
+                ModelCodecs.CATEGORY, super::findCategoryWithMostBooks);
+    }
+
+    @Override
+    public Category save(Category category) {
+        if (category != null && category.getName() != null
+                && Boolean.TRUE.equals(cache.nameExists(category.getName()))) {
+            throw new DbException("Category name already exists: " + category.getName());
+        }
+        Category saved = super.save(category);
+        putOnCommit(saved);
+        invalidateQueries();
+        return saved;
+    }
+
+    @Override
+    public BatchResult<Category> saveAll(Collection<Category> categories) {
+        try {
+            BatchResult<Category> result = super.saveAll(categories);
+            result.getSaved().forEach(this::putOnCommit);
+            return result;
+        } finally {
+            invalidateQueries();
+        }
+    }
+
+    @Override
+    public void update(Category category) {
+        try {
+            cache.evict(category.getId());
+            super.update(category);
+            putOnCommit(category);
+        } catch (RuntimeException e) {
+            cache.evict(category.getId());
+            throw e;
+        } finally {
+            invalidateQueries();
+        }
+    }
+
+    @Override
+    public void remove(Long id) {
+        try {
+            super.remove(id);
+        } finally {
+            cache.evict(id);
+            DB.afterCommit(() -> cache.evict(id));
+            invalidateQueries();
+        }
+    }
+
+    // Helper methods
+
+    /**
+     * Caches {@code category} as it is now, once the current transaction
+     * commits.
+     */
+    private void putOnCommit(Category category) {
+        if (DB.isInTransaction()) {
+            Category copy = copy(category);
+            DB.afterCommit(() -> cache.put(copy));
+        } else {
+            cache.put(category);
+        }
+    }
+
+    private static Category copy(Category category) {
+        Category copy = new Category(category.getId(), category.getName(), category.getDescription());
+        copy.setVersion(category.getVersion());
+        return copy;
+    }
+
+    private void invalidateQueries() {
+        DB.afterCommit(() -> queryCache.invalidate(ChangeEvent.Entity.CATEGORY));
+    }
+}
@@ -6,14 +6,43 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeFeed;
 import br.com.libraryjdbc.model.Category;
 import db.DB;
 import db.DbException;
+import db.OptimisticLockException;
 
 public class CategoryDao {
     
+    private static final Logger LOG = LoggerFactory.getLogger(CategoryDao.class);
+    
+    static final RowMapper<Category> CATEGORY = new RowMapper.Builder<>(Category::new)
+            .column("id", (category, rs, i) -> category.setId(rs.getLong(i)))
+            .column("name", (category, rs, i) -> category.setName(rs.getString(i)))
+            .column("description", (category, rs, i) -> category.setDescription(rs.getString(i)))
+            .column("version", (category, rs, i) -> category.setVersion(rs.getInt(i)))
+            .build();
+    private static final RowMapper<Category> CATEGORY_NAME = CATEGORY.project("id", "name");
+    
+    private static final String SELECT_CATEGORY = "SELECT " + CATEGORY.selectList(null) + " FROM category ";
+    
+    private int batchSize = BatchSupport.DEFAULT_BATCH_SIZE;
+    private int fetchSize = StreamingQuery.DEFAULT_FETCH_SIZE;
+    
     public void createTable() {
         Connection conn = null;
         Statement st = null;
@@ -22,42 +51,44 @@ public class CategoryDao {
             conn = DB.getConnection();
             st = conn.createStatement();
             
-            st.executeUpdate("CREATE TABLE IF NOT EXISTS category ("
-                    + "id SERIAL PRIMARY KEY,"
-                    + "name VARCHAR(100) NOT NULL UNIQUE,"
-                    + "description TEXT NOT NULL"
-                    + ")");
+            createTable(st);
             
-            System.out.println("Category table created or already exists!");
+            LOG.debug("Category table created or already exists");
             
         } catch (Exception e) {
             throw new DbException(e.getMessage());
         } finally {
             DB.closeStatement(st);
+            DB.closeConnection(conn);
         }
     }
-
+    
+    /**
+     * Inserts a category with a single statement: the unique indexes on the
+     * name decide whether it already exists, so concurrent saves of the
+     * same name cannot both succeed.
+     */
     public Category save(Category category) {
+        ChangeFeed feed = ChangeFeed.getDefault();
         Connection conn = null;
         PreparedStatement st = null;
         ResultSet rs = null;
         
         try {
-            conn = DB.getConnection();
-            
-            if (category.getName() == null || category.getName().trim().isEmpty()) {
-                throw new DbException("Category name cannot be empty");
+            String error = validationError(category);
+            if (error != null) {
+                throw new DbException(error);
             }
             
-            if (category.getDescription() == null || category.getDescription().trim().isEmpty()) {
-                throw new DbException("Category description cannot be empty");
-            }
+            conn = DB.getConnection();
             
-            if (categoryNameExists(category.getName())) {
-                throw new DbException("Category name already exists: " + category.getName());
+            // Only the outbox row needs a transaction around the insert
+            boolean outbox = feed.isOutboxEnabled();
+            if (outbox) {
+                conn.setAutoCommit(false);
             }
             
-            String sql = "INSERT INTO category (name, description) VALUES (?, ?)";
+            String sql = "INSERT INTO category (name, description) VALUES (?, ?) ON CONFLICT DO NOTHING";
             
             st = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             
@@ -66,28 +97,122 @@ public class CategoryDao {
             
             int rowsAffected = st.executeUpdate();
             
-            if (rowsAffected > 0) {
-                rs = st.getGeneratedKeys();
-                if (rs.next()) {
-                    long id = rs.getLong(1);
-                    category.setId(id);
-                    System.out.println("✅ Category inserted successfully! ID: " + id);
+            if (rowsAffected == 0) {
+                throw new DbException("Category name already exists: " + category.getName());
+            }
+            
+            rs = st.getGeneratedKeys();
+            if (rs.next()) {
+                long id = rs.getLong(1);
+                category.setId(id);
+                category.setVersion(0);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Category inserted with id {}", id);
                 }
-            } else {
-                throw new DbException("Unexpected error! No rows were affected.");
             }
             
+            List<ChangeEvent> events = feed.record(conn, ChangeEvent.Entity.CATEGORY, ChangeEvent.Type.INSERT,
+                    category.getId());
+            if (outbox) {
+                conn.commit();
+            }
+            feed.publish(events);
+            
             return category;
             
         } catch (SQLException e) {
+            BatchSupport.rollback(conn);
             throw new DbException("Error inserting category: " + e.getMessage());
         } finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            DB.closeConnection(conn);
         }
     }
-
+    
+    /**
+     * Saves many categories at once. Categories are validated in memory,
+     * names that already exist are found with one query per chunk, and the
+     * inserts go out as JDBC batches of {@link #setBatchSize(int)} rows, each
+     * chunk committed in its own transaction. Generated IDs are set on the
+     * saved categories; rejected ones are reported with their position.
+     */
+    public BatchResult<Category> saveAll(Collection<Category> categories) {
+        BatchResult<Category> result = new BatchResult<>();
+        List<BatchSupport.Row<Category>> valid = new ArrayList<>();
+        Set<String> namesInBatch = new HashSet<>();
+        
+        int index = 0;
+        for (Category category : categories) {
+            String error = validationError(category);
+            if (error == null && !namesInBatch.add(lowerName(category))) {
+                error = "Duplicate category name in batch: " + category.getName();
+            }
+            
+            if (error != null) {
+                result.addError(index, category, error);
+            } else {
+                valid.add(new BatchSupport.Row<>(index, category));
+            }
+            index++;
+        }
+        
+        Connection conn = null;
+        
+        try {
+            conn = DB.getConnection();
+            
+            for (List<BatchSupport.Row<Category>> chunk : BatchSupport.chunks(valid, batchSize)) {
+                List<String> names = new ArrayList<>(chunk.size());
+                chunk.forEach(row -> names.add(lowerName(row.item)));
+                
+                Set<String> existing = BatchSupport.findExisting(conn,
+                        "SELECT LOWER(name) FROM category WHERE LOWER(name) IN ", names);
+                
+                List<BatchSupport.Row<Category>> toInsert = new ArrayList<>(chunk.size());
+                for (BatchSupport.Row<Category> row : chunk) {
+                    if (existing.contains(lowerName(row.item))) {
+                        result.addError(row.index, row.item, "Category name already exists: " + row.item.getName());
+                    } else {
+                        toInsert.add(row);
+                    }
+                }
+                
+                BatchSupport.insertChunk(conn, ChangeEvent.Entity.CATEGORY,
+                        "INSERT INTO category (name, description) VALUES (?, ?)", toInsert, (st, category) -> {
+                            st.setString(1, category.getName());
+                            st.setString(2, category.getDescription());
+                        }, (category, id) -> {
+                            category.setId(id);
+                            category.setVersion(0);
+                        }, result);
+            }
+            
+            return result;
+            
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+    
+    /**
+     * Number of rows sent per JDBC batch (and per transaction) by
+     * {@link #saveAll(Collection)}.
+     */
+    public void setBatchSize(int batchSize) {
+        BatchSupport.checkBatchSize(batchSize);
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Overwrites the name and description of a category. A category carrying
+     * the version it was read at is only written if the row still has that
+     * version, and otherwise fails with an {@link OptimisticLockException};
+     * on success its version moves on. Without a version the row is
+     * overwritten whatever its state.
+     */
     public void update(Category category) {
+        ChangeFeed feed = ChangeFeed.getDefault();
         Connection conn = null;
         PreparedStatement st = null;
         
@@ -98,201 +223,370 @@ public class CategoryDao {
                 throw new DbException("Category ID cannot be null for update");
             }
             
-            if (category.getName() == null || category.getName().trim().isEmpty()) {
-                throw new DbException("Category name cannot be empty");
+            String error = validationError(category);
+            if (error != null) {
+                throw new DbException(error);
             }
             
-            if (category.getDescription() == null || category.getDescription().trim().isEmpty()) {
-                throw new DbException("Category description cannot be empty");
+            boolean outbox = feed.isOutboxEnabled();
+            if (outbox) {
+                conn.setAutoCommit(false);
             }
             
-            String sql = "UPDATE category SET name = ?, description = ? WHERE id = ?";
+            Integer version = category.getVersion();
+            String sql = "UPDATE category SET name = ?, description = ?, version = version + 1 WHERE id = ?"
+                    + (version != null ? " AND version = ?" : "");
             
             st = conn.prepareStatement(sql);
             
             st.setString(1, category.getName());
             st.setString(2, category.getDescription());
             st.setLong(3, category.getId());
+            if (version != null) {
+                st.setInt(4, version);
+            }
             
             int rowsAffected = st.executeUpdate();
             
             if (rowsAffected == 0) {
+                if (version != null && categoryExists(conn, category.getId())) {
+                    BatchSupport.rollback(conn);
+                    throw new OptimisticLockException("Category with ID " + category.getId()
+                            + " was changed after version " + version + " was read.");
+                }
                 throw new DbException("Category with ID " + category.getId() + " not found.");
             }
             
+            List<ChangeEvent> events = feed.record(conn, ChangeEvent.Entity.CATEGORY, ChangeEvent.Type.UPDATE,
+                    category.getId());
+            if (outbox) {
+                conn.commit();
+            }
+            feed.publish(events);
+            if (version != null) {
+                category.setVersion(version + 1);
+            }
+            
         } catch (SQLException e) {
+            BatchSupport.rollback(conn);
             throw new DbException("Error updating category: " + e.getMessage());
         } finally {
             DB.closeStatement(st);
+            DB.closeConnection(conn);
         }
     }
-
+    
+    /**
+     * Deletes a category that has no books with a single statement. Only
+     * when nothing was deleted does a second query tell a missing category
+     * from one still in use.
+     */
     public void remove(Long id) {
+        ChangeFeed feed = ChangeFeed.getDefault();
         Connection conn = null;
         PreparedStatement st = null;
         
         try {
             conn = DB.getConnection();
             
-            if (categoryHasBooks(id)) {
-                throw new DbException("Cannot remove category that has associated books");
+            boolean outbox = feed.isOutboxEnabled();
+            if (outbox) {
+                conn.setAutoCommit(false);
             }
             
-            String sql = "DELETE FROM category WHERE id = ?";
+            String sql = "DELETE FROM category WHERE id = ? "
+                    + "AND NOT EXISTS (SELECT 1 FROM book WHERE category_id = ?)";
             
             st = conn.prepareStatement(sql);
             
             st.setLong(1, id);
+            st.setLong(2, id);
             
             int rowsAffected = st.executeUpdate();
             
             if (rowsAffected == 0) {
+                if (categoryHasBooks(conn, id)) {
+                    throw new DbException("Cannot remove category that has associated books");
+                }
                 throw new DbException("Category with ID " + id + " not found.");
             }
             
+            List<ChangeEvent> events = feed.record(conn, ChangeEvent.Entity.CATEGORY, ChangeEvent.Type.DELETE, id);
+            if (outbox) {
+                conn.commit();
+            }
+            feed.publish(events);
+            
         } catch (SQLException e) {
+            BatchSupport.rollback(conn);
             throw new DbException("Error removing category: " + e.getMessage());
         } finally {
             DB.closeStatement(st);
+            DB.closeConnection(conn);
         }
     }
-
+    
     public Category findById(Long id) {
+        return DB.retryRead(() -> readById(id));
+    }
+    
+    /**
+     * Loads the categories with the given IDs in one query, in no
+     * particular order. Missing IDs are skipped.
+     */
+    public List<Category> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return DB.retryRead(() -> readByIds(ids));
+    }
+    
+    public List<Category> findAll() {
+        return findAll(Collectors.toCollection(ArrayList::new));
+    }
+    
+    /**
+     * Reads every category in name order straight into {@code collector},
+     * without building a list first.
+     */
+    public <R> R findAll(Collector<? super Category, ?, R> collector) {
+        String sql = SELECT_CATEGORY + "ORDER BY name";
+        return StreamingQuery.collect(sql, null, CATEGORY.reader(sql), collector, "Error listing categories: ");
+    }
+    
+    /**
+     * Lists every category in name order with only its ID and name; the
+     * description is not selected and is left null.
+     */
+    public List<Category> findAllNames() {
+        return findAllNames(Collectors.toCollection(ArrayList::new));
+    }
+    
+    public <R> R findAllNames(Collector<? super Category, ?, R> collector) {
+        String sql = "SELECT " + CATEGORY_NAME.selectList(null) + " FROM category ORDER BY name";
+        return StreamingQuery.collect(sql, null, CATEGORY_NAME.reader(sql), collector,
+                "Error listing category names: ");
+    }
+    
+    /**
+     * Keyset pagination in name order: returns the categories that come
+     * after {@code after} (or the first page when it is null). Unlike OFFSET
+     * the cost of a page does not grow with its position.
+     */
+    public Page<Category> findPage(Category after, int pageSize) {
+        if (after == null) {
+            String sql = SELECT_CATEGORY + "ORDER BY name, id LIMIT ?";
+            return StreamingQuery.page(sql, st -> st.setInt(1, pageSize + 1), pageSize, CATEGORY.reader(sql));
+        }
+        
+        String sql = SELECT_CATEGORY + "WHERE (name, id) > (?, ?) ORDER BY name, id LIMIT ?";
+        return StreamingQuery.page(sql, st -> {
+            st.setString(1, after.getName());
+            st.setLong(2, after.getId());
+            st.setInt(3, pageSize + 1);
+        }, pageSize, CATEGORY.reader(sql));
+    }
+    
+    /**
+     * Streams every category in name order through a database cursor. The
+     * stream holds a connection and must be closed.
+     */
+    public Stream<Category> stream() {
+        String sql = SELECT_CATEGORY + "ORDER BY name, id";
+        return StreamingQuery.stream(sql, fetchSize, CATEGORY.reader(sql));
+    }
+    
+    public void forEach(Consumer<Category> action) {
+        try (Stream<Category> categories = stream()) {
+            categories.forEach(action);
+        }
+    }
+    
+    /**
+     * Number of rows fetched per round trip by {@link #stream()}.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+    
+    /**
+     * Reads the per-category counters kept by {@link CategoryStatsDao}
+     * instead of counting the book table.
+     */
+    public Category findCategoryWithMostBooks() {
+        return DB.retryRead(this::readCategoryWithMostBooks);
+    }
+    
+    // Helper methods
+    
+    private Category readCategoryWithMostBooks() {
         Connection conn = null;
         PreparedStatement st = null;
         ResultSet rs = null;
         
         try {
-            conn = DB.getConnection();
+            conn = DB.getReadConnection();
             
-            String sql = "SELECT * FROM category WHERE id = ?";
+            String sql = "SELECT " + CATEGORY.selectList("c") + " " +
+                        "FROM category c " +
+                        "LEFT JOIN category_stats s ON s.category_id = c.id " +
+                        "ORDER BY COALESCE(s.book_count, 0) DESC, c.name, c.id " +
+                        "LIMIT 1";
             
             st = conn.prepareStatement(sql);
             
-            st.setLong(1, id);
-            
             rs = st.executeQuery();
             
             if (rs.next()) {
-                return instantiateCategory(rs);
+                return CATEGORY.read(sql, rs);
             }
             
             return null;
             
         } catch (SQLException e) {
-            throw new DbException("Error finding category by ID: " + e.getMessage());
+            throw new DbException("Error finding category with most books: " + e.getMessage(), e);
         } finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            DB.closeConnection(conn);
         }
     }
-
-    public List<Category> findAll() {
+    
+    private Category readById(Long id) {
         Connection conn = null;
         PreparedStatement st = null;
         ResultSet rs = null;
         
         try {
-            conn = DB.getConnection();
+            conn = DB.getReadConnection();
             
-            String sql = "SELECT * FROM category ORDER BY name";
+            String sql = SELECT_CATEGORY + "WHERE id = ?";
             
             st = conn.prepareStatement(sql);
             
-            rs = st.executeQuery();
+            st.setLong(1, id);
             
-            List<Category> categories = new ArrayList<>();
+            rs = st.executeQuery();
             
-            while (rs.next()) {
-                categories.add(instantiateCategory(rs));
+            if (rs.next()) {
+                return CATEGORY.read(sql, rs);
             }
             
-            return categories;
+            return null;
             
         } catch (SQLException e) {
-            throw new DbException("Error listing categories: " + e.getMessage());
+            throw new DbException("Error finding category by ID: " + e.getMessage(), e);
         } finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            DB.closeConnection(conn);
         }
     }
-
-    public Category findCategoryWithMostBooks() {
+    
+    private List<Category> readByIds(Collection<Long> ids) {
         Connection conn = null;
         PreparedStatement st = null;
         ResultSet rs = null;
         
         try {
-            conn = DB.getConnection();
+            conn = DB.getReadConnection();
             
-            String sql = "SELECT c.*, COUNT(b.id) as book_count " +
-                        "FROM category c " +
-                        "LEFT JOIN book b ON c.id = b.category_id " +
-                        "GROUP BY c.id, c.name, c.description " +
-                        "ORDER BY book_count DESC " +
-                        "LIMIT 1";
+            BatchSupport.KeyList keyList = BatchSupport.KeyList.of(conn, "bigint", ids);
+            String sql = SELECT_CATEGORY + "WHERE " + keyList.condition("id");
             
             st = conn.prepareStatement(sql);
             
+            keyList.bind(st, 1);
+            
             rs = st.executeQuery();
             
-            if (rs.next()) {
-                return instantiateCategory(rs);
+            List<Category> categories = new ArrayList<>(ids.size());
+            while (rs.next()) {
+                categories.add(CATEGORY.read(sql, rs));
             }
             
-            return null;
+            return categories;
             
         } catch (SQLException e) {
-            throw new DbException("Error finding category with most books: " + e.getMessage());
+            throw new DbException("Error finding categories by ID: " + e.getMessage(), e);
         } finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
+            DB.closeConnection(conn);
         }
     }
     
-    // Helper methods
+    /**
+     * Creates the category table and its case-insensitive name index.
+     */
+    static void createTable(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS category ("
+                + "id SERIAL PRIMARY KEY,"
+                + "name VARCHAR(100) NOT NULL UNIQUE,"
+                + "description TEXT NOT NULL"
+                + ")");
+        
+        // Names are unique ignoring case, so save() can leave the check
+        // to ON CONFLICT
+        if (DB.isPostgreSql()) {
+            st.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_category_name_lower ON category (LOWER(name))");
+        } else {
+            // H2 cannot index an expression, only a generated column
+            st.executeUpdate("ALTER TABLE category ADD COLUMN IF NOT EXISTS name_key VARCHAR(100) "
+                    + "GENERATED ALWAYS AS (LOWER(name))");
+            st.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_category_name_key ON category (name_key)");
+        }
+        
+        createVersionColumn(st);
+    }
     
-    private Category instantiateCategory(ResultSet rs) throws SQLException {
-        Category category = new Category();
-        category.setId(rs.getLong("id"));
-        category.setName(rs.getString("name"));
-        category.setDescription(rs.getString("description"));
-        return category;
+    /**
+     * Row version checked by {@link #update(Category)}.
+     */
+    private static void createVersionColumn(Statement st) throws SQLException {
+        st.executeUpdate("ALTER TABLE category ADD COLUMN IF NOT EXISTS version INTEGER DEFAULT 0 NOT NULL");
     }
     
-    private boolean categoryNameExists(String name) {
-        Connection conn = null;
+    private String validationError(Category category) {
+        if (category.getName() == null || category.getName().trim().isEmpty()) {
+            return "Category name cannot be empty";
+        }
+        
+        if (category.getDescription() == null || category.getDescription().trim().isEmpty()) {
+            return "Category description cannot be empty";
+        }
+        
+        return null;
+    }
+    
+    private static String lowerName(Category category) {
+        return category.getName().toLowerCase(Locale.ROOT);
+    }
+    
+    private boolean categoryExists(Connection conn, Long id) {
         PreparedStatement st = null;
         ResultSet rs = null;
         
         try {
-            conn = DB.getConnection();
-            String sql = "SELECT COUNT(*) FROM category WHERE LOWER(name) = LOWER(?)";
-            st = conn.prepareStatement(sql);
-            st.setString(1, name);
+            st = conn.prepareStatement("SELECT 1 FROM category WHERE id = ?");
+            st.setLong(1, id);
             
             rs = st.executeQuery();
             
-            if (rs.next() && rs.getInt(1) > 0) {
-                return true;
-            }
-            
-            return false;
+            return rs.next();
         } catch (SQLException e) {
-            throw new DbException("Error checking category name: " + e.getMessage());
+            throw new DbException("Error checking category: " + e.getMessage());
         } finally {
             DB.closeStatement(st);
             DB.closeResultSet(rs);
         }
     }
     
-    private boolean categoryHasBooks(Long categoryId) {
-        Connection conn = null;
+    private boolean categoryHasBooks(Connection conn, Long categoryId) {
         PreparedStatement st = null;
         ResultSet rs = null;
         
         try {
-            conn = DB.getConnection();
             String sql = "SELECT COUNT(*) FROM book WHERE category_id = ?";
             st = conn.prepareStatement(sql);
             st.setLong(1, categoryId);
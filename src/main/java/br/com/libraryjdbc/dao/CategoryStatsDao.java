@@ -0,0 +1,312 @@
+package br.com.libraryjdbc.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import br.com.libraryjdbc.model.CategoryStats;
+import db.DB;
+import db.DbException;
+
+/**
+ * Per-category book counters kept in the category_stats table.
+ *
+ * BookDao adjusts the counter of a category in the same transaction as
+ * every insert, delete or category change of a book, so reading a count or
+ * ranking the categories never has to scan the book table. A category
+ * without a counter row has no books yet; its row is created from the book
+ * table the first time one of its books is written. {@link #rebuild()}
+ * recomputes every counter from scratch when writes bypassed the DAO.
+ */
+public class CategoryStatsDao {
+
+    /**
+     * Creates the counter table, or fills in the counters of categories that
+     * do not have one yet. Needs both the category and the book table.
+     */
+    public void createTable() {
+        Connection conn = null;
+        Statement st = null;
+
+        try {
+            conn = DB.getConnection();
+            st = conn.createStatement();
+
+            createTable(st);
+
+        } catch (SQLException e) {
+            throw new DbException(e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Number of books in the category, read from its counter.
+     */
+    public int countBooks(Long categoryId) {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DB.getConnection();
+
+            st = conn.prepareStatement("SELECT book_count FROM category_stats WHERE category_id = ?");
+            st.setLong(1, categoryId);
+
+            rs = st.executeQuery();
+
+            return rs.next() ? rs.getInt(1) : 0;
+
+        } catch (SQLException e) {
+            throw new DbException("Error counting books of category: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * The {@code limit} categories with the most books, ties broken by name.
+     * Reads one counter per category instead of grouping the book table.
+     */
+    public List<CategoryStats> findTop(int limit) {
+        return DB.retryRead(() -> readTop(limit));
+    }
+
+    /**
+     * Consistency check: IDs of the categories whose counter does not match
+     * the book table. Scans the book table once.
+     */
+    public List<Long> findInconsistentCategories() {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DB.getConnection();
+
+            String sql = "SELECT c.id "
+                    + "FROM category c "
+                    + "LEFT JOIN category_stats s ON s.category_id = c.id "
+                    + "LEFT JOIN (SELECT category_id, COUNT(*) AS book_count FROM book GROUP BY category_id) b "
+                    + "ON b.category_id = c.id "
+                    + "WHERE COALESCE(s.book_count, 0) <> COALESCE(b.book_count, 0) "
+                    + "ORDER BY c.id";
+
+            st = conn.prepareStatement(sql);
+
+            rs = st.executeQuery();
+
+            List<Long> ids = new ArrayList<>();
+
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+
+            return ids;
+
+        } catch (SQLException e) {
+            throw new DbException("Error checking category counters: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Recomputes every counter from the book table in one transaction and
+     * returns the number of categories counted. On PostgreSQL the counter
+     * table is locked meanwhile, so concurrent book writes wait instead of
+     * adjusting counters that are being replaced.
+     */
+    public int rebuild() {
+        Connection conn = null;
+        Statement st = null;
+
+        try {
+            conn = DB.getConnection();
+            conn.setAutoCommit(false);
+            st = conn.createStatement();
+
+            if (DB.isPostgreSql()) {
+                st.execute("LOCK TABLE category_stats IN EXCLUSIVE MODE");
+            }
+
+            st.executeUpdate("DELETE FROM category_stats");
+            int categories = st.executeUpdate("INSERT INTO category_stats (category_id, book_count) "
+                    + "SELECT c.id, COUNT(b.id) FROM category c "
+                    + "LEFT JOIN book b ON b.category_id = c.id "
+                    + "GROUP BY c.id");
+
+            conn.commit();
+
+            return categories;
+
+        } catch (SQLException e) {
+            BatchSupport.rollback(conn);
+            throw new DbException("Error rebuilding category counters: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+
+    // Helper methods
+
+    private List<CategoryStats> readTop(int limit) {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DB.getConnection();
+
+            String sql = "SELECT " + CategoryDao.CATEGORY.selectList("c") + ", "
+                    + "COALESCE(s.book_count, 0) AS book_count "
+                    + "FROM category c "
+                    + "LEFT JOIN category_stats s ON s.category_id = c.id "
+                    + "ORDER BY book_count DESC, c.name, c.id "
+                    + "LIMIT ?";
+
+            st = conn.prepareStatement(sql);
+            st.setInt(1, limit);
+
+            rs = st.executeQuery();
+
+            List<CategoryStats> top = new ArrayList<>();
+            int[] at = null;
+            int bookCount = 0;
+
+            while (rs.next()) {
+                if (at == null) {
+                    at = CategoryDao.CATEGORY.positions(sql, rs);
+                    bookCount = rs.findColumn("book_count");
+                }
+                top.add(new CategoryStats(CategoryDao.CATEGORY.map(rs, at), rs.getInt(bookCount)));
+            }
+
+            return top;
+
+        } catch (SQLException e) {
+            throw new DbException("Error listing categories by book count: " + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+
+    static void createTable(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS category_stats ("
+                + "category_id INTEGER PRIMARY KEY REFERENCES category(id) ON DELETE CASCADE,"
+                + "book_count INTEGER NOT NULL CHECK (book_count >= 0)"
+                + ")");
+
+        st.executeUpdate("INSERT INTO category_stats (category_id, book_count) "
+                + "SELECT c.id, COUNT(b.id) FROM category c "
+                + "LEFT JOIN book b ON b.category_id = c.id "
+                + "WHERE NOT EXISTS (SELECT 1 FROM category_stats s WHERE s.category_id = c.id) "
+                + "GROUP BY c.id");
+    }
+
+    /**
+     * Applies book count changes, in category ID order so that concurrent
+     * writers lock the counter rows in the same order. Must run inside the
+     * caller's transaction, before the book rows are written. Public for
+     * bulk loaders that write the book table outside BookDao.
+     */
+    public static void adjust(Connection conn, Map<Long, Integer> deltas) throws SQLException {
+        adjust(conn, deltas, false);
+    }
+    
+    /**
+     * Like {@link #adjust(Connection, Map)}, for a caller that has already
+     * written the book rows: a new counter is taken from the book table as
+     * it now is.
+     */
+    static void adjustWritten(Connection conn, Map<Long, Integer> deltas) throws SQLException {
+        adjust(conn, deltas, true);
+    }
+    
+    /**
+     * Adds {@code delta} to the counter of a category. Must run inside the
+     * caller's transaction, before the book row is written.
+     */
+    static void adjust(Connection conn, Long categoryId, int delta) throws SQLException {
+        adjust(conn, categoryId, delta, false);
+    }
+
+    private static void adjust(Connection conn, Map<Long, Integer> deltas, boolean written) throws SQLException {
+        for (Map.Entry<Long, Integer> delta : new TreeMap<>(deltas).entrySet()) {
+            if (delta.getValue() != 0) {
+                adjust(conn, delta.getKey(), delta.getValue(), written);
+            }
+        }
+    }
+
+    private static void adjust(Connection conn, Long categoryId, int delta, boolean written) throws SQLException {
+        if (updateCounter(conn, categoryId, delta)) {
+            return;
+        }
+
+        // First write for this category: lock it so concurrent first writers
+        // queue up here instead of racing to insert the counter row. A
+        // missing category is left to the book's foreign key to report.
+        if (!lockCategory(conn, categoryId) || updateCounter(conn, categoryId, delta)) {
+            return;
+        }
+
+        PreparedStatement st = null;
+
+        try {
+            st = conn.prepareStatement("INSERT INTO category_stats (category_id, book_count) "
+                    + "SELECT ?, COUNT(*) + ? FROM book WHERE category_id = ?");
+            st.setLong(1, categoryId);
+            // A book row already written is in the count
+            st.setInt(2, written ? 0 : delta);
+            st.setLong(3, categoryId);
+            st.executeUpdate();
+        } finally {
+            DB.closeStatement(st);
+        }
+    }
+
+    private static boolean updateCounter(Connection conn, Long categoryId, int delta) throws SQLException {
+        PreparedStatement st = null;
+
+        try {
+            st = conn.prepareStatement("UPDATE category_stats SET book_count = book_count + ? WHERE category_id = ?");
+            st.setInt(1, delta);
+            st.setLong(2, categoryId);
+            return st.executeUpdate() > 0;
+        } finally {
+            DB.closeStatement(st);
+        }
+    }
+
+    private static boolean lockCategory(Connection conn, Long categoryId) throws SQLException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            st = conn.prepareStatement("SELECT id FROM category WHERE id = ? FOR UPDATE");
+            st.setLong(1, categoryId);
+            rs = st.executeQuery();
+            return rs.next();
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+}
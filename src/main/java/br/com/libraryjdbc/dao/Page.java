@@ -0,0 +1,40 @@
+package br.com.libraryjdbc.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. The last item of a page is the
+ * cursor for the next one: pass it as {@code after} to get the following
+ * page.
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final boolean hasNext;
+
+    Page(List<T> items, boolean hasNext) {
+        this.items = Collections.unmodifiableList(items);
+        this.hasNext = hasNext;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * Last item of the page, or null if the page is empty.
+     */
+    public T getLast() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "Page [size=" + items.size() + ", hasNext=" + hasNext + "]";
+    }
+}
@@ -0,0 +1,186 @@
+package br.com.libraryjdbc.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import db.DbException;
+
+/**
+ * Maps result set rows to objects by column position.
+ *
+ * A mapper is a list of named columns, each with the code that copies it
+ * into the object. Where each column sits in a query's result is read from
+ * the ResultSetMetaData the first time the query runs and remembered by
+ * SQL text, so rows are read with the indexed getters instead of a lookup
+ * by name per column per row. {@link #project(String...)} derives a mapper
+ * for some of the columns only, for listings that should not select wide
+ * columns they do not show.
+ */
+public final class RowMapper<T> {
+
+    /**
+     * Past this many distinct queries positions are resolved on every run
+     * instead of being remembered.
+     */
+    private static final int MAX_CACHED_QUERIES = 256;
+
+    /**
+     * Copies the value at {@code column} of the current row into
+     * {@code target}.
+     */
+    @FunctionalInterface
+    public interface ColumnReader<T> {
+        void read(T target, ResultSet rs, int column) throws SQLException;
+    }
+
+    private final Supplier<T> factory;
+    private final String[] columns;
+    private final List<ColumnReader<T>> readers;
+    private final Map<String, int[]> positions = new ConcurrentHashMap<>();
+
+    private RowMapper(Supplier<T> factory, String[] columns, List<ColumnReader<T>> readers) {
+        this.factory = factory;
+        this.columns = columns;
+        this.readers = readers;
+    }
+
+    /**
+     * A mapper for the given columns of this one, in the given order.
+     */
+    public RowMapper<T> project(String... names) {
+        List<ColumnReader<T>> projected = new ArrayList<>(names.length);
+        for (String name : names) {
+            int i = Arrays.asList(columns).indexOf(name);
+            if (i < 0) {
+                throw new DbException("Unknown column: " + name);
+            }
+            projected.add(readers.get(i));
+        }
+        return new RowMapper<>(factory, names.clone(), projected);
+    }
+
+    /**
+     * The columns as a select list, qualified with {@code alias} unless it
+     * is null.
+     */
+    public String selectList(String alias) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            if (alias != null) {
+                sb.append(alias).append('.');
+            }
+            sb.append(column);
+        }
+        return sb.toString();
+    }
+
+    public List<String> getColumns() {
+        return Arrays.asList(columns.clone());
+    }
+
+    /**
+     * Maps the current row of {@code rs}, the result of {@code sql}.
+     */
+    public T read(String sql, ResultSet rs) throws SQLException {
+        return map(rs, positions(sql, rs));
+    }
+
+    /**
+     * A reader for the rows of one run of {@code sql}.
+     */
+    StreamingQuery.RowReader<T> reader(String sql) {
+        return new StreamingQuery.RowReader<T>() {
+            private int[] at;
+
+            @Override
+            public T read(ResultSet rs) throws SQLException {
+                if (at == null) {
+                    at = positions(sql, rs);
+                }
+                return map(rs, at);
+            }
+        };
+    }
+
+    /**
+     * Index in the result of {@code sql} of each column, in mapper order.
+     */
+    int[] positions(String sql, ResultSet rs) throws SQLException {
+        int[] at = positions.get(sql);
+        if (at == null) {
+            at = resolve(sql, rs.getMetaData());
+            if (positions.size() < MAX_CACHED_QUERIES) {
+                positions.put(sql, at);
+            }
+        }
+        return at;
+    }
+
+    T map(ResultSet rs, int[] at) throws SQLException {
+        T target = factory.get();
+        for (int i = 0; i < at.length; i++) {
+            readers.get(i).read(target, rs, at[i]);
+        }
+        return target;
+    }
+
+    // Helper methods
+
+    private int[] resolve(String sql, ResultSetMetaData metaData) throws SQLException {
+        // Labels come back upper case from some databases; walking
+        // backwards lets the first of two equal labels win
+        Map<String, Integer> byLabel = new HashMap<>();
+        for (int i = metaData.getColumnCount(); i >= 1; i--) {
+            byLabel.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+
+        int[] at = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Integer index = byLabel.get(columns[i].toLowerCase(Locale.ROOT));
+            if (index == null) {
+                throw new DbException("Column " + columns[i] + " is not selected by: " + sql);
+            }
+            at[i] = index;
+        }
+        return at;
+    }
+
+    /**
+     * Collects the columns of a mapper.
+     */
+    public static final class Builder<T> {
+
+        private final Supplier<T> factory;
+        private final List<String> columns = new ArrayList<>();
+        private final List<ColumnReader<T>> readers = new ArrayList<>();
+
+        public Builder(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        public Builder<T> column(String name, ColumnReader<T> reader) {
+            if (columns.contains(name)) {
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            }
+            columns.add(name);
+            readers.add(reader);
+            return this;
+        }
+
+        public RowMapper<T> build() {
+            return new RowMapper<>(factory, columns.toArray(new String[0]), new ArrayList<>(readers));
+        }
+    }
+}
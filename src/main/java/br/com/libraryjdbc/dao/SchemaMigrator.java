@@ -0,0 +1,321 @@
+package br.com.libraryjdbc.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import db.DB;
+import db.DbException;
+
+/**
+ * Brings the schema up to date once, instead of every start running the
+ * DDL of every DAO.
+ *
+ * Applied versions are recorded in schema_version. When the database is
+ * already at {@link #getLatestVersion()}, {@link #migrate()} costs one
+ * query and runs no DDL. Otherwise the missing versions are applied in
+ * order, each recorded as soon as it succeeds. Every migration is written
+ * with IF NOT EXISTS, so a database created by the DAOs' createTable()
+ * before versions were recorded is simply stamped, and two processes
+ * migrating at once only repeat harmless statements.
+ *
+ * Each version carries its own DDL, as it was when the version was
+ * released, rather than calling the DAOs' createTable(), which follows
+ * the current schema. New schema changes are appended as new versions;
+ * released versions are never edited.
+ */
+public class SchemaMigrator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /**
+     * One schema change.
+     */
+    interface Step {
+        void apply(Statement st) throws SQLException;
+    }
+
+    private static final class Migration {
+
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "category table", SchemaMigrator::createCategoryTable),
+            new Migration(2, "book and category_stats tables", SchemaMigrator::createBookTables),
+            new Migration(3, "book release year index", SchemaMigrator::createReleaseYearIndex),
+            new Migration(4, "category and book versions", SchemaMigrator::addVersionColumns));
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * The highest version recorded, or 0 for a database never migrated.
+     */
+    public int getCurrentVersion() {
+        Connection conn = null;
+
+        try {
+            conn = DB.getConnection();
+            return currentVersion(conn);
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Applies the versions the database is missing and returns how many
+     * were applied.
+     */
+    public int migrate() {
+        Connection conn = null;
+        Statement st = null;
+
+        try {
+            conn = DB.getConnection();
+
+            int current = currentVersion(conn);
+            if (current >= getLatestVersion()) {
+                return 0;
+            }
+
+            st = conn.createStatement();
+            if (current == 0) {
+                st.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INTEGER PRIMARY KEY,"
+                        + "description VARCHAR(200) NOT NULL,"
+                        + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+                        + ")");
+            }
+
+            int applied = 0;
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                migration.step.apply(st);
+                record(conn, migration);
+                applied++;
+                LOG.info("Applied schema version {}: {}", migration.version, migration.description);
+            }
+            return applied;
+
+        } catch (SQLException e) {
+            throw new DbException("Error migrating schema: " + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+
+    // Migrations
+
+    private static void createCategoryTable(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS category ("
+                + "id SERIAL PRIMARY KEY,"
+                + "name VARCHAR(100) NOT NULL UNIQUE,"
+                + "description TEXT NOT NULL"
+                + ")");
+        if (DB.isPostgreSql()) {
+            st.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_category_name_lower ON category (LOWER(name))");
+        } else {
+            st.executeUpdate("ALTER TABLE category ADD COLUMN IF NOT EXISTS name_key VARCHAR(100) "
+                    + "GENERATED ALWAYS AS (LOWER(name))");
+            st.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_category_name_key ON category (name_key)");
+        }
+    }
+
+    /**
+     * A partitioned table is a choice made when the table is created, so it
+     * is made here, from the settings of {@link BookPartitions}; it has the
+     * same columns as the plain table below.
+     */
+    private static void createBookTables(Statement st) throws SQLException {
+        BookPartitions partitions = new BookPartitions();
+        if (partitions.getStrategy() != BookPartitions.Strategy.NONE) {
+            if (!DB.isPostgreSql()) {
+                throw new DbException("Partitioned book storage needs PostgreSQL");
+            }
+            if (!bookTableExists(st)) {
+                for (String sql : partitionedBookTable(partitions)) {
+                    st.executeUpdate(sql);
+                }
+            }
+        }
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS book ("
+                + "id SERIAL PRIMARY KEY,"
+                + "title VARCHAR(200) NOT NULL,"
+                + "author VARCHAR(150) NOT NULL,"
+                + "synopsis TEXT,"
+                + "isbn VARCHAR(20) NOT NULL UNIQUE,"
+                + "release_year INTEGER NOT NULL CHECK (release_year >= 1967),"
+                + "category_id INTEGER NOT NULL,"
+                + "FOREIGN KEY (category_id) REFERENCES category(id)"
+                + ")");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_category_id ON book (category_id)");
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_title_id ON book (title, id)");
+        if (DB.isPostgreSql()) {
+            try {
+                st.executeUpdate("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+                st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_author_trgm ON book "
+                        + "USING gin (LOWER(author) gin_trgm_ops)");
+            } catch (SQLException e) {
+                LOG.warn("pg_trgm not available, author search will not use a trigram index: {}", e.getMessage());
+                st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_author_lower ON book "
+                        + "(LOWER(author) text_pattern_ops)");
+            }
+        } else {
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_author ON book (author)");
+        }
+
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS category_stats ("
+                + "category_id INTEGER PRIMARY KEY REFERENCES category(id) ON DELETE CASCADE,"
+                + "book_count INTEGER NOT NULL CHECK (book_count >= 0)"
+                + ")");
+        st.executeUpdate("INSERT INTO category_stats (category_id, book_count) "
+                + "SELECT c.id, COUNT(b.id) FROM category c "
+                + "LEFT JOIN book b ON b.category_id = c.id "
+                + "WHERE NOT EXISTS (SELECT 1 FROM category_stats s WHERE s.category_id = c.id) "
+                + "GROUP BY c.id");
+    }
+
+    /**
+     * The partitioned book table of version 2, for the strategy and sizes
+     * of {@code partitions}.
+     */
+    static List<String> partitionedBookTable(BookPartitions partitions) {
+        List<String> statements = new ArrayList<>();
+
+        boolean byCategory = partitions.getStrategy() == BookPartitions.Strategy.CATEGORY;
+        String key = byCategory ? "category_id" : "release_year";
+        statements.add("CREATE TABLE book ("
+                + "id SERIAL,"
+                + "title VARCHAR(200) NOT NULL,"
+                + "author VARCHAR(150) NOT NULL,"
+                + "synopsis TEXT,"
+                + "isbn VARCHAR(20) NOT NULL,"
+                + "release_year INTEGER NOT NULL CHECK (release_year >= 1967),"
+                + "category_id INTEGER NOT NULL,"
+                + "PRIMARY KEY (id, " + key + "),"
+                + "FOREIGN KEY (category_id) REFERENCES category(id)"
+                + ") PARTITION BY " + (byCategory ? "HASH" : "RANGE") + " (" + key + ")");
+
+        if (byCategory) {
+            int modulus = partitions.getHashPartitions();
+            for (int i = 0; i < modulus; i++) {
+                statements.add("CREATE TABLE book_p" + i + " PARTITION OF book FOR VALUES WITH (MODULUS "
+                        + modulus + ", REMAINDER " + i + ")");
+            }
+        } else {
+            int years = partitions.getYearsPerPartition();
+            int lastYear = Year.now().getValue() + partitions.getYearsAhead();
+            for (int from = 1967 / years * years; from <= lastYear; from += years) {
+                statements.add("CREATE TABLE book_y" + from + " PARTITION OF book FOR VALUES FROM ("
+                        + from + ") TO (" + (from + years) + ")");
+            }
+            statements.add("CREATE TABLE book_y_default PARTITION OF book DEFAULT");
+        }
+
+        statements.add("CREATE INDEX IF NOT EXISTS idx_book_isbn ON book (isbn)");
+        statements.add("CREATE TABLE IF NOT EXISTS book_isbn ("
+                + "isbn VARCHAR(20) PRIMARY KEY,"
+                + "book_id INTEGER NOT NULL"
+                + ")");
+        statements.add("CREATE OR REPLACE FUNCTION book_isbn_registry() RETURNS trigger LANGUAGE plpgsql AS $$\n"
+                + "BEGIN\n"
+                + "    IF TG_OP <> 'INSERT' THEN\n"
+                + "        DELETE FROM book_isbn WHERE isbn = OLD.isbn AND book_id = OLD.id;\n"
+                + "    END IF;\n"
+                + "    IF TG_OP <> 'DELETE' THEN\n"
+                + "        INSERT INTO book_isbn (isbn, book_id) VALUES (NEW.isbn, NEW.id)\n"
+                + "            ON CONFLICT (isbn) DO UPDATE SET book_id = EXCLUDED.book_id\n"
+                + "            WHERE book_isbn.book_id = EXCLUDED.book_id;\n"
+                + "        IF NOT FOUND THEN\n"
+                + "            RAISE EXCEPTION 'ISBN already exists: %', NEW.isbn USING ERRCODE = 'unique_violation';\n"
+                + "        END IF;\n"
+                + "    END IF;\n"
+                + "    RETURN NULL;\n"
+                + "END\n"
+                + "$$");
+        statements.add("CREATE TRIGGER book_isbn_registry AFTER INSERT OR UPDATE OR DELETE ON book "
+                + "FOR EACH ROW EXECUTE FUNCTION book_isbn_registry()");
+
+        return statements;
+    }
+
+    private static void createReleaseYearIndex(Statement st) throws SQLException {
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_release_year ON book (release_year)");
+    }
+
+    private static void addVersionColumns(Statement st) throws SQLException {
+        st.executeUpdate("ALTER TABLE category ADD COLUMN IF NOT EXISTS version INTEGER DEFAULT 0 NOT NULL");
+        st.executeUpdate("ALTER TABLE book ADD COLUMN IF NOT EXISTS version INTEGER DEFAULT 0 NOT NULL");
+    }
+
+    // Helper methods
+
+    private static int currentVersion(Connection conn) {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            st = conn.prepareStatement("SELECT MAX(version) FROM schema_version");
+            rs = st.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            // Looking the table up first would cost a catalog query on
+            // every start; a database without it was never migrated
+            if (isUndefinedTable(e)) {
+                return 0;
+            }
+            throw new DbException("Error reading schema version: " + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    private static boolean bookTableExists(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT to_regclass('book') IS NOT NULL")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static boolean isUndefinedTable(SQLException e) {
+        // PostgreSQL reports 42P01; H2 42S02, or 42S04 in compatibility modes
+        String state = e.getSQLState();
+        return "42P01".equals(state) || "42S02".equals(state) || "42S04".equals(state);
+    }
+
+    private static void record(Connection conn, Migration migration) throws SQLException {
+        PreparedStatement st = null;
+
+        try {
+            // Another process may have recorded it first
+            st = conn.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?) "
+                    + "ON CONFLICT DO NOTHING");
+            st.setInt(1, migration.version);
+            st.setString(2, migration.description);
+            st.executeUpdate();
+        } finally {
+            DB.closeStatement(st);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package br.com.libraryjdbc.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import db.DB;
+import db.DbException;
+
+/**
+ * Query plumbing for listings that must not hold the whole table in memory:
+ * keyset pages, cursor-backed streams and results mapped straight into a
+ * collector.
+ */
+final class StreamingQuery {
+
+    static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private StreamingQuery() {
+    }
+
+    /**
+     * Builds an object from the current row of a result set.
+     */
+    interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Sets the query parameters.
+     */
+    interface Binder {
+        void bind(PreparedStatement st) throws SQLException;
+    }
+
+    /**
+     * Runs a query that selects at most {@code pageSize + 1} rows and turns
+     * it into a page; the extra row only tells whether a next page exists.
+     * Pages may be read from a replica, and a page is read again if its
+     * connection fails.
+     */
+    static <T> Page<T> page(String sql, Binder binder, int pageSize, RowReader<T> reader) {
+        if (pageSize < 1) {
+            throw new DbException("Page size must be at least 1");
+        }
+        return DB.retryRead(() -> pageOnce(sql, binder, pageSize, reader));
+    }
+
+    /**
+     * Runs a query and accumulates its rows into {@code collector} as they
+     * are read, without an intermediate list. The query may be read from a
+     * replica, and is run again if its connection fails.
+     */
+    static <T, A, R> R collect(String sql, Binder binder, RowReader<T> reader,
+            Collector<? super T, A, R> collector, String errorMessage) {
+        return DB.retryRead(() -> collectOnce(sql, binder, reader, collector, errorMessage));
+    }
+
+    /**
+     * Streams the rows of a query. Auto-commit is turned off and a fetch
+     * size is set, which makes the PostgreSQL driver read through a
+     * server-side cursor {@code fetchSize} rows at a time instead of
+     * buffering the whole result. The stream holds a pooled connection
+     * until it is closed, so callers must use try-with-resources.
+     */
+    static <T> Stream<T> stream(String sql, int fetchSize, RowReader<T> reader) {
+        return stream(DB.getConnection(), sql, fetchSize, reader);
+    }
+
+    /**
+     * Same as {@link #stream(String, int, RowReader)}, but on a read
+     * connection: full scans that can lag behind the primary are served by
+     * a replica when one is configured. A cursor cannot resume after its
+     * connection fails, so the stream is not retried.
+     */
+    static <T> Stream<T> readStream(String sql, int fetchSize, RowReader<T> reader) {
+        return stream(DB.getReadConnection(), sql, fetchSize, reader);
+    }
+
+    private static <T> Stream<T> stream(Connection conn, String sql, int fetchSize, RowReader<T> reader) {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            st.setFetchSize(fetchSize);
+            rs = st.executeQuery();
+        } catch (SQLException e) {
+            close(rs, st, conn);
+            throw new DbException("Error opening cursor: " + e.getMessage(), e);
+        }
+
+        final PreparedStatement statement = st;
+        final ResultSet resultSet = rs;
+
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(reader.read(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DbException("Error reading row: " + e.getMessage());
+                }
+            }
+        };
+
+        // The pool rolls the read-only transaction back and restores
+        // auto-commit when the connection is returned
+        return StreamSupport.stream(rows, false).onClose(() -> close(resultSet, statement, conn));
+    }
+
+    private static <T> Page<T> pageOnce(String sql, Binder binder, int pageSize, RowReader<T> reader) {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DB.getReadConnection();
+            st = conn.prepareStatement(sql);
+            binder.bind(st);
+            rs = st.executeQuery();
+
+            List<T> items = new ArrayList<>(pageSize);
+            boolean hasNext = false;
+            while (rs.next()) {
+                if (items.size() == pageSize) {
+                    hasNext = true;
+                    break;
+                }
+                items.add(reader.read(rs));
+            }
+            return new Page<>(items, hasNext);
+
+        } catch (SQLException e) {
+            throw new DbException("Error reading page: " + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+
+    private static <T, A, R> R collectOnce(String sql, Binder binder, RowReader<T> reader,
+            Collector<? super T, A, R> collector, String errorMessage) {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DB.getReadConnection();
+            st = conn.prepareStatement(sql);
+            if (binder != null) {
+                binder.bind(st);
+            }
+            rs = st.executeQuery();
+
+            A container = collector.supplier().get();
+            BiConsumer<A, ? super T> accumulator = collector.accumulator();
+            while (rs.next()) {
+                accumulator.accept(container, reader.read(rs));
+            }
+            return collector.finisher().apply(container);
+
+        } catch (SQLException e) {
+            throw new DbException(errorMessage + e.getMessage(), e);
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+
+    private static void close(ResultSet rs, PreparedStatement st, Connection conn) {
+        try {
+            DB.closeResultSet(rs);
+            DB.closeStatement(st);
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+}
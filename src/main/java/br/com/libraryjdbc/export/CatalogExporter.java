@@ -0,0 +1,52 @@
+package br.com.libraryjdbc.export;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import db.DbException;
+
+/**
+ * Exports the catalog to a {@link CatalogFile}, for services that serve
+ * lookups from the file instead of the database.
+ *
+ * Books are read through a database cursor and their columns spilled to
+ * disk as they arrive, so memory use depends on the number of distinct
+ * authors and categories, not on the number of books. The file is written
+ * under a temporary name and moved over the target once complete.
+ */
+public class CatalogExporter {
+
+    private final BookDao bookDao;
+    private final CategoryDao categoryDao;
+
+    public CatalogExporter() {
+        this(new BookDao(), new CategoryDao());
+    }
+
+    public CatalogExporter(BookDao bookDao, CategoryDao categoryDao) {
+        this.bookDao = bookDao;
+        this.categoryDao = categoryDao;
+    }
+
+    public ExportReport export(Path target) {
+        long start = System.nanoTime();
+        Path file = target.toAbsolutePath();
+
+        try (CatalogWriter writer = new CatalogWriter(file.getParent())) {
+            // Each book brings its joined category, so every category a book
+            // refers to is in the file even if deleted before the second pass,
+            // which adds the categories without books and refreshes the rest
+            bookDao.forEach(writer::addBook);
+            categoryDao.forEach(writer::addCategory);
+            long bytes = writer.write(file);
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            return new ExportReport(writer.getCategoryCount(), writer.getBookCount(), writer.getAuthorCount(), bytes,
+                    elapsedMillis, file);
+        } catch (IOException e) {
+            throw new DbException("Error exporting catalog: " + e.getMessage(), e);
+        }
+    }
+}
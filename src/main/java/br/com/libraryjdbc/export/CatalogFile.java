@@ -0,0 +1,259 @@
+package br.com.libraryjdbc.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DbException;
+
+/**
+ * Read-only view of a catalog file written by {@link CatalogExporter},
+ * memory-mapped so that opening it reads nothing and lookups touch only
+ * the pages they need.
+ *
+ * The file is columnar. After a fixed header (magic, version, the
+ * category, book and author counts, and the offset of every
+ * {@link Section}) each attribute is stored as its own section:
+ * <ul>
+ * <li>numbers as big-endian arrays, one entry per row;</li>
+ * <li>strings as {@code count + 1} int offsets into the UTF-8 bytes that
+ * follow them, the end offset of a null string having {@link #NULL} set;</li>
+ * <li>authors and categories once each, books holding their dictionary
+ * code;</li>
+ * <li>books by id and by ISBN, and categories by id, through open-addressing
+ * tables of {@code row + 1} (0 for an empty slot).</li>
+ * </ul>
+ * Books are in title order, as {@link br.com.libraryjdbc.dao.BookDao#stream()}
+ * returns them. Sections start on 8-byte boundaries and the whole file must
+ * fit in one mapping, so it is limited to 2 GB.
+ *
+ * Lookups decode only the row they return and are safe from any number of
+ * threads. Every call returns new objects. The mapping is released when the
+ * instance is garbage collected; replace a file by moving a new one over it
+ * rather than rewriting it in place.
+ */
+public final class CatalogFile {
+
+    static final int MAGIC = 0x4C434154; // "LCAT"
+    static final int VERSION = 1;
+    /** Set on the end offset of a null string. */
+    static final int NULL = 0x80000000;
+    /** Marks a book without a release year. */
+    static final int NO_YEAR = Integer.MIN_VALUE;
+
+    /**
+     * The sections of the file, in file order.
+     */
+    enum Section {
+        CATEGORY_ID, CATEGORY_NAME, CATEGORY_DESCRIPTION, CATEGORY_TABLE, AUTHOR, BOOK_ID, BOOK_TITLE, BOOK_SYNOPSIS,
+        BOOK_ISBN, BOOK_YEAR, BOOK_AUTHOR, BOOK_CATEGORY, BOOK_ID_TABLE, BOOK_ISBN_TABLE
+    }
+
+    /** Magic, version, three counts and a reserved int, then the section offsets. */
+    static final int HEADER_SIZE = 24 + 8 * Section.values().length;
+
+    private final ByteBuffer buffer;
+    private final int categoryCount;
+    private final int bookCount;
+    private final int authorCount;
+    private final int[] sections = new int[Section.values().length];
+    private final int categoryMask;
+    private final int bookMask;
+
+    private CatalogFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new DbException("Not a catalog file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new DbException("Unsupported catalog file version: " + buffer.getInt(4));
+        }
+        categoryCount = buffer.getInt(8);
+        bookCount = buffer.getInt(12);
+        authorCount = buffer.getInt(16);
+        for (Section section : Section.values()) {
+            sections[section.ordinal()] = (int) buffer.getLong(24 + 8 * section.ordinal());
+        }
+        categoryMask = tableCapacity(categoryCount) - 1;
+        bookMask = tableCapacity(bookCount) - 1;
+    }
+
+    public static CatalogFile open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new DbException("Catalog file larger than 2 GB: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CatalogFile(buffer);
+        } catch (IOException e) {
+            throw new DbException("Error opening catalog file: " + e.getMessage(), e);
+        }
+    }
+
+    public int getCategoryCount() {
+        return categoryCount;
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    /**
+     * Distinct author names in the file.
+     */
+    public int getAuthorCount() {
+        return authorCount;
+    }
+
+    public Book findBookById(long id) {
+        int row = bookRow(id);
+        return row < 0 ? null : getBook(row);
+    }
+
+    public Book findBookByIsbn(String isbn) {
+        byte[] key = isbn.getBytes(StandardCharsets.UTF_8);
+        int table = sections[Section.BOOK_ISBN_TABLE.ordinal()];
+        int slot = hash(ByteBuffer.wrap(key), 0, key.length) & bookMask;
+
+        while (true) {
+            int entry = buffer.getInt(table + 4 * slot);
+            if (entry == 0) {
+                return null;
+            }
+            if (stringEquals(Section.BOOK_ISBN, bookCount, entry - 1, key)) {
+                return getBook(entry - 1);
+            }
+            slot = (slot + 1) & bookMask;
+        }
+    }
+
+    public Category findCategoryById(long id) {
+        int row = lookup(Section.CATEGORY_TABLE, Section.CATEGORY_ID, categoryMask, id);
+        return row < 0 ? null : getCategory(row);
+    }
+
+    /**
+     * Book at {@code row}, counting from 0 in title order.
+     */
+    public Book getBook(int row) {
+        if (row < 0 || row >= bookCount) {
+            throw new IndexOutOfBoundsException("Book row " + row + " of " + bookCount);
+        }
+        Book book = new Book();
+        book.setId(longAt(Section.BOOK_ID, row));
+        book.setTitle(string(Section.BOOK_TITLE, bookCount, row));
+        book.setAuthor(string(Section.AUTHOR, authorCount, intAt(Section.BOOK_AUTHOR, row)));
+        book.setSynopsis(string(Section.BOOK_SYNOPSIS, bookCount, row));
+        book.setIsbn(string(Section.BOOK_ISBN, bookCount, row));
+        int year = intAt(Section.BOOK_YEAR, row);
+        book.setReleaseYear(year == NO_YEAR ? null : year);
+        book.setCategory(getCategory(intAt(Section.BOOK_CATEGORY, row)));
+        return book;
+    }
+
+    public Category getCategory(int row) {
+        if (row < 0 || row >= categoryCount) {
+            throw new IndexOutOfBoundsException("Category row " + row + " of " + categoryCount);
+        }
+        return new Category(longAt(Section.CATEGORY_ID, row),
+                string(Section.CATEGORY_NAME, categoryCount, row),
+                string(Section.CATEGORY_DESCRIPTION, categoryCount, row));
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogFile [categories=" + categoryCount + ", books=" + bookCount + ", authors=" + authorCount
+                + ", bytes=" + buffer.capacity() + "]";
+    }
+
+    // Format helpers shared with CatalogWriter
+
+    /**
+     * Slots of a lookup table for {@code count} rows: a power of two at
+     * least twice the count, so probes stay short.
+     */
+    static int tableCapacity(int count) {
+        return Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1;
+    }
+
+    static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * FNV-1a over {@code bytes[from, to)}, so strings hash the same from the
+     * file as from a caller's key without being decoded.
+     */
+    static int hash(ByteBuffer bytes, int from, int to) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (bytes.get(i) & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // Helper methods
+
+    private int bookRow(long id) {
+        return lookup(Section.BOOK_ID_TABLE, Section.BOOK_ID, bookMask, id);
+    }
+
+    private int lookup(Section table, Section ids, int mask, long id) {
+        int tableStart = sections[table.ordinal()];
+        int slot = hash(id) & mask;
+
+        while (true) {
+            int entry = buffer.getInt(tableStart + 4 * slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (longAt(ids, entry - 1) == id) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private long longAt(Section section, int row) {
+        return buffer.getLong(sections[section.ordinal()] + 8 * row);
+    }
+
+    private int intAt(Section section, int row) {
+        return buffer.getInt(sections[section.ordinal()] + 4 * row);
+    }
+
+    private String string(Section section, int count, int row) {
+        int offsets = sections[section.ordinal()];
+        int end = buffer.getInt(offsets + 4 * (row + 1));
+        if ((end & NULL) != 0) {
+            return null;
+        }
+        int start = buffer.getInt(offsets + 4 * row) & ~NULL;
+        byte[] bytes = new byte[end - start];
+        buffer.get(offsets + 4 * (count + 1) + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(Section section, int count, int row, byte[] key) {
+        int offsets = sections[section.ordinal()];
+        int end = buffer.getInt(offsets + 4 * (row + 1));
+        int start = buffer.getInt(offsets + 4 * row) & ~NULL;
+        if ((end & NULL) != 0 || end - start != key.length) {
+            return false;
+        }
+        int data = offsets + 4 * (count + 1) + start;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(data + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
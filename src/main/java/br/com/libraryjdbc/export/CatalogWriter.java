@@ -0,0 +1,351 @@
+package br.com.libraryjdbc.export;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.libraryjdbc.export.CatalogFile.Section;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DbException;
+
+/**
+ * Writes a {@link CatalogFile} from books and categories added one at a
+ * time. Book columns are spilled to temporary files as rows arrive, so only
+ * the category and author dictionaries are held in memory; {@link #write}
+ * lays the columns out in one file and builds the lookup tables inside it.
+ */
+final class CatalogWriter implements Closeable {
+
+    private final Path directory;
+    private final List<Column> spills = new ArrayList<>();
+
+    private final Column bookIds;
+    private final StringColumn titles;
+    private final StringColumn synopses;
+    private final StringColumn isbns;
+    private final Column years;
+    private final Column authorCodes;
+    private final Column categoryCodes;
+    private int bookCount;
+
+    private final Map<String, Integer> authorIndex = new HashMap<>();
+    private final List<String> authors = new ArrayList<>();
+    private final Map<Long, Integer> categoryIndex = new HashMap<>();
+    private final List<Category> categories = new ArrayList<>();
+
+    /**
+     * Spill files are created in {@code directory}, ideally the target's,
+     * so the finished file can be moved into place.
+     */
+    CatalogWriter(Path directory) throws IOException {
+        this.directory = directory;
+        try {
+            bookIds = new Column();
+            titles = new StringColumn();
+            synopses = new StringColumn();
+            isbns = new StringColumn();
+            years = new Column();
+            authorCodes = new Column();
+            categoryCodes = new Column();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    void addBook(Book book) {
+        try {
+            bookIds.out.writeLong(book.getId());
+            titles.add(book.getTitle());
+            synopses.add(book.getSynopsis());
+            isbns.add(book.getIsbn());
+            years.out.writeInt(book.getReleaseYear() == null ? CatalogFile.NO_YEAR : book.getReleaseYear());
+            authorCodes.out.writeInt(authorIndex.computeIfAbsent(book.getAuthor(), author -> {
+                authors.add(author);
+                return authors.size() - 1;
+            }));
+            categoryCodes.out.writeInt(categoryCode(book.getCategory(), false));
+            bookCount++;
+        } catch (IOException e) {
+            throw new DbException("Error writing catalog file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds a category, or replaces what the books said about it.
+     */
+    void addCategory(Category category) {
+        categoryCode(category, true);
+    }
+
+    int getBookCount() {
+        return bookCount;
+    }
+
+    int getCategoryCount() {
+        return categories.size();
+    }
+
+    int getAuthorCount() {
+        return authors.size();
+    }
+
+    /**
+     * Writes the file to a temporary name next to {@code target} and moves
+     * it over {@code target}, so readers never see a partial file. Returns
+     * its size.
+     */
+    long write(Path target) throws IOException {
+        Map<Section, Column> columns = new EnumMap<>(Section.class);
+        columns.put(Section.CATEGORY_ID, new Column());
+        columns.put(Section.CATEGORY_NAME, new StringColumn());
+        columns.put(Section.CATEGORY_DESCRIPTION, new StringColumn());
+        for (Category category : categories) {
+            columns.get(Section.CATEGORY_ID).out.writeLong(category.getId());
+            ((StringColumn) columns.get(Section.CATEGORY_NAME)).add(category.getName());
+            ((StringColumn) columns.get(Section.CATEGORY_DESCRIPTION)).add(category.getDescription());
+        }
+        StringColumn authorColumn = new StringColumn();
+        for (String author : authors) {
+            authorColumn.add(author);
+        }
+        columns.put(Section.AUTHOR, authorColumn);
+        columns.put(Section.BOOK_ID, bookIds);
+        columns.put(Section.BOOK_TITLE, titles);
+        columns.put(Section.BOOK_SYNOPSIS, synopses);
+        columns.put(Section.BOOK_ISBN, isbns);
+        columns.put(Section.BOOK_YEAR, years);
+        columns.put(Section.BOOK_AUTHOR, authorCodes);
+        columns.put(Section.BOOK_CATEGORY, categoryCodes);
+
+        // Lay out every section
+        long[] offsets = new long[Section.values().length];
+        long position = CatalogFile.HEADER_SIZE;
+        for (Section section : Section.values()) {
+            position = align(position);
+            offsets[section.ordinal()] = position;
+            position += sectionSize(section, columns.get(section));
+        }
+        if (position > Integer.MAX_VALUE) {
+            throw new DbException("Catalog larger than 2 GB cannot be exported");
+        }
+
+        Path temp = Files.createTempFile(directory, "catalog-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(CatalogFile.HEADER_SIZE);
+                header.putInt(CatalogFile.MAGIC).putInt(CatalogFile.VERSION);
+                header.putInt(categories.size()).putInt(bookCount).putInt(authors.size()).putInt(0);
+                for (long offset : offsets) {
+                    header.putLong(offset);
+                }
+                header.flip();
+                channel.write(header, 0);
+
+                for (Map.Entry<Section, Column> entry : columns.entrySet()) {
+                    entry.getValue().copyTo(channel, offsets[entry.getKey().ordinal()]);
+                }
+                // Tables start out zeroed: extending the file fills them
+                channel.write(ByteBuffer.allocate(1), position - 1);
+            }
+
+            buildTables(temp, offsets, position);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return position;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes the spill files.
+     */
+    @Override
+    public void close() {
+        for (Column column : spills) {
+            column.delete();
+        }
+    }
+
+    // Helper methods
+
+    private int categoryCode(Category category, boolean replace) {
+        Integer code = categoryIndex.get(category.getId());
+        if (code != null && !replace) {
+            return code;
+        }
+        Category copy = new Category(category.getId(), category.getName(), category.getDescription());
+        if (code == null) {
+            code = categories.size();
+            categoryIndex.put(category.getId(), code);
+            categories.add(copy);
+        } else {
+            categories.set(code, copy);
+        }
+        return code;
+    }
+
+    private long sectionSize(Section section, Column column) throws IOException {
+        switch (section) {
+        case CATEGORY_TABLE:
+            return 4L * CatalogFile.tableCapacity(categories.size());
+        case BOOK_ID_TABLE:
+        case BOOK_ISBN_TABLE:
+            return 4L * CatalogFile.tableCapacity(bookCount);
+        default:
+            return column.size();
+        }
+    }
+
+    /**
+     * Fills the lookup tables through a writable mapping of the new file,
+     * reading the keys from the columns already in it.
+     */
+    private void buildTables(Path file, long[] offsets, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            int categoryIds = (int) offsets[Section.CATEGORY_ID.ordinal()];
+            fillTable(buffer, (int) offsets[Section.CATEGORY_TABLE.ordinal()], categories.size(),
+                    row -> CatalogFile.hash(buffer.getLong(categoryIds + 8 * row)));
+
+            int ids = (int) offsets[Section.BOOK_ID.ordinal()];
+            fillTable(buffer, (int) offsets[Section.BOOK_ID_TABLE.ordinal()], bookCount,
+                    row -> CatalogFile.hash(buffer.getLong(ids + 8 * row)));
+
+            int isbnOffsets = (int) offsets[Section.BOOK_ISBN.ordinal()];
+            int isbnData = isbnOffsets + 4 * (bookCount + 1);
+            fillTable(buffer, (int) offsets[Section.BOOK_ISBN_TABLE.ordinal()], bookCount, row -> {
+                int start = buffer.getInt(isbnOffsets + 4 * row) & ~CatalogFile.NULL;
+                int end = buffer.getInt(isbnOffsets + 4 * (row + 1)) & ~CatalogFile.NULL;
+                return CatalogFile.hash(buffer, isbnData + start, isbnData + end);
+            });
+
+            buffer.force();
+        }
+    }
+
+    private static void fillTable(ByteBuffer buffer, int table, int count, RowHash hash) {
+        int mask = CatalogFile.tableCapacity(count) - 1;
+        for (int row = 0; row < count; row++) {
+            int slot = hash.of(row) & mask;
+            while (buffer.getInt(table + 4 * slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            buffer.putInt(table + 4 * slot, row + 1);
+        }
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private interface RowHash {
+        int of(int row);
+    }
+
+    /**
+     * Fixed-width values spilled to a temporary file.
+     */
+    private class Column {
+
+        final Path file;
+        final DataOutputStream out;
+
+        Column() throws IOException {
+            file = Files.createTempFile(directory, "catalog-", ".col");
+            spills.add(this);
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        }
+
+        long size() throws IOException {
+            out.flush();
+            return Files.size(file);
+        }
+
+        void copyTo(FileChannel target, long position) throws IOException {
+            out.flush();
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                // transferFrom copies nothing past the end of the target, so
+                // write from its position instead
+                target.position(position);
+                long size = source.size();
+                long copied = 0;
+                while (copied < size) {
+                    copied += source.transferTo(copied, size - copied, target);
+                }
+            }
+        }
+
+        void delete() {
+            try {
+                out.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Strings spilled as their end offsets and their UTF-8 bytes, joined
+     * into one section when copied.
+     */
+    private final class StringColumn extends Column {
+
+        private final Column data;
+        private int end;
+
+        StringColumn() throws IOException {
+            data = new Column();
+            out.writeInt(0);
+        }
+
+        void add(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(end | CatalogFile.NULL);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (end + (long) bytes.length > Integer.MAX_VALUE) {
+                throw new DbException("Catalog larger than 2 GB cannot be exported");
+            }
+            data.out.write(bytes);
+            end += bytes.length;
+            out.writeInt(end);
+        }
+
+        @Override
+        long size() throws IOException {
+            return super.size() + data.size();
+        }
+
+        @Override
+        void copyTo(FileChannel target, long position) throws IOException {
+            super.copyTo(target, position);
+            data.copyTo(target, position + super.size());
+        }
+
+        @Override
+        void delete() {
+            super.delete();
+            data.delete();
+        }
+    }
+}
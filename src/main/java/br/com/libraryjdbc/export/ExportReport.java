@@ -0,0 +1,65 @@
+package br.com.libraryjdbc.export;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of one {@link CatalogExporter} run.
+ */
+public class ExportReport {
+
+    private final int categories;
+    private final int books;
+    private final int authors;
+    private final long bytes;
+    private final long elapsedMillis;
+    private final Path file;
+
+    ExportReport(int categories, int books, int authors, long bytes, long elapsedMillis, Path file) {
+        this.categories = categories;
+        this.books = books;
+        this.authors = authors;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+        this.file = file;
+    }
+
+    public int getCategories() {
+        return categories;
+    }
+
+    public int getBooks() {
+        return books;
+    }
+
+    /**
+     * Distinct author names, each stored once.
+     */
+    public int getAuthors() {
+        return authors;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Books written per second, database reads included.
+     */
+    public double getBooksPerSecond() {
+        return books * 1000.0 / Math.max(elapsedMillis, 1);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExportReport [categories=%d, books=%d, authors=%d, bytes=%d, elapsed=%d ms, %.0f books/s]",
+                categories, books, authors, bytes, elapsedMillis, getBooksPerSecond());
+    }
+}
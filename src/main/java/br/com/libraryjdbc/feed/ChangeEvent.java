@@ -0,0 +1,53 @@
+package br.com.libraryjdbc.feed;
+
+/**
+ * A committed insert, update or delete of one row, as published by the
+ * DAOs through the {@link ChangeFeed}.
+ *
+ * The version orders events: a later change to the same row always has a
+ * higher version. With the outbox enabled it is the outbox row id, so it
+ * also survives restarts.
+ */
+public final class ChangeEvent {
+
+    public enum Entity {
+        CATEGORY, BOOK
+    }
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Entity entity;
+    private final Type type;
+    private final long entityId;
+    private final long version;
+
+    public ChangeEvent(Entity entity, Type type, long entityId, long version) {
+        this.entity = entity;
+        this.type = type;
+        this.entityId = entityId;
+        this.version = version;
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent [" + type + " " + entity + " " + entityId + ", version=" + version + "]";
+    }
+}
@@ -0,0 +1,425 @@
+package br.com.libraryjdbc.feed;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import db.DB;
+import db.DbException;
+
+/**
+ * Feed of the inserts, updates and deletes committed through the DAOs, so
+ * caches and indexes can follow the database without polling it.
+ *
+ * A DAO write calls {@link #record} inside its transaction and
+ * {@link #publish(List)} after the commit, so rolled back changes are never
+ * seen. Publishing never blocks the writer: events go into a bounded queue
+ * and a single dispatcher thread hands them to the listeners in batches.
+ * When the queue is full the events are dropped and every listener is told
+ * through {@link ChangeListener#onEventsLost()} to reload instead.
+ *
+ * With {@link #enableOutbox()} every event is also written to the
+ * change_outbox table in the same transaction as the change itself, and
+ * {@link #replay(long, ChangeListener)} reads them back, for example to
+ * catch up after a restart. Writers take the single row of
+ * change_outbox_lock before writing their events and hold it until they
+ * commit, so outbox ids follow commit order and a consumer that has read
+ * up to an id can never see a smaller one commit later. The price is that
+ * transactions writing events commit one at a time.
+ */
+public class ChangeFeed implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long POLL_MILLIS = 100;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private static volatile ChangeFeed defaultFeed;
+
+    private final BlockingQueue<ChangeEvent> queue;
+    private final int batchSize;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Thread dispatcher;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean eventsLost = new AtomicBoolean();
+    /** Events accepted by the queue and not yet delivered. */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean outboxEnabled;
+    private volatile boolean closed;
+
+    public ChangeFeed() {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public ChangeFeed(int capacity, int batchSize) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Capacity and batch size must be at least 1");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.dispatcher = new Thread(this::dispatch, "change-feed");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * The feed the DAOs publish to, created on first use.
+     */
+    public static ChangeFeed getDefault() {
+        ChangeFeed feed = defaultFeed;
+        if (feed == null) {
+            synchronized (ChangeFeed.class) {
+                if (defaultFeed == null) {
+                    defaultFeed = new ChangeFeed();
+                }
+                feed = defaultFeed;
+            }
+        }
+        return feed;
+    }
+
+    /**
+     * Replaces the feed the DAOs publish to. The previous one is not closed.
+     */
+    public static synchronized void setDefault(ChangeFeed feed) {
+        defaultFeed = feed;
+    }
+
+    public void subscribe(ChangeListener listener) {
+        subscriptions.add(new Subscription(listener));
+    }
+
+    public void unsubscribe(ChangeListener listener) {
+        subscriptions.removeIf(subscription -> subscription.listener == listener);
+    }
+
+    /**
+     * Creates the change_outbox and change_outbox_lock tables and starts
+     * writing every recorded event to the outbox.
+     */
+    public void enableOutbox() {
+        Connection conn = null;
+        Statement st = null;
+
+        try {
+            conn = DB.getConnection();
+            st = conn.createStatement();
+
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS change_outbox ("
+                    + "id BIGSERIAL PRIMARY KEY,"
+                    + "entity VARCHAR(20) NOT NULL,"
+                    + "change_type VARCHAR(10) NOT NULL,"
+                    + "entity_id BIGINT NOT NULL,"
+                    + "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+                    + ")");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS change_outbox_lock (id INTEGER PRIMARY KEY)");
+            st.executeUpdate("INSERT INTO change_outbox_lock (id) VALUES (1) ON CONFLICT DO NOTHING");
+
+            outboxEnabled = true;
+
+        } catch (SQLException e) {
+            throw new DbException("Error creating change outbox: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+
+    public boolean isOutboxEnabled() {
+        return outboxEnabled;
+    }
+
+    /**
+     * Events for changes made in {@code conn}'s open transaction, written
+     * to the outbox when it is enabled. Pass them to {@link #publish(List)}
+     * once the transaction commits; until it ends, other transactions
+     * recording events wait for it.
+     */
+    public List<ChangeEvent> record(Connection conn, ChangeEvent.Entity entity, ChangeEvent.Type type, long id)
+            throws SQLException {
+        return record(conn, entity, type, Collections.singletonList(id));
+    }
+
+    public List<ChangeEvent> record(Connection conn, ChangeEvent.Entity entity, ChangeEvent.Type type,
+            Collection<Long> ids) throws SQLException {
+        List<ChangeEvent> events = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return events;
+        }
+
+        if (!outboxEnabled) {
+            for (Long id : ids) {
+                events.add(new ChangeEvent(entity, type, id, sequence.incrementAndGet()));
+            }
+            return events;
+        }
+
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            // Ids are drawn under the lock, so they are in commit order
+            lockOutbox(conn);
+            st = conn.prepareStatement("INSERT INTO change_outbox (entity, change_type, entity_id) VALUES (?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            for (Long id : ids) {
+                st.setString(1, entity.name());
+                st.setString(2, type.name());
+                st.setLong(3, id);
+                st.addBatch();
+            }
+            st.executeBatch();
+
+            rs = st.getGeneratedKeys();
+            for (Long id : ids) {
+                if (!rs.next()) {
+                    throw new SQLException("Generated key missing for outbox event of " + entity + " " + id);
+                }
+                events.add(new ChangeEvent(entity, type, id, rs.getLong(1)));
+            }
+            return events;
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    /**
+     * Queues committed events for delivery without blocking. Events that do
+     * not fit are dropped and the listeners told to reload. Inside
+     * {@link DB#inTransaction(java.util.function.Supplier)} they are held
+     * until that transaction commits.
+     */
+    public void publish(List<ChangeEvent> events) {
+        if (events.isEmpty() || subscriptions.isEmpty() || closed) {
+            return;
+        }
+        DB.afterCommit(() -> enqueue(events));
+    }
+
+    /**
+     * Delivers the outbox events after {@code afterVersion} to
+     * {@code listener} on the calling thread, in version order, and returns
+     * the last version delivered. Subscribe before replaying so that no
+     * event falls between the two; an event may then arrive twice.
+     */
+    public long replay(long afterVersion, ChangeListener listener) {
+        long last = afterVersion;
+        List<ChangeEvent> batch;
+
+        do {
+            batch = readOutbox(last, batchSize);
+            if (!batch.isEmpty()) {
+                listener.onChanges(batch);
+                last = batch.get(batch.size() - 1).getVersion();
+            }
+        } while (batch.size() == batchSize);
+
+        return last;
+    }
+
+    /**
+     * Deletes the outbox events up to and including {@code version}, once
+     * every consumer has them. Returns how many were deleted.
+     */
+    public int purgeOutbox(long version) {
+        Connection conn = null;
+        PreparedStatement st = null;
+
+        try {
+            conn = DB.getConnection();
+            st = conn.prepareStatement("DELETE FROM change_outbox WHERE id <= ?");
+            st.setLong(1, version);
+            return st.executeUpdate();
+
+        } catch (SQLException e) {
+            throw new DbException("Error purging change outbox: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Waits until every queued event has been delivered. Returns false if
+     * the timeout expired first.
+     */
+    public boolean awaitDelivery(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (pending) {
+            while (pending.get() > 0 || eventsLost.get()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                pending.wait(Math.min(remaining, POLL_MILLIS));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Events dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Events waiting in the queue.
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the dispatcher. Events still queued are not delivered.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Helper methods
+
+    private void enqueue(List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            pending.incrementAndGet();
+            if (!queue.offer(event)) {
+                pending.decrementAndGet();
+                droppedCount.incrementAndGet();
+                eventsLost.set(true);
+            }
+        }
+    }
+
+    private void dispatch() {
+        List<ChangeEvent> batch = new ArrayList<>(batchSize);
+
+        while (!closed) {
+            try {
+                ChangeEvent first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (eventsLost.getAndSet(false)) {
+                    subscriptions.forEach(subscription -> subscription.lost = true);
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+
+                for (Subscription subscription : subscriptions) {
+                    subscription.deliver(batch);
+                }
+
+                if (!batch.isEmpty()) {
+                    pending.addAndGet(-batch.size());
+                    batch.clear();
+                }
+                synchronized (pending) {
+                    pending.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void lockOutbox(Connection conn) throws SQLException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            st = conn.prepareStatement("SELECT id FROM change_outbox_lock FOR UPDATE");
+            rs = st.executeQuery();
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    private List<ChangeEvent> readOutbox(long afterVersion, int limit) {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DB.getConnection();
+            st = conn.prepareStatement("SELECT id, entity, change_type, entity_id FROM change_outbox "
+                    + "WHERE id > ? ORDER BY id LIMIT ?");
+            st.setLong(1, afterVersion);
+            st.setInt(2, limit);
+            rs = st.executeQuery();
+
+            List<ChangeEvent> events = new ArrayList<>(limit);
+            while (rs.next()) {
+                events.add(new ChangeEvent(ChangeEvent.Entity.valueOf(rs.getString("entity")),
+                        ChangeEvent.Type.valueOf(rs.getString("change_type")), rs.getLong("entity_id"),
+                        rs.getLong("id")));
+            }
+            return events;
+
+        } catch (SQLException e) {
+            throw new DbException("Error reading change outbox: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * A listener and whether it missed events since its last delivery.
+     * Only the dispatcher thread touches {@link #lost}.
+     */
+    private static final class Subscription {
+
+        final ChangeListener listener;
+        boolean lost;
+
+        Subscription(ChangeListener listener) {
+            this.listener = listener;
+        }
+
+        void deliver(List<ChangeEvent> batch) {
+            try {
+                if (lost) {
+                    lost = false;
+                    listener.onEventsLost();
+                }
+                if (!batch.isEmpty()) {
+                    listener.onChanges(Collections.unmodifiableList(batch));
+                }
+            } catch (RuntimeException e) {
+                // Retried as a reload on the next round
+                lost = true;
+                LOG.warn("Change listener failed, it will be asked to reload", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package br.com.libraryjdbc.feed;
+
+import java.util.List;
+
+/**
+ * Receives batches of committed changes from a {@link ChangeFeed}, on the
+ * feed's dispatcher thread.
+ */
+public interface ChangeListener {
+
+    /**
+     * A batch of events in publication order. Events of concurrent
+     * transactions may arrive out of version order, so listeners should
+     * reread the changed rows rather than trust the order.
+     */
+    void onChanges(List<ChangeEvent> events);
+
+    /**
+     * Some events never reached this listener, because the queue was full
+     * or the previous delivery threw. The listener should reload whatever
+     * it keeps from the database.
+     */
+    default void onEventsLost() {
+    }
+}
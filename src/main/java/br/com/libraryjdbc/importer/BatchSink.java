@@ -0,0 +1,64 @@
+package br.com.libraryjdbc.importer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Portable fallback for databases without COPY (the embedded test
+ * database): plain INSERTs into the staging table, sent as JDBC batches.
+ */
+final class BatchSink implements StagingSink {
+
+    private final PreparedStatement st;
+    private final int batchSize;
+    private int pending;
+
+    BatchSink(Connection conn, int batchSize) throws SQLException {
+        this.st = conn.prepareStatement("INSERT INTO book_import (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void add(ImportRow row) throws SQLException {
+        st.setInt(1, row.line);
+        st.setString(2, row.title);
+        st.setString(3, row.author);
+        if (row.synopsis != null) {
+            st.setString(4, row.synopsis);
+        } else {
+            st.setNull(4, Types.VARCHAR);
+        }
+        st.setString(5, row.isbn);
+        st.setInt(6, row.releaseYear);
+        st.setLong(7, row.categoryId);
+        st.addBatch();
+
+        if (++pending == batchSize) {
+            st.executeBatch();
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void abort() {
+        try {
+            st.close();
+        } catch (SQLException e) {
+            // The transaction is rolled back next anyway
+        }
+    }
+
+    @Override
+    public void finish() throws SQLException {
+        try {
+            if (pending > 0) {
+                st.executeBatch();
+                pending = 0;
+            }
+        } finally {
+            st.close();
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package br.com.libraryjdbc.importer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import br.com.libraryjdbc.dao.CategoryStatsDao;
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeFeed;
+import db.DB;
+import db.DbException;
+
+/**
+ * Bulk loader for publisher catalog dumps in CSV.
+ *
+ * The file must start with a header naming the columns title, author,
+ * isbn, release_year and category (a category name), and optionally
+ * synopsis, in any order. It is read one record at a time; every record is
+ * checked against the book table rules and its category name resolved from
+ * a map loaded with a single query. Valid records are streamed into a
+ * temporary staging table, with COPY on PostgreSQL and JDBC batches
+ * elsewhere, and then moved into book with one INSERT ... SELECT that
+ * skips ISBNs already in the catalog.
+ *
+ * The whole import is one transaction: either every valid record is added
+ * or none, and the change feed gets an insert event per added book after
+ * the commit. Rejected records go to a reject file with their line number and
+ * the reason, followed by the record in import file format.
+ */
+public class BookImporter {
+
+    private static final int MIN_RELEASE_YEAR = 1967;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final String[] REQUIRED_COLUMNS = { "title", "author", "isbn", "release_year", "category" };
+    private static final List<String> RECORD_COLUMNS = Arrays.asList("title", "author", "synopsis", "isbn",
+            "release_year", "category");
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private Boolean useCopy;
+
+    /**
+     * Imports {@code csv}, writing rejects next to it as
+     * {@code <name>.rejects.csv}.
+     */
+    public ImportReport importFile(Path csv) {
+        return importFile(csv, csv.resolveSibling(csv.getFileName() + ".rejects.csv"));
+    }
+
+    public ImportReport importFile(Path csv, Path rejectFile) {
+        long start = System.nanoTime();
+
+        Connection conn = null;
+        StagingSink sink = null;
+        boolean dropStaging = false;
+
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+                BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+
+            conn = DB.getConnection();
+            boolean copy = useCopy != null ? useCopy : DB.isPostgreSql();
+            conn.setAutoCommit(false);
+
+            Map<String, Long> categoryIds = new HashMap<>();
+            Map<Long, String> categoryNames = new HashMap<>();
+            loadCategories(conn, categoryIds, categoryNames);
+
+            createStagingTable(conn);
+            dropStaging = !DB.isPostgreSql();
+
+            rejects.write("line,reason," + String.join(",", RECORD_COLUMNS));
+            rejects.newLine();
+
+            CsvReader reader = new CsvReader(in);
+            List<String> header = reader.next();
+            if (header == null) {
+                throw new DbException("Import file is empty: " + csv);
+            }
+            Map<String, Integer> columns = columnIndexes(header);
+
+            sink = copy ? new CopySink(conn) : new BatchSink(conn, batchSize);
+            Set<String> isbns = new HashSet<>();
+            long read = 0;
+            long rejected = 0;
+
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                read++;
+                int line = reader.getRecordLine();
+                String error = validationError(record, columns, categoryIds);
+                String isbn = error == null ? field(record, columns, "isbn") : null;
+                if (error == null && !isbns.add(isbn)) {
+                    error = "Duplicate ISBN in file: " + isbn;
+                }
+
+                if (error != null) {
+                    writeReject(rejects, line, error, canonicalRecord(record, columns));
+                    rejected++;
+                } else {
+                    sink.add(toRow(line, record, columns, categoryIds));
+                }
+            }
+            sink.finish();
+
+            rejected += rejectExistingIsbns(conn, rejects, categoryNames);
+            CategoryStatsDao.adjust(conn, countNewBooksPerCategory(conn));
+            List<Long> importedIds = mergeIntoBook(conn);
+            ChangeFeed feed = ChangeFeed.getDefault();
+            List<ChangeEvent> events = feed.record(conn, ChangeEvent.Entity.BOOK, ChangeEvent.Type.INSERT,
+                    importedIds);
+
+            conn.commit();
+            feed.publish(events);
+            long imported = importedIds.size();
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            return new ImportReport(read, imported, rejected, elapsedMillis, rejectFile);
+
+        } catch (IOException e) {
+            abort(sink, conn);
+            throw new DbException("Error reading import file: " + e.getMessage(), e);
+        } catch (SQLException e) {
+            abort(sink, conn);
+            throw new DbException("Error importing books: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            abort(sink, conn);
+            throw e;
+        } finally {
+            if (dropStaging) {
+                dropStagingTable(conn);
+            }
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Rows per JDBC batch when COPY is not used.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new DbException("Batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Forces COPY on or off; by default it is used on PostgreSQL only.
+     */
+    public void setUseCopy(Boolean useCopy) {
+        this.useCopy = useCopy;
+    }
+
+    // Helper methods
+
+    private void loadCategories(Connection conn, Map<String, Long> ids, Map<Long, String> names)
+            throws SQLException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            st = conn.prepareStatement("SELECT id, name FROM category");
+            rs = st.executeQuery();
+            while (rs.next()) {
+                ids.put(rs.getString(2).toLowerCase(Locale.ROOT), rs.getLong(1));
+                names.put(rs.getLong(1), rs.getString(2));
+            }
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    /**
+     * Session-private staging table, dropped with the transaction.
+     */
+    private void createStagingTable(Connection conn) throws SQLException {
+        Statement st = null;
+
+        try {
+            st = conn.createStatement();
+            st.executeUpdate("CREATE LOCAL TEMPORARY TABLE book_import ("
+                    + "line_no INTEGER NOT NULL,"
+                    + "title VARCHAR(200) NOT NULL,"
+                    + "author VARCHAR(150) NOT NULL,"
+                    + "synopsis TEXT,"
+                    + "isbn VARCHAR(20) NOT NULL,"
+                    + "release_year INTEGER NOT NULL,"
+                    + "category_id INTEGER NOT NULL"
+                    + ") ON COMMIT DROP");
+        } finally {
+            DB.closeStatement(st);
+        }
+    }
+
+    /**
+     * Embedded databases may keep the staging table after a rollback, and
+     * the connection goes back to the pool.
+     */
+    private void dropStagingTable(Connection conn) {
+        Statement st = null;
+
+        try {
+            st = conn.createStatement();
+            st.executeUpdate("DROP TABLE IF EXISTS book_import");
+        } catch (SQLException e) {
+            throw new DbException("Error dropping staging table: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+        }
+    }
+
+    private long rejectExistingIsbns(Connection conn, Writer rejects, Map<Long, String> categoryNames)
+            throws SQLException, IOException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            st = conn.prepareStatement("SELECT s.line_no, s.title, s.author, s.synopsis, s.isbn, s.release_year, "
+                    + "s.category_id FROM book_import s "
+                    + "WHERE EXISTS (SELECT 1 FROM book b WHERE b.isbn = s.isbn) "
+                    + "ORDER BY s.line_no");
+            rs = st.executeQuery();
+
+            long rejected = 0;
+            while (rs.next()) {
+                String synopsis = rs.getString("synopsis");
+                List<String> record = Arrays.asList(rs.getString("title"), rs.getString("author"),
+                        synopsis != null ? synopsis : "", rs.getString("isbn"), rs.getString("release_year"),
+                        categoryNames.get(rs.getLong("category_id")));
+                writeReject(rejects, rs.getInt("line_no"), "ISBN already exists: " + rs.getString("isbn"), record);
+                rejected++;
+            }
+            return rejected;
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    private Map<Long, Integer> countNewBooksPerCategory(Connection conn) throws SQLException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            st = conn.prepareStatement("SELECT s.category_id, COUNT(*) FROM book_import s "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM book b WHERE b.isbn = s.isbn) "
+                    + "GROUP BY s.category_id");
+            rs = st.executeQuery();
+
+            Map<Long, Integer> counts = new HashMap<>();
+            while (rs.next()) {
+                counts.put(rs.getLong(1), rs.getInt(2));
+            }
+            return counts;
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    /**
+     * Inserts the staged books that are new and returns their ids.
+     */
+    private List<Long> mergeIntoBook(Connection conn) throws SQLException {
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            st = conn.prepareStatement("INSERT INTO book (title, author, synopsis, isbn, release_year, category_id) "
+                    + "SELECT s.title, s.author, s.synopsis, s.isbn, s.release_year, s.category_id "
+                    + "FROM book_import s "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM book b WHERE b.isbn = s.isbn) "
+                    + "ORDER BY s.line_no", new String[] { "id" });
+            st.executeUpdate();
+
+            List<Long> ids = new ArrayList<>();
+            rs = st.getGeneratedKeys();
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+            return ids;
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+        }
+    }
+
+    private static Map<String, Integer> columnIndexes(List<String> header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : REQUIRED_COLUMNS) {
+            if (!columns.containsKey(required)) {
+                throw new DbException("Import file has no " + required + " column");
+            }
+        }
+        return columns;
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * The rules of the book table, checked before anything is sent to the
+     * database so one bad record cannot fail the whole load.
+     */
+    private static String validationError(List<String> record, Map<String, Integer> columns,
+            Map<String, Long> categoryIds) {
+        String title = field(record, columns, "title");
+        if (title == null || title.length() > 200) {
+            return title == null ? "Book title cannot be empty" : "Book title is longer than 200 characters";
+        }
+
+        String author = field(record, columns, "author");
+        if (author == null || author.length() > 150) {
+            return author == null ? "Book author cannot be empty" : "Book author is longer than 150 characters";
+        }
+
+        String isbn = field(record, columns, "isbn");
+        if (isbn == null || isbn.length() > 20) {
+            return isbn == null ? "Book ISBN cannot be empty" : "Book ISBN is longer than 20 characters";
+        }
+
+        String year = field(record, columns, "release_year");
+        try {
+            if (year == null || Integer.parseInt(year) < MIN_RELEASE_YEAR) {
+                return "Book release year must be " + MIN_RELEASE_YEAR + " or later";
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid release year: " + year;
+        }
+
+        String category = field(record, columns, "category");
+        if (category == null) {
+            return "Book category cannot be empty";
+        }
+        if (!categoryIds.containsKey(category.toLowerCase(Locale.ROOT))) {
+            return "Category not found: " + category;
+        }
+
+        return null;
+    }
+
+    private static ImportRow toRow(int line, List<String> record, Map<String, Integer> columns,
+            Map<String, Long> categoryIds) {
+        return new ImportRow(line, field(record, columns, "title"), field(record, columns, "author"),
+                field(record, columns, "synopsis"), field(record, columns, "isbn"),
+                Integer.parseInt(field(record, columns, "release_year")),
+                categoryIds.get(field(record, columns, "category").toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * The record's fields in the order of the reject file, which has the
+     * columns of an import file so it can be fixed and imported again.
+     */
+    private static List<String> canonicalRecord(List<String> record, Map<String, Integer> columns) {
+        String[] fields = new String[RECORD_COLUMNS.size()];
+        for (int i = 0; i < fields.length; i++) {
+            Integer index = columns.get(RECORD_COLUMNS.get(i));
+            fields[i] = index != null && index < record.size() ? record.get(index) : "";
+        }
+        return Arrays.asList(fields);
+    }
+
+    private static void writeReject(Writer rejects, int line, String reason, List<String> record)
+            throws IOException {
+        StringBuilder sb = new StringBuilder().append(line).append(',');
+        CsvReader.appendQuoted(sb, reason);
+        sb.append(',').append(CsvReader.format(record));
+        rejects.write(sb.append(System.lineSeparator()).toString());
+    }
+
+    private static void abort(StagingSink sink, Connection conn) {
+        if (sink != null) {
+            sink.abort();
+        }
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                // Keep the original failure; the pool resets the connection
+            }
+        }
+    }
+}
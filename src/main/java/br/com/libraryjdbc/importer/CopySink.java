@@ -0,0 +1,71 @@
+package br.com.libraryjdbc.importer;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Streams rows into the staging table with PostgreSQL's COPY protocol:
+ * one statement for the whole file, rows encoded as CSV and sent in
+ * buffers of about 64 KB.
+ */
+final class CopySink implements StagingSink {
+
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private final CopyIn copy;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_BYTES + 1024);
+
+    CopySink(Connection conn) throws SQLException {
+        this.copy = conn.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY book_import (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)");
+    }
+
+    @Override
+    public void add(ImportRow row) throws SQLException {
+        buffer.append(row.line).append(',');
+        CsvReader.appendQuoted(buffer, row.title);
+        buffer.append(',');
+        CsvReader.appendQuoted(buffer, row.author);
+        buffer.append(',');
+        // An unquoted empty field is NULL in COPY's CSV format
+        if (row.synopsis != null) {
+            CsvReader.appendQuoted(buffer, row.synopsis);
+        }
+        buffer.append(',');
+        CsvReader.appendQuoted(buffer, row.isbn);
+        buffer.append(',').append(row.releaseYear).append(',').append(row.categoryId).append('\n');
+
+        if (buffer.length() >= FLUSH_BYTES) {
+            flush();
+        }
+    }
+
+    @Override
+    public void finish() throws SQLException {
+        flush();
+        copy.endCopy();
+    }
+
+    @Override
+    public void abort() {
+        try {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        } catch (SQLException e) {
+            // The transaction is rolled back next anyway
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (buffer.length() > 0) {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package br.com.libraryjdbc.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: comma separated, fields optionally
+ * enclosed in double quotes, quotes doubled inside quoted fields, which may
+ * span lines. Reads one record at a time, so files of any size can be
+ * processed in constant memory.
+ */
+final class CsvReader {
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int line = 1;
+    private int recordLine;
+    private int pending = -2;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Next record, or null at end of input. Blank lines are skipped.
+     */
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean afterQuote = false;
+        boolean any = false;
+        recordLine = line;
+
+        int c;
+        while ((c = read()) != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        field.append('"');
+                        continue;
+                    }
+                    quoted = false;
+                    afterQuote = true;
+                    unread(n);
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+                continue;
+            }
+
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+                any = true;
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    int n = read();
+                    if (n != '\n') {
+                        unread(n);
+                    }
+                }
+                line++;
+                if (any || field.length() > 0 || afterQuote) {
+                    fields.add(field.toString());
+                    return fields;
+                }
+                recordLine = line;
+            } else if (c == '"' && field.length() == 0 && !afterQuote) {
+                quoted = true;
+                any = true;
+            } else {
+                field.append((char) c);
+                any = true;
+            }
+        }
+
+        if (quoted) {
+            throw new IOException("Unterminated quoted field starting on line " + recordLine);
+        }
+        if (any || field.length() > 0 || afterQuote) {
+            fields.add(field.toString());
+            return fields;
+        }
+        return null;
+    }
+
+    /**
+     * Line on which the record last returned by {@link #next()} started.
+     */
+    int getRecordLine() {
+        return recordLine;
+    }
+
+    /**
+     * Encodes fields as one CSV record, quoting every field.
+     */
+    static String format(List<String> fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendQuoted(sb, fields.get(i));
+        }
+        return sb.toString();
+    }
+
+    static void appendQuoted(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    // Helper methods
+
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private void unread(int c) {
+        pending = c;
+    }
+}
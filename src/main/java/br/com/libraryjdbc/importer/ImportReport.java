@@ -0,0 +1,63 @@
+package br.com.libraryjdbc.importer;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of one {@link BookImporter} run.
+ */
+public class ImportReport {
+
+    private final long rowsRead;
+    private final long rowsImported;
+    private final long rowsRejected;
+    private final long elapsedMillis;
+    private final Path rejectFile;
+
+    ImportReport(long rowsRead, long rowsImported, long rowsRejected, long elapsedMillis, Path rejectFile) {
+        this.rowsRead = rowsRead;
+        this.rowsImported = rowsImported;
+        this.rowsRejected = rowsRejected;
+        this.elapsedMillis = elapsedMillis;
+        this.rejectFile = rejectFile;
+    }
+
+    /**
+     * Data records in the file, header excluded.
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Records read per second over the whole run, merge included.
+     */
+    public double getRowsPerSecond() {
+        return rowsRead * 1000.0 / Math.max(elapsedMillis, 1);
+    }
+
+    /**
+     * CSV file with one line per rejected record (line number, reason and
+     * the record itself).
+     */
+    public Path getRejectFile() {
+        return rejectFile;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportReport [read=%d, imported=%d, rejected=%d, elapsed=%d ms, %.0f rows/s]",
+                rowsRead, rowsImported, rowsRejected, elapsedMillis, getRowsPerSecond());
+    }
+}
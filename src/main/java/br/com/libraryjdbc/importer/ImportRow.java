@@ -0,0 +1,26 @@
+package br.com.libraryjdbc.importer;
+
+/**
+ * A validated CSV record, ready for the staging table.
+ */
+final class ImportRow {
+
+    final int line;
+    final String title;
+    final String author;
+    final String synopsis;
+    final String isbn;
+    final int releaseYear;
+    final long categoryId;
+
+    ImportRow(int line, String title, String author, String synopsis, String isbn, int releaseYear,
+            long categoryId) {
+        this.line = line;
+        this.title = title;
+        this.author = author;
+        this.synopsis = synopsis;
+        this.isbn = isbn;
+        this.releaseYear = releaseYear;
+        this.categoryId = categoryId;
+    }
+}
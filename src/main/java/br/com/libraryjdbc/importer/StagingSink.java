@@ -0,0 +1,24 @@
+package br.com.libraryjdbc.importer;
+
+import java.sql.SQLException;
+
+/**
+ * Writes validated rows into the book_import staging table.
+ */
+interface StagingSink {
+
+    String COLUMNS = "line_no, title, author, synopsis, isbn, release_year, category_id";
+
+    void add(ImportRow row) throws SQLException;
+
+    /**
+     * Flushes whatever is still buffered.
+     */
+    void finish() throws SQLException;
+
+    /**
+     * Gives up on a load that failed half way, leaving the connection
+     * usable for the rollback.
+     */
+    void abort();
+}
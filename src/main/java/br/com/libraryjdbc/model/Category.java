@@ -8,6 +8,7 @@ public class Category {
     private Long id;
     private String name;
     private String description;
+    private Integer version;
 
     /**
      * Default constructor
@@ -57,6 +58,19 @@ public class Category {
         this.description = description;
     }
 
+    /**
+     * Row version read with the category, or null for one never read from the
+     * database. Updates of a category with a version fail with an
+     * {@link db.OptimisticLockException} if the row changed since.
+     */
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -0,0 +1,47 @@
+package br.com.libraryjdbc.model;
+
+/**
+ * Number of books in a category, as kept in the category_stats table.
+ */
+public class CategoryStats {
+
+    private Category category;
+    private int bookCount;
+
+    /**
+     * Default constructor
+     */
+    public CategoryStats() {
+    }
+
+    /**
+     * Constructor with all attributes
+     */
+    public CategoryStats(Category category, int bookCount) {
+        this.category = category;
+        this.bookCount = bookCount;
+    }
+
+    // Getters and Setters
+    public Category getCategory() {
+        return category;
+    }
+
+    public void setCategory(Category category) {
+        this.category = category;
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public void setBookCount(int bookCount) {
+        this.bookCount = bookCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CategoryStats [category=" + (category != null ? category.getName() : null) + ", bookCount="
+                + bookCount + "]";
+    }
+}
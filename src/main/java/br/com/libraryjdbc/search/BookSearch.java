@@ -0,0 +1,258 @@
+package br.com.libraryjdbc.search;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeListener;
+import br.com.libraryjdbc.model.Book;
+import db.DB;
+import db.DbException;
+
+/**
+ * Ranked full-text search over book title, author and synopsis.
+ *
+ * On PostgreSQL the book table gets a generated tsvector column (title
+ * weighted A, author B, synopsis C) with a GIN index, so the database keeps
+ * it up to date on every write and ranks matches with ts_rank. Other
+ * databases use an {@link InvertedIndex} in this process, loaded from the
+ * book table on the first search; writes made after that are picked up by
+ * {@link #refresh()}, reported through {@link #index(Book)} and
+ * {@link #remove(Long)}, or followed automatically by subscribing to a
+ * {@link br.com.libraryjdbc.feed.ChangeFeed}.
+ *
+ * Every word of the query must match. Results come a page at a time, best
+ * first; each page is one ranked id query plus one query for the books.
+ */
+public class BookSearch implements ChangeListener {
+
+    /**
+     * Text search configuration: no stemming or stop words, since the
+     * catalog mixes languages. Unlike the in-process index it keeps accents.
+     */
+    private static final String TS_CONFIG = "simple";
+
+    private final BookDao bookDao;
+    /** In-process index, null until the first search on a non-PostgreSQL database. */
+    private volatile InvertedIndex index;
+
+    public BookSearch() {
+        this(new BookDao());
+    }
+
+    public BookSearch(BookDao bookDao) {
+        this.bookDao = bookDao;
+    }
+
+    /**
+     * Adds the search column and its index on PostgreSQL. Nothing to do on
+     * other databases.
+     */
+    public void createIndex() {
+        if (!DB.isPostgreSql()) {
+            return;
+        }
+
+        Connection conn = null;
+        Statement st = null;
+
+        try {
+            conn = DB.getConnection();
+            st = conn.createStatement();
+
+            st.executeUpdate("ALTER TABLE book ADD COLUMN IF NOT EXISTS search_vector tsvector "
+                    + "GENERATED ALWAYS AS ("
+                    + "setweight(to_tsvector('" + TS_CONFIG + "', coalesce(title, '')), 'A') || "
+                    + "setweight(to_tsvector('" + TS_CONFIG + "', coalesce(author, '')), 'B') || "
+                    + "setweight(to_tsvector('" + TS_CONFIG + "', coalesce(synopsis, '')), 'C')"
+                    + ") STORED");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_book_search ON book USING gin (search_vector)");
+
+        } catch (SQLException e) {
+            throw new DbException("Error creating search index: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeConnection(conn);
+        }
+    }
+
+    /**
+     * One page of the books matching every word of {@code query}, best
+     * first. {@code categoryId} may be null to search all categories;
+     * {@code page} is zero-based.
+     */
+    public SearchResults search(String query, Long categoryId, int page, int pageSize) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new DbException("Search query cannot be empty");
+        }
+        if (page < 0 || pageSize < 1) {
+            throw new DbException("Invalid page: " + page + " of size " + pageSize);
+        }
+
+        int offset = page * pageSize;
+        List<Long> ids = new ArrayList<>(pageSize + 1);
+        List<Double> scores = new ArrayList<>(pageSize + 1);
+
+        if (DB.isPostgreSql()) {
+            rankInDatabase(query, categoryId, offset, pageSize + 1, ids, scores);
+        } else {
+            for (InvertedIndex.Match match : loadedIndex().search(query, categoryId, offset, pageSize + 1)) {
+                ids.add(match.bookId);
+                scores.add((double) match.score);
+            }
+        }
+
+        boolean hasNext = ids.size() > pageSize;
+        if (hasNext) {
+            ids.remove(pageSize);
+        }
+
+        Map<Long, Book> books = new HashMap<>();
+        for (Book book : bookDao.findByIds(ids)) {
+            books.put(book.getId(), book);
+        }
+
+        List<SearchHit> hits = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Book book = books.get(ids.get(i));
+            // Skip books deleted since the in-process index was loaded
+            if (book != null) {
+                hits.add(new SearchHit(book, scores.get(i)));
+            }
+        }
+
+        return new SearchResults(hits, page, pageSize, hasNext);
+    }
+
+    /**
+     * Reloads the in-process index from the book table. No-op on
+     * PostgreSQL.
+     */
+    public synchronized void refresh() {
+        if (DB.isPostgreSql()) {
+            return;
+        }
+        // Searches keep using the old index until the new one is complete
+        InvertedIndex fresh = new InvertedIndex();
+        bookDao.forEach(fresh::add);
+        index = fresh;
+    }
+
+    /**
+     * Adds or replaces a saved book in the in-process index.
+     */
+    public synchronized void index(Book book) {
+        if (index != null) {
+            index.add(book);
+        }
+    }
+
+    /**
+     * Drops a removed book from the in-process index.
+     */
+    public synchronized void remove(Long bookId) {
+        if (index != null) {
+            index.remove(bookId);
+        }
+    }
+
+    /**
+     * Rereads the changed books into the in-process index.
+     */
+    @Override
+    public synchronized void onChanges(List<ChangeEvent> events) {
+        if (DB.isPostgreSql() || index == null) {
+            return;
+        }
+
+        Set<Long> ids = new LinkedHashSet<>();
+        for (ChangeEvent event : events) {
+            if (event.getEntity() == ChangeEvent.Entity.BOOK) {
+                ids.add(event.getEntityId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        for (Book book : bookDao.findByIds(ids)) {
+            index(book);
+            ids.remove(book.getId());
+        }
+        ids.forEach(this::remove);
+    }
+
+    @Override
+    public void onEventsLost() {
+        if (index != null) {
+            refresh();
+        }
+    }
+
+    // Helper methods
+
+    private InvertedIndex loadedIndex() {
+        InvertedIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    refresh();
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    private void rankInDatabase(String query, Long categoryId, int offset, int limit, List<Long> ids,
+            List<Double> scores) {
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DB.getReadConnection();
+
+            String sql = "SELECT b.id, ts_rank(b.search_vector, q) AS rank "
+                    + "FROM book b, plainto_tsquery('" + TS_CONFIG + "', ?) q "
+                    + "WHERE b.search_vector @@ q "
+                    + (categoryId != null ? "AND b.category_id = ? " : "")
+                    + "ORDER BY rank DESC, b.id "
+                    + "LIMIT ? OFFSET ?";
+
+            st = conn.prepareStatement(sql);
+
+            int i = 1;
+            st.setString(i++, query);
+            if (categoryId != null) {
+                st.setLong(i++, categoryId);
+            }
+            st.setInt(i++, limit);
+            st.setInt(i, offset);
+
+            rs = st.executeQuery();
+
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+                scores.add(rs.getDouble(2));
+            }
+
+        } catch (SQLException e) {
+            throw new DbException("Error searching books: " + e.getMessage());
+        } finally {
+            DB.closeStatement(st);
+            DB.closeResultSet(rs);
+            DB.closeConnection(conn);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package br.com.libraryjdbc.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import br.com.libraryjdbc.model.Book;
+
+/**
+ * In-process full-text index over title, author and synopsis, used when
+ * the database has no text search of its own.
+ *
+ * Each term maps to a postings list of document ordinals in ascending
+ * order with a precomputed field weight, kept in primitive arrays. A search
+ * intersects the postings of all query terms (every term must match, like
+ * plainto_tsquery), scores the matches by weighted term frequency times
+ * inverse document frequency and keeps only the best page in a bounded
+ * heap. Field weights follow ts_rank's defaults for the A, B and C labels
+ * used by the PostgreSQL index.
+ *
+ * Updating a book appends a new ordinal and marks the old one deleted, so
+ * postings stay sorted without rewriting them.
+ */
+final class InvertedIndex {
+
+    static final float TITLE_WEIGHT = 1.0f;
+    static final float AUTHOR_WEIGHT = 0.4f;
+    static final float SYNOPSIS_WEIGHT = 0.2f;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long[] bookIds = new long[1024];
+    private long[] categoryIds = new long[1024];
+    private int size;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * A matching book id and its score.
+     */
+    static final class Match {
+
+        final long bookId;
+        final float score;
+
+        Match(long bookId, float score) {
+            this.bookId = bookId;
+            this.score = score;
+        }
+    }
+
+    void add(Book book) {
+        Map<String, Float> weights = new HashMap<>();
+        addTerms(weights, book.getTitle(), TITLE_WEIGHT);
+        addTerms(weights, book.getAuthor(), AUTHOR_WEIGHT);
+        addTerms(weights, book.getSynopsis(), SYNOPSIS_WEIGHT);
+
+        lock.writeLock().lock();
+        try {
+            Integer previous = ordinals.get(book.getId());
+            if (previous != null) {
+                deleted.set(previous);
+            }
+
+            int ordinal = size++;
+            if (ordinal == bookIds.length) {
+                bookIds = Arrays.copyOf(bookIds, ordinal * 2);
+                categoryIds = Arrays.copyOf(categoryIds, ordinal * 2);
+            }
+            bookIds[ordinal] = book.getId();
+            categoryIds[ordinal] = book.getCategory() != null && book.getCategory().getId() != null
+                    ? book.getCategory().getId()
+                    : -1;
+            ordinals.put(book.getId(), ordinal);
+
+            for (Map.Entry<String, Float> weight : weights.entrySet()) {
+                postings.computeIfAbsent(weight.getKey(), term -> new Postings()).add(ordinal, weight.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long bookId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(bookId);
+            if (ordinal != null) {
+                deleted.set(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of books in the index.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Matches {@code offset} to {@code offset + limit} in descending score
+     * order (ties by book id), optionally restricted to one category.
+     */
+    List<Match> search(String query, Long categoryId, int offset, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokens(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[terms.size()];
+            float[] idf = new float[terms.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(terms.get(i));
+                if (lists[i] == null) {
+                    return new ArrayList<>();
+                }
+            }
+            // Walk the rarest term and probe the others
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+            for (int i = 0; i < lists.length; i++) {
+                idf[i] = (float) Math.log(1.0 + (double) ordinals.size() / lists[i].size);
+            }
+
+            long category = categoryId != null ? categoryId : -1;
+            TopMatches top = new TopMatches(offset + limit);
+            int[] cursors = new int[lists.length];
+            Postings first = lists[0];
+
+            candidates:
+            for (int p = 0; p < first.size; p++) {
+                int ordinal = first.docs[p];
+                if (deleted.get(ordinal) || (categoryId != null && categoryIds[ordinal] != category)) {
+                    continue;
+                }
+                float score = first.weights[p] * idf[0];
+                for (int i = 1; i < lists.length; i++) {
+                    int found = lists[i].find(ordinal, cursors[i]);
+                    if (found < 0) {
+                        cursors[i] = -found - 1;
+                        if (cursors[i] >= lists[i].size) {
+                            break candidates;
+                        }
+                        continue candidates;
+                    }
+                    cursors[i] = found;
+                    score += lists[i].weights[found] * idf[i];
+                }
+                top.offer(ordinal, score, bookIds);
+            }
+
+            return top.toMatches(offset, bookIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lower-cased words without diacritics, so "São" matches "sao".
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Helper methods
+
+    private static void addTerms(Map<String, Float> weights, String text, float weight) {
+        for (String token : tokens(text)) {
+            weights.merge(token, weight, Float::sum);
+        }
+    }
+
+    /**
+     * Ordinals containing a term, ascending, with the term's weight in each.
+     */
+    private static final class Postings {
+
+        int[] docs = new int[4];
+        float[] weights = new float[4];
+        int size;
+
+        void add(int doc, float weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = weight;
+            size++;
+        }
+
+        /**
+         * Position of {@code doc} at or after {@code from}, or
+         * {@code -(insertion point) - 1} like Arrays.binarySearch.
+         */
+        int find(int doc, int from) {
+            return Arrays.binarySearch(docs, from, size, doc);
+        }
+    }
+
+    /**
+     * Bounded min-heap of the best {@code capacity} matches seen so far.
+     */
+    private static final class TopMatches {
+
+        private final int[] ordinals;
+        private final float[] scores;
+        private int size;
+
+        TopMatches(int capacity) {
+            ordinals = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        void offer(int ordinal, float score, long[] bookIds) {
+            if (size < ordinals.length) {
+                ordinals[size] = ordinal;
+                scores[size] = score;
+                siftUp(size++, bookIds);
+            } else if (worse(ordinals[0], scores[0], ordinal, score, bookIds)) {
+                ordinals[0] = ordinal;
+                scores[0] = score;
+                siftDown(0, bookIds);
+            }
+        }
+
+        /**
+         * Empties the heap into a list, best first, skipping the first
+         * {@code offset} matches.
+         */
+        List<Match> toMatches(int offset, long[] bookIds) {
+            Match[] sorted = new Match[size];
+            for (int i = size - 1; i >= 0; i--) {
+                sorted[i] = new Match(bookIds[ordinals[0]], scores[0]);
+                ordinals[0] = ordinals[i];
+                scores[0] = scores[i];
+                size = i;
+                siftDown(0, bookIds);
+            }
+            List<Match> matches = new ArrayList<>(Math.max(sorted.length - offset, 0));
+            for (int i = offset; i < sorted.length; i++) {
+                matches.add(sorted[i]);
+            }
+            return matches;
+        }
+
+        /**
+         * Whether match a ranks below match b: lower score, or same score
+         * and higher book id.
+         */
+        private static boolean worse(int a, float scoreA, int b, float scoreB, long[] bookIds) {
+            if (scoreA != scoreB) {
+                return scoreA < scoreB;
+            }
+            return bookIds[a] > bookIds[b];
+        }
+
+        private void siftUp(int i, long[] bookIds) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!worse(ordinals[i], scores[i], ordinals[parent], scores[parent], bookIds)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, long[] bookIds) {
+            while (true) {
+                int left = 2 * i + 1;
+                int right = left + 1;
+                int smallest = i;
+                if (left < size && worse(ordinals[left], scores[left], ordinals[smallest], scores[smallest], bookIds)) {
+                    smallest = left;
+                }
+                if (right < size
+                        && worse(ordinals[right], scores[right], ordinals[smallest], scores[smallest], bookIds)) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int ordinal = ordinals[i];
+            ordinals[i] = ordinals[j];
+            ordinals[j] = ordinal;
+            float score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+}
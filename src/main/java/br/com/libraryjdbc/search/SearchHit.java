@@ -0,0 +1,31 @@
+package br.com.libraryjdbc.search;
+
+import br.com.libraryjdbc.model.Book;
+
+/**
+ * A book matching a search, with its relevance score. Scores only compare
+ * hits of the same search.
+ */
+public class SearchHit {
+
+    private final Book book;
+    private final double score;
+
+    public SearchHit(Book book, double score) {
+        this.book = book;
+        this.score = score;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchHit [book=" + (book != null ? book.getTitle() : null) + ", score=" + score + "]";
+    }
+}
@@ -0,0 +1,41 @@
+package br.com.libraryjdbc.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of search hits, best first.
+ */
+public class SearchResults {
+
+    private final List<SearchHit> hits;
+    private final int page;
+    private final int pageSize;
+    private final boolean hasNext;
+
+    SearchResults(List<SearchHit> hits, int page, int pageSize, boolean hasNext) {
+        this.hits = Collections.unmodifiableList(hits);
+        this.page = page;
+        this.pageSize = pageSize;
+        this.hasNext = hasNext;
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    /**
+     * Zero-based page number.
+     */
+    public int getPage() {
+        return page;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+}
@@ -0,0 +1,104 @@
+package db;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stops a pool from trying to connect while the database is down.
+ *
+ * After {@code failureThreshold} connection attempts in a row have failed
+ * the breaker opens, and borrowing fails at once instead of every caller
+ * waiting for its own connect timeout. Once {@code openMillis} have passed
+ * one caller at a time is let through to try again: a success closes the
+ * breaker, a failure keeps it open for another period.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    // Volatile so the closed path, taken on every borrow, needs no lock
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInProgress;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * A threshold of 0 disables the breaker.
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 0 || openMillis < 0) {
+            throw new DbException("Circuit breaker settings cannot be negative");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Throws when the breaker is open, or half open with a trial already
+     * under way.
+     */
+    public void acquire() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+                state = State.HALF_OPEN;
+            }
+            if (state == State.CLOSED || (state == State.HALF_OPEN && !trialInProgress)) {
+                trialInProgress = state == State.HALF_OPEN;
+                return;
+            }
+            rejectedCount.incrementAndGet();
+            throw new DbException("Database unavailable: " + consecutiveFailures
+                    + " connection attempts failed, retrying in "
+                    + Math.max(0, openMillis - (System.currentTimeMillis() - openedAt)) + " ms");
+        }
+    }
+
+    /**
+     * A caller let through by {@link #acquire()} gave up before trying.
+     */
+    public synchronized void release() {
+        trialInProgress = false;
+    }
+
+    public void recordSuccess() {
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return;
+        }
+        synchronized (this) {
+            consecutiveFailures = 0;
+            trialInProgress = false;
+            state = State.CLOSED;
+        }
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInProgress = false;
+        if (failureThreshold > 0 && (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Borrows refused without trying to connect.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
@@ -0,0 +1,553 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ *
+ * Callers borrow a connection with {@link #borrow()} and give it back by
+ * calling {@code close()} on it (or {@link DB#closeConnection(Connection)}).
+ * The pool validates idle connections on borrow, evicts connections that
+ * stay idle for too long and reports connections that are held longer than
+ * the leak detection threshold.
+ *
+ * Settings are read from the same properties as the JDBC url:
+ * <ul>
+ * <li>pool.maxSize - maximum number of open connections (default 10)</li>
+ * <li>pool.minIdle - idle connections kept by eviction (default 0)</li>
+ * <li>pool.borrowTimeoutMs - maximum wait for a free connection (default 30000)</li>
+ * <li>pool.idleTimeoutMs - idle time before a connection is closed (default 600000)</li>
+ * <li>pool.validationTimeoutSeconds - timeout for {@code isValid} (default 5)</li>
+ * <li>pool.validationBypassMs - skip validation for connections returned
+ * more recently than this (default 500)</li>
+ * <li>pool.leakDetectionThresholdMs - report connections held longer than
+ * this, 0 disables (default 0)</li>
+ * <li>pool.housekeepingIntervalMs - eviction and leak check period (default 30000)</li>
+ * <li>pool.statementCacheSize - prepared statements cached per connection,
+ * 0 disables (default 64)</li>
+ * <li>pool.name - name of the pool's {@link QueryMetrics} in JMX (default "default")</li>
+ * <li>pool.jmx - register the metrics with JMX; creating the platform MBean
+ * server adds a few hundred milliseconds to a cold start (default true)</li>
+ * <li>pool.queryMetrics - time the statements run on the pool's
+ * connections (default true)</li>
+ * <li>pool.slowQueryThresholdMs - log statements slower than this, 0
+ * disables (default 1000)</li>
+ * <li>pool.queryTimeoutSeconds - statement timeout set on every statement,
+ * 0 disables (default 0)</li>
+ * <li>pool.breakerFailureThreshold - failed connection attempts in a row
+ * that open the {@link CircuitBreaker}, 0 disables (default 5)</li>
+ * <li>pool.breakerOpenMs - time borrowing fails fast once the breaker is
+ * open (default 5000)</li>
+ * <li>pool.retryAttempts - attempts of a read run through
+ * {@link DB#retryRead}, 1 disables retries (default 3)</li>
+ * <li>pool.retryBackoffMs and pool.retryMaxBackoffMs - jittered backoff
+ * bounds of the first and of any retry (default 50 and 1000)</li>
+ * <li>pool.retryBudgetRatio - retries earned per read (default 0.1)</li>
+ * <li>pool.retryBudgetMax - retries that can be saved up (default 10)</li>
+ * </ul>
+ */
+public class ConnectionPool {
+
+    static final String PREFIX = "pool.";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final String url;
+    private final Properties driverProperties;
+
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final long validationBypassMillis;
+    private final long leakDetectionThresholdMillis;
+    private final int statementCacheSize;
+    private final boolean measureStatements;
+    private final QueryMetrics metrics;
+    private final int queryTimeoutSeconds;
+    private final CircuitBreaker breaker;
+    private final RetryPolicy retryPolicy;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public ConnectionPool(Properties props) {
+        this.url = props.getProperty("dburl");
+        if (url == null || url.isBlank()) {
+            throw new DbException("Property dburl is not defined");
+        }
+        this.driverProperties = DB.driverProperties(props);
+
+        this.maxSize = intProperty(props, "maxSize", 10);
+        this.minIdle = intProperty(props, "minIdle", 0);
+        this.borrowTimeoutMillis = longProperty(props, "borrowTimeoutMs", 30_000L);
+        this.idleTimeoutMillis = longProperty(props, "idleTimeoutMs", 600_000L);
+        this.validationTimeoutSeconds = intProperty(props, "validationTimeoutSeconds", 5);
+        this.validationBypassMillis = longProperty(props, "validationBypassMs", 500L);
+        this.leakDetectionThresholdMillis = longProperty(props, "leakDetectionThresholdMs", 0L);
+        this.statementCacheSize = intProperty(props, "statementCacheSize", 64);
+        long housekeepingMillis = longProperty(props, "housekeepingIntervalMs", 30_000L);
+        this.measureStatements = !"false".equalsIgnoreCase(props.getProperty(PREFIX + "queryMetrics", "true").trim());
+        this.metrics = new QueryMetrics(longProperty(props, "slowQueryThresholdMs", 1000L));
+        this.queryTimeoutSeconds = intProperty(props, "queryTimeoutSeconds", 0);
+        this.breaker = new CircuitBreaker(intProperty(props, "breakerFailureThreshold", 5),
+                longProperty(props, "breakerOpenMs", 5000L));
+        this.retryPolicy = new RetryPolicy(intProperty(props, "retryAttempts", 3),
+                longProperty(props, "retryBackoffMs", 50L), longProperty(props, "retryMaxBackoffMs", 1000L),
+                doubleProperty(props, "retryBudgetRatio", 0.1), intProperty(props, "retryBudgetMax", 10));
+
+        if (maxSize < 1) {
+            throw new DbException("pool.maxSize must be at least 1");
+        }
+
+        this.permits = new Semaphore(maxSize, true);
+        if (!"false".equalsIgnoreCase(props.getProperty(PREFIX + "jmx", "true").trim())) {
+            metrics.register(props.getProperty(PREFIX + "name", "default"));
+        }
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingMillis, housekeepingMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting at most pool.borrowTimeoutMs for one to
+     * become available. The returned connection goes back to the pool when
+     * it is closed. Fails at once while the circuit breaker is open.
+     */
+    public Connection borrow() {
+        if (closed) {
+            throw new DbException("Connection pool is closed");
+        }
+        breaker.acquire();
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                breaker.release();
+                timeoutCount.incrementAndGet();
+                metrics.recordPoolTimeout();
+                throw new DbException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (pool size " + maxSize
+                        + ", in use " + borrowed.size() + ")");
+            }
+        } catch (InterruptedException e) {
+            breaker.release();
+            Thread.currentThread().interrupt();
+            throw new DbException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pc = takeValidConnection();
+            breaker.recordSuccess();
+            long waitNanos = System.nanoTime() - start;
+            totalWaitNanos.addAndGet(waitNanos);
+            metrics.recordPoolWait(waitNanos);
+            borrowCount.incrementAndGet();
+
+            pc.borrowedAt = System.currentTimeMillis();
+            pc.borrowSite = leakDetectionThresholdMillis > 0 ? new Exception("Connection borrowed here") : null;
+            pc.leakReported = false;
+            borrowed.add(pc);
+            return pc.newHandle();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops housekeeping. Connections still
+     * in use are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        metrics.unregister();
+        List<PooledConnection> toClose;
+        synchronized (idle) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        toClose.forEach(this::destroy);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount.get();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    /**
+     * The retry policy of reads on this pool's database.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Statement latencies and pool wait times of this pool.
+     */
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Average time callers spent in {@link #borrow()}, in microseconds.
+     */
+    public long getAverageWaitMicros() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get() / borrows);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool [max=" + maxSize + ", active=" + getActiveCount() + ", idle=" + getIdleCount()
+                + ", created=" + getCreatedCount() + ", timeouts=" + getTimeoutCount() + ", leaks="
+                + getLeakCount() + "]";
+    }
+
+    // Helper methods
+
+    private PooledConnection takeValidConnection() {
+        while (true) {
+            PooledConnection pc;
+            synchronized (idle) {
+                pc = idle.pollFirst();
+            }
+            if (pc == null) {
+                return create();
+            }
+            if (isUsable(pc)) {
+                return pc;
+            }
+            destroy(pc);
+            // A dead connection usually means the server restarted or the
+            // network dropped, which took the other idle connections too;
+            // validating each of them could wait out its own timeout
+            purgeIdle();
+        }
+    }
+
+    private void purgeIdle() {
+        List<PooledConnection> dead;
+        synchronized (idle) {
+            dead = new ArrayList<>(idle);
+            idle.clear();
+        }
+        dead.forEach(this::destroy);
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        if (System.currentTimeMillis() - pc.lastReturned < validationBypassMillis) {
+            return true;
+        }
+        try {
+            return pc.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create() {
+        try {
+            Connection physical = DriverManager.getConnection(url, driverProperties);
+            createdCount.incrementAndGet();
+            return new PooledConnection(physical);
+        } catch (SQLException e) {
+            breaker.recordFailure();
+            throw new DbException("Error opening database connection: " + e.getMessage(), e);
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        borrowed.remove(pc);
+        try {
+            if (closed || !reset(pc)) {
+                destroy(pc);
+                return;
+            }
+            pc.lastReturned = System.currentTimeMillis();
+            synchronized (idle) {
+                idle.offerFirst(pc);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Undoes per-borrow state so the next caller gets a connection in the
+     * driver's default mode. Returns false if the connection is broken.
+     */
+    private boolean reset(PooledConnection pc) {
+        try {
+            Connection c = pc.physical;
+            if (c.isClosed()) {
+                return false;
+            }
+            if (pc.statements != null) {
+                pc.statements.releaseAll();
+            }
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            if (c.isReadOnly()) {
+                c.setReadOnly(false);
+            }
+            c.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pc) {
+        destroyedCount.incrementAndGet();
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            // Connection is being discarded anyway
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (idle) {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > minIdle) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastReturned >= idleTimeoutMillis) {
+                    it.remove();
+                    expired.add(pc);
+                }
+            }
+        }
+        expired.forEach(this::destroy);
+
+        if (leakDetectionThresholdMillis > 0) {
+            for (PooledConnection pc : borrowed) {
+                if (!pc.leakReported && now - pc.borrowedAt >= leakDetectionThresholdMillis) {
+                    pc.leakReported = true;
+                    leakCount.incrementAndGet();
+                    LOG.warn("Possible connection leak: connection held for {} ms", now - pc.borrowedAt,
+                            pc.borrowSite);
+                }
+            }
+        }
+    }
+
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        return (int) longProperty(props, key, defaultValue);
+    }
+
+    private static double doubleProperty(Properties props, String key, double defaultValue) {
+        String value = props.getProperty(PREFIX + key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new DbException("Invalid value for " + PREFIX + key + ": " + value);
+        }
+    }
+
+    private static long longProperty(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(PREFIX + key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new DbException("Invalid value for " + PREFIX + key + ": " + value);
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private final class PooledConnection {
+
+        final Connection physical;
+        final StatementCache statements;
+        volatile long lastReturned;
+        volatile long borrowedAt;
+        volatile Exception borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(statementCacheSize, statementCacheHits, statementCacheMisses,
+                            measureStatements ? metrics : null)
+                    : null;
+            this.lastReturned = System.currentTimeMillis();
+        }
+
+        /**
+         * Each borrow gets its own handle, so a caller that keeps a reference
+         * after closing it cannot use a connection lent to someone else.
+         */
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Handle(this));
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+
+        private final PooledConnection pc;
+        private boolean closed;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pc.physical + (closed ? ", closed" : "") + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            if (pc.statements != null && method.getName().equals("prepareStatement")) {
+                String key = StatementCache.key(args);
+                if (key != null) {
+                    return withTimeout(pc.statements.prepare(pc.physical, (Connection) proxy, method, args, key));
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (measureStatements && result instanceof Statement) {
+                // prepareStatement and prepareCall carry their SQL, createStatement does not
+                String sql = args != null && args[0] instanceof String ? (String) args[0] : null;
+                return withTimeout(metrics.measure((Statement) result, sql, (Connection) proxy));
+            }
+            return result instanceof Statement ? withTimeout((Statement) result) : result;
+        }
+
+        /**
+         * Applies pool.queryTimeoutSeconds, also to a cached statement a
+         * previous caller gave another timeout.
+         */
+        private Statement withTimeout(Statement st) throws SQLException {
+            if (queryTimeoutSeconds > 0) {
+                st.setQueryTimeout(queryTimeoutSeconds);
+            }
+            return st;
+        }
+    }
+}
@@ -3,30 +3,178 @@ package db;
 import java.io.InputStream;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 public class DB {
 
-    private static Connection conn = null;
+    static final String SCHEMA_PREFIX = "schema.";
 
+    private static volatile ConnectionPool pool = null;
+    private static volatile ReplicaRouter replicas = null;
+    private static Properties config = null;
+
+    private static final ThreadLocal<Transaction> TRANSACTION = new ThreadLocal<>();
+
+    /**
+     * Borrows a connection from the pool. Callers must give it back with
+     * {@link #closeConnection(Connection)} when they are done. Inside
+     * {@link #inTransaction(Supplier)} this is the transaction's connection
+     * instead.
+     */
     public static Connection getConnection() {
-        if (conn == null) {
+        Transaction tx = TRANSACTION.get();
+        if (tx != null) {
+            return tx.getParticipant();
+        }
+        return getPool().borrow();
+    }
+
+    /**
+     * Borrows a connection for reads that may lag behind the primary: one
+     * from a read replica when {@link ReplicaRouter replicas} are configured
+     * and healthy, otherwise from the primary. Inside
+     * {@link #inTransaction(Supplier)} this is the transaction's connection,
+     * so the transaction reads its own writes.
+     */
+    public static Connection getReadConnection() {
+        Transaction tx = TRANSACTION.get();
+        if (tx != null) {
+            return tx.getParticipant();
+        }
+        ReplicaRouter router = getReplicaRouter();
+        if (router != null) {
+            Connection conn = router.borrow();
+            if (conn != null) {
+                return conn;
+            }
+        }
+        return getPool().borrow();
+    }
+
+    /**
+     * Runs {@code work} in one transaction on one connection and returns its
+     * result. Every DAO call made by {@code work} on this thread joins the
+     * transaction, and their own commits wait for it. The transaction
+     * commits when {@code work} returns and rolls back if it throws or if
+     * any statement in it failed, even when {@code work} caught the
+     * exception. A call made inside another transaction joins it.
+     *
+     * The transaction belongs to the calling thread: work handed to other
+     * threads (such as the async DAOs) runs outside it.
+     */
+    public static <T> T inTransaction(Supplier<T> work) {
+        Transaction outer = TRANSACTION.get();
+        if (outer != null) {
             try {
-                Properties props = loadProperties();
-                String url = props.getProperty("dburl");
-                conn = DriverManager.getConnection(url, props);
-            } catch (SQLException e) {
-                throw new DbException(e.getMessage());
+                return work.get();
+            } catch (RuntimeException | Error e) {
+                outer.setRollbackOnly();
+                throw e;
+            }
+        }
+
+        Connection conn = getPool().borrow();
+        Transaction tx = new Transaction(conn);
+        TRANSACTION.set(tx);
+        T result;
+
+        try {
+            conn.setAutoCommit(false);
+            result = work.get();
+            if (tx.isRollbackOnly()) {
+                throw new DbException("Transaction rolled back because a statement in it failed");
+            }
+            conn.commit();
+
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            throw new DbException("Error committing transaction: " + e.getMessage(), e);
+        } catch (RuntimeException | Error e) {
+            rollbackQuietly(conn);
+            throw e;
+        } finally {
+            TRANSACTION.remove();
+            closeConnection(conn);
+        }
+
+        tx.runAfterCommit();
+        return result;
+    }
+
+    public static void inTransaction(Runnable work) {
+        inTransaction(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs an idempotent read, retrying it under the pool's
+     * {@link RetryPolicy} when a connection breaks or cannot be opened.
+     * Inside a transaction it runs once: its connection cannot be replaced.
+     */
+    public static <T> T retryRead(Supplier<T> read) {
+        if (isInTransaction()) {
+            return read.get();
+        }
+        return getPool().getRetryPolicy().call(read);
+    }
+
+    /**
+     * Runs a read-modify-write, running it again while it fails with an
+     * {@link OptimisticLockException}, up to {@code maxAttempts} runs in all.
+     * Each run must reread the rows it changes; retries wait a random moment
+     * that grows with the attempt, so that writers colliding on one row
+     * spread out. Inside a transaction it runs once: a conflict marks the
+     * transaction rollback-only, so retry the whole
+     * {@link #inTransaction(Supplier)} call instead.
+     */
+    public static <T> T retryOnConflict(int maxAttempts, Supplier<T> readModifyWrite) {
+        if (maxAttempts < 1) {
+            throw new DbException("Attempts must be at least 1");
+        }
+        if (isInTransaction()) {
+            return readModifyWrite.get();
+        }
+        for (int attempt = 1;; attempt++) {
+            try {
+                return readModifyWrite.get();
+            } catch (OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(attempt * 100_000L));
             }
         }
-        return conn;
     }
 
-    public static void closeConnection() {
+    public static boolean isInTransaction() {
+        return TRANSACTION.get() != null;
+    }
+
+    /**
+     * Runs {@code action} once the current transaction commits, or now when
+     * there is none. Nothing runs if the transaction rolls back.
+     */
+    public static void afterCommit(Runnable action) {
+        Transaction tx = TRANSACTION.get();
+        if (tx != null) {
+            tx.afterCommit(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Returns a borrowed connection to the pool.
+     */
+    public static void closeConnection(Connection conn) {
         if (conn != null) {
             try {
                 conn.close();
@@ -36,6 +184,116 @@ public class DB {
         }
     }
 
+    /**
+     * Shuts the pool down, closing every idle connection. The next call to
+     * {@link #getConnection()} starts a new pool.
+     */
+    public static synchronized void closeConnection() {
+        if (replicas != null) {
+            replicas.close();
+            replicas = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    /**
+     * Replaces the settings read from db.properties. Any open pool is shut
+     * down so the next connection uses the new settings.
+     */
+    public static synchronized void configure(Properties props) {
+        closeConnection();
+        config = props;
+    }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DB.class) {
+                if (pool == null) {
+                    if (config == null) {
+                        config = loadProperties();
+                    }
+                    Properties props = config;
+                    ConnectionPool primary = new ConnectionPool(props);
+                    try {
+                        // Published before the pool, which readers check first
+                        replicas = ReplicaRouter.create(props);
+                    } catch (DbException e) {
+                        primary.close();
+                        throw e;
+                    }
+                    pool = primary;
+                }
+                p = pool;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * The read replicas of the current pool, or null when none are
+     * configured.
+     */
+    public static ReplicaRouter getReplicaRouter() {
+        getPool();
+        return replicas;
+    }
+
+    /**
+     * Statement latencies, row counts and pool wait times of the current
+     * pool.
+     */
+    public static QueryMetrics getMetrics() {
+        return getPool().getMetrics();
+    }
+
+    /**
+     * A schema setting ({@value #SCHEMA_PREFIX}...) of the current
+     * configuration, or {@code defaultValue} when it is not set. These
+     * settings describe how the DAOs lay out their tables and are not
+     * passed to the driver.
+     */
+    public static synchronized String getSetting(String name, String defaultValue) {
+        getPool();
+        String value = config.getProperty(SCHEMA_PREFIX + name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Whether the configured database is PostgreSQL. DAOs use it to pick
+     * PostgreSQL-only DDL (extensions, index types) and fall back to
+     * portable SQL on embedded databases.
+     */
+    public static boolean isPostgreSql() {
+        return getPool().getUrl().startsWith("jdbc:postgresql:");
+    }
+
+    /**
+     * Properties handed to the JDBC driver: everything except the url and
+     * the pool, replica and schema settings.
+     */
+    static Properties driverProperties(Properties props) {
+        Properties driverProps = new Properties();
+        for (String key : props.stringPropertyNames()) {
+            if (!key.equals("dburl") && !key.startsWith(ConnectionPool.PREFIX)
+                    && !key.startsWith(ReplicaRouter.PREFIX) && !key.startsWith(SCHEMA_PREFIX)) {
+                driverProps.setProperty(key, props.getProperty(key));
+            }
+        }
+        return driverProps;
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            // The original failure matters more; the pool discards broken connections
+        }
+    }
+
     private static Properties loadProperties() {
         try (InputStream is = DB.class.getClassLoader().getResourceAsStream("db.properties")) {
             if (is == null) {
@@ -0,0 +1,76 @@
+package db;
+
+/**
+ * Point-in-time view of one latency histogram, in microseconds. Returned
+ * by {@link QueryMetrics} and shown as a composite value over JMX.
+ */
+public class LatencyStats {
+
+    private final String name;
+    private final long count;
+    private final long errors;
+    private final long rows;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p95Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+
+    LatencyStats(String name, LatencyHistogram histogram, long errors, long rows) {
+        this.name = name;
+        this.count = histogram.getCount();
+        this.errors = errors;
+        this.rows = rows;
+        this.meanMicros = histogram.getMeanMicros();
+        this.p50Micros = histogram.getPercentileMicros(50);
+        this.p95Micros = histogram.getPercentileMicros(95);
+        this.p99Micros = histogram.getPercentileMicros(99);
+        this.maxMicros = histogram.getMaxMicros();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Rows read from result sets for queries, rows changed for updates.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP95Micros() {
+        return p95Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [count=%d, errors=%d, rows=%d, mean=%.1fus, p50=%.1fus, p95=%.1fus, "
+                + "p99=%.1fus, max=%.1fus]", name, count, errors, rows, meanMicros, p50Micros, p95Micros,
+                p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,15 @@
+package db;
+
+/**
+ * An update expected a row version that another writer has already
+ * replaced. Rereading the row and applying the change again usually
+ * succeeds; see {@link DB#retryOnConflict(int, java.util.function.Supplier)}.
+ */
+public class OptimisticLockException extends DbException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OptimisticLockException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,344 @@
+package db;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency, row and error counts for the statements run on one connection
+ * pool, plus the time callers wait for a connection.
+ *
+ * The pool wraps every statement it hands out with {@link #measure}, which
+ * times the execute calls, counts the rows read from their result sets and
+ * the failures, per statement type. Recording only touches atomic counters,
+ * so it never blocks a caller. Statements slower than the threshold
+ * (pool.slowQueryThresholdMs, default 1000, 0 disables) are logged at WARN
+ * on the {@value #SLOW_QUERY_LOGGER} logger, without their parameters.
+ *
+ * The latency of a query covers the execute call, not reading its rows.
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+
+    public static final String SLOW_QUERY_LOGGER = "db.SlowQuery";
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryMetrics.class);
+    private static final Logger SLOW_LOG = LoggerFactory.getLogger(SLOW_QUERY_LOGGER);
+
+    public enum QueryType {
+        SELECT, INSERT, UPDATE, DELETE, OTHER;
+
+        /**
+         * Type of a statement from its first keyword. WITH queries count as
+         * SELECT.
+         */
+        public static QueryType of(String sql) {
+            if (sql == null) {
+                return OTHER;
+            }
+            int start = 0;
+            while (start < sql.length() && (Character.isWhitespace(sql.charAt(start)) || sql.charAt(start) == '(')) {
+                start++;
+            }
+            if (startsWith(sql, start, "SELECT") || startsWith(sql, start, "WITH")) {
+                return SELECT;
+            }
+            if (startsWith(sql, start, "INSERT")) {
+                return INSERT;
+            }
+            if (startsWith(sql, start, "UPDATE")) {
+                return UPDATE;
+            }
+            if (startsWith(sql, start, "DELETE")) {
+                return DELETE;
+            }
+            return OTHER;
+        }
+
+        private static boolean startsWith(String sql, int start, String keyword) {
+            return sql.regionMatches(true, start, keyword, 0, keyword.length());
+        }
+    }
+
+    private static final QueryType[] TYPES = QueryType.values();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[TYPES.length];
+    private final LongAdder[] errors = new LongAdder[TYPES.length];
+    private final LongAdder[] rows = new LongAdder[TYPES.length];
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+    private final LongAdder poolTimeouts = new LongAdder();
+    private final LongAdder slowQueryCount = new LongAdder();
+
+    private volatile long slowQueryThresholdNanos;
+    private ObjectName objectName;
+
+    public QueryMetrics(long slowQueryThresholdMillis) {
+        for (int i = 0; i < TYPES.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            errors[i] = new LongAdder();
+            rows[i] = new LongAdder();
+        }
+        setSlowQueryThresholdMillis(slowQueryThresholdMillis);
+    }
+
+    public LatencyStats getQueryStats(QueryType type) {
+        int i = type.ordinal();
+        return new LatencyStats(type.name(), latencies[i], errors[i].sum(), rows[i].sum());
+    }
+
+    @Override
+    public List<LatencyStats> getQueryStats() {
+        List<LatencyStats> stats = new ArrayList<>(TYPES.length);
+        for (QueryType type : TYPES) {
+            stats.add(getQueryStats(type));
+        }
+        return stats;
+    }
+
+    @Override
+    public LatencyStats getPoolWait() {
+        return new LatencyStats("POOL_WAIT", poolWait, poolTimeouts.sum(), 0);
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueryCount.sum();
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Slow query threshold cannot be negative");
+        }
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < TYPES.length; i++) {
+            latencies[i].reset();
+            errors[i].reset();
+            rows[i].reset();
+        }
+        poolWait.reset();
+        poolTimeouts.reset();
+        slowQueryCount.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("QueryMetrics [");
+        for (LatencyStats stats : getQueryStats()) {
+            if (stats.getCount() > 0 || stats.getErrors() > 0) {
+                sb.append(stats).append(", ");
+            }
+        }
+        return sb.append(getPoolWait()).append(", slow=").append(getSlowQueryCount()).append("]").toString();
+    }
+
+    void recordPoolWait(long nanos) {
+        poolWait.record(nanos);
+    }
+
+    void recordPoolTimeout() {
+        poolTimeouts.increment();
+    }
+
+    /**
+     * Wraps {@code statement} so its executions are recorded. {@code sql}
+     * is the text of a prepared statement, or null for a plain one whose
+     * SQL comes with each execute call. {@code connection}, when not null,
+     * is returned by getConnection() in place of the physical connection.
+     */
+    @SuppressWarnings("unchecked")
+    <S extends Statement> S measure(S statement, String sql, Connection connection) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (S) Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(), new Class<?>[] { type },
+                new MeasuredStatement(statement, sql, connection));
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. A name already
+     * taken, for example by a pool that was not closed, is logged and
+     * skipped.
+     */
+    void register(String name) {
+        try {
+            ObjectName on = new ObjectName("db:type=QueryMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            objectName = on;
+        } catch (JMException e) {
+            LOG.warn("Query metrics not registered with JMX as {}: {}", name, e.getMessage());
+        }
+    }
+
+    void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            // Already gone
+        }
+        objectName = null;
+    }
+
+    // Helper methods
+
+    private void recordExecution(QueryType type, String sql, long nanos, boolean failed) {
+        int i = type.ordinal();
+        latencies[i].record(nanos);
+        if (failed) {
+            errors[i].increment();
+        }
+
+        long threshold = slowQueryThresholdNanos;
+        if (threshold > 0 && nanos >= threshold) {
+            slowQueryCount.increment();
+            if (SLOW_LOG.isWarnEnabled()) {
+                SLOW_LOG.warn("Slow {} took {} ms{}: {}", type, TimeUnit.NANOSECONDS.toMillis(nanos),
+                        failed ? " and failed" : "", sql);
+            }
+        }
+    }
+
+    private static long updateCount(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return Math.max(0, ((Number) result).longValue());
+        }
+        long total = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                total += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                total += Math.max(0, count);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Times the execute methods of one statement. Statements are used by
+     * one thread at a time, so the last type needs no synchronization.
+     */
+    private final class MeasuredStatement implements InvocationHandler {
+
+        private final Statement statement;
+        private final String sql;
+        private final QueryType preparedType;
+        private final Connection connection;
+        private QueryType lastType;
+
+        MeasuredStatement(Statement statement, String sql, Connection connection) {
+            this.statement = statement;
+            this.sql = sql;
+            this.preparedType = sql != null ? QueryType.of(sql) : null;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return execute(proxy, method, args);
+                case "getResultSet":
+                    return countRows(proxy, (ResultSet) StatementCache.invoke(method, statement, args));
+                case "getConnection":
+                    return connection != null ? connection : statement.getConnection();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return StatementCache.invoke(method, statement, args);
+            }
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws SQLException {
+            String text = sql;
+            QueryType type = preparedType;
+            if (text == null) {
+                text = args != null && args[0] instanceof String ? (String) args[0] : "batch";
+                type = QueryType.of(text);
+            }
+            lastType = type;
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = StatementCache.invoke(method, statement, args);
+            } catch (SQLException | RuntimeException e) {
+                recordExecution(type, text, System.nanoTime() - start, true);
+                throw e;
+            }
+            recordExecution(type, text, System.nanoTime() - start, false);
+
+            if (result instanceof ResultSet) {
+                return countRows(proxy, (ResultSet) result);
+            }
+            if (!(result instanceof Boolean)) {
+                rows[type.ordinal()].add(updateCount(result));
+            }
+            return result;
+        }
+
+        private ResultSet countRows(Object proxy, ResultSet rs) {
+            if (rs == null) {
+                return null;
+            }
+            LongAdder counter = rows[(lastType != null ? lastType : QueryType.OTHER).ordinal()];
+            return (ResultSet) Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, (rsProxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                                boolean hasRow = rs.next();
+                                if (hasRow) {
+                                    counter.increment();
+                                }
+                                return hasRow;
+                            case "getStatement":
+                                return proxy;
+                            case "equals":
+                                return rsProxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(rsProxy);
+                            default:
+                                return StatementCache.invoke(method, rs, args);
+                        }
+                    });
+        }
+    }
+}
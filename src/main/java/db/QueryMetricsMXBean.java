@@ -0,0 +1,28 @@
+package db;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link QueryMetrics}, registered by each connection pool as
+ * {@code db:type=QueryMetrics,name=<pool.name>}.
+ */
+public interface QueryMetricsMXBean {
+
+    /**
+     * One entry per statement type (SELECT, INSERT, UPDATE, DELETE, OTHER).
+     */
+    List<LatencyStats> getQueryStats();
+
+    /**
+     * Time spent waiting for a pooled connection; errors are borrow timeouts.
+     */
+    LatencyStats getPoolWait();
+
+    long getSlowQueryCount();
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long millis);
+
+    void reset();
+}
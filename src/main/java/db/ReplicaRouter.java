@@ -0,0 +1,255 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read replicas of the primary database, each with its own
+ * {@link ConnectionPool}, used by {@link DB#getReadConnection()}.
+ *
+ * Replicas are declared next to the primary's settings:
+ * <ul>
+ * <li>replica.N.dburl - url of replica N; every other replica.N.key
+ * overrides the primary's key (user, password, pool.maxSize...) for it</li>
+ * <li>replica.selection - round-robin or least-loaded, the replica with the
+ * fewest connections in use (default round-robin)</li>
+ * <li>replica.healthCheckIntervalMs - how often every replica is checked,
+ * down ones included (default 5000)</li>
+ * </ul>
+ *
+ * A replica that cannot open a connection is taken out of rotation until
+ * the next successful health check, and the read goes to the next one; when
+ * none is left {@link #borrow()} returns null and the caller uses the
+ * primary. A statement that fails on a replica is not retried elsewhere.
+ */
+public class ReplicaRouter {
+
+    static final String PREFIX = "replica.";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaRouter.class);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong failoverCount = new AtomicLong();
+    private final ScheduledExecutorService healthChecker;
+
+    private ReplicaRouter(List<Replica> replicas, Selection selection, long healthCheckMillis) {
+        this.replicas = replicas;
+        this.selection = selection;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckMillis, healthCheckMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The replicas declared in {@code props}, or null when there are none.
+     */
+    static ReplicaRouter create(Properties props) {
+        TreeMap<Integer, Properties> declared = new TreeMap<>();
+        for (String key : props.stringPropertyNames()) {
+            if (!key.startsWith(PREFIX)) {
+                continue;
+            }
+            String rest = key.substring(PREFIX.length());
+            int dot = rest.indexOf('.');
+            if (dot <= 0 || !rest.substring(0, dot).chars().allMatch(Character::isDigit)) {
+                continue;
+            }
+            int number = Integer.parseInt(rest.substring(0, dot));
+            declared.computeIfAbsent(number, n -> new Properties()).setProperty(rest.substring(dot + 1),
+                    props.getProperty(key));
+        }
+        if (declared.isEmpty()) {
+            return null;
+        }
+
+        String selectionName = props.getProperty(PREFIX + "selection", "round-robin").trim();
+        Selection selection;
+        try {
+            selection = Selection.valueOf(selectionName.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new DbException("Invalid value for " + PREFIX + "selection: " + selectionName);
+        }
+        String interval = props.getProperty(PREFIX + "healthCheckIntervalMs", "5000").trim();
+        long healthCheckMillis;
+        try {
+            healthCheckMillis = Long.parseLong(interval);
+        } catch (NumberFormatException e) {
+            throw new DbException("Invalid value for " + PREFIX + "healthCheckIntervalMs: " + interval);
+        }
+
+        List<Replica> replicas = new ArrayList<>(declared.size());
+        for (Map.Entry<Integer, Properties> entry : declared.entrySet()) {
+            if (entry.getValue().getProperty("dburl") == null) {
+                throw new DbException("Property " + PREFIX + entry.getKey() + ".dburl is not defined");
+            }
+        }
+        try {
+            for (Map.Entry<Integer, Properties> entry : declared.entrySet()) {
+                String name = "replica-" + entry.getKey();
+                Properties replicaProps = new Properties();
+                for (String key : props.stringPropertyNames()) {
+                    if (!key.startsWith(PREFIX)) {
+                        replicaProps.setProperty(key, props.getProperty(key));
+                    }
+                }
+                replicaProps.setProperty(ConnectionPool.PREFIX + "name", name);
+                replicaProps.putAll(entry.getValue());
+                replicas.add(new Replica(name, new ConnectionPool(replicaProps)));
+            }
+            return new ReplicaRouter(replicas, selection, healthCheckMillis);
+        } catch (RuntimeException e) {
+            // The pools already created would otherwise keep their threads
+            replicas.forEach(replica -> replica.pool.close());
+            throw e;
+        }
+    }
+
+    /**
+     * Borrows a connection from a healthy replica, or returns null when no
+     * replica can provide one.
+     */
+    public Connection borrow() {
+        int size = replicas.size();
+        int start = selection == Selection.LEAST_LOADED ? leastLoaded()
+                : Math.floorMod(next.getAndIncrement(), size);
+
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return replica.pool.borrow();
+            } catch (DbException e) {
+                failoverCount.incrementAndGet();
+                // A full pool is busy, not down
+                if (e.getCause() instanceof SQLException) {
+                    markDown(replica, e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    public boolean isHealthy(int index) {
+        return replicas.get(index).healthy;
+    }
+
+    public ConnectionPool getPool(int index) {
+        return replicas.get(index).pool;
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    /**
+     * Reads that could not be served by the first replica tried.
+     */
+    public long getFailoverCount() {
+        return failoverCount.get();
+    }
+
+    /**
+     * Checks every replica now and updates which ones take reads.
+     */
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection conn = replica.pool.borrow()) {
+                if (!conn.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    markDown(replica, "connection is not valid");
+                    continue;
+                }
+                if (!replica.healthy) {
+                    replica.healthy = true;
+                    LOG.info("Replica {} is back in rotation", replica.name);
+                }
+            } catch (DbException e) {
+                if (e.getCause() instanceof SQLException) {
+                    markDown(replica, e.getMessage());
+                }
+            } catch (SQLException e) {
+                markDown(replica, e.getMessage());
+            }
+        }
+    }
+
+    void close() {
+        healthChecker.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ReplicaRouter [").append(selection);
+        for (Replica replica : replicas) {
+            sb.append(", ").append(replica.name).append(replica.healthy ? "=up" : "=down");
+        }
+        return sb.append("]").toString();
+    }
+
+    // Helper methods
+
+    private int leastLoaded() {
+        int best = Math.floorMod(next.getAndIncrement(), replicas.size());
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (best + i) % replicas.size();
+            Replica replica = replicas.get(index);
+            int active = replica.pool.getActiveCount();
+            if (replica.healthy && active < bestActive) {
+                bestActive = active;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    private static void markDown(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            LOG.warn("Replica {} taken out of rotation: {}", replica.name, reason);
+        }
+    }
+
+    private static final class Replica {
+
+        final String name;
+        final ConnectionPool pool;
+        volatile boolean healthy = true;
+
+        Replica(String name, ConnectionPool pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package db;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retries idempotent reads that failed because a connection broke or
+ * could not be opened, with exponential backoff and full jitter so that
+ * callers failing together do not come back together.
+ *
+ * Retries are limited by a budget as well as per call: every call adds
+ * {@code budgetRatio} of a retry to the budget (up to
+ * {@code maxBudget}) and every retry spends one. While the database is
+ * healthy the budget fills up; during an outage it runs dry after a few
+ * retries, and from then on failures surface at once instead of every
+ * caller multiplying the load on a struggling server.
+ *
+ * Other failures, such as constraint violations, syntax errors or an open
+ * {@link CircuitBreaker}, are never retried.
+ */
+public class RetryPolicy {
+
+    /** Budget kept in thousandths of a retry. */
+    private static final long UNIT = 1000;
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long depositPerCall;
+    private final long maxBalance;
+
+    private final AtomicLong balance;
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    /**
+     * {@code maxAttempts} counts the first try, so 1 disables retries.
+     */
+    public RetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis, double budgetRatio,
+            int maxBudget) {
+        if (maxAttempts < 1 || baseBackoffMillis < 0 || maxBackoffMillis < baseBackoffMillis || budgetRatio < 0
+                || maxBudget < 0) {
+            throw new DbException("Invalid retry settings");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.depositPerCall = Math.round(budgetRatio * UNIT);
+        this.maxBalance = maxBudget * UNIT;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    /**
+     * Runs {@code read}, retrying it while its failures are transient and
+     * the budget allows.
+     */
+    public <T> T call(Supplier<T> read) {
+        deposit();
+        for (int attempt = 1;; attempt++) {
+            try {
+                return read.get();
+            } catch (DbException e) {
+                if (attempt >= maxAttempts || !isTransient(e)) {
+                    throw e;
+                }
+                if (!withdraw()) {
+                    exhaustedCount.incrementAndGet();
+                    throw e;
+                }
+                retryCount.incrementAndGet();
+                sleep(backoffMillis(attempt));
+            }
+        }
+    }
+
+    /**
+     * Whether {@code e} was caused by a lost or refused connection, which a
+     * new connection may not have.
+     */
+    public static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLRecoverableException || t instanceof SQLTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                // 08: connection exception; 57P01-03: server shutting down or
+                // starting; 90067: H2's "connection is broken"
+                if (state != null && (state.startsWith("08") || state.startsWith("57P") || state.equals("90067"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retries spent, not counting the first attempts.
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Transient failures passed on because the budget was spent.
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * Retries the budget currently allows.
+     */
+    public double getBudget() {
+        return balance.get() / (double) UNIT;
+    }
+
+    // Helper methods
+
+    private void deposit() {
+        if (depositPerCall == 0 || balance.get() >= maxBalance) {
+            return;
+        }
+        balance.accumulateAndGet(depositPerCall, (current, add) -> Math.min(maxBalance, current + add));
+    }
+
+    private boolean withdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < UNIT) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Uniform between 0 and the exponential backoff of the attempt.
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbException("Interrupted while waiting to retry", e);
+        }
+    }
+}
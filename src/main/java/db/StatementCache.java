@@ -0,0 +1,214 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared statements of one pooled connection, keyed by SQL text and
+ * evicted in least recently used order.
+ *
+ * {@code prepareStatement} returns a cached statement when one is free;
+ * closing it clears its parameters and puts it back instead of closing it,
+ * so the driver does not parse the same SQL again (and, on PostgreSQL,
+ * reuses the server-side prepared statement once prepareThreshold is
+ * reached). A statement that is already in use by the caller is never
+ * handed out twice: a nested prepare of the same SQL gets a plain one.
+ */
+final class StatementCache {
+
+    private final int maxSize;
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    /** Wraps each statement once, when it is created; null when disabled. */
+    private final QueryMetrics metrics;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Handle of the current borrower, returned by getConnection(). */
+    private Connection handle;
+
+    StatementCache(int maxSize, AtomicLong hitCount, AtomicLong missCount, QueryMetrics metrics) {
+        this.maxSize = maxSize;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Cache key for a prepareStatement call, or null for the variants that
+     * are not cached (column index/name arrays, holdability).
+     */
+    static String key(Object[] args) {
+        if (args == null || !(args[0] instanceof String)) {
+            return null;
+        }
+        String sql = (String) args[0];
+        if (args.length == 1) {
+            return sql;
+        }
+        if (args.length == 2 && args[1] instanceof Integer) {
+            return args[1] + "|" + sql;
+        }
+        if (args.length == 3) {
+            return args[1] + "/" + args[2] + "|" + sql;
+        }
+        return null;
+    }
+
+    PreparedStatement prepare(Connection physical, Connection handle, Method method, Object[] args, String key)
+            throws SQLException {
+        this.handle = handle;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hitCount.incrementAndGet();
+            cached.inUse = true;
+            return cached.proxy;
+        }
+        missCount.incrementAndGet();
+
+        PreparedStatement physicalStatement = (PreparedStatement) invoke(method, physical, args);
+        if (metrics != null) {
+            // The wrapper below answers getConnection() with the current handle
+            physicalStatement = metrics.measure(physicalStatement, (String) args[0], null);
+        }
+        if (cached != null) {
+            // Same SQL already open by this caller: hand out a throwaway one
+            return wrap(physicalStatement, null);
+        }
+
+        CachedStatement entry = new CachedStatement(key, physicalStatement);
+        entry.proxy = wrap(physicalStatement, entry);
+        entry.inUse = true;
+        statements.put(key, entry);
+        evictOverflow();
+        return entry.proxy;
+    }
+
+    /**
+     * Called when the connection goes back to the pool: statements the
+     * borrower did not close are taken back.
+     */
+    void releaseAll() {
+        for (CachedStatement entry : statements.values()) {
+            if (entry.inUse) {
+                entry.inUse = false;
+                reset(entry);
+            }
+        }
+    }
+
+    // Helper methods
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            eldest.evicted = true;
+            if (!eldest.inUse) {
+                closeQuietly(eldest.physical);
+            }
+        }
+    }
+
+    private void reset(CachedStatement entry) {
+        try {
+            entry.physical.clearParameters();
+            entry.physical.clearBatch();
+            entry.physical.setFetchSize(0);
+        } catch (SQLException e) {
+            statements.remove(entry.key);
+            entry.evicted = true;
+            closeQuietly(entry.physical);
+        }
+    }
+
+    private PreparedStatement wrap(PreparedStatement physicalStatement, CachedStatement entry) {
+        InvocationHandler handler = new InvocationHandler() {
+
+            private boolean closed;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                boolean isClosed = entry == null ? closed : !entry.inUse;
+                switch (method.getName()) {
+                    case "close":
+                        if (entry == null) {
+                            closed = true;
+                            physicalStatement.close();
+                        } else if (entry.inUse) {
+                            entry.inUse = false;
+                            if (entry.evicted) {
+                                closeQuietly(physicalStatement);
+                            } else {
+                                reset(entry);
+                            }
+                        }
+                        return null;
+                    case "isClosed":
+                        return isClosed || physicalStatement.isClosed();
+                    case "getConnection":
+                        return handle;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+                if (isClosed) {
+                    throw new SQLException("Statement is closed");
+                }
+                return StatementCache.invoke(method, physicalStatement, args);
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, handler);
+    }
+
+    static Object invoke(Method method, Object target, Object[] args) throws SQLException {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        } catch (IllegalAccessException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement st) {
+        try {
+            st.close();
+        } catch (SQLException e) {
+            // Statement is being discarded anyway
+        }
+    }
+
+    private static final class CachedStatement {
+
+        final String key;
+        final PreparedStatement physical;
+        PreparedStatement proxy;
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(String key, PreparedStatement physical) {
+            this.key = key;
+            this.physical = physical;
+        }
+    }
+}
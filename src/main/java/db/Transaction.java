@@ -0,0 +1,111 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A transaction opened by {@link DB#inTransaction(java.util.function.Supplier)}
+ * and bound to the thread that opened it.
+ *
+ * While it is open, {@link DB#getConnection()} on that thread returns a
+ * view of the transaction's connection on which close, commit and
+ * setAutoCommit do nothing, so DAO methods written for their own
+ * transaction take part in the enclosing one instead. A rollback through
+ * the view marks the transaction rollback-only; the real rollback happens
+ * when the transaction ends.
+ */
+final class Transaction {
+
+    private final Connection connection;
+    private final Connection participant;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private boolean rollbackOnly;
+
+    Transaction(Connection connection) {
+        this.connection = connection;
+        this.participant = (Connection) Proxy.newProxyInstance(Transaction.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Participant());
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * The connection handed to code running inside the transaction.
+     */
+    Connection getParticipant() {
+        return participant;
+    }
+
+    boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    /**
+     * Runs the actions registered with {@link #afterCommit(Runnable)}, in
+     * order. A failing action does not stop the others.
+     */
+    void runAfterCommit() {
+        RuntimeException failure = null;
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private final class Participant implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                case "commit":
+                case "setAutoCommit":
+                    return null;
+                case "getAutoCommit":
+                    return false;
+                case "rollback":
+                    if (args == null) {
+                        rollbackOnly = true;
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Transaction[" + connection + (rollbackOnly ? ", rollback-only" : "") + "]";
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
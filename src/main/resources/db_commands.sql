@@ -6,9 +6,13 @@
 CREATE TABLE IF NOT EXISTS category (
     id SERIAL PRIMARY KEY,
     name VARCHAR(100) NOT NULL UNIQUE,
-    description TEXT NOT NULL
+    description TEXT NOT NULL,
+    version INTEGER DEFAULT 0 NOT NULL
 );
 
+-- Category names are unique ignoring case
+CREATE UNIQUE INDEX IF NOT EXISTS idx_category_name_lower ON category (LOWER(name));
+
 -- Book Table
 CREATE TABLE IF NOT EXISTS book (
     id SERIAL PRIMARY KEY,
@@ -18,9 +22,125 @@ CREATE TABLE IF NOT EXISTS book (
     isbn VARCHAR(20) NOT NULL UNIQUE,
     release_year INTEGER NOT NULL CHECK (release_year >= 1967),
     category_id INTEGER NOT NULL,
+    version INTEGER DEFAULT 0 NOT NULL,
     FOREIGN KEY (category_id) REFERENCES category(id)
 );
 
+-- Book indexes (isbn is already covered by its UNIQUE constraint)
+CREATE INDEX IF NOT EXISTS idx_book_category_id ON book (category_id);
+
+-- Keyset pagination in title order
+CREATE INDEX IF NOT EXISTS idx_book_title_id ON book (title, id);
+
+-- Trigram index so LOWER(author) LIKE '%...%' does not scan the table
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_book_author_trgm ON book USING gin (LOWER(author) gin_trgm_ops);
+
+-- Full-text search over title (A), author (B) and synopsis (C)
+ALTER TABLE book ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(author, '')), 'B') ||
+    setweight(to_tsvector('simple', coalesce(synopsis, '')), 'C')
+) STORED;
+CREATE INDEX IF NOT EXISTS idx_book_search ON book USING gin (search_vector);
+
+-- Book count per category, kept up to date by BookDao
+CREATE TABLE IF NOT EXISTS category_stats (
+    category_id INTEGER PRIMARY KEY REFERENCES category(id) ON DELETE CASCADE,
+    book_count INTEGER NOT NULL CHECK (book_count >= 0)
+);
+
+-- Change feed outbox, written in the same transaction as each change (optional)
+CREATE TABLE IF NOT EXISTS change_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    entity VARCHAR(20) NOT NULL,
+    change_type VARCHAR(10) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Held by outbox writers until they commit, so outbox ids follow commit order
+CREATE TABLE IF NOT EXISTS change_outbox_lock (id INTEGER PRIMARY KEY);
+INSERT INTO change_outbox_lock (id) VALUES (1) ON CONFLICT DO NOTHING;
+
+-- ========================================
+-- PARTITIONED BOOK TABLE (optional)
+-- ========================================
+
+-- The layout BookDao.createTable builds instead of the book table above
+-- when schema.book.partitioning is release_year (years per partition 10,
+-- years ahead 5). Create it in place of that table, before the indexes,
+-- search column and counters, which apply to it unchanged. Partitioning by
+-- category uses PARTITION BY HASH (category_id), a primary key of
+-- (id, category_id) and partitions
+-- FOR VALUES WITH (MODULUS 8, REMAINDER 0) to (MODULUS 8, REMAINDER 7).
+/*
+CREATE TABLE book (
+    id SERIAL,
+    title VARCHAR(200) NOT NULL,
+    author VARCHAR(150) NOT NULL,
+    synopsis TEXT,
+    isbn VARCHAR(20) NOT NULL,
+    release_year INTEGER NOT NULL CHECK (release_year >= 1967),
+    category_id INTEGER NOT NULL,
+    version INTEGER DEFAULT 0 NOT NULL,
+    PRIMARY KEY (id, release_year),
+    FOREIGN KEY (category_id) REFERENCES category(id)
+) PARTITION BY RANGE (release_year);
+
+-- One partition per decade through the current year plus five, and a
+-- default partition for the years past the last one
+CREATE TABLE book_y1960 PARTITION OF book FOR VALUES FROM (1960) TO (1970);
+CREATE TABLE book_y1970 PARTITION OF book FOR VALUES FROM (1970) TO (1980);
+CREATE TABLE book_y1980 PARTITION OF book FOR VALUES FROM (1980) TO (1990);
+CREATE TABLE book_y1990 PARTITION OF book FOR VALUES FROM (1990) TO (2000);
+CREATE TABLE book_y2000 PARTITION OF book FOR VALUES FROM (2000) TO (2010);
+CREATE TABLE book_y2010 PARTITION OF book FOR VALUES FROM (2010) TO (2020);
+CREATE TABLE book_y2020 PARTITION OF book FOR VALUES FROM (2020) TO (2030);
+CREATE TABLE book_y2030 PARTITION OF book FOR VALUES FROM (2030) TO (2040);
+CREATE TABLE book_y_default PARTITION OF book DEFAULT;
+
+-- ISBNs cannot be UNIQUE across partitions: a plain index serves lookups
+-- and the book_isbn registry, filled by a trigger, rejects duplicates
+CREATE INDEX IF NOT EXISTS idx_book_isbn ON book (isbn);
+
+CREATE TABLE IF NOT EXISTS book_isbn (
+    isbn VARCHAR(20) PRIMARY KEY,
+    book_id INTEGER NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION book_isbn_registry() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        DELETE FROM book_isbn WHERE isbn = OLD.isbn AND book_id = OLD.id;
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        INSERT INTO book_isbn (isbn, book_id) VALUES (NEW.isbn, NEW.id)
+            ON CONFLICT (isbn) DO UPDATE SET book_id = EXCLUDED.book_id
+            WHERE book_isbn.book_id = EXCLUDED.book_id;
+        IF NOT FOUND THEN
+            RAISE EXCEPTION 'ISBN already exists: %', NEW.isbn USING ERRCODE = 'unique_violation';
+        END IF;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER book_isbn_registry AFTER INSERT OR UPDATE OR DELETE ON book
+FOR EACH ROW EXECUTE FUNCTION book_isbn_registry();
+
+-- A new decade, created ahead of time (BookPartitions.addYearPartitionsThrough)
+BEGIN;
+CREATE TABLE book_y2040 (LIKE book INCLUDING DEFAULTS INCLUDING CONSTRAINTS);
+WITH moved AS (
+    DELETE FROM book_y_default WHERE release_year >= 2040 AND release_year < 2050 RETURNING *
+)
+INSERT INTO book_y2040 SELECT * FROM moved;
+INSERT INTO book_isbn (isbn, book_id) SELECT isbn, id FROM book_y2040;
+ALTER TABLE book ATTACH PARTITION book_y2040 FOR VALUES FROM (2040) TO (2050);
+COMMIT;
+*/
+
 -- ========================================
 -- INSERT EXAMPLES
 -- ========================================
@@ -62,6 +182,19 @@ SELECT b.*, c.name as category_name
 FROM book b 
 JOIN category c ON b.category_id = c.id;
 
+-- Books in title order, one keyset page at a time (pass the last title/id seen)
+SELECT * FROM book
+WHERE (title, id) > ('Clean Code', 1)
+ORDER BY title, id
+LIMIT 50;
+
+-- Ranked full-text search, one page at a time
+SELECT b.id, b.title, ts_rank(b.search_vector, q) AS rank
+FROM book b, plainto_tsquery('simple', 'clean code') q
+WHERE b.search_vector @@ q
+ORDER BY rank DESC, b.id
+LIMIT 20 OFFSET 0;
+
 -- Books from specific category
 SELECT b.* 
 FROM book b 
@@ -77,6 +210,12 @@ UPDATE category
 SET description = 'Technical books about programming and software development' 
 WHERE name = 'Technical';
 
+-- Update a category only if nobody changed it since version 3 was read
+-- (0 rows means it was changed: reread and try again)
+UPDATE category
+SET description = 'Technical and academic books', version = version + 1
+WHERE id = 2 AND version = 3;
+
 -- Update book synopsis
 UPDATE book 
 SET synopsis = 'Updated synopsis text' 
@@ -89,27 +228,40 @@ WHERE isbn = '9780132350884';
 -- Delete book
 DELETE FROM book WHERE isbn = '9780132350884';
 
--- Delete category (will fail if has books)
-DELETE FROM category WHERE name = 'Fiction';
+-- Delete category only if it has no books (0 rows when it has)
+DELETE FROM category c WHERE c.name = 'Fiction'
+AND NOT EXISTS (SELECT 1 FROM book b WHERE b.category_id = c.id);
 
 -- ========================================
 -- USEFUL QUERIES
 -- ========================================
 
 -- Count books per category
-SELECT c.name, COUNT(b.id) as book_count
+SELECT c.name, COALESCE(s.book_count, 0) as book_count
 FROM category c
-LEFT JOIN book b ON c.id = c.id
-GROUP BY c.name
+LEFT JOIN category_stats s ON s.category_id = c.id
 ORDER BY book_count DESC;
 
 -- Find category with most books
-SELECT c.name, COUNT(b.id) as book_count
+SELECT c.name, COALESCE(s.book_count, 0) as book_count
 FROM category c
-LEFT JOIN book b ON c.id = c.id
-GROUP BY c.name
+LEFT JOIN category_stats s ON s.category_id = c.id
 ORDER BY book_count DESC
 LIMIT 1;
 
+-- Rebuild the counters from scratch
+BEGIN;
+LOCK TABLE category_stats IN EXCLUSIVE MODE;
+DELETE FROM category_stats;
+INSERT INTO category_stats (category_id, book_count)
+SELECT c.id, COUNT(b.id)
+FROM category c
+LEFT JOIN book b ON b.category_id = c.id
+GROUP BY c.id;
+COMMIT;
+
+-- Changes after the last version a consumer has seen
+SELECT id, entity, change_type, entity_id FROM change_outbox WHERE id > 0 ORDER BY id LIMIT 256;
+
 -- Books released after year 2000
 SELECT * FROM book WHERE release_year >= 2000;
\ No newline at end of file
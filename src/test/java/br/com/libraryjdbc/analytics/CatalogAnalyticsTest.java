@@ -0,0 +1,124 @@
+package br.com.libraryjdbc.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import br.com.libraryjdbc.model.CategoryStats;
+import db.DB;
+import db.EmbeddedDatabase;
+
+class CatalogAnalyticsTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("analytics_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void reportsMatchTheCatalog() {
+        Category technical = categoryDao.save(new Category("Technical", "Technical books"));
+        Category fiction = categoryDao.save(new Category("Fiction", "Novels"));
+        Category empty = categoryDao.save(new Category("Empty", "No books yet"));
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String synopsis = i % 4 == 0 ? null : "x".repeat(10 + i % 3 * 10);
+            books.add(new Book("Title " + i % 2900, "Author " + i % 7, synopsis, "isbn-" + i, 1967 + i % 50,
+                    i % 3 == 0 ? technical : fiction));
+        }
+        bookDao.saveAll(books);
+
+        CatalogAnalytics analytics = new CatalogAnalytics(bookDao, categoryDao, 4);
+        // Small chunks, so that the books go through many of them
+        analytics.setChunkSize(700);
+        CatalogReport report = analytics.analyze();
+
+        assertEquals(3000, report.getBooks());
+
+        Map<String, Integer> authors = report.getBooksPerAuthor();
+        assertEquals(7, authors.size());
+        assertEquals(429, authors.get("Author 0"));
+        assertEquals(428, authors.get("Author 6"));
+        assertEquals(List.of("Author 0", "Author 1"), new ArrayList<>(report.getTopAuthors(2).keySet()));
+
+        assertEquals(List.of(1960, 1970, 1980, 1990, 2000, 2010), new ArrayList<>(report.getBooksPerDecade().keySet()));
+        assertEquals(180, report.getBooksPerDecade().get(1960));
+        assertEquals(3000, report.getBooksPerDecade().values().stream().mapToInt(Integer::intValue).sum());
+
+        List<CategoryStats> categories = report.getBooksPerCategory();
+        assertEquals(List.of("Fiction", "Technical", "Empty"),
+                categories.stream().map(s -> s.getCategory().getName()).toList());
+        assertEquals(List.of(2000, 1000, 0), categories.stream().map(CategoryStats::getBookCount).toList());
+        assertEquals(fiction, report.getCategoryWithMostBooks());
+
+        // Titles 0 to 99 were used twice
+        assertEquals(100, report.getDuplicateTitles().size());
+        assertEquals(2, report.getDuplicateTitles().get("Title 42"));
+
+        assertEquals(2250, report.getSynopses());
+        assertEquals(10, report.getShortestSynopsis());
+        assertEquals(30, report.getLongestSynopsis());
+        assertEquals(20.0, report.getAverageSynopsisLength(), 0.01);
+        assertEquals(Math.sqrt(200.0 / 3), report.getSynopsisLengthStdDev(), 0.01);
+    }
+
+    @Test
+    void everyParallelismGivesTheSameReport() {
+        Category category = categoryDao.save(new Category("Only", "The only category"));
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            books.add(new Book("Title " + i % 4000, "Author " + i % 331, "Synopsis " + i, "isbn-" + i,
+                    1967 + i % 58, category));
+        }
+        bookDao.saveAll(books);
+
+        CatalogReport sequential = new CatalogAnalytics(bookDao, categoryDao, 1).analyze();
+        for (int parallelism : new int[] { 2, 8 }) {
+            CatalogAnalytics analytics = new CatalogAnalytics(bookDao, categoryDao, parallelism);
+            analytics.setChunkSize(333);
+            CatalogReport report = analytics.analyze();
+
+            assertEquals(sequential.getBooksPerAuthor(), report.getBooksPerAuthor());
+            assertEquals(sequential.getBooksPerDecade(), report.getBooksPerDecade());
+            assertEquals(sequential.getDuplicateTitles(), report.getDuplicateTitles());
+            assertEquals(sequential.getAverageSynopsisLength(), report.getAverageSynopsisLength(), 1e-9);
+        }
+        assertEquals(1000, sequential.getDuplicateTitles().size());
+    }
+
+    @Test
+    void emptyCatalog() {
+        categoryDao.save(new Category("Empty", "No books yet"));
+
+        CatalogReport report = new CatalogAnalytics().analyze();
+
+        assertEquals(0, report.getBooks());
+        assertTrue(report.getBooksPerAuthor().isEmpty());
+        assertEquals(1, report.getBooksPerCategory().size());
+        assertNull(report.getCategoryWithMostBooks());
+        assertEquals(0, report.getShortestSynopsis());
+    }
+}
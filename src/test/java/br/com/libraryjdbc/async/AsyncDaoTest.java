@@ -0,0 +1,149 @@
+package br.com.libraryjdbc.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+
+class AsyncDaoTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private DaoExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        Properties props = EmbeddedDatabase.properties("async_" + System.nanoTime());
+        props.setProperty("pool.maxSize", "4");
+        DB.configure(props);
+        categoryDao.createTable();
+        executor = new DaoExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+        DB.closeConnection();
+    }
+
+    @Test
+    void concurrencyIsLimitedToThePoolSize() {
+        assertEquals(4, executor.getMaxConcurrency());
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.run(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        assertTrue(peak.get() <= 4, "peak concurrency " + peak.get());
+    }
+
+    @Test
+    void fanOutLookupsKeepTheirOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(categoryDao.save(new Category("Category " + i, "Description " + i)).getId());
+        }
+        ids.add(999L);
+
+        AsyncCategoryDao async = new AsyncCategoryDao(categoryDao, executor);
+        List<Category> categories = async.findByIds(ids).join();
+
+        assertEquals(51, categories.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("Category " + i, categories.get(i).getName());
+        }
+        assertNull(categories.get(50));
+        assertEquals(0, DB.getPool().getActiveCount());
+    }
+
+    @Test
+    void daoErrorsCompleteTheFutureExceptionally() {
+        AsyncCategoryDao async = new AsyncCategoryDao(categoryDao, executor);
+
+        CompletableFuture<Category> future = async.save(new Category("", "No name"));
+
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(DbException.class, e.getCause());
+    }
+
+    @Test
+    void concurrentLookupsShareBatchedQueries() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(categoryDao.save(new Category("Category " + i, "Description " + i)).getId());
+        }
+        ids.add(999L);
+
+        try (CategoryLoader loader = new CategoryLoader(categoryDao, executor, 100, 20_000)) {
+            List<CompletableFuture<Category>> futures = new ArrayList<>();
+            for (int round = 0; round < 10; round++) {
+                for (Long id : ids) {
+                    futures.add(loader.load(id));
+                }
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                Category category = futures.get(i).join();
+                int index = i % ids.size();
+                if (index == 20) {
+                    assertNull(category);
+                } else {
+                    assertEquals("Category " + index, category.getName());
+                }
+            }
+            BatchLoader<Long, Category> batchLoader = loader.getLoader();
+            assertEquals(210, batchLoader.getRequestCount());
+            assertTrue(batchLoader.getBatchCount() < 10, batchLoader.getBatchCount() + " queries");
+        }
+    }
+
+    @Test
+    void booksLoadByIdAndIsbn() {
+        BookDao bookDao = new BookDao();
+        bookDao.createTable();
+        Category technical = categoryDao.save(new Category("Technical", "Programming"));
+        Book cleanCode = bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "9780132350884", 2008, technical));
+        bookDao.save(new Book("Refactoring", "Martin Fowler", null, "9780201485677", 1999, technical));
+
+        try (BookLoader loader = new BookLoader(bookDao, executor)) {
+            CompletableFuture<Book> byIsbn = loader.loadByIsbn("9780201485677");
+            CompletableFuture<Book> missing = loader.loadByIsbn("0000000000");
+
+            assertEquals("Clean Code", loader.findById(cleanCode.getId()).getTitle());
+            assertEquals("Refactoring", byIsbn.join().getTitle());
+            assertEquals("Technical", byIsbn.join().getCategory().getName());
+            assertNull(missing.join());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.async.AsyncBookDao;
+import br.com.libraryjdbc.async.DaoExecutor;
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.model.Book;
+import db.DB;
+
+/**
+ * Load test of the async DAO facade: each operation fans out
+ * {@code inFlight} ISBN lookups at once and waits for all of them, in
+ * platform-thread and virtual-thread mode. Throughput is in fan-outs per
+ * second; after every iteration the peak thread count and heap in use are
+ * printed. Add {@code -prof gc} to jmh.args for allocation rates.
+ *
+ * VIRTUAL needs a JDK with virtual threads (21+); on older JDKs that
+ * parameter fails in setup and the rest of the run goes on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AsyncDaoBenchmark {
+
+    @Param({ "PLATFORM", "VIRTUAL" })
+    public DaoExecutor.Mode mode;
+
+    @Param({ "1000" })
+    public int inFlight;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private BenchmarkDatabase database;
+    private DaoExecutor executor;
+    private AsyncBookDao bookDao;
+
+    @Setup
+    public void setUp() {
+        if (mode == DaoExecutor.Mode.VIRTUAL && !DaoExecutor.isVirtualThreadsAvailable()) {
+            throw new IllegalStateException("Virtual threads need JDK 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+        database = BenchmarkDatabase.start(50, 200);
+        executor = new DaoExecutor(mode, DB.getPool().getMaxSize());
+        bookDao = new AsyncBookDao(new BookDao(), executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.close();
+        }
+        BenchmarkDatabase.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeaks() {
+        threads.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportMemory() {
+        System.out.printf("%n[%s] peak threads: %d, heap used: %d MB%n", mode, threads.getPeakThreadCount(),
+                memory.getHeapMemoryUsage().getUsed() / (1024 * 1024));
+    }
+
+    @Benchmark
+    public List<Book> fanOutLookups() {
+        List<Book> books = database.getBooks();
+        List<String> isbns = new ArrayList<>(inFlight);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < inFlight; i++) {
+            isbns.add(books.get(random.nextInt(books.size())).getIsbn());
+        }
+        return bookDao.findByIsbns(isbns).join();
+    }
+}
@@ -0,0 +1,105 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import br.com.libraryjdbc.async.BookLoader;
+import br.com.libraryjdbc.async.CategoryLoader;
+import br.com.libraryjdbc.async.DaoExecutor;
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.QueryMetrics;
+
+/**
+ * Lookups by id and ISBN from 64 threads with a skewed key distribution:
+ * nine in ten requests go to the first 1% of the keys. {@code direct} calls
+ * the DAO, {@code coalesce} goes through a loader with no window (shared
+ * in-flight queries only) and {@code batch} through one with the default
+ * window. Each iteration prints the SELECTs per second the database saw.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+public class BatchLoaderBenchmark {
+
+    @Param({ "direct", "coalesce", "batch" })
+    public String mode;
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private BenchmarkDatabase database;
+    private DaoExecutor executor;
+    private CategoryLoader categoryLoader;
+    private BookLoader bookLoader;
+
+    private long selectsBefore;
+    private long startNanos;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start(1000, 20);
+        executor = new DaoExecutor();
+        long window = mode.equals("batch") ? CategoryLoader.DEFAULT_WINDOW_MICROS : 0;
+        categoryLoader = new CategoryLoader(categoryDao, executor, CategoryLoader.DEFAULT_MAX_BATCH_SIZE, window);
+        bookLoader = new BookLoader(bookDao, executor, CategoryLoader.DEFAULT_MAX_BATCH_SIZE, window);
+    }
+
+    @TearDown
+    public void tearDown() {
+        categoryLoader.close();
+        bookLoader.close();
+        executor.close();
+        BenchmarkDatabase.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+        selectsBefore = selects();
+        startNanos = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printQueryRate() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf(" [%s: %.0f queries/s]", mode, (selects() - selectsBefore) / seconds);
+    }
+
+    @Benchmark
+    public Category categoryFindById() {
+        Long id = pick(database.getCategories()).getId();
+        return mode.equals("direct") ? categoryDao.findById(id) : categoryLoader.findById(id);
+    }
+
+    @Benchmark
+    public Book bookFindByIsbn() {
+        String isbn = pick(database.getBooks()).getIsbn();
+        return mode.equals("direct") ? bookDao.findByIsbn(isbn) : bookLoader.findByIsbn(isbn);
+    }
+
+    private static <T> T pick(List<T> items) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hot = Math.max(1, items.size() / 100);
+        return items.get(random.nextInt(10) < 9 ? random.nextInt(hot) : random.nextInt(items.size()));
+    }
+
+    private static long selects() {
+        return DB.getMetrics().getQueryStats(QueryMetrics.QueryType.SELECT).getCount();
+    }
+}
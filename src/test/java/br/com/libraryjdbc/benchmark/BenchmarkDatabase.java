@@ -0,0 +1,74 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.EmbeddedDatabase;
+
+/**
+ * Sets up the in-memory database used by the JMH benchmarks and fills it
+ * with a synthetic catalog.
+ */
+public class BenchmarkDatabase {
+
+    private final List<Category> categories;
+    private final List<Book> books;
+
+    private BenchmarkDatabase(List<Category> categories, List<Book> books) {
+        this.categories = categories;
+        this.books = books;
+    }
+
+    /**
+     * Points {@link DB} at a fresh in-memory database, creates the schema and
+     * loads {@code categoryCount} categories with {@code booksPerCategory}
+     * books each.
+     */
+    public static BenchmarkDatabase start(int categoryCount, int booksPerCategory) {
+        return start(new Properties(), categoryCount, booksPerCategory);
+    }
+
+    public static BenchmarkDatabase start(Properties overrides, int categoryCount, int booksPerCategory) {
+        Properties props = EmbeddedDatabase.properties("bench_" + System.nanoTime());
+        props.putAll(overrides);
+        DB.configure(props);
+
+        CategoryDao categoryDao = new CategoryDao();
+        BookDao bookDao = new BookDao();
+        categoryDao.createTable();
+        bookDao.createTable();
+
+        List<Category> categories = new ArrayList<>(categoryCount);
+        for (int i = 0; i < categoryCount; i++) {
+            categories.add(new Category("Category " + i, "Description of category " + i));
+        }
+        categoryDao.saveAll(categories);
+
+        List<Book> books = new ArrayList<>(categoryCount * booksPerCategory);
+        for (int i = 0; i < categoryCount * booksPerCategory; i++) {
+            books.add(new Book("Title " + i, "Author " + (i % 1000), "Synopsis of book " + i,
+                    String.format("978%010d", i), 1967 + i % 58, categories.get(i % categoryCount)));
+        }
+        bookDao.saveAll(books);
+
+        return new BenchmarkDatabase(categories, books);
+    }
+
+    public static void stop() {
+        DB.closeConnection();
+    }
+
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+}
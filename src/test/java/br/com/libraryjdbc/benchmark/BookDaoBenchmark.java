@@ -0,0 +1,75 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.Page;
+import br.com.libraryjdbc.model.Book;
+
+/**
+ * BookDao queries against an in-memory database at two catalog sizes.
+ * Run with {@code -t N} (jmh.args) for multi-threaded numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookDaoBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int bookCount;
+
+    private final BookDao bookDao = new BookDao();
+    private BenchmarkDatabase database;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start(50, bookCount / 50);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Book findById() {
+        return bookDao.findById(randomBook().getId());
+    }
+
+    @Benchmark
+    public Book findByIsbn() {
+        return bookDao.findByIsbn(randomBook().getIsbn());
+    }
+
+    @Benchmark
+    public List<Book> findByAuthor() {
+        return bookDao.findByAuthor(randomBook().getAuthor());
+    }
+
+    @Benchmark
+    public List<Book> findByCategory() {
+        return bookDao.findByCategory(randomBook().getCategory().getId());
+    }
+
+    @Benchmark
+    public Page<Book> findPage() {
+        return bookDao.findPage(randomBook(), 50);
+    }
+
+    private Book randomBook() {
+        List<Book> books = database.getBooks();
+        return books.get(ThreadLocalRandom.current().nextInt(books.size()));
+    }
+}
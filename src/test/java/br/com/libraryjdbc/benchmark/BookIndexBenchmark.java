@@ -0,0 +1,121 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+
+/**
+ * Loads a large synthetic catalog into the PostgreSQL database configured
+ * in db.properties and prints the plans and timings of the BookDao
+ * lookups, to check that they use the indexes created by
+ * {@link BookDao#createTable()}.
+ *
+ * Usage: java ... BookIndexBenchmark [bookCount] (default 2000000)
+ */
+public class BookIndexBenchmark {
+
+    public static void main(String[] args) throws SQLException {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        try {
+            if (!DB.isPostgreSql()) {
+                System.err.println("This benchmark needs PostgreSQL (check dburl in db.properties)");
+                return;
+            }
+
+            CategoryDao categoryDao = new CategoryDao();
+            BookDao bookDao = new BookDao();
+            categoryDao.createTable();
+            bookDao.createTable();
+
+            seed(bookCount);
+
+            explain("isbn", "SELECT * FROM book WHERE isbn = '9780000500000'");
+            explain("category", "SELECT * FROM book WHERE category_id = "
+                    + "(SELECT MIN(id) FROM category WHERE name LIKE 'Bench %')");
+            explain("author", "SELECT * FROM book WHERE LOWER(author) LIKE '%author 4242%'");
+
+            List<Category> categories = categoryDao.findAll();
+            time("findByIsbn", () -> bookDao.findByIsbn("9780000500000"));
+            time("findByCategory", () -> bookDao.findByCategory(categories.get(0).getId()));
+            time("findByAuthor", () -> bookDao.findByAuthor("author 4242"));
+
+        } finally {
+            DB.closeConnection();
+        }
+    }
+
+    /**
+     * Tops the book table up to {@code bookCount} rows with one
+     * INSERT ... SELECT over generate_series.
+     */
+    private static void seed(int bookCount) throws SQLException {
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("INSERT INTO category (name, description) "
+                    + "SELECT 'Bench ' || g, 'Benchmark category' FROM generate_series(1, 50) g "
+                    + "ON CONFLICT DO NOTHING");
+
+            long existing;
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM book")) {
+                rs.next();
+                existing = rs.getLong(1);
+            }
+            if (existing >= bookCount) {
+                System.out.println("Catalog already has " + existing + " books");
+                return;
+            }
+
+            long start = System.nanoTime();
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO book "
+                    + "(title, author, synopsis, isbn, release_year, category_id) "
+                    + "SELECT 'Title ' || g, 'Author ' || (g % 100000), 'Synopsis ' || g, "
+                    + "'978' || LPAD(g::text, 10, '0'), 1967 + (g % 58), "
+                    + "(SELECT MIN(id) FROM category WHERE name LIKE 'Bench %') + (g % 50) "
+                    + "FROM generate_series(?, ?) g ON CONFLICT DO NOTHING")) {
+                ps.setLong(1, existing + 1);
+                ps.setLong(2, bookCount);
+                ps.executeUpdate();
+            }
+            st.execute("ANALYZE book");
+            System.out.printf("Inserted %d books in %d ms%n", bookCount - existing,
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+
+    private static void explain(String label, String sql) throws SQLException {
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("EXPLAIN (ANALYZE, BUFFERS) " + sql)) {
+            System.out.println("\n== " + label + " ==");
+            while (rs.next()) {
+                System.out.println(rs.getString(1));
+            }
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+
+    private static void time(String label, Runnable query) {
+        int warmup = 50;
+        int runs = 500;
+        for (int i = 0; i < warmup; i++) {
+            query.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            query.run();
+        }
+        System.out.printf("%s: %.3f ms/op%n", label, (System.nanoTime() - start) / 1e6 / runs);
+    }
+}
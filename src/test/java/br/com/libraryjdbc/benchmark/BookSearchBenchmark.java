@@ -0,0 +1,108 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import br.com.libraryjdbc.search.BookSearch;
+import br.com.libraryjdbc.search.SearchResults;
+
+/**
+ * Search latency over a synthetic catalog whose titles, authors and
+ * synopses are drawn from a skewed vocabulary, so common words have long
+ * postings and rare ones short. Runs the in-process index on the embedded
+ * database; the first search (index load) happens in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Xmx3g")
+public class BookSearchBenchmark {
+
+    private static final int VOCABULARY = 20000;
+    private static final int CHUNK = 10000;
+
+    @Param({ "1000000" })
+    public int bookCount;
+
+    private final BookDao bookDao = new BookDao();
+    private BookSearch search;
+    private List<Category> categories;
+
+    @Setup
+    public void setUp() {
+        categories = BenchmarkDatabase.start(50, 0).getCategories();
+
+        Random random = new Random(42);
+        List<Book> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < bookCount; i++) {
+            chunk.add(new Book(words(random, 3), words(random, 2), words(random, 12), "isbn-" + i, 1967 + i % 58,
+                    categories.get(i % categories.size())));
+            if (chunk.size() == CHUNK) {
+                bookDao.saveAll(chunk);
+                chunk.clear();
+            }
+        }
+        bookDao.saveAll(chunk);
+
+        search = new BookSearch(bookDao);
+        search.refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public SearchResults commonWord() {
+        return search.search("w1", null, 0, 20);
+    }
+
+    @Benchmark
+    public SearchResults rareWord() {
+        return search.search("w15000", null, 0, 20);
+    }
+
+    @Benchmark
+    public SearchResults twoWords() {
+        return search.search("w2 w30", null, 0, 20);
+    }
+
+    @Benchmark
+    public SearchResults commonWordInCategory() {
+        return search.search("w1", categories.get(7).getId(), 0, 20);
+    }
+
+    @Benchmark
+    public SearchResults commonWordDeepPage() {
+        return search.search("w1", null, 50, 20);
+    }
+
+    /**
+     * Words w1..wN with roughly Zipfian frequencies.
+     */
+    private static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            int rank = (int) Math.min(VOCABULARY, Math.floor(Math.exp(random.nextDouble() * Math.log(VOCABULARY))));
+            sb.append(i == 0 ? "" : " ").append('w').append(rank);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.analytics.CatalogAnalytics;
+import br.com.libraryjdbc.analytics.CatalogReport;
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import db.DB;
+
+/**
+ * A full {@link CatalogAnalytics} pass at several worker counts, against
+ * the GROUP BY queries it replaces run one after the other. The queries do
+ * not depend on {@code workers}; run them with {@code -p workers=1}.
+ * Divide bookCount by the time per operation for books per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CatalogAnalyticsBenchmark {
+
+    private static final String[] REPORT_QUERIES = {
+            "SELECT author, COUNT(*) FROM book GROUP BY author",
+            "SELECT release_year / 10 * 10, COUNT(*) FROM book GROUP BY release_year / 10 * 10",
+            "SELECT c.id, COUNT(b.id) FROM category c LEFT JOIN book b ON b.category_id = c.id GROUP BY c.id",
+            "SELECT title, COUNT(*) FROM book GROUP BY title HAVING COUNT(*) > 1",
+            "SELECT MIN(LENGTH(synopsis)), MAX(LENGTH(synopsis)), AVG(LENGTH(synopsis)), "
+                    + "STDDEV_POP(LENGTH(synopsis)) FROM book" };
+
+    @Param({ "1", "2", "4", "8" })
+    public int workers;
+
+    @Param({ "200000" })
+    public int bookCount;
+
+    private CatalogAnalytics analytics;
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(50, bookCount / 50);
+        // H2 would otherwise answer a repeated query from its last result
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET OPTIMIZE_REUSE_RESULTS FALSE");
+        } finally {
+            DB.closeConnection(conn);
+        }
+        analytics = new CatalogAnalytics(new BookDao(), new CategoryDao(), workers);
+        System.out.printf("%n%s%n", analytics.analyze());
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public CatalogReport singlePass() {
+        return analytics.analyze();
+    }
+
+    @Benchmark
+    public int groupByQueries() throws SQLException {
+        int rows = 0;
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            for (String sql : REPORT_QUERIES) {
+                try (ResultSet rs = st.executeQuery(sql)) {
+                    while (rs.next()) {
+                        rows++;
+                    }
+                }
+            }
+        } finally {
+            DB.closeConnection(conn);
+        }
+        return rows;
+    }
+}
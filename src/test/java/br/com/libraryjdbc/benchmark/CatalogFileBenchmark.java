@@ -0,0 +1,90 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.export.CatalogExporter;
+import br.com.libraryjdbc.export.CatalogFile;
+import br.com.libraryjdbc.export.ExportReport;
+import br.com.libraryjdbc.model.Book;
+
+/**
+ * Exporting the catalog to a {@link CatalogFile} and reading it back
+ * through the mapping: lookups by id and ISBN, and a scan decoding every
+ * book. Compare the lookups with BookDaoBenchmark.findById.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CatalogFileBenchmark {
+
+    @Param({ "100000" })
+    public int bookCount;
+
+    private BenchmarkDatabase database;
+    private Path directory;
+    private Path target;
+    private CatalogFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        database = BenchmarkDatabase.start(50, bookCount / 50);
+        directory = Files.createTempDirectory("catalog-bench");
+        target = directory.resolve("catalog.bin");
+        ExportReport report = new CatalogExporter().export(target);
+        System.out.printf("%n%s%n", report);
+        file = CatalogFile.open(target);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDatabase.stop();
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ExportReport export() {
+        return new CatalogExporter().export(target);
+    }
+
+    @Benchmark
+    public Book findById() {
+        return file.findBookById(randomBook().getId());
+    }
+
+    @Benchmark
+    public Book findByIsbn() {
+        return file.findBookByIsbn(randomBook().getIsbn());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long scan() {
+        long sum = 0;
+        for (int row = 0; row < file.getBookCount(); row++) {
+            sum += file.getBook(row).getTitle().length();
+        }
+        return sum;
+    }
+
+    private Book randomBook() {
+        List<Book> books = database.getBooks();
+        return books.get(ThreadLocalRandom.current().nextInt(books.size()));
+    }
+}
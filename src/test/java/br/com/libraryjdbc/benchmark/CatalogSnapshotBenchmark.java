@@ -0,0 +1,131 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.catalog.CatalogEngine;
+import br.com.libraryjdbc.catalog.CatalogSnapshot;
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * Lookup latency of the in-memory catalog snapshot next to the same lookup
+ * through the DAO on the embedded database. Setup prints the heap the
+ * snapshot takes per million books, measured as the used heap after a full
+ * GC with and without it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(jvmArgsAppend = "-Xmx3g")
+public class CatalogSnapshotBenchmark {
+
+    private static final int CHUNK = 10000;
+    private static final int AUTHORS = 50000;
+
+    @Param({ "1000000" })
+    public int bookCount;
+
+    private final BookDao bookDao = new BookDao();
+    private CatalogSnapshot snapshot;
+    private long[] ids;
+    private long categoryId;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Category> categories = BenchmarkDatabase.start(50, 0).getCategories();
+        categoryId = categories.get(7).getId();
+
+        List<Book> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < bookCount; i++) {
+            chunk.add(new Book("Title " + i, "Author " + (i % AUTHORS), "Synopsis of book number " + i,
+                    "isbn-" + i, 1967 + i % 58, categories.get(i % categories.size())));
+            if (chunk.size() == CHUNK) {
+                bookDao.saveAll(chunk);
+                chunk.clear();
+            }
+        }
+        bookDao.saveAll(chunk);
+
+        CatalogEngine engine = new CatalogEngine();
+        long before = usedHeap();
+        snapshot = engine.getSnapshot();
+        long after = usedHeap();
+        System.out.printf("%nSnapshot of %d books: %.1f MB per million books%n", snapshot.getBookCount(),
+                (after - before) / 1048576.0 * 1000000 / snapshot.getBookCount());
+
+        // Ids in a scattered order so lookups miss the CPU caches
+        ids = new long[1 << 16];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1 + (i * 2654435761L) % bookCount;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Book snapshotFindById() {
+        return snapshot.findBook(nextId());
+    }
+
+    @Benchmark
+    public Book snapshotFindByIsbn() {
+        return snapshot.findByIsbn("isbn-" + (nextId() - 1));
+    }
+
+    @Benchmark
+    public boolean snapshotContains() {
+        return snapshot.containsBook(nextId());
+    }
+
+    @Benchmark
+    public List<Book> snapshotFindByAuthor() {
+        return snapshot.findByAuthor("Author " + nextId() % AUTHORS);
+    }
+
+    @Benchmark
+    public int snapshotCountCategory() {
+        return snapshot.countBooks(categoryId);
+    }
+
+    @Benchmark
+    public Book daoFindById() {
+        return bookDao.findById(nextId());
+    }
+
+    @Benchmark
+    public Book daoFindByIsbn() {
+        return bookDao.findByIsbn("isbn-" + (nextId() - 1));
+    }
+
+    private long nextId() {
+        return ids[next++ & (ids.length - 1)];
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,72 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * CategoryDao operations against an in-memory database at two catalog
+ * sizes. Run with {@code -t N} (jmh.args) for multi-threaded numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CategoryDaoBenchmark {
+
+    @Param({ "50", "2000" })
+    public int categoryCount;
+
+    @Param({ "20" })
+    public int booksPerCategory;
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final AtomicLong sequence = new AtomicLong();
+    private BenchmarkDatabase database;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start(categoryCount, booksPerCategory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Category save() {
+        return categoryDao.save(new Category("Saved " + sequence.incrementAndGet(), "Benchmark category"));
+    }
+
+    @Benchmark
+    public Category findById() {
+        return categoryDao.findById(randomCategory().getId());
+    }
+
+    @Benchmark
+    public Object findAll() {
+        return categoryDao.findAll();
+    }
+
+    @Benchmark
+    public Category findCategoryWithMostBooks() {
+        return categoryDao.findCategoryWithMostBooks();
+    }
+
+    private Category randomCategory() {
+        return database.getCategories().get(ThreadLocalRandom.current().nextInt(categoryCount));
+    }
+}
@@ -0,0 +1,67 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * The hot lookups from eight threads at once, sharing the connection pool.
+ * Compare with the single-threaded numbers of {@link CategoryDaoBenchmark}
+ * and {@link BookDaoBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class ConcurrentDaoBenchmark {
+
+    @Param({ "10000" })
+    public int bookCount;
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private BenchmarkDatabase database;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start(50, bookCount / 50);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Category categoryFindById() {
+        List<Category> categories = database.getCategories();
+        return categoryDao.findById(categories.get(ThreadLocalRandom.current().nextInt(categories.size())).getId());
+    }
+
+    @Benchmark
+    public Book bookFindByIsbn() {
+        List<Book> books = database.getBooks();
+        return bookDao.findByIsbn(books.get(ThreadLocalRandom.current().nextInt(books.size())).getIsbn());
+    }
+
+    @Benchmark
+    public Category findCategoryWithMostBooks() {
+        return categoryDao.findCategoryWithMostBooks();
+    }
+}
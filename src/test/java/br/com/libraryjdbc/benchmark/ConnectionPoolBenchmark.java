@@ -0,0 +1,63 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import db.DB;
+
+/**
+ * Eight threads run a query that holds its connection for 2 ms. With a
+ * single connection they all queue on it; throughput should grow with the
+ * pool size until every thread has its own connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class ConnectionPoolBenchmark {
+
+    @Param({ "1", "4", "8" })
+    public int poolSize;
+
+    @Setup
+    public void setUp() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("pool.maxSize", String.valueOf(poolSize));
+        BenchmarkDatabase.start(props, 0, 0);
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE ALIAS IF NOT EXISTS SLEEP FOR 'java.lang.Thread.sleep'");
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public boolean slowQuery() throws SQLException {
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            return st.execute("CALL SLEEP(2)");
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+
+/**
+ * Read-modify-write of category descriptions by 8 threads spread over
+ * {@code hotRows} categories: version-checked updates retried on conflict,
+ * against reading the row with SELECT ... FOR UPDATE in a transaction.
+ * Teardown prints how many optimistic attempts ended in a conflict.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class OptimisticLockingBenchmark {
+
+    @Param({ "1", "4", "64" })
+    public int hotRows;
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private List<Category> categories;
+
+    @Setup
+    public void setUp() {
+        Properties props = new Properties();
+        props.setProperty("pool.maxSize", "16");
+        categories = BenchmarkDatabase.start(props, hotRows, 0).getCategories();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (updates.sum() > 0) {
+            System.out.printf("%nOptimistic attempts per update: %.3f%n", attempts.sum() / (double) updates.sum());
+        }
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Category optimistic() {
+        Long id = hotCategory();
+        Category updated = DB.retryOnConflict(1000, () -> {
+            attempts.increment();
+            Category category = categoryDao.findById(id);
+            category.setDescription(nextDescription(category.getDescription()));
+            categoryDao.update(category);
+            return category;
+        });
+        updates.increment();
+        return updated;
+    }
+
+    @Benchmark
+    public String pessimistic() {
+        Long id = hotCategory();
+        return DB.inTransaction(() -> {
+            Connection conn = DB.getConnection();
+            try (PreparedStatement select = conn.prepareStatement(
+                    "SELECT description FROM category WHERE id = ? FOR UPDATE");
+                    PreparedStatement update = conn.prepareStatement(
+                            "UPDATE category SET description = ?, version = version + 1 WHERE id = ?")) {
+                select.setLong(1, id);
+                String description;
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    description = nextDescription(rs.getString(1));
+                }
+                update.setString(1, description);
+                update.setLong(2, id);
+                update.executeUpdate();
+                return description;
+            } catch (SQLException e) {
+                throw new DbException(e.getMessage(), e);
+            } finally {
+                DB.closeConnection(conn);
+            }
+        });
+    }
+
+    private Long hotCategory() {
+        return categories.get(ThreadLocalRandom.current().nextInt(categories.size())).getId();
+    }
+
+    private static String nextDescription(String description) {
+        int edits = description.startsWith("Edit ") ? Integer.parseInt(description.substring(5)) : 0;
+        return "Edit " + (edits + 1);
+    }
+}
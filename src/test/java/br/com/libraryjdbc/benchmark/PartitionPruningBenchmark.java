@@ -0,0 +1,142 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.SchemaMigrator;
+import br.com.libraryjdbc.model.Book;
+import db.DB;
+
+/**
+ * Category and year range listings over a multi-million row book table,
+ * plain or partitioned, on PostgreSQL (partitioning has no embedded
+ * equivalent). Each strategy gets its own schema, dropped and reloaded in
+ * setup, which also prints how many partitions each query's plan reads.
+ * <pre>
+ * ./mvnw -Pjmh -DskipTests verify -Djmh.includes=PartitionPruning \
+ *     -Djmh.args="-jvmArgsAppend -Dbench.pgUrl=jdbc:postgresql://localhost:5432/libraryjdbc"
+ * </pre>
+ * bench.pgUser and bench.pgPassword default to postgres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PartitionPruningBenchmark {
+
+    private static final int CATEGORIES = 200;
+
+    @Param({ "none", "category", "release_year" })
+    public String partitioning;
+
+    @Param({ "5000000" })
+    public int bookCount;
+
+    private final BookDao bookDao = new BookDao();
+
+    @Setup
+    public void setUp() throws SQLException {
+        String url = System.getProperty("bench.pgUrl");
+        if (url == null) {
+            throw new IllegalStateException("Set -Dbench.pgUrl to a PostgreSQL database (see the class comment)");
+        }
+        String schema = "bench_partition_" + partitioning;
+
+        Properties props = new Properties();
+        props.setProperty("dburl", url);
+        props.setProperty("user", System.getProperty("bench.pgUser", "postgres"));
+        props.setProperty("password", System.getProperty("bench.pgPassword", "postgres"));
+        props.setProperty("currentSchema", schema);
+        props.setProperty("schema.book.partitioning", partitioning);
+        DB.configure(props);
+
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+            st.executeUpdate("CREATE SCHEMA " + schema);
+        } finally {
+            DB.closeConnection(conn);
+        }
+        new SchemaMigrator().migrate();
+
+        conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("INSERT INTO category (name, description) "
+                    + "SELECT 'Category ' || g, 'Description ' || g FROM generate_series(1, " + CATEGORIES + ") g");
+            st.executeUpdate("INSERT INTO book (title, author, synopsis, isbn, release_year, category_id) "
+                    + "SELECT 'Title ' || g, 'Author ' || g % 5000, 'Synopsis of book ' || g, "
+                    + "'978' || lpad(g::text, 10, '0'), 1967 + g % 58, (SELECT min(id) FROM category) + g % "
+                    + CATEGORIES + " FROM generate_series(1, " + bookCount + ") g");
+            st.executeUpdate("ANALYZE");
+        } finally {
+            DB.closeConnection(conn);
+        }
+
+        System.out.printf("%n%s: partitions read by category %d, by years %d, by category and years %d%n",
+                partitioning, partitionsRead("b.category_id = 7"), partitionsRead("b.release_year BETWEEN 2020 AND 2021"),
+                partitionsRead("b.category_id = 7 AND b.release_year BETWEEN 2000 AND 2004"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Benchmark
+    public List<Book> findByCategory() {
+        return bookDao.findByCategory(categoryId());
+    }
+
+    @Benchmark
+    public List<Book> findByReleaseYears() {
+        int year = 1967 + ThreadLocalRandom.current().nextInt(57);
+        return bookDao.findByReleaseYears(year, year + 1);
+    }
+
+    @Benchmark
+    public List<Book> findByCategoryAndYears() {
+        int year = 1967 + ThreadLocalRandom.current().nextInt(53);
+        return bookDao.findByCategory(categoryId(), year, year + 4);
+    }
+
+    private long categoryId() {
+        return ThreadLocalRandom.current().nextInt(CATEGORIES) + 1;
+    }
+
+    /**
+     * Book partitions (or the plain table) scanned by the plan of a listing
+     * with {@code condition}.
+     */
+    private static int partitionsRead(String condition) throws SQLException {
+        Connection conn = DB.getConnection();
+        try (PreparedStatement st = conn.prepareStatement("EXPLAIN SELECT * FROM book b WHERE " + condition);
+                ResultSet rs = st.executeQuery()) {
+            int scans = 0;
+            while (rs.next()) {
+                if (rs.getString(1).matches(".* on book(_\\w+)? b.*")) {
+                    scans++;
+                }
+            }
+            return scans;
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.cache.QueryCache;
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CachingBookDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * Cached findByCategory hits with every category's list cached, as
+ * serialized blobs on the heap, in direct buffers, or as plain object
+ * lists shared with the caller. Setup prints the heap the full cache keeps
+ * alive and how long a full GC takes with it; run with
+ * {@code -prof gc} (jmh.args) for the allocation each hit costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Xmx2g")
+public class QueryCacheBenchmark {
+
+    @Param({ "objects", "blob", "offheap" })
+    public String storage;
+
+    @Param({ "2000" })
+    public int categoryCount;
+
+    @Param({ "50" })
+    public int booksPerCategory;
+
+    private final Map<Long, List<Book>> objectCache = new ConcurrentHashMap<>();
+    private final BookDao bookDao = new BookDao();
+    private CachingBookDao cachingDao;
+    private long[] categoryIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Category> categories = BenchmarkDatabase.start(categoryCount, booksPerCategory).getCategories();
+        categoryIds = categories.stream().mapToLong(Category::getId).toArray();
+        cachingDao = new CachingBookDao(new QueryCache(QueryCache.DEFAULT_MAX_BYTES * 4, storage.equals("offheap")));
+
+        fillCache();
+        long withCache = usedHeap();
+        long gcMillis = fullGcMillis();
+        long serialized = cachingDao.getCache().getBytes();
+        objectCache.clear();
+        cachingDao.getCache().clear();
+        long withoutCache = usedHeap();
+        fillCache();
+
+        System.out.printf("%n%s cache of %d lists: %.1f MB of heap, %.1f MB serialized, full GC %d ms%n", storage,
+                categoryIds.length, (withCache - withoutCache) / 1048576.0, serialized / 1048576.0, gcMillis);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public List<Book> cachedFindByCategory() {
+        return findByCategory(categoryIds[next++ % categoryIds.length]);
+    }
+
+    private void fillCache() {
+        for (long id : categoryIds) {
+            findByCategory(id);
+        }
+    }
+
+    private List<Book> findByCategory(long categoryId) {
+        if (storage.equals("objects")) {
+            return objectCache.computeIfAbsent(categoryId, bookDao::findByCategory);
+        }
+        return cachingDao.findByCategory(categoryId);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Average time of a few full collections, as reported by the
+     * collectors.
+     */
+    private static long fullGcMillis() {
+        long before = totalGcMillis();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return (totalGcMillis() - before) / 5;
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,93 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+
+/**
+ * Listing every category: mapped by column name from SELECT * as
+ * CategoryDao used to, through the position-resolving row mapper, with the
+ * description projected away, and counted through a collector without a
+ * list. Run with {@code -prof gc} (jmh.args) for the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RowMappingBenchmark {
+
+    @Param({ "2000" })
+    public int categoryCount;
+
+    @Param({ "30", "2000" })
+    public int descriptionLength;
+
+    private final CategoryDao categoryDao = new CategoryDao();
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(categoryCount, 0);
+        try (Connection conn = DB.getConnection(); Statement st = conn.createStatement()) {
+            st.executeUpdate("UPDATE category SET description = RPAD(description, " + descriptionLength + ", '.')");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public List<Category> byColumnName() {
+        try (Connection conn = DB.getConnection();
+                PreparedStatement st = conn.prepareStatement("SELECT * FROM category ORDER BY name");
+                ResultSet rs = st.executeQuery()) {
+            List<Category> categories = new ArrayList<>();
+            while (rs.next()) {
+                Category category = new Category();
+                category.setId(rs.getLong("id"));
+                category.setName(rs.getString("name"));
+                category.setDescription(rs.getString("description"));
+                categories.add(category);
+            }
+            return categories;
+        } catch (SQLException e) {
+            throw new DbException(e.getMessage());
+        }
+    }
+
+    @Benchmark
+    public List<Category> byPosition() {
+        return categoryDao.findAll();
+    }
+
+    @Benchmark
+    public List<Category> idAndNameOnly() {
+        return categoryDao.findAllNames();
+    }
+
+    @Benchmark
+    public long countedByCollector() {
+        return categoryDao.findAllNames(Collectors.counting());
+    }
+}
@@ -0,0 +1,126 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Wall-clock time for a JVM to start, connect, make sure of the schema, run
+ * one query and exit (see {@link StartupProbe}), against an H2 database
+ * file whose schema is already current. {@code fast-cds} is the fast path
+ * with a class data sharing archive recorded by a training run in setup,
+ * as the cds Maven profile does for the application. Archives cannot be
+ * used with class directories, so every path runs with the project classes
+ * packed into jars.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+public class StartupBenchmark {
+
+    @Param({ "spring", "fast", "fast-cds" })
+    public String path;
+
+    private Path directory;
+    private String url;
+    private Path archive;
+    private String classPath;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        directory = Files.createTempDirectory("startup-bench");
+        url = "jdbc:h2:file:" + directory.resolve("library") + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+        archive = directory.resolve("startup.jsa");
+        classPath = jarClassPath();
+
+        // The schema exists before the measured starts, as on a redeploy
+        run("spring", null);
+        run("fast", "-XX:ArchiveClassesAtExit=" + archive);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public int start() throws IOException, InterruptedException {
+        if (path.equals("fast-cds")) {
+            return run("fast", "-XX:SharedArchiveFile=" + archive);
+        }
+        return run(path, null);
+    }
+
+    private int run(String mode, String vmOption) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (vmOption != null) {
+            command.add(vmOption);
+        }
+        command.add("-Xshare:auto");
+        command.add("-cp");
+        command.add(classPath);
+        command.add(StartupProbe.class.getName());
+        command.add(mode);
+        command.add(url);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        int exit = process.waitFor();
+        if (exit != 0) {
+            throw new IllegalStateException(mode + " start failed with exit code " + exit);
+        }
+        return exit;
+    }
+
+    /**
+     * This JVM's class path with each directory replaced by a jar of it.
+     */
+    private String jarClassPath() throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path source = Path.of(entry);
+            if (!Files.isDirectory(source)) {
+                entries.add(entry);
+                continue;
+            }
+            Path jar = directory.resolve("classes-" + entries.size() + ".jar");
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+                    Stream<Path> files = Files.walk(source)) {
+                for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    out.putNextEntry(new JarEntry(source.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, (OutputStream) out);
+                    out.closeEntry();
+                }
+            }
+            entries.add(jar.toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+}
@@ -0,0 +1,55 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+
+import br.com.libraryjdbc.Application;
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.dao.SchemaMigrator;
+import db.DB;
+
+/**
+ * Main class started by {@link StartupBenchmark}: boots the way a batch job
+ * would, runs one query and exits.
+ * <ul>
+ * <li>spring - the previous path: a Spring context, a connection check and
+ * both tables' DDL</li>
+ * <li>fast - no Spring context, no JMX, and the schema migration, which
+ * runs no DDL on a current schema</li>
+ * </ul>
+ */
+public class StartupProbe {
+
+    public static void main(String[] args) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("dburl", args[1]);
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        if (args[0].equals("fast")) {
+            props.setProperty("pool.jmx", "false");
+        }
+        DB.configure(props);
+
+        if (args[0].equals("spring")) {
+            SpringApplication application = new SpringApplication(Application.class);
+            application.setWebApplicationType(WebApplicationType.NONE);
+            application.run();
+
+            Connection conn = DB.getConnection();
+            conn.isValid(5);
+            DB.closeConnection(conn);
+            new CategoryDao().createTable();
+            new BookDao().createTable();
+        } else {
+            new SchemaMigrator().migrate();
+        }
+
+        new CategoryDao().findAll();
+        DB.closeConnection();
+    }
+}
@@ -0,0 +1,52 @@
+package br.com.libraryjdbc.benchmark;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * Repeated {@link CategoryDao#findById(Long)} with the pool's prepared
+ * statement cache disabled (0) and enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatementCacheBenchmark {
+
+    @Param({ "0", "64" })
+    public int statementCacheSize;
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private List<Category> categories;
+
+    @Setup
+    public void setUp() {
+        Properties props = new Properties();
+        props.setProperty("pool.statementCacheSize", String.valueOf(statementCacheSize));
+        categories = BenchmarkDatabase.start(props, 100, 0).getCategories();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Category findById() {
+        return categoryDao.findById(categories.get(ThreadLocalRandom.current().nextInt(categories.size())).getId());
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.libraryjdbc.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ByteBufferInputTest {
+
+    private static final List<String> STRINGS = List.of("", "Clean Code", "Gabriel García Márquez", "\u0000",
+            "三体", "Emoji 📚", "x".repeat(20000));
+
+    @Test
+    void readsWhatDataOutputWrites() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String s : STRINGS) {
+            out.writeUTF(s);
+            out.writeLong(s.length());
+        }
+        out.writeDouble(2.5);
+
+        ByteBufferInput direct = new ByteBufferInput(ByteBuffer.allocateDirect(bytes.size()).put(bytes.toByteArray())
+                .flip());
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (String s : STRINGS) {
+            assertEquals(stream.readUTF(), direct.readUTF());
+            assertEquals(s.length(), direct.readLong());
+            stream.readLong();
+        }
+        assertEquals(2.5, direct.readDouble());
+        assertThrows(EOFException.class, direct::readByte);
+    }
+
+    @Test
+    void malformedOrTruncatedStringsAreRejected() {
+        // A two-byte lead followed by a byte that does not continue it
+        ByteBufferInput malformed = new ByteBufferInput(ByteBuffer.wrap(new byte[] { 0, 2, (byte) 0xC3, 'a' }));
+        assertThrows(UTFDataFormatException.class, malformed::readUTF);
+
+        ByteBufferInput truncated = new ByteBufferInput(ByteBuffer.wrap(new byte[] { 0, 5, 'a', 'b' }));
+        assertThrows(EOFException.class, truncated::readUTF);
+    }
+
+    @Test
+    void linesEndAtAnyTerminator() {
+        ByteBufferInput in = new ByteBufferInput(
+                ByteBuffer.wrap("one\ntwo\r\nthree\rfour".getBytes(StandardCharsets.ISO_8859_1)));
+
+        assertEquals("one", in.readLine());
+        assertEquals("two", in.readLine());
+        assertEquals("three", in.readLine());
+        assertEquals("four", in.readLine());
+        assertNull(in.readLine());
+    }
+}
@@ -0,0 +1,124 @@
+package br.com.libraryjdbc.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.EmbeddedDatabase;
+
+class CatalogEngineTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private final CatalogEngine engine = new CatalogEngine(bookDao, categoryDao);
+
+    private Category technical;
+    private Category fiction;
+    private Book cleanCode;
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("catalog_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+        fiction = categoryDao.save(new Category("Fiction", "Novels"));
+
+        cleanCode = bookDao.save(new Book("Clean Code", "Robert C. Martin", "Craftsmanship", "isbn-1", 2008,
+                technical));
+        bookDao.saveAll(Arrays.asList(
+                new Book("The Clean Coder", "Robert C. Martin", null, "isbn-2", 2011, technical),
+                new Book("Refactoring", "Martin Fowler", null, "isbn-3", 1999, technical),
+                new Book("Dune", "Frank Herbert", "Spice", "isbn-4", 1967, fiction)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void snapshotAnswersLikeTheDao() {
+        CatalogSnapshot snapshot = engine.getSnapshot();
+
+        assertEquals(4, snapshot.getBookCount());
+        assertEquals(2, snapshot.getCategoryCount());
+        assertEquals(bookDao.findById(cleanCode.getId()), snapshot.findBook(cleanCode.getId()));
+        assertEquals("Craftsmanship", snapshot.findBook(cleanCode.getId()).getSynopsis());
+        assertEquals("Technical books", snapshot.findBook(cleanCode.getId()).getCategory().getDescription());
+        assertEquals("Dune", snapshot.findByIsbn("isbn-4").getTitle());
+        assertNull(snapshot.findByIsbn("isbn-9"));
+        assertNull(snapshot.findBook(-1));
+
+        assertEquals(bookDao.findByCategory(technical.getId()), snapshot.findByCategory(technical.getId()));
+        assertEquals(3, snapshot.countBooks(technical.getId()));
+        assertEquals(Arrays.asList("Clean Code", "The Clean Coder"),
+                titles(snapshot.findByAuthor("robert c. MARTIN")));
+        assertTrue(snapshot.findByAuthor("Martin").isEmpty());
+        assertEquals("Fiction", snapshot.findCategory(fiction.getId()).getName());
+        assertEquals(0, snapshot.findCategory(fiction.getId()).getVersion());
+        assertEquals(0, snapshot.findBook(cleanCode.getId()).getVersion());
+    }
+
+    @Test
+    void refreshAppliesReportedChangesWithoutDisturbingReaders() {
+        CatalogSnapshot before = engine.getSnapshot();
+
+        Book kotlin = bookDao.save(new Book("Kotlin in Action", "Dmitry Jemerov", null, "isbn-5", 2017, technical));
+        cleanCode.setTitle("Clean Code, 2nd Edition");
+        cleanCode.setCategory(fiction);
+        bookDao.update(cleanCode);
+        Book refactoring = bookDao.findByIsbn("isbn-3");
+        bookDao.remove(refactoring.getId());
+        Category poetry = categoryDao.save(new Category("Poetry", "Poems"));
+
+        engine.refresh(Arrays.asList(kotlin.getId(), cleanCode.getId(), refactoring.getId()));
+        CatalogSnapshot after = engine.getSnapshot();
+
+        assertEquals(4, after.getBookCount());
+        assertEquals("Kotlin in Action", after.findByIsbn("isbn-5").getTitle());
+        assertFalse(after.containsBook(refactoring.getId()));
+        assertEquals(Arrays.asList("Clean Code, 2nd Edition", "Dune"), titles(after.findByCategory(fiction.getId())));
+        assertEquals(Arrays.asList("Kotlin in Action", "The Clean Coder"),
+                titles(after.findByCategory(technical.getId())));
+        assertEquals("Poetry", after.findCategory(poetry.getId()).getName());
+
+        // The snapshot taken earlier is unchanged
+        assertEquals(4, before.getBookCount());
+        assertEquals("Clean Code", before.findBook(cleanCode.getId()).getTitle());
+        assertTrue(before.containsBook(refactoring.getId()));
+        assertNull(before.findByIsbn("isbn-5"));
+    }
+
+    @Test
+    void returnedBooksAreCopies() {
+        CatalogSnapshot snapshot = engine.getSnapshot();
+
+        snapshot.findBook(cleanCode.getId()).setTitle("Changed");
+        snapshot.findBook(cleanCode.getId()).getCategory().setName("Changed");
+
+        assertEquals("Clean Code", snapshot.findBook(cleanCode.getId()).getTitle());
+        assertEquals("Technical", snapshot.findCategory(technical.getId()).getName());
+    }
+
+    private static List<String> titles(List<Book> books) {
+        List<String> titles = new ArrayList<>();
+        books.forEach(book -> titles.add(book.getTitle()));
+        return titles;
+    }
+}
@@ -0,0 +1,84 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.EmbeddedDatabase;
+
+class BatchSaveTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("batch_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void saveAllCategoriesAssignsIdsAndReportsRejectedRows() {
+        categoryDao.save(new Category("Fiction", "Existing"));
+        categoryDao.setBatchSize(2);
+
+        List<Category> categories = List.of(
+                new Category("Poetry", "Poems"),
+                new Category("", "No name"),
+                new Category("fiction", "Already in the table"),
+                new Category("History", "History books"),
+                new Category("POETRY", "Repeated in the batch"),
+                new Category("Travel", "Travel books"));
+
+        BatchResult<Category> result = categoryDao.saveAll(categories);
+
+        assertEquals(3, result.getSaved().size());
+        result.getSaved().forEach(c -> assertNotNull(c.getId()));
+        assertEquals(List.of(1, 2, 4), result.getErrors().stream().map(BatchResult.RowError::getIndex).sorted()
+                .toList());
+        assertEquals(4, categoryDao.findAll().size());
+        assertEquals(0, DB.getPool().getActiveCount());
+    }
+
+    @Test
+    void saveAllBooksRollsBackOnlyTheFailingChunk() {
+        Category technical = categoryDao.save(new Category("Technical", "Technical books"));
+        Category missing = new Category(999L, "Missing", "Not saved");
+        bookDao.setBatchSize(2);
+
+        List<Book> books = List.of(
+                new Book("Clean Code", "Robert C. Martin", null, "9780132350884", 2008, technical),
+                new Book("Old Book", "Someone", null, "1111111111", 1950, technical),
+                new Book("Orphan", "Someone", null, "2222222222", 2001, missing),
+                new Book("Refactoring", "Martin Fowler", null, "9780201485677", 1999, technical),
+                new Book("Too Long", "Someone", null, "123456789012345678901234", 2000, technical),
+                new Book("Duplicate", "Someone", null, "9780132350884", 2010, technical));
+
+        BatchResult<Book> result = bookDao.saveAll(books);
+
+        // Index 4 fails in the database, taking index 3 (same chunk) with it
+        assertEquals(1, result.getSaved().size());
+        assertNotNull(books.get(0).getId());
+        assertNull(books.get(3).getId());
+        assertEquals(List.of(1, 2, 3, 4, 5), result.getErrors().stream().map(BatchResult.RowError::getIndex)
+                .sorted().toList());
+        assertTrue(result.getErrors().stream().anyMatch(e -> e.getIndex() == 3
+                && e.getMessage().startsWith("Rolled back")));
+    }
+}
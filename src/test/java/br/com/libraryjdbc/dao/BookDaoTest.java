@@ -0,0 +1,197 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+import db.OptimisticLockException;
+
+class BookDaoTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+
+    private Category technical;
+    private Category fiction;
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("books_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+        fiction = categoryDao.save(new Category("Fiction", "Novels"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void crudRoundTrip() {
+        Book book = bookDao.save(new Book("Clean Code", "Robert C. Martin", "Craftsmanship", "9780132350884", 2008,
+                technical));
+        assertNotNull(book.getId());
+
+        Book found = bookDao.findById(book.getId());
+        assertEquals("Clean Code", found.getTitle());
+        assertEquals("Technical", found.getCategory().getName());
+        assertEquals(book, bookDao.findByIsbn("9780132350884"));
+
+        book.setSynopsis("A handbook of agile software craftsmanship");
+        book.setCategory(fiction);
+        bookDao.update(book);
+        assertEquals("Fiction", bookDao.findById(book.getId()).getCategory().getName());
+
+        bookDao.remove(book.getId());
+        assertNull(bookDao.findById(book.getId()));
+        assertThrows(DbException.class, () -> bookDao.remove(book.getId()));
+    }
+
+    @Test
+    void businessRulesAreEnforced() {
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "9780132350884", 2008, technical));
+
+        DbException duplicate = assertThrows(DbException.class,
+                () -> bookDao.save(new Book("Copy", "Someone", null, "9780132350884", 2010, technical)));
+        assertTrue(duplicate.getMessage().contains("ISBN already exists"));
+
+        DbException missing = assertThrows(DbException.class, () -> bookDao.save(new Book("Orphan", "Someone", null,
+                "1234567890", 2010, new Category(999L, "Missing", "Missing"))));
+        assertTrue(missing.getMessage().contains("Category not found"));
+
+        assertThrows(DbException.class,
+                () -> bookDao.save(new Book("Too Old", "Someone", null, "0987654321", 1966, technical)));
+    }
+
+    @Test
+    void listingsByAuthorAndCategory() {
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "9780132350884", 2008, technical));
+        bookDao.save(new Book("Refactoring", "Martin Fowler", null, "9780201485677", 1999, technical));
+        bookDao.save(new Book("Dune", "Frank Herbert", null, "9780441013593", 1990, fiction));
+        bookDao.save(new Book("Percent", "100% Author", null, "1111111111", 2000, fiction));
+
+        assertEquals(List.of("Clean Code", "Refactoring"), titles(bookDao.findByAuthor("MARTIN")));
+        assertEquals(List.of("Percent"), titles(bookDao.findByAuthor("0%")));
+        assertEquals(List.of("Dune", "Percent"), titles(bookDao.findByCategory(fiction.getId())));
+
+        List<Book> all = bookDao.findAll();
+        assertEquals(4, all.size());
+        assertSame(all.get(0).getCategory(), all.get(3).getCategory());
+    }
+
+    @Test
+    void projectionsAndCollectorsReadOnlyWhatIsAsked() {
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", "Craftsmanship", "9780132350884", 2008, technical));
+        bookDao.save(new Book("Refactoring", "Martin Fowler", "Improving code", "9780201485677", 1999, technical));
+
+        List<Book> summaries = bookDao.findSummariesByCategory(technical.getId());
+        assertEquals(List.of("Clean Code", "Refactoring"), titles(summaries));
+        assertEquals(1999, summaries.get(1).getReleaseYear());
+        assertNull(summaries.get(0).getSynopsis());
+        assertNull(summaries.get(0).getCategory());
+
+        String joined = bookDao.findByCategory(technical.getId(),
+                Collectors.mapping(Book::getIsbn, Collectors.joining(",")));
+        assertEquals("9780132350884,9780201485677", joined);
+
+        List<Category> names = categoryDao.findAllNames();
+        assertEquals(List.of("Fiction", "Technical"), names.stream().map(Category::getName).toList());
+        assertNull(names.get(0).getDescription());
+        assertEquals(2L, categoryDao.findAll(Collectors.counting()));
+        assertEquals("Novels", categoryDao.findById(fiction.getId()).getDescription());
+    }
+
+    private static List<String> titles(List<Book> books) {
+        return books.stream().map(Book::getTitle).toList();
+    }
+
+    @Test
+    void listingsByReleaseYears() {
+        bookDao.save(new Book("Refactoring", "Martin Fowler", null, "9780201485677", 1999, technical));
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "9780132350884", 2008, technical));
+        bookDao.save(new Book("The Road", "Cormac McCarthy", null, "9780307387899", 2006, fiction));
+
+        assertEquals(List.of("Clean Code", "The Road"), bookDao.findByReleaseYears(2000, 2009).stream()
+                .map(Book::getTitle).collect(Collectors.toList()));
+        assertEquals(List.of("Clean Code"), bookDao.findByCategory(technical.getId(), 2000, 2009).stream()
+                .map(Book::getTitle).collect(Collectors.toList()));
+        assertTrue(bookDao.findByReleaseYears(2010, 2020).isEmpty());
+    }
+
+    @Test
+    void partitioningNeedsPostgreSql() {
+        Properties props = EmbeddedDatabase.properties("books_partitioned_" + System.nanoTime());
+        props.setProperty("schema.book.partitioning", "release_year");
+        DB.configure(props);
+        categoryDao.createTable();
+
+        assertEquals(BookPartitions.Strategy.RELEASE_YEAR, new BookPartitions().getStrategy());
+        assertEquals(BookPartitions.Strategy.NONE, new BookPartitions().getTableStrategy());
+        DbException e = assertThrows(DbException.class, bookDao::createTable);
+        assertTrue(e.getMessage().contains("PostgreSQL"), e.getMessage());
+    }
+
+    @Test
+    void staleBookUpdatesConflictWithoutMovingCounters() {
+        Book saved = bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "9780132350884", 2008, technical));
+        Book first = bookDao.findById(saved.getId());
+        Book second = bookDao.findById(saved.getId());
+        assertEquals(0, first.getVersion());
+
+        first.setCategory(fiction);
+        bookDao.update(first);
+        assertEquals(1, first.getVersion());
+
+        second.setTitle("Lost update");
+        assertThrows(OptimisticLockException.class, () -> bookDao.update(second));
+
+        Book stored = bookDao.findById(saved.getId());
+        assertEquals("Clean Code", stored.getTitle());
+        assertEquals(fiction, stored.getCategory());
+        assertEquals(1, stored.getVersion());
+        CategoryStatsDao statsDao = new CategoryStatsDao();
+        assertEquals(0, statsDao.countBooks(technical.getId()));
+        assertEquals(1, statsDao.countBooks(fiction.getId()));
+    }
+
+    @Test
+    void conflictCaughtInsideTransactionRollsItBack() {
+        Book saved = bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "9780132350884", 2008, technical));
+        Book stale = bookDao.findById(saved.getId());
+        Book current = bookDao.findById(saved.getId());
+        current.setTitle("Clean Code, 2nd edition");
+        bookDao.update(current);
+
+        stale.setCategory(fiction);
+        DbException e = assertThrows(DbException.class, () -> DB.inTransaction(() -> {
+            bookDao.save(new Book("Dune", "Frank Herbert", null, "9780441172719", 1990, fiction));
+            assertThrows(OptimisticLockException.class, () -> bookDao.update(stale));
+        }));
+        assertTrue(e.getMessage().contains("rolled back"));
+
+        assertNull(bookDao.findByIsbn("9780441172719"));
+        assertEquals(technical, bookDao.findById(saved.getId()).getCategory());
+        CategoryStatsDao statsDao = new CategoryStatsDao();
+        assertEquals(1, statsDao.countBooks(technical.getId()));
+        assertEquals(0, statsDao.countBooks(fiction.getId()));
+    }
+}
@@ -0,0 +1,154 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Year;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+
+/**
+ * Runs against PostgreSQL only, as partitioning has no embedded
+ * equivalent, and is skipped unless a database is given:
+ * <pre>
+ * ./mvnw test -Dtest=BookPartitionsTest -Dtest.pgUrl=jdbc:postgresql://localhost:5432/libraryjdbc
+ * </pre>
+ * test.pgUser and test.pgPassword default to postgres. Each test recreates
+ * the test_book_partitions schema.
+ */
+class BookPartitionsTest {
+
+    private static final String SCHEMA = "test_book_partitions";
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private final CategoryStatsDao statsDao = new CategoryStatsDao();
+
+    private Category technical;
+    private Category fiction;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        String url = System.getProperty("test.pgUrl");
+        assumeTrue(url != null, "Set -Dtest.pgUrl to a PostgreSQL database to run partitioning tests");
+
+        Properties props = new Properties();
+        props.setProperty("dburl", url);
+        props.setProperty("user", System.getProperty("test.pgUser", "postgres"));
+        props.setProperty("password", System.getProperty("test.pgPassword", "postgres"));
+        props.setProperty("currentSchema", SCHEMA);
+        props.setProperty("schema.book.partitioning", "release_year");
+        props.setProperty("schema.book.yearsPerPartition", "10");
+        // Ranges end with the current decade: later years go to the default
+        props.setProperty("schema.book.yearsAhead", "0");
+        DB.configure(props);
+
+        execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        execute("CREATE SCHEMA " + SCHEMA);
+        categoryDao.createTable();
+        bookDao.createTable();
+
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+        fiction = categoryDao.save(new Category("Fiction", "Novels"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void isbnsAreUniqueAcrossPartitions() throws SQLException {
+        assertEquals(BookPartitions.Strategy.RELEASE_YEAR, new BookPartitions().getTableStrategy());
+        Book book = bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 1990, technical));
+
+        DbException e = assertThrows(DbException.class,
+                () -> bookDao.save(new Book("Copy", "Someone", null, "isbn-1", 2010, technical)));
+        assertTrue(e.getMessage().contains("ISBN already exists"));
+
+        // Moving to another partition keeps the ISBN registered to the book
+        book.setReleaseYear(2010);
+        bookDao.update(book);
+        assertEquals(BookPartitions.yearPartition(2010), partitionOf(book.getId()));
+        assertThrows(DbException.class,
+                () -> bookDao.save(new Book("Copy", "Someone", null, "isbn-1", 1990, technical)));
+
+        bookDao.remove(book.getId());
+        Book reused = bookDao.save(new Book("Reused", "Someone", null, "isbn-1", 1990, technical));
+        assertEquals(reused, bookDao.findByIsbn("isbn-1"));
+    }
+
+    @Test
+    void newYearPartitionsTakeTheirBooksFromTheDefault() throws SQLException {
+        int decade = Year.now().getValue() / 10 * 10 + 10;
+        Book first = bookDao.save(new Book("Future 1", "Someone", null, "isbn-1", decade + 1, technical));
+        Book second = bookDao.save(new Book("Future 2", "Someone", null, "isbn-2", decade + 5, fiction));
+        Book later = bookDao.save(new Book("Later", "Someone", null, "isbn-3", decade + 15, fiction));
+        bookDao.save(new Book("Present", "Someone", null, "isbn-4", 2000, fiction));
+        assertEquals(BookPartitions.DEFAULT_PARTITION, partitionOf(first.getId()));
+
+        BookPartitions partitions = new BookPartitions();
+        assertEquals(1, partitions.addYearPartitionsThrough(decade + 9));
+        assertEquals(0, partitions.addYearPartitionsThrough(decade + 9));
+        assertTrue(partitions.getPartitions().stream()
+                .anyMatch(p -> p.getName().equals(BookPartitions.yearPartition(decade))));
+
+        String moved = BookPartitions.yearPartition(decade);
+        assertEquals(moved, partitionOf(first.getId()));
+        assertEquals(moved, partitionOf(second.getId()));
+        assertEquals(BookPartitions.DEFAULT_PARTITION, partitionOf(later.getId()));
+        assertEquals(List.of("Future 1", "Future 2"), bookDao.findByReleaseYears(decade, decade + 9).stream()
+                .map(Book::getTitle).sorted().collect(Collectors.toList()));
+
+        // The moved books keep their ISBNs
+        assertThrows(DbException.class,
+                () -> bookDao.save(new Book("Copy", "Someone", null, "isbn-2", 1990, technical)));
+
+        // Counters are untouched by the move and keep following writes
+        assertEquals(1, statsDao.countBooks(technical.getId()));
+        assertEquals(3, statsDao.countBooks(fiction.getId()));
+        assertTrue(statsDao.findInconsistentCategories().isEmpty());
+        second.setCategory(technical);
+        bookDao.update(second);
+        assertEquals(2, statsDao.countBooks(technical.getId()));
+        assertEquals(2, statsDao.countBooks(fiction.getId()));
+        assertTrue(statsDao.findInconsistentCategories().isEmpty());
+    }
+
+    // Helper methods
+
+    private static void execute(String sql) throws SQLException {
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate(sql);
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+
+    private static String partitionOf(Long bookId) throws SQLException {
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT tableoid::regclass::text FROM book WHERE id = " + bookId)) {
+            return rs.next() ? rs.getString(1) : null;
+        } finally {
+            DB.closeConnection(conn);
+        }
+    }
+}
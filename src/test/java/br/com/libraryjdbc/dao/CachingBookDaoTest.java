@@ -0,0 +1,124 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.cache.ModelCodecs;
+import br.com.libraryjdbc.cache.QueryCache;
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeFeed;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.EmbeddedDatabase;
+
+class CachingBookDaoTest {
+
+    private final QueryCache queryCache = new QueryCache();
+    private final CachingBookDao bookDao = new CachingBookDao(queryCache);
+    private final CachingCategoryDao categoryDao = new CachingCategoryDao(100, 60_000, queryCache);
+    private ChangeFeed feed;
+
+    private Category technical;
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("query_cache_" + System.nanoTime()));
+        feed = new ChangeFeed();
+        ChangeFeed.setDefault(feed);
+        categoryDao.createTable();
+        bookDao.createTable();
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+        bookDao.save(new Book("Refactoring", "Martin Fowler", "Improving code", "isbn-2", 1999, technical));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ChangeFeed.setDefault(null);
+        feed.close();
+        DB.closeConnection();
+    }
+
+    @Test
+    void listQueriesAreCachedAndWritesInvalidate() {
+        List<Book> first = bookDao.findByCategory(technical.getId());
+        first.get(0).setTitle("Changed by the caller");
+        List<Book> second = bookDao.findByCategory(technical.getId());
+
+        assertEquals(1, queryCache.getMissCount());
+        assertEquals(1, queryCache.getHitCount());
+        assertEquals("Clean Code", second.get(0).getTitle());
+        assertTrue(second.get(0).getCategory() == second.get(1).getCategory());
+        assertEquals(0.5, queryCache.getHitRatio());
+
+        bookDao.save(new Book("Domain-Driven Design", "Eric Evans", null, "isbn-3", 2003, technical));
+        assertEquals(3, bookDao.findByCategory(technical.getId()).size());
+
+        categoryDao.update(new Category(technical.getId(), "Programming", "Technical books"));
+        assertEquals("Programming", bookDao.findByCategory(technical.getId()).get(0).getCategory().getName());
+        assertEquals("Martin Fowler", bookDao.findByAuthor("fowler").get(0).getAuthor());
+        assertEquals("Programming", categoryDao.findCategoryWithMostBooks().getName());
+    }
+
+    @Test
+    void writesThroughOtherDaosInvalidateThroughTheFeed() throws InterruptedException {
+        feed.subscribe(queryCache);
+        assertEquals(2, bookDao.findByCategory(technical.getId()).size());
+
+        new BookDao().save(new Book("Domain-Driven Design", "Eric Evans", null, "isbn-3", 2003, technical));
+        assertTrue(feed.awaitDelivery(5, TimeUnit.SECONDS));
+
+        assertEquals(0, queryCache.getSize());
+        assertEquals(3, bookDao.findByCategory(technical.getId()).size());
+    }
+
+    @Test
+    void transactionsBypassTheCache() {
+        bookDao.findByCategory(technical.getId());
+
+        int seenInside = DB.inTransaction(() -> {
+            bookDao.save(new Book("Domain-Driven Design", "Eric Evans", null, "isbn-3", 2003, technical));
+            return bookDao.findByCategory(technical.getId()).size();
+        });
+
+        assertEquals(3, seenInside);
+        assertEquals(3, bookDao.findByCategory(technical.getId()).size());
+    }
+
+    @Test
+    void resultsLoadedDuringAWriteAreNotStored() {
+        List<Book> loaded = queryCache.get(QueryCache.key("stale"), CachingBookDao.BOOK_TABLES,
+                ModelCodecs.BOOK_LIST, () -> {
+                    List<Book> books = new BookDao().findByCategory(technical.getId());
+                    queryCache.invalidate(ChangeEvent.Entity.BOOK);
+                    return books;
+                });
+
+        assertEquals(2, loaded.size());
+        assertEquals(0, queryCache.getSize());
+    }
+
+    @Test
+    void offHeapCacheEvictsByBytes() {
+        QueryCache small = new QueryCache(256, true);
+        CachingBookDao dao = new CachingBookDao(small);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(technical.getName(), dao.findByCategory(technical.getId()).get(0).getCategory().getName());
+            dao.findByAuthor("author " + i);
+        }
+
+        assertTrue(small.getEvictionCount() > 0);
+        assertTrue(small.getBytes() <= 256);
+        assertEquals("Refactoring", dao.findByAuthor("fowler").get(0).getTitle());
+        assertEquals("Improving code", dao.findByAuthor("fowler").get(0).getSynopsis());
+    }
+}
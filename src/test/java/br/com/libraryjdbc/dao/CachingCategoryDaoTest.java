@@ -0,0 +1,141 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.cache.CategoryCache;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+import db.OptimisticLockException;
+
+class CachingCategoryDaoTest {
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("cache_" + System.nanoTime()));
+        new CategoryDao().createTable();
+        new BookDao().createTable();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void lookupsAreServedFromCacheAndWritesInvalidate() {
+        CachingCategoryDao dao = new CachingCategoryDao();
+        CategoryCache cache = dao.getCache();
+        Long id = new CategoryDao().save(new Category("Fiction", "Novels")).getId();
+
+        dao.findById(id);
+        dao.findById(id);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        Category fiction = dao.findById(id);
+        fiction.setDescription("Changed by the caller");
+        assertEquals("Novels", dao.findById(id).getDescription());
+
+        dao.update(new Category(id, "Literature", "Novels and stories"));
+        assertEquals("Literature", dao.findById(id).getName());
+
+        dao.remove(id);
+        assertNull(dao.findById(id));
+    }
+
+    @Test
+    void cachedCategoriesKeepTheirVersion() {
+        CachingCategoryDao dao = new CachingCategoryDao();
+        Long id = dao.save(new Category("Fiction", "Novels")).getId();
+
+        Category first = dao.findById(id);
+        Category second = dao.findById(id);
+        assertEquals(0, second.getVersion());
+
+        first.setDescription("First edit");
+        dao.update(first);
+        second.setDescription("Second edit");
+        assertThrows(OptimisticLockException.class, () -> dao.update(second));
+
+        assertEquals(1, dao.findAll().get(0).getVersion());
+        assertEquals("First edit", dao.findById(id).getDescription());
+    }
+
+    @Test
+    void rolledBackWritesLeaveTheCacheAlone() {
+        CachingCategoryDao dao = new CachingCategoryDao();
+        CategoryCache cache = dao.getCache();
+        Long id = dao.save(new Category("Fiction", "Novels")).getId();
+        dao.warmUp();
+
+        assertThrows(IllegalStateException.class, () -> DB.inTransaction(() -> {
+            dao.save(new Category("Poetry", "Poems"));
+            Category fiction = dao.findById(id);
+            fiction.setName("Literature");
+            dao.update(fiction);
+            throw new IllegalStateException("Rolled back");
+        }));
+
+        assertNotEquals(Boolean.TRUE, cache.nameExists("poetry"));
+        Category fiction = dao.findById(id);
+        assertEquals("Fiction", fiction.getName());
+        assertEquals(0, fiction.getVersion());
+
+        DB.inTransaction(() -> {
+            dao.save(new Category("Poetry", "Poems"));
+        });
+        assertEquals(Boolean.TRUE, cache.nameExists("poetry"));
+    }
+
+    @Test
+    void warmCacheAnswersDuplicateNameChecks() {
+        CachingCategoryDao dao = new CachingCategoryDao();
+        CategoryCache cache = dao.getCache();
+        dao.save(new Category("Fiction", "Novels"));
+        dao.warmUp();
+        assertTrue(cache.isComplete());
+
+        long misses = cache.getMissCount();
+        assertThrows(DbException.class, () -> dao.save(new Category("FICTION", "Duplicate")));
+        dao.save(new Category("Poetry", "Poems"));
+        assertEquals(misses, cache.getMissCount());
+
+        assertEquals(Boolean.TRUE, cache.nameExists("poetry"));
+    }
+
+    @Test
+    void entriesExpireAndAreBoundedInSize() throws InterruptedException {
+        CachingCategoryDao dao = new CachingCategoryDao(2, 50);
+        CategoryCache cache = dao.getCache();
+        CategoryDao plain = new CategoryDao();
+        Long a = plain.save(new Category("A", "a")).getId();
+        Long b = plain.save(new Category("B", "b")).getId();
+        Long c = plain.save(new Category("C", "c")).getId();
+
+        dao.findAll();
+        assertFalse(cache.isComplete());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        dao.findById(a);
+        dao.findById(b);
+        dao.findById(c);
+        assertEquals(2, cache.size());
+
+        Thread.sleep(80);
+        long misses = cache.getMissCount();
+        dao.findById(c);
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+}
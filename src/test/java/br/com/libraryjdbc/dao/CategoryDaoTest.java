@@ -0,0 +1,152 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+import db.OptimisticLockException;
+
+class CategoryDaoTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+
+    @BeforeEach
+    void setUp() {
+        Properties props = EmbeddedDatabase.properties("category_" + System.nanoTime());
+        props.setProperty("pool.maxSize", "8");
+        DB.configure(props);
+        categoryDao.createTable();
+        new BookDao().createTable();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void concurrentSavesOfTheSameNameCreateOneCategory() throws InterruptedException {
+        int threads = 16;
+        int names = 20;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger saved = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        List<Throwable> unexpected = new ArrayList<>();
+        ConcurrentHashMap<String, Long> ids = new ConcurrentHashMap<>();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int n = 0; n < names; n++) {
+                        // Same names from every thread, in varying case
+                        String name = (thread % 2 == 0 ? "Name " : "NAME ") + n;
+                        try {
+                            Category category = categoryDao.save(new Category(name, "Thread " + thread));
+                            saved.incrementAndGet();
+                            ids.put(name.toLowerCase(), category.getId());
+                        } catch (DbException e) {
+                            if (!e.getMessage().startsWith("Category name already exists")) {
+                                throw e;
+                            }
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (unexpected) {
+                        unexpected.add(e);
+                    }
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected);
+        assertEquals(names, saved.get());
+        assertEquals(threads * names - names, duplicates.get());
+        assertEquals(names, categoryDao.findAll().size());
+        assertEquals(names, ids.size());
+    }
+
+    @Test
+    void removeRefusesCategoriesWithBooks() {
+        Category technical = categoryDao.save(new Category("Technical", "Technical books"));
+        Category empty = categoryDao.save(new Category("Empty", "Nothing here"));
+        new BookDao().save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+
+        DbException inUse = assertThrows(DbException.class, () -> categoryDao.remove(technical.getId()));
+        assertEquals("Cannot remove category that has associated books", inUse.getMessage());
+
+        categoryDao.remove(empty.getId());
+        DbException missing = assertThrows(DbException.class, () -> categoryDao.remove(empty.getId()));
+        assertEquals("Category with ID " + empty.getId() + " not found.", missing.getMessage());
+        assertEquals(1, categoryDao.findAll().size());
+    }
+
+    @Test
+    void staleUpdatesConflictAndRetriesRereadTheRow() throws InterruptedException {
+        Category saved = categoryDao.save(new Category("Technical", "Technical books"));
+        assertEquals(0, saved.getVersion());
+
+        Category first = categoryDao.findById(saved.getId());
+        Category second = categoryDao.findById(saved.getId());
+        first.setDescription("Programming books");
+        categoryDao.update(first);
+        assertEquals(1, first.getVersion());
+
+        second.setDescription("Lost update");
+        assertThrows(OptimisticLockException.class, () -> categoryDao.update(second));
+        assertEquals("Programming books", categoryDao.findById(saved.getId()).getDescription());
+
+        // Without a version the row is overwritten as before
+        categoryDao.update(new Category(saved.getId(), "Technical", "Overwritten"));
+        assertEquals(2, categoryDao.findById(saved.getId()).getVersion());
+
+        // Concurrent read-modify-write loops lose no update
+        int threads = 8;
+        int increments = 25;
+        Category counter = categoryDao.save(new Category("Counter", "0"));
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < increments; i++) {
+                    DB.retryOnConflict(1000, () -> {
+                        Category current = categoryDao.findById(counter.getId());
+                        current.setDescription(String.valueOf(Integer.parseInt(current.getDescription()) + 1));
+                        categoryDao.update(current);
+                        return current;
+                    });
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Category result = categoryDao.findById(counter.getId());
+        assertEquals(String.valueOf(threads * increments), result.getDescription());
+        assertEquals(threads * increments, result.getVersion());
+    }
+}
@@ -0,0 +1,167 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import br.com.libraryjdbc.model.CategoryStats;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+import db.OptimisticLockException;
+
+class CategoryStatsDaoTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private final CategoryStatsDao statsDao = new CategoryStatsDao();
+
+    private Category technical;
+    private Category fiction;
+    private Category poetry;
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("stats_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+        fiction = categoryDao.save(new Category("Fiction", "Novels"));
+        poetry = categoryDao.save(new Category("Poetry", "Poems"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void countersFollowBookWrites() {
+        Book book = bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+        bookDao.save(new Book("Refactoring", "Martin Fowler", null, "isbn-2", 1999, technical));
+        assertEquals(2, statsDao.countBooks(technical.getId()));
+
+        book.setCategory(fiction);
+        bookDao.update(book);
+        assertEquals(1, statsDao.countBooks(technical.getId()));
+        assertEquals(1, statsDao.countBooks(fiction.getId()));
+
+        bookDao.remove(book.getId());
+        assertEquals(0, statsDao.countBooks(fiction.getId()));
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            books.add(new Book("Poems " + i, "Someone", null, "poem-" + i, 2000, poetry));
+        }
+        books.add(new Book("Duplicate", "Someone", null, "isbn-2", 2000, poetry));
+        bookDao.saveAll(books);
+        assertEquals(5, statsDao.countBooks(poetry.getId()));
+
+        assertEquals(poetry, categoryDao.findCategoryWithMostBooks());
+        assertTrue(statsDao.findInconsistentCategories().isEmpty());
+    }
+
+    @Test
+    void failedWritesLeaveCountersUnchanged() {
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+
+        assertThrows(DbException.class,
+                () -> bookDao.save(new Book("Copy", "Someone", null, "isbn-1", 2010, technical)));
+        assertThrows(DbException.class, () -> bookDao.save(new Book("Orphan", "Someone", null, "isbn-2", 2010,
+                new Category(999L, "Missing", "Missing"))));
+
+        assertEquals(1, statsDao.countBooks(technical.getId()));
+        assertTrue(statsDao.findInconsistentCategories().isEmpty());
+    }
+
+    @Test
+    void findTopOrdersByBookCount() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            books.add(new Book("Novel " + i, "Someone", null, "novel-" + i, 2000, fiction));
+        }
+        books.add(new Book("Manual", "Someone", null, "manual", 2000, technical));
+        bookDao.saveAll(books);
+
+        List<CategoryStats> top = statsDao.findTop(3);
+        assertEquals(3, top.size());
+        assertEquals(fiction, top.get(0).getCategory());
+        assertEquals(3, top.get(0).getBookCount());
+        assertEquals(technical, top.get(1).getCategory());
+        assertEquals(poetry, top.get(2).getCategory());
+        assertEquals(0, top.get(2).getBookCount());
+    }
+
+    @Test
+    void categoriesFromFindTopAreUpdatedWithTheirVersion() {
+        bookDao.save(new Book("Novel", "Someone", null, "novel", 2000, fiction));
+        Category stale = statsDao.findTop(1).get(0).getCategory();
+        assertEquals(0, stale.getVersion());
+
+        Category current = categoryDao.findById(fiction.getId());
+        current.setDescription("Novels and short stories");
+        categoryDao.update(current);
+
+        stale.setDescription("Lost update");
+        assertThrows(OptimisticLockException.class, () -> categoryDao.update(stale));
+        assertEquals("Novels and short stories", categoryDao.findById(fiction.getId()).getDescription());
+    }
+
+    @Test
+    void rebuildRepairsCountersWrittenAroundTheDao() throws Exception {
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("INSERT INTO book (title, author, isbn, release_year, category_id) "
+                    + "VALUES ('Raw', 'Someone', 'raw-1', 2000, " + fiction.getId() + ")");
+            st.executeUpdate("UPDATE category_stats SET book_count = 7 WHERE category_id = " + technical.getId());
+        } finally {
+            DB.closeConnection(conn);
+        }
+
+        assertEquals(List.of(technical.getId(), fiction.getId()), statsDao.findInconsistentCategories());
+
+        assertEquals(3, statsDao.rebuild());
+        assertTrue(statsDao.findInconsistentCategories().isEmpty());
+        assertEquals(1, statsDao.countBooks(technical.getId()));
+        assertEquals(1, statsDao.countBooks(fiction.getId()));
+    }
+
+    @Test
+    void concurrentFirstWritesToACategoryAreAllCounted() throws Exception {
+        Category fresh = categoryDao.save(new Category("Fresh", "No counter row yet"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String isbn = "fresh-" + i;
+                futures.add(executor.submit(() -> bookDao.save(new Book("Book", "Someone", null, isbn, 2000, fresh))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(40, statsDao.countBooks(fresh.getId()));
+        assertTrue(statsDao.findInconsistentCategories().isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.EmbeddedDatabase;
+
+class PaginationTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("pages_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            categories.add(new Category(String.format("Category %02d", i), "Description " + i));
+        }
+        categoryDao.saveAll(categories);
+
+        // Repeated titles make the id part of the cursor matter
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            books.add(new Book("Title " + (i % 7), "Author", null, "isbn-" + i, 2000, categories.get(i % 3)));
+        }
+        bookDao.saveAll(books);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void keysetPagesWalkTheWholeTableInOrder() {
+        List<Category> seen = new ArrayList<>();
+        Page<Category> page = categoryDao.findPage(null, 10);
+        int pages = 1;
+        seen.addAll(page.getItems());
+        while (page.hasNext()) {
+            page = categoryDao.findPage(page.getLast(), 10);
+            seen.addAll(page.getItems());
+            pages++;
+        }
+
+        assertEquals(3, pages);
+        assertEquals(categoryDao.findAll(), seen);
+    }
+
+    @Test
+    void bookPagesHandleRepeatedTitles() {
+        List<Book> seen = new ArrayList<>();
+        Page<Book> page = bookDao.findPage(null, 4);
+        seen.addAll(page.getItems());
+        while (page.hasNext()) {
+            page = bookDao.findPage(page.getLast(), 4);
+            seen.addAll(page.getItems());
+        }
+
+        assertEquals(bookDao.findAll(), seen);
+    }
+
+    @Test
+    void streamsReturnTheirConnectionWhenClosed() {
+        categoryDao.setFetchSize(5);
+        try (Stream<Category> categories = categoryDao.stream()) {
+            assertEquals(25, categories.count());
+            assertEquals(1, DB.getPool().getActiveCount());
+        }
+        assertEquals(0, DB.getPool().getActiveCount());
+
+        List<Book> books = new ArrayList<>();
+        bookDao.forEach(books::add);
+        assertEquals(30, books.size());
+        assertEquals(0, DB.getPool().getActiveCount());
+    }
+
+    @Test
+    void lastPageHasNoNext() {
+        Page<Category> page = categoryDao.findPage(null, 25);
+        assertEquals(25, page.getItems().size());
+        assertFalse(page.hasNext());
+        assertTrue(categoryDao.findPage(page.getLast(), 25).getItems().isEmpty());
+    }
+}
@@ -0,0 +1,107 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.EmbeddedDatabase;
+import db.QueryMetrics;
+
+class SchemaMigratorTest {
+
+    private final SchemaMigrator migrator = new SchemaMigrator();
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("migrate_" + System.nanoTime()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void migratesOnceAndRunsNoDdlWhenCurrent() {
+        assertEquals(0, migrator.getCurrentVersion());
+        assertEquals(SchemaMigrator.getLatestVersion(), migrator.migrate());
+        assertEquals(SchemaMigrator.getLatestVersion(), migrator.getCurrentVersion());
+
+        Category technical = new CategoryDao().save(new Category("Technical", "Technical books"));
+        new BookDao().save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+
+        long ddlBefore = DB.getMetrics().getQueryStats(QueryMetrics.QueryType.OTHER).getCount();
+        assertEquals(0, migrator.migrate());
+        assertEquals(ddlBefore, DB.getMetrics().getQueryStats(QueryMetrics.QueryType.OTHER).getCount());
+    }
+
+    @Test
+    void schemaCreatedBeforeVersioningIsStamped() {
+        new CategoryDao().createTable();
+        new BookDao().createTable();
+        Category technical = new CategoryDao().save(new Category("Technical", "Technical books"));
+
+        assertEquals(SchemaMigrator.getLatestVersion(), migrator.migrate());
+        assertEquals("Technical", new CategoryDao().findById(technical.getId()).getName());
+        assertEquals(0, new CategoryStatsDao().countBooks(technical.getId()));
+    }
+
+    @Test
+    void migrationsBuildTheSchemaTheDaosCreate() throws SQLException {
+        migrator.migrate();
+        List<String> migrated = columns();
+        assertEquals(8, migrated.stream().filter(c -> c.toLowerCase().startsWith("book.")).count());
+
+        DB.configure(EmbeddedDatabase.properties("create_" + System.nanoTime()));
+        new CategoryDao().createTable();
+        new BookDao().createTable();
+
+        assertEquals(columns(), migrated);
+    }
+
+    @Test
+    void partitionedBookTableMatchesBookPartitions() {
+        // Version 2 keeps its own copy of the partitioned DDL; a change to
+        // BookPartitions needs a new version instead
+        List<BookPartitions> settings = List.of(
+                new BookPartitions(BookPartitions.Strategy.CATEGORY, 8, 10, 5),
+                new BookPartitions(BookPartitions.Strategy.CATEGORY, 3, 10, 5),
+                new BookPartitions(BookPartitions.Strategy.RELEASE_YEAR, 8, 10, 5),
+                new BookPartitions(BookPartitions.Strategy.RELEASE_YEAR, 8, 7, 0));
+        for (BookPartitions partitions : settings) {
+            assertEquals(partitions.tableStatements(), SchemaMigrator.partitionedBookTable(partitions));
+        }
+    }
+
+    // Helper methods
+
+    private static List<String> columns() throws SQLException {
+        List<String> columns = new ArrayList<>();
+        Connection conn = DB.getConnection();
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT table_name, column_name, data_type, is_nullable, "
+                        + "column_default FROM information_schema.columns "
+                        + "WHERE LOWER(table_name) IN ('category', 'book', 'category_stats') "
+                        + "ORDER BY table_name, column_name")) {
+            while (rs.next()) {
+                columns.add(rs.getString(1) + "." + rs.getString(2) + " " + rs.getString(3) + " "
+                        + rs.getString(4) + " " + rs.getString(5));
+            }
+        } finally {
+            DB.closeConnection(conn);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,112 @@
+package br.com.libraryjdbc.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.feed.ChangeEvent;
+import br.com.libraryjdbc.feed.ChangeFeed;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+
+class TransactionTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private final CategoryStatsDao statsDao = new CategoryStatsDao();
+    private final List<ChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+    private ChangeFeed feed;
+
+    private Category technical;
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("tx_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+
+        feed = new ChangeFeed();
+        feed.subscribe(events::addAll);
+        ChangeFeed.setDefault(feed);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ChangeFeed.setDefault(null);
+        feed.close();
+        DB.closeConnection();
+    }
+
+    @Test
+    void daoCallsCommitTogether() throws InterruptedException {
+        Book refactoring = DB.inTransaction(() -> {
+            Category fiction = categoryDao.save(new Category("Fiction", "Novels"));
+            bookDao.save(new Book("Dune", "Frank Herbert", null, "isbn-2", 1967, fiction));
+            assertTrue(DB.isInTransaction());
+            assertEquals(0, feed.getQueuedCount());
+            return bookDao.save(new Book("Refactoring", "Martin Fowler", null, "isbn-3", 1999, technical));
+        });
+
+        assertFalse(DB.isInTransaction());
+        assertEquals("Refactoring", bookDao.findById(refactoring.getId()).getTitle());
+        assertEquals(2, statsDao.countBooks(technical.getId()));
+        assertTrue(feed.awaitDelivery(5, TimeUnit.SECONDS));
+        assertEquals(3, events.size());
+    }
+
+    @Test
+    void failureRollsBackEveryCall() throws InterruptedException {
+        assertThrows(DbException.class, () -> DB.inTransaction(() -> {
+            categoryDao.save(new Category("Fiction", "Novels"));
+            bookDao.save(new Book("Refactoring", "Martin Fowler", null, "isbn-3", 1999, technical));
+            bookDao.save(new Book("Copy", "Someone", null, "isbn-1", 2008, technical));
+        }));
+
+        assertEquals(1, categoryDao.findAll().size());
+        assertNull(bookDao.findByIsbn("isbn-3"));
+        assertEquals(1, statsDao.countBooks(technical.getId()));
+        assertTrue(feed.awaitDelivery(5, TimeUnit.SECONDS));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void caughtFailureStillRollsBack() {
+        DbException e = assertThrows(DbException.class, () -> DB.inTransaction(() -> {
+            bookDao.save(new Book("Refactoring", "Martin Fowler", null, "isbn-3", 1999, technical));
+            try {
+                bookDao.save(new Book("Copy", "Someone", null, "isbn-1", 2008, technical));
+            } catch (DbException ignored) {
+                // The transaction is already doomed
+            }
+        }));
+
+        assertEquals("Transaction rolled back because a statement in it failed", e.getMessage());
+        assertNull(bookDao.findByIsbn("isbn-3"));
+    }
+
+    @Test
+    void nestedTransactionsJoinTheOuterOne() {
+        assertThrows(IllegalStateException.class, () -> DB.inTransaction(() -> {
+            DB.inTransaction(() -> categoryDao.save(new Category("Fiction", "Novels")));
+            throw new IllegalStateException("Outer work failed");
+        }));
+
+        assertEquals(1, categoryDao.findAll().size());
+    }
+}
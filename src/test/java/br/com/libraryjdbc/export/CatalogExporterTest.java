@@ -0,0 +1,107 @@
+package br.com.libraryjdbc.export;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+
+class CatalogExporterTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("export_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void exportedCatalogReadsBackThroughTheMapping() throws IOException {
+        Category technical = categoryDao.save(new Category("Technical", "Technical books"));
+        Category fiction = categoryDao.save(new Category("Ficção", "Romances e contos"));
+        Category empty = categoryDao.save(new Category("Empty", "No books yet"));
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            books.add(new Book("Title " + i, "Author " + (i % 7), i % 3 == 0 ? null : "Synopsis " + i,
+                    "isbn-" + i, 1967 + i % 50, i % 2 == 0 ? technical : fiction));
+        }
+        books.add(new Book("Memórias Póstumas", "Machado de Assis", "Brás Cubas", "978-85-01", 2001, fiction));
+        bookDao.saveAll(books);
+
+        Path target = directory.resolve("catalog.bin");
+        ExportReport report = new CatalogExporter().export(target);
+        assertEquals(501, report.getBooks());
+        assertEquals(3, report.getCategories());
+        assertEquals(8, report.getAuthors());
+        assertEquals(Files.size(target), report.getBytes());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+
+        CatalogFile file = CatalogFile.open(target);
+        assertEquals(501, file.getBookCount());
+        for (Book book : books) {
+            Book byId = file.findBookById(book.getId());
+            assertEquals(book.getTitle(), byId.getTitle());
+            assertEquals(book.getAuthor(), byId.getAuthor());
+            assertEquals(book.getSynopsis(), byId.getSynopsis());
+            assertEquals(book.getReleaseYear(), byId.getReleaseYear());
+            assertEquals(book.getCategory().getName(), byId.getCategory().getName());
+            assertEquals(book.getId(), file.findBookByIsbn(book.getIsbn()).getId());
+        }
+        assertEquals("Memórias Póstumas", file.findBookByIsbn("978-85-01").getTitle());
+        try (Stream<Book> inTitleOrder = bookDao.stream()) {
+            assertEquals(inTitleOrder.findFirst().get().getTitle(), file.getBook(0).getTitle());
+        }
+
+        assertNull(file.findBookById(-1));
+        assertNull(file.findBookByIsbn("missing"));
+        assertEquals("No books yet", file.findCategoryById(empty.getId()).getDescription());
+        assertEquals("Romances e contos", file.findCategoryById(fiction.getId()).getDescription());
+    }
+
+    @Test
+    void exportReplacesThePreviousFileAndRejectsOtherFiles() throws IOException {
+        Path target = directory.resolve("catalog.bin");
+        new CatalogExporter().export(target);
+        assertEquals(0, CatalogFile.open(target).getBookCount());
+
+        Category technical = categoryDao.save(new Category("Technical", "Technical books"));
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+        new CatalogExporter().export(target);
+        assertEquals("Clean Code", CatalogFile.open(target).findBookByIsbn("isbn-1").getTitle());
+
+        Path other = Files.writeString(directory.resolve("other.bin"), "x".repeat(CatalogFile.HEADER_SIZE));
+        assertThrows(DbException.class, () -> CatalogFile.open(other));
+    }
+}
@@ -0,0 +1,279 @@
+package br.com.libraryjdbc.feed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.catalog.CatalogEngine;
+import br.com.libraryjdbc.catalog.CatalogSnapshot;
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import br.com.libraryjdbc.search.BookSearch;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+
+class ChangeFeedTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private ChangeFeed feed;
+
+    private Category technical;
+
+    @BeforeEach
+    void setUp() {
+        Properties props = EmbeddedDatabase.properties("feed_" + System.nanoTime());
+        props.setProperty("pool.maxSize", "4");
+        DB.configure(props);
+        categoryDao.createTable();
+        bookDao.createTable();
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+
+        feed = new ChangeFeed();
+        ChangeFeed.setDefault(feed);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ChangeFeed.setDefault(null);
+        feed.close();
+        DB.closeConnection();
+    }
+
+    @Test
+    void publishesCommittedWritesOnly() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        feed.subscribe(recorder);
+
+        Book book = bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+        book.setTitle("Clean Code, 2nd Edition");
+        bookDao.update(book);
+        assertThrows(DbException.class,
+                () -> bookDao.save(new Book("Copy", "Someone", null, "isbn-1", 2008, technical)));
+        bookDao.remove(book.getId());
+        technical.setDescription("Programming");
+        categoryDao.update(technical);
+
+        assertTrue(feed.awaitDelivery(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("INSERT BOOK " + book.getId(), "UPDATE BOOK " + book.getId(),
+                "DELETE BOOK " + book.getId(), "UPDATE CATEGORY " + technical.getId()), recorder.changes());
+    }
+
+    @Test
+    void subscribersStayConsistentUnderConcurrentWrites() throws InterruptedException {
+        Category fiction = categoryDao.save(new Category("Fiction", "Novels"));
+        List<Category> categories = Arrays.asList(technical, fiction);
+        CatalogEngine engine = new CatalogEngine();
+        BookSearch search = new BookSearch();
+        engine.getSnapshot();
+        search.refresh();
+        feed.subscribe(engine);
+        feed.subscribe(search);
+
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                Random random = new Random(writer);
+                List<Book> mine = new ArrayList<>();
+                try {
+                    for (int i = 0; i < 60; i++) {
+                        int action = mine.isEmpty() ? 0 : random.nextInt(3);
+                        if (action == 0) {
+                            mine.add(bookDao.save(new Book("common book " + writer + "-" + i, "Author " + writer,
+                                    null, "isbn-" + writer + "-" + i, 2000, categories.get(i % 2))));
+                        } else if (action == 1) {
+                            Book book = mine.get(random.nextInt(mine.size()));
+                            book.setTitle("common edited " + writer + "-" + i);
+                            book.setCategory(categories.get(random.nextInt(2)));
+                            bookDao.update(book);
+                        } else {
+                            bookDao.remove(mine.remove(random.nextInt(mine.size())).getId());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    errors.add(e);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        if (!errors.isEmpty()) {
+            fail(errors.size() + " writers failed", errors.peek());
+        }
+        assertTrue(feed.awaitDelivery(10, TimeUnit.SECONDS));
+
+        List<Book> expected = bookDao.findAll();
+        CatalogSnapshot snapshot = engine.getSnapshot();
+        assertEquals(expected.size(), snapshot.getBookCount());
+        for (Book book : expected) {
+            Book cached = snapshot.findBook(book.getId());
+            assertEquals(book.getTitle(), cached.getTitle());
+            assertEquals(book.getCategory().getId(), cached.getCategory().getId());
+        }
+        assertEquals(bookDao.findByCategory(fiction.getId()), snapshot.findByCategory(fiction.getId()));
+        assertEquals(expected.size(), search.search("common", null, 0, 1000).getHits().size());
+    }
+
+    @Test
+    void outboxReplaysCommittedChangesInVersionOrder() {
+        feed.enableOutbox();
+
+        Book book = bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+        assertThrows(DbException.class,
+                () -> bookDao.save(new Book("Copy", "Someone", null, "isbn-1", 2008, technical)));
+        bookDao.saveAll(Arrays.asList(new Book("Refactoring", "Martin Fowler", null, "isbn-2", 1999, technical)));
+        bookDao.remove(book.getId());
+
+        // A consumer restarting from scratch, reading in batches of two
+        Recorder recorder = new Recorder();
+        ChangeFeed restarted = new ChangeFeed(10, 2);
+        restarted.enableOutbox();
+        long last = restarted.replay(0, recorder);
+        restarted.close();
+
+        Book refactoring = bookDao.findByIsbn("isbn-2");
+        assertEquals(Arrays.asList("INSERT BOOK " + book.getId(), "INSERT BOOK " + refactoring.getId(),
+                "DELETE BOOK " + book.getId()), recorder.changes());
+        List<Long> versions = recorder.versions();
+        List<Long> sorted = new ArrayList<>(versions);
+        Collections.sort(sorted);
+        assertEquals(sorted, versions);
+        assertEquals(versions.get(versions.size() - 1).longValue(), last);
+
+        assertEquals(3, feed.purgeOutbox(last));
+        assertEquals(last, feed.replay(last, recorder));
+    }
+
+    @Test
+    void replayMissesNoTransactionThatCommitsLate() throws InterruptedException {
+        // Writers of different categories share no counter row
+        Category fiction = categoryDao.save(new Category("Fiction", "Novels"));
+        feed.enableOutbox();
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // The first writer records its event and waits before committing
+        Thread first = new Thread(() -> DB.inTransaction(() -> {
+            bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "isbn-1", 2008, technical));
+            recorded.countDown();
+            try {
+                commit.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        Thread second = new Thread(
+                () -> bookDao.save(new Book("Dune", "Frank Herbert", null, "isbn-2", 1990, fiction)));
+        first.start();
+        assertTrue(recorded.await(5, TimeUnit.SECONDS));
+        second.start();
+
+        // The second writer cannot commit ahead of the first
+        second.join(300);
+        assertTrue(second.isAlive());
+        Recorder recorder = new Recorder();
+        long last = feed.replay(0, recorder);
+        assertTrue(recorder.changes().isEmpty());
+
+        commit.countDown();
+        first.join();
+        second.join();
+        last = feed.replay(last, recorder);
+
+        assertEquals(Arrays.asList("INSERT BOOK " + bookDao.findByIsbn("isbn-1").getId(),
+                "INSERT BOOK " + bookDao.findByIsbn("isbn-2").getId()), recorder.changes());
+        assertEquals(recorder.versions().get(1).longValue(), last);
+    }
+
+    @Test
+    void fullQueueDropsEventsAndAsksListenersToReload() throws InterruptedException {
+        ChangeFeed small = new ChangeFeed(2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicInteger reloads = new AtomicInteger();
+        small.subscribe(new ChangeListener() {
+            @Override
+            public void onChanges(List<ChangeEvent> events) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onEventsLost() {
+                reloads.incrementAndGet();
+            }
+        });
+
+        try {
+            small.publish(Arrays.asList(event(1)));
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            small.publish(Arrays.asList(event(2), event(3), event(4), event(5)));
+
+            assertEquals(2, small.getDroppedCount());
+            release.countDown();
+            assertTrue(small.awaitDelivery(5, TimeUnit.SECONDS));
+            assertEquals(1, reloads.get());
+        } finally {
+            small.close();
+        }
+    }
+
+    private static ChangeEvent event(long id) {
+        return new ChangeEvent(ChangeEvent.Entity.BOOK, ChangeEvent.Type.UPDATE, id, id);
+    }
+
+    /**
+     * Keeps every event it receives.
+     */
+    private static class Recorder implements ChangeListener {
+
+        private final List<ChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onChanges(List<ChangeEvent> batch) {
+            events.addAll(batch);
+        }
+
+        List<String> changes() {
+            List<String> changes = new ArrayList<>();
+            events.forEach(event -> changes.add(event.getType() + " " + event.getEntity() + " "
+                    + event.getEntityId()));
+            return changes;
+        }
+
+        List<Long> versions() {
+            List<Long> versions = new ArrayList<>();
+            events.forEach(event -> versions.add(event.getVersion()));
+            return versions;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package br.com.libraryjdbc.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.dao.CategoryStatsDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.DbException;
+import db.EmbeddedDatabase;
+
+class BookImporterTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private final BookImporter importer = new BookImporter();
+
+    @TempDir
+    Path dir;
+
+    private Category technical;
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("import_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+        categoryDao.save(new Category("Fiction", "Novels"));
+        bookDao.save(new Book("Clean Code", "Robert C. Martin", null, "9780132350884", 2008, technical));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void importsValidRowsAndRejectsTheRest() throws IOException {
+        Path csv = write("catalog.csv",
+                "isbn,title,author,release_year,category,synopsis",
+                "111,Refactoring,Martin Fowler,1999,technical,",
+                "222,\"Dune, Part One\",Frank Herbert,1967,Fiction,\"Spice\nand \"\"sand\"\"\"",
+                "333,Too Old,Someone,1966,Fiction,",
+                "444,Lost,Someone,2000,Poetry,",
+                "111,Copy,Someone,2001,Technical,",
+                "9780132350884,Clean Code Again,Robert C. Martin,2008,Technical,",
+                ",No Isbn,Someone,2000,Fiction,");
+
+        ImportReport report = importer.importFile(csv);
+
+        assertEquals(7, report.getRowsRead());
+        assertEquals(2, report.getRowsImported());
+        assertEquals(5, report.getRowsRejected());
+
+        Book dune = bookDao.findByIsbn("222");
+        assertEquals("Dune, Part One", dune.getTitle());
+        assertEquals("Spice\nand \"sand\"", dune.getSynopsis());
+        assertEquals("Fiction", dune.getCategory().getName());
+        assertEquals(null, bookDao.findByIsbn("111").getSynopsis());
+
+        List<String> rejects = Files.readAllLines(report.getRejectFile());
+        assertEquals("line,reason,title,author,synopsis,isbn,release_year,category", rejects.get(0));
+        assertEquals(6, rejects.size());
+        assertTrue(rejects.get(1).startsWith("5,\"Book release year must be 1967 or later\""));
+        assertTrue(rejects.get(2).startsWith("6,\"Category not found: Poetry\""));
+        assertTrue(rejects.get(3).startsWith("7,\"Duplicate ISBN in file: 111\""));
+        assertTrue(rejects.get(4).startsWith("9,\"Book ISBN cannot be empty\""));
+        assertTrue(rejects.get(5).startsWith("8,\"ISBN already exists: 9780132350884\""));
+
+        // The reject file is itself an import file
+        List<String> record = new CsvReader(new StringReader(rejects.get(2))).next();
+        assertEquals(Arrays.asList("6", "Category not found: Poetry", "Lost", "Someone", "", "444", "2000", "Poetry"),
+                record);
+
+        assertEquals(2, new CategoryStatsDao().countBooks(technical.getId()));
+        assertTrue(new CategoryStatsDao().findInconsistentCategories().isEmpty());
+    }
+
+    @Test
+    void streamsLargeFilesInBatches() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("title,author,isbn,release_year,category");
+        for (int i = 0; i < 5000; i++) {
+            lines.add("Title " + i + ",Author " + (i % 10) + ",bulk-" + i + "," + (1970 + i % 50) + ",Technical");
+        }
+        importer.setBatchSize(128);
+
+        ImportReport report = importer.importFile(write("bulk.csv", lines.toArray(new String[0])));
+
+        assertEquals(5000, report.getRowsImported());
+        assertEquals(0, report.getRowsRejected());
+        assertTrue(report.getRowsPerSecond() > 0);
+        assertEquals(5001, new CategoryStatsDao().countBooks(technical.getId()));
+    }
+
+    @Test
+    void failedImportLeavesTheCatalogUntouched() throws IOException {
+        Path csv = write("broken.csv",
+                "title,author,isbn,release_year,category",
+                "Refactoring,Martin Fowler,111,1999,Technical",
+                "Broken,\"Unterminated,222,2000,Technical");
+
+        assertThrows(DbException.class, () -> importer.importFile(csv));
+
+        assertEquals(null, bookDao.findByIsbn("111"));
+        assertEquals(1, new CategoryStatsDao().countBooks(technical.getId()));
+
+        // The staging table does not outlive the failed run
+        ImportReport report = importer.importFile(write("fixed.csv",
+                "title,author,isbn,release_year,category",
+                "Refactoring,Martin Fowler,111,1999,Technical"));
+        assertEquals(1, report.getRowsImported());
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(dir.resolve(name), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,113 @@
+package br.com.libraryjdbc.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+import db.DB;
+import db.EmbeddedDatabase;
+
+class BookSearchTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final BookDao bookDao = new BookDao();
+    private final BookSearch search = new BookSearch(bookDao);
+
+    private Category technical;
+    private Category fiction;
+
+    @BeforeEach
+    void setUp() {
+        DB.configure(EmbeddedDatabase.properties("search_" + System.nanoTime()));
+        categoryDao.createTable();
+        bookDao.createTable();
+        search.createIndex();
+
+        technical = categoryDao.save(new Category("Technical", "Technical books"));
+        fiction = categoryDao.save(new Category("Fiction", "Novels"));
+
+        bookDao.saveAll(Arrays.asList(
+                new Book("Clean Code", "Robert C. Martin", "A handbook of agile software craftsmanship",
+                        "isbn-1", 2008, technical),
+                new Book("The Clean Coder", "Robert C. Martin", "Professional conduct for programmers",
+                        "isbn-2", 2011, technical),
+                new Book("Refactoring", "Martin Fowler", "Improving the design of existing code",
+                        "isbn-3", 1999, technical),
+                new Book("Memórias Póstumas", "Machado de Assis", "Um defunto autor conta a sua vida",
+                        "isbn-4", 1981, fiction),
+                new Book("Code Name Verity", "Elizabeth Wein", "Two friends in the Second World War",
+                        "isbn-5", 2012, fiction)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void titleMatchesRankAboveSynopsisMatches() {
+        List<String> titles = titles(search.search("code", null, 0, 10));
+
+        assertEquals(Arrays.asList("Clean Code", "Code Name Verity", "Refactoring"), titles);
+    }
+
+    @Test
+    void everyWordMustMatchAndAccentsAreIgnored() {
+        assertEquals(Arrays.asList("Clean Code"), titles(search.search("CLEAN craftsmanship", null, 0, 10)));
+        assertEquals(Arrays.asList("Clean Code", "The Clean Coder"),
+                titles(search.search("martin robert", null, 0, 10)));
+        assertEquals(Arrays.asList("Memórias Póstumas"), titles(search.search("memorias", null, 0, 10)));
+        assertTrue(search.search("nonexistent", null, 0, 10).getHits().isEmpty());
+    }
+
+    @Test
+    void filtersByCategoryAndPaginates() {
+        assertEquals(Arrays.asList("Code Name Verity"), titles(search.search("code", fiction.getId(), 0, 10)));
+
+        SearchResults first = search.search("martin", null, 0, 2);
+        SearchResults second = search.search("martin", null, 1, 2);
+        assertTrue(first.hasNext());
+        assertFalse(second.hasNext());
+
+        List<String> all = new ArrayList<>(titles(first));
+        all.addAll(titles(second));
+        assertEquals(titles(search.search("martin", null, 0, 10)), all);
+    }
+
+    @Test
+    void indexFollowsReportedWrites() {
+        assertTrue(search.search("kotlin", null, 0, 10).getHits().isEmpty());
+
+        Book kotlin = bookDao.save(new Book("Kotlin in Action", "Dmitry Jemerov", null, "isbn-6", 2017, technical));
+        search.index(kotlin);
+        assertEquals(Arrays.asList("Kotlin in Action"), titles(search.search("kotlin", null, 0, 10)));
+
+        kotlin.setTitle("Programming in Kotlin");
+        bookDao.update(kotlin);
+        search.index(kotlin);
+        assertEquals(Arrays.asList("Programming in Kotlin"), titles(search.search("kotlin", null, 0, 10)));
+        assertTrue(search.search("action", null, 0, 10).getHits().isEmpty());
+
+        bookDao.remove(kotlin.getId());
+        search.remove(kotlin.getId());
+        assertTrue(search.search("kotlin", null, 0, 10).getHits().isEmpty());
+    }
+
+    private static List<String> titles(SearchResults results) {
+        List<String> titles = new ArrayList<>();
+        results.getHits().forEach(hit -> titles.add(hit.getBook().getTitle()));
+        return titles;
+    }
+}
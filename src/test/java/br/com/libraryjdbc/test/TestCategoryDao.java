@@ -11,7 +11,7 @@ public class TestCategoryDao {
         
         try {
             // Test connection
-            DB.getConnection();
+            DB.closeConnection(DB.getConnection());
             System.out.println("✅ Test connection established successfully!");
             
             // Creating DAO instance
@@ -0,0 +1,270 @@
+package db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Category;
+
+class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        DB.closeConnection();
+    }
+
+    @Test
+    void returnedConnectionsAreReused() throws SQLException {
+        pool = new ConnectionPool(settings("reuse", 2));
+
+        Connection first = pool.borrow();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+
+        Connection second = pool.borrow();
+        assertNotSame(first, second);
+        assertTrue(physical == second.unwrap(Connection.class));
+        second.close();
+
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void closedHandleCannotBeUsed() throws SQLException {
+        pool = new ConnectionPool(settings("handle", 1));
+
+        Connection conn = pool.borrow();
+        conn.close();
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    void borrowTimesOutWhenPoolIsExhausted() {
+        Properties props = settings("bounded", 2);
+        props.setProperty("pool.borrowTimeoutMs", "100");
+        pool = new ConnectionPool(props);
+
+        Connection a = pool.borrow();
+        Connection b = pool.borrow();
+
+        assertThrows(DbException.class, pool::borrow);
+        assertEquals(1, pool.getTimeoutCount());
+
+        DB.closeConnection(a);
+        DB.closeConnection(b);
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    void brokenConnectionsAreReplacedOnBorrow() throws SQLException {
+        Properties props = settings("validation", 1);
+        props.setProperty("pool.validationBypassMs", "0");
+        pool = new ConnectionPool(props);
+
+        Connection conn = pool.borrow();
+        conn.unwrap(Connection.class).close();
+        conn.close();
+
+        Connection replacement = pool.borrow();
+        assertTrue(replacement.isValid(1));
+        replacement.close();
+
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    void borrowerStateIsResetOnReturn() throws SQLException {
+        pool = new ConnectionPool(settings("reset", 1));
+
+        Connection conn = pool.borrow();
+        conn.setAutoCommit(false);
+        conn.close();
+
+        Connection next = pool.borrow();
+        assertTrue(next.getAutoCommit());
+        next.close();
+    }
+
+    @Test
+    void idleConnectionsAreEvicted() throws InterruptedException {
+        Properties props = settings("eviction", 4);
+        props.setProperty("pool.idleTimeoutMs", "500");
+        props.setProperty("pool.housekeepingIntervalMs", "20");
+        pool = new ConnectionPool(props);
+
+        List<Connection> conns = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            conns.add(pool.borrow());
+        }
+        conns.forEach(DB::closeConnection);
+        assertEquals(4, pool.getIdleCount());
+
+        waitFor(() -> pool.getIdleCount() == 0);
+        assertEquals(4, pool.getDestroyedCount());
+    }
+
+    @Test
+    void leakedConnectionsAreReported() throws Exception {
+        Properties props = settings("leak", 1);
+        props.setProperty("pool.leakDetectionThresholdMs", "50");
+        props.setProperty("pool.housekeepingIntervalMs", "20");
+        pool = new ConnectionPool(props);
+
+        Connection conn = pool.borrow();
+        waitFor(() -> pool.getLeakCount() == 1);
+        conn.close();
+
+        assertEquals(1, pool.getLeakCount());
+    }
+
+    @Test
+    void daoMethodsReturnTheirConnections() {
+        DB.configure(settings("dao", 1));
+        CategoryDao categoryDao = new CategoryDao();
+        categoryDao.createTable();
+
+        categoryDao.save(new Category("Poetry", "Poems"));
+        assertThrows(DbException.class, () -> categoryDao.save(new Category("poetry", "Duplicate")));
+        assertEquals(1, categoryDao.findAll().size());
+
+        assertEquals(0, DB.getPool().getActiveCount());
+        assertEquals(1, DB.getPool().getCreatedCount());
+    }
+
+    @Test
+    void preparedStatementsAreReusedAcrossBorrows() throws SQLException {
+        pool = new ConnectionPool(settings("statements", 1));
+        String sql = "SELECT ? + 1";
+
+        PreparedStatement first = prepare(sql);
+        first.setInt(1, 41);
+        first.executeQuery().close();
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        first.getConnection().close();
+        first.close();
+        assertTrue(first.isClosed());
+
+        PreparedStatement second = prepare(sql);
+        assertSame(physical, second.unwrap(PreparedStatement.class));
+        assertThrows(SQLException.class, second::executeQuery, "parameters are cleared on return");
+
+        // The same SQL prepared twice on one connection gets a separate statement
+        PreparedStatement nested = second.getConnection().prepareStatement(sql);
+        assertNotSame(physical, nested.unwrap(PreparedStatement.class));
+        nested.close();
+        second.getConnection().close();
+
+        assertEquals(1, pool.getStatementCacheHits());
+        assertEquals(2, pool.getStatementCacheMisses());
+    }
+
+    @Test
+    void statementCacheEvictsLeastRecentlyUsed() throws SQLException {
+        Properties props = settings("lru", 1);
+        props.setProperty("pool.statementCacheSize", "2");
+        pool = new ConnectionPool(props);
+
+        try (Connection conn = pool.borrow()) {
+            PreparedStatement a = conn.prepareStatement("SELECT 1");
+            PreparedStatement physicalA = a.unwrap(PreparedStatement.class);
+            a.close();
+            conn.prepareStatement("SELECT 2").close();
+            conn.prepareStatement("SELECT 3").close();
+
+            assertTrue(physicalA.isClosed());
+            PreparedStatement again = conn.prepareStatement("SELECT 1");
+            assertNotSame(physicalA, again.unwrap(PreparedStatement.class));
+            again.close();
+        }
+        assertEquals(0, pool.getStatementCacheHits());
+    }
+
+    @Test
+    void concurrentBorrowersEachGetTheirOwnConnection() throws Exception {
+        int borrowers = 8;
+        pool = new ConnectionPool(settings("concurrent", borrowers));
+        Set<Connection> physical = ConcurrentHashMap.newKeySet();
+        CountDownLatch holding = new CountDownLatch(borrowers);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < borrowers; i++) {
+            Thread t = new Thread(() -> {
+                try (Connection conn = pool.borrow()) {
+                    physical.add(conn.unwrap(Connection.class));
+                    holding.countDown();
+                    release.await();
+                } catch (Exception e) {
+                    failed.set(true);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+
+        // Every borrower holds a connection at the same time
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+        assertEquals(borrowers, physical.size());
+        assertEquals(borrowers, pool.getActiveCount());
+
+        release.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertFalse(failed.get());
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(borrowers, pool.getIdleCount());
+        assertEquals(borrowers, pool.getCreatedCount());
+    }
+
+    // Helper methods
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        return pool.borrow().prepareStatement(sql);
+    }
+
+    private static Properties settings(String name, int maxSize) {
+        Properties props = EmbeddedDatabase.properties("pool_" + name);
+        props.setProperty("pool.maxSize", String.valueOf(maxSize));
+        return props;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,23 @@
+package db;
+
+import java.util.Properties;
+
+/**
+ * Settings for an in-memory H2 database running in PostgreSQL mode, used
+ * by tests and benchmarks in place of the real server.
+ */
+public class EmbeddedDatabase {
+
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                + "DEFAULT_NULL_ORDERING=HIGH";
+    }
+
+    public static Properties properties(String name) {
+        Properties props = new Properties();
+        props.setProperty("dburl", url(name));
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        return props;
+    }
+}
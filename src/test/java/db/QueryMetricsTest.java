@@ -0,0 +1,134 @@
+package db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import db.QueryMetrics.QueryType;
+
+class QueryMetricsTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        Properties props = EmbeddedDatabase.properties("metrics_" + System.nanoTime());
+        props.setProperty("pool.name", "metrics-test");
+        pool = new ConnectionPool(props);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void statementsAreRecordedPerType() throws SQLException {
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeUpdate("CREATE TABLE item (id INT PRIMARY KEY, name VARCHAR(20))");
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO item VALUES (?, ?)")) {
+                for (int i = 1; i <= 5; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, "item " + i);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            assertEquals(2, st.executeUpdate("UPDATE item SET name = 'x' WHERE id <= 2"));
+            try (PreparedStatement select = conn.prepareStatement("SELECT id FROM item WHERE id > ?")) {
+                select.setInt(1, 1);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        // Rows are counted as they are read
+                    }
+                    assertTrue(rs.getStatement() != null);
+                }
+            }
+            assertThrows(SQLException.class, () -> st.executeQuery("SELECT * FROM missing"));
+        }
+
+        QueryMetrics metrics = pool.getMetrics();
+        assertEquals(1, metrics.getQueryStats(QueryType.OTHER).getCount());
+        assertEquals(1, metrics.getQueryStats(QueryType.INSERT).getCount());
+        assertEquals(5, metrics.getQueryStats(QueryType.INSERT).getRows());
+        assertEquals(2, metrics.getQueryStats(QueryType.UPDATE).getRows());
+
+        LatencyStats selects = metrics.getQueryStats(QueryType.SELECT);
+        assertEquals(2, selects.getCount());
+        assertEquals(1, selects.getErrors());
+        assertEquals(4, selects.getRows());
+        assertTrue(selects.getMaxMicros() > 0);
+        assertTrue(selects.getP50Micros() <= selects.getMaxMicros());
+
+        assertEquals(1, metrics.getPoolWait().getCount());
+        assertEquals(0, metrics.getSlowQueryCount());
+    }
+
+    @Test
+    void slowQueriesAreCounted() throws SQLException {
+        QueryMetrics metrics = pool.getMetrics();
+        metrics.setSlowQueryThresholdMillis(1);
+
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery(
+                        "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 2000) a, SYSTEM_RANGE(1, 2000) b")) {
+            rs.next();
+            assertEquals(4_000_000L, rs.getLong(1));
+        }
+
+        assertEquals(1, metrics.getSlowQueryCount());
+        metrics.reset();
+        assertEquals(0, metrics.getSlowQueryCount());
+        assertEquals(0, metrics.getQueryStats(QueryType.SELECT).getCount());
+    }
+
+    @Test
+    void metricsAreExposedOverJmx() throws Exception {
+        try (Connection conn = pool.borrow(); Statement st = conn.createStatement()) {
+            st.executeQuery("SELECT 1").close();
+        }
+
+        ObjectName name = new ObjectName("db:type=QueryMetrics,name=\"metrics-test\"");
+        CompositeData[] stats = (CompositeData[]) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(name, "QueryStats");
+        assertEquals("SELECT", stats[0].get("name"));
+        assertEquals(1L, stats[0].get("count"));
+
+        pool.close();
+        assertTrue(!ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    void histogramPercentilesStayWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        double p50 = histogram.getPercentileMicros(50);
+        double p99 = histogram.getPercentileMicros(99);
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 1.25, () -> "p50 " + p50);
+        assertTrue(p99 >= 99_000 && p99 <= 100_000, () -> "p99 " + p99);
+        assertEquals(100_000, histogram.getMaxMicros());
+        assertEquals(50_000.5, histogram.getMeanMicros(), 0.001);
+
+        for (long value = 0; value < 1_000_000; value += 997) {
+            assertTrue(LatencyHistogram.upperBound(LatencyHistogram.bucket(value)) >= value);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.dao.BookDao;
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.model.Book;
+import br.com.libraryjdbc.model.Category;
+
+class ReplicaRouterTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final String prefix = "replica_" + System.nanoTime() + "_";
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+    }
+
+    @Test
+    void readsRotateAcrossReplicasAndWritesGoToThePrimary() {
+        configure("round-robin", replica("one"), replica("two"));
+        categoryDao.createTable();
+
+        List<String> servedBy = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            servedBy.add(categoryDao.findAll().get(0).getName());
+        }
+        assertEquals(List.of("one", "two", "one", "two"), servedBy);
+
+        Category saved = categoryDao.save(new Category("Fiction", "Novels"));
+        // The replicas here never receive the primary's writes
+        assertNull(categoryDao.findById(saved.getId()));
+
+        Category readBack = DB.inTransaction(() -> {
+            Category technical = categoryDao.save(new Category("Technical", "Technical books"));
+            return categoryDao.findById(technical.getId());
+        });
+        assertEquals("Technical", readBack.getName());
+    }
+
+    @Test
+    void leastLoadedSkipsTheBusyReplica() throws SQLException {
+        configure("least-loaded", replica("one"), replica("two"));
+
+        ReplicaRouter router = DB.getReplicaRouter();
+        assertEquals(ReplicaRouter.Selection.LEAST_LOADED, router.getSelection());
+        try (Connection busy = router.getPool(0).borrow()) {
+            assertFalse(busy.isClosed());
+            for (int i = 0; i < 3; i++) {
+                assertEquals("two", categoryDao.findAll().get(0).getName());
+            }
+        }
+    }
+
+    @Test
+    void unreachableReplicasFailOverAndRecover() throws SQLException {
+        configure("round-robin", existingOnly("late"), replica("two"));
+        categoryDao.createTable();
+        categoryDao.save(new Category("Primary", "Written to the primary"));
+
+        ReplicaRouter router = DB.getReplicaRouter();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("two", categoryDao.findAll().get(0).getName());
+        }
+        assertFalse(router.isHealthy(0));
+        assertTrue(router.isHealthy(1));
+        assertEquals(1, router.getFailoverCount());
+
+        // With every replica down the primary serves the reads
+        try (Connection conn = router.getPool(1).borrow(); Statement st = conn.createStatement()) {
+            st.execute("SHUTDOWN");
+        }
+        router.checkHealth();
+        assertFalse(router.isHealthy(1));
+        assertEquals("Primary", categoryDao.findAll().get(0).getName());
+
+        // The missing replica comes up and is taken back by the health check
+        replica("late");
+        router.checkHealth();
+        assertTrue(router.isHealthy(0));
+        assertEquals("late", categoryDao.findAll().get(0).getName());
+    }
+
+    @Test
+    void scansReadFromAReplicaWhileStreamsStayOnThePrimary() {
+        BookDao bookDao = new BookDao();
+        DB.configure(EmbeddedDatabase.properties(prefix + "books"));
+        createCatalog(bookDao, "Replica book");
+        configure("round-robin", existingOnly("books"));
+        createCatalog(bookDao, "Primary book");
+
+        try (Stream<Book> books = bookDao.scan()) {
+            assertEquals(List.of("Replica book"), books.map(Book::getTitle).collect(Collectors.toList()));
+        }
+        try (Stream<Book> books = bookDao.stream()) {
+            assertEquals(List.of("Primary book"), books.map(Book::getTitle).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void poolsAreClosedWhenALaterReplicaCannotBeCreated() throws JMException {
+        Properties props = EmbeddedDatabase.properties(prefix + "primary");
+        props.setProperty("replica.1.dburl", replica("one"));
+        props.setProperty("replica.2.dburl", replica("two"));
+        props.setProperty("replica.2.pool.maxSize", "0");
+
+        assertThrows(DbException.class, () -> ReplicaRouter.create(props));
+        ObjectName first = new ObjectName("db:type=QueryMetrics,name=" + ObjectName.quote("replica-1"));
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(first));
+    }
+
+    // Helper methods
+
+    private void configure(String selection, String... replicaUrls) {
+        Properties props = EmbeddedDatabase.properties(prefix + "primary");
+        props.setProperty("replica.selection", selection);
+        props.setProperty("replica.healthCheckIntervalMs", "60000");
+        for (int i = 0; i < replicaUrls.length; i++) {
+            props.setProperty("replica." + (i + 1) + ".dburl", replicaUrls[i]);
+        }
+        DB.configure(props);
+    }
+
+    private void createCatalog(BookDao bookDao, String title) {
+        categoryDao.createTable();
+        bookDao.createTable();
+        Category fiction = categoryDao.save(new Category("Fiction", "Novels"));
+        bookDao.save(new Book(title, "Someone", null, "isbn-1", 1990, fiction));
+    }
+
+    /**
+     * Creates a replica database whose only category is named after it, so
+     * reads show which database served them.
+     */
+    private String replica(String name) {
+        String url = EmbeddedDatabase.url(prefix + name);
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+                Statement st = conn.createStatement()) {
+            st.executeUpdate("CREATE TABLE category (id SERIAL PRIMARY KEY, name VARCHAR(100) NOT NULL, "
+                    + "description TEXT NOT NULL, version INTEGER DEFAULT 0 NOT NULL)");
+            st.executeUpdate("INSERT INTO category (id, name, description) VALUES (1000, '" + name
+                    + "', 'Replica')");
+        } catch (SQLException e) {
+            throw new DbException(e.getMessage());
+        }
+        return existingOnly(name);
+    }
+
+    /**
+     * Url that fails to connect while the database does not exist, instead
+     * of creating an empty one.
+     */
+    private String existingOnly(String name) {
+        return EmbeddedDatabase.url(prefix + name) + ";IFEXISTS=TRUE";
+    }
+}
@@ -0,0 +1,160 @@
+package db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.libraryjdbc.dao.CategoryDao;
+import br.com.libraryjdbc.dao.Page;
+import br.com.libraryjdbc.model.Category;
+
+/**
+ * Runs the DAOs against an H2 server reached through a {@link TcpProxy}
+ * that drops or refuses connections.
+ */
+class ResilienceTest {
+
+    private final CategoryDao categoryDao = new CategoryDao();
+    private final String name = "resilience_" + System.nanoTime();
+
+    private Server server;
+    private TcpProxy proxy;
+
+    @BeforeEach
+    void setUp() throws SQLException, IOException {
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        proxy = new TcpProxy(server.getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        DB.closeConnection();
+        proxy.close();
+        server.stop();
+    }
+
+    @Test
+    void readsSurviveDroppedConnections() {
+        // Returned connections are handed out again unchecked, so the reads
+        // below meet the broken connection and have to retry
+        configure("pool.validationBypassMs", "60000");
+        categoryDao.createTable();
+        Category saved = categoryDao.save(new Category("Fiction", "Novels"));
+
+        proxy.dropConnections();
+        assertEquals("Fiction", categoryDao.findById(saved.getId()).getName());
+
+        proxy.dropConnections();
+        assertEquals(1, categoryDao.findAll().size());
+
+        assertEquals(2, DB.getPool().getRetryPolicy().getRetryCount());
+    }
+
+    @Test
+    void pagedListingsSurviveDroppedConnections() {
+        configure("pool.validationBypassMs", "60000");
+        categoryDao.createTable();
+        categoryDao.save(new Category("Fiction", "Novels"));
+        categoryDao.save(new Category("History", "Past events"));
+        categoryDao.save(new Category("Technical", "Technical books"));
+
+        proxy.dropConnections();
+        Page<Category> first = categoryDao.findPage(null, 2);
+        assertEquals(2, first.getItems().size());
+        assertTrue(first.hasNext());
+
+        proxy.dropConnections();
+        Page<Category> second = categoryDao.findPage(first.getItems().get(1), 2);
+        assertEquals("Technical", second.getItems().get(0).getName());
+        assertFalse(second.hasNext());
+
+        assertEquals(2, DB.getPool().getRetryPolicy().getRetryCount());
+    }
+
+    @Test
+    void breakerFailsFastWhileTheDatabaseIsUnreachable() throws InterruptedException {
+        configure("pool.breakerFailureThreshold", "2", "pool.breakerOpenMs", "200", "pool.retryAttempts", "1",
+                "pool.validationBypassMs", "0");
+        categoryDao.createTable();
+        CircuitBreaker breaker = DB.getPool().getCircuitBreaker();
+
+        proxy.refuse();
+        for (int i = 0; i < 2; i++) {
+            assertThrows(DbException.class, categoryDao::findAll);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        DbException fastFailure = assertThrows(DbException.class, categoryDao::findAll);
+        assertTrue(fastFailure.getMessage().startsWith("Database unavailable"));
+        assertEquals(1, breaker.getRejectedCount());
+
+        proxy.restore();
+        Thread.sleep(250);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(categoryDao.findAll().isEmpty());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void retriesStopWhenTheBudgetRunsOut() {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0, 0.5, 2);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // The first call spends both retries in the budget
+        assertThrows(DbException.class, () -> policy.call(() -> failTransiently(attempts)));
+        assertEquals(3, attempts.get());
+        assertEquals(0.0, policy.getBudget());
+
+        // Each call earns half a retry, so only the second of these can retry
+        attempts.set(0);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(DbException.class, () -> policy.call(() -> failTransiently(attempts)));
+        }
+        assertEquals(4, attempts.get());
+        assertEquals(3, policy.getRetryCount());
+        assertEquals(3, policy.getExhaustedCount());
+
+        // Errors a new connection cannot fix are never retried
+        attempts.set(0);
+        assertThrows(DbException.class, () -> policy.call(() -> {
+            attempts.incrementAndGet();
+            throw new DbException("Duplicate key", new SQLException("duplicate", "23505"));
+        }));
+        assertEquals(1, attempts.get());
+        assertFalse(RetryPolicy.isTransient(new DbException("Duplicate key")));
+    }
+
+    // Helper methods
+
+    private void configure(String... settings) {
+        Properties props = new Properties();
+        props.setProperty("dburl", "jdbc:h2:tcp://localhost:" + proxy.getPort() + "/mem:" + name
+                + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE");
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        props.setProperty("pool.maxSize", "1");
+        props.setProperty("pool.retryBackoffMs", "0");
+        props.setProperty("pool.retryMaxBackoffMs", "0");
+        for (int i = 0; i < settings.length; i += 2) {
+            props.setProperty(settings[i], settings[i + 1]);
+        }
+        DB.configure(props);
+    }
+
+    private static Object failTransiently(AtomicInteger attempts) {
+        attempts.incrementAndGet();
+        throw new DbException("Connection lost", new SQLRecoverableException("reset"));
+    }
+}